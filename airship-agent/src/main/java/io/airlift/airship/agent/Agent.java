@@ -13,19 +13,25 @@
  */
 package io.airlift.airship.agent;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.Installation;
 import io.airlift.airship.shared.SlotStatus;
 import com.proofpoint.http.server.HttpServerInfo;
+import com.proofpoint.log.Logger;
 import com.proofpoint.node.NodeInfo;
 import com.proofpoint.units.Duration;
 
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -37,6 +43,8 @@ import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
@@ -45,6 +53,8 @@ import static java.lang.String.format;
 
 public class Agent
 {
+    private static final Logger log = Logger.get(Agent.class);
+
     private final String agentId;
     private final ConcurrentMap<UUID, Slot> slots;
     private final DeploymentManagerFactory deploymentManagerFactory;
@@ -54,6 +64,10 @@ public class Agent
     private final Duration maxLockWait;
     private final URI internalUri;
     private final URI externalUri;
+    private final StatusChangeNotifier statusChangeNotifier = new StatusChangeNotifier();
+    private final Duration slotStatusRefreshInterval;
+    private final ExecutorService slotStatusMonitor;
+    private volatile boolean statusRefreshed;
 
     @Inject
     public Agent(AgentConfig config,
@@ -70,7 +84,8 @@ public class Agent
                 config.getResourcesFile(),
                 deploymentManagerFactory,
                 lifecycleManager,
-                config.getMaxLockWait()
+                config.getMaxLockWait(),
+                config.getSlotStatusRefreshInterval()
         );
     }
 
@@ -84,6 +99,25 @@ public class Agent
             DeploymentManagerFactory deploymentManagerFactory,
             LifecycleManager lifecycleManager,
             Duration maxLockWait)
+    {
+        this(agentId, location, slotsDirName, internalUri, externalUri, resourcesFilename, deploymentManagerFactory, lifecycleManager, maxLockWait, null);
+    }
+
+    /**
+     * @param slotStatusRefreshInterval how often the slot status monitor asks the launchers for the
+     * slot states, or null to ask them on every status request
+     */
+    public Agent(
+            String agentId,
+            String location,
+            String slotsDirName,
+            URI internalUri,
+            URI externalUri,
+            String resourcesFilename,
+            DeploymentManagerFactory deploymentManagerFactory,
+            LifecycleManager lifecycleManager,
+            Duration maxLockWait,
+            @Nullable Duration slotStatusRefreshInterval)
     {
         Preconditions.checkNotNull(agentId, "agentId is null");
         Preconditions.checkNotNull(location, "location is null");
@@ -99,6 +133,13 @@ public class Agent
         this.externalUri = externalUri;
         this.maxLockWait = maxLockWait;
         this.location = location;
+        this.slotStatusRefreshInterval = slotStatusRefreshInterval;
+        if (slotStatusRefreshInterval != null) {
+            slotStatusMonitor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("agent-slot-status-monitor").setDaemon(true).build());
+        }
+        else {
+            slotStatusMonitor = null;
+        }
 
         this.deploymentManagerFactory = deploymentManagerFactory;
         this.lifecycleManager = lifecycleManager;
@@ -122,7 +163,7 @@ public class Agent
             else {
                 URI slotInternalUri = uriBuilderFrom(internalUri).appendPath("/v1/agent/slot/").appendPath(slotId.toString()).build();
                 URI slotExternalUri = uriBuilderFrom(externalUri).appendPath("/v1/agent/slot/").appendPath(slotId.toString()).build();
-                Slot slot = new DeploymentSlot(slotInternalUri, slotExternalUri, deploymentManager, lifecycleManager, maxLockWait);
+                Slot slot = new DeploymentSlot(slotInternalUri, slotExternalUri, deploymentManager, lifecycleManager, maxLockWait, statusChangeNotifier);
                 slots.put(slotId, slot);
             }
         }
@@ -155,6 +196,65 @@ public class Agent
         this.resources = resources;
     }
 
+    @PostConstruct
+    public void start()
+    {
+        if (slotStatusMonitor == null) {
+            return;
+        }
+        slotStatusMonitor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                monitorSlotStatus();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        if (slotStatusMonitor != null) {
+            slotStatusMonitor.shutdownNow();
+        }
+        statusRefreshed = false;
+    }
+
+    /**
+     * Refreshes the slot states every refresh interval, and right after any other status change,
+     * such as a lifecycle operation, so status requests never have to run the launcher.
+     */
+    private void monitorSlotStatus()
+    {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                refreshSlotStatus();
+            }
+            catch (Throwable e) {
+                log.error(e, "Unexpected exception refreshing slot status");
+            }
+
+            // changes made by the refresh itself do not trigger another refresh
+            long changeCount = statusChangeNotifier.getChangeCount();
+            try {
+                statusChangeNotifier.waitForChange(changeCount, slotStatusRefreshInterval);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void refreshSlotStatus()
+    {
+        for (Slot slot : slots.values()) {
+            slot.status();
+        }
+        statusRefreshed = true;
+    }
+
     public Map<String, Integer> getResources()
     {
         return resources;
@@ -172,6 +272,11 @@ public class Agent
 
     public AgentStatus getAgentStatus()
     {
+        if (statusRefreshed) {
+            // the slot status monitor keeps the last slot statuses current
+            return getLastAgentStatus();
+        }
+
         Builder<SlotStatus> builder = ImmutableList.builder();
         for (Slot slot : slots.values()) {
             SlotStatus slotStatus = slot.status();
@@ -181,6 +286,36 @@ public class Agent
         return agentStatus;
     }
 
+    /**
+     * Returns the agent status as soon as its version differs from knownVersion, waiting at most maxWait.
+     * If nothing changes in that time, the returned status still has knownVersion.
+     */
+    public AgentStatus waitForStatusChange(String knownVersion, Duration maxWait)
+            throws InterruptedException
+    {
+        long changeCount = statusChangeNotifier.getChangeCount();
+        AgentStatus agentStatus = getAgentStatus();
+        if (!agentStatus.getVersion().equals(knownVersion)) {
+            return agentStatus;
+        }
+
+        if (!statusChangeNotifier.waitForChange(changeCount, maxWait)) {
+            return agentStatus;
+        }
+
+        // slots record every change in their last status, so there is no need to ask the launcher again
+        return getLastAgentStatus();
+    }
+
+    private AgentStatus getLastAgentStatus()
+    {
+        Builder<SlotStatus> builder = ImmutableList.builder();
+        for (Slot slot : slots.values()) {
+            builder.add(slot.getLastSlotStatus());
+        }
+        return new AgentStatus(agentId, ONLINE, null, internalUri, externalUri, location, null, builder.build(), resources);
+    }
+
     public Slot getSlot(UUID slotId)
     {
         Preconditions.checkNotNull(slotId, "slotId must not be null");
@@ -198,8 +333,9 @@ public class Agent
 
         URI slotInternalUri = uriBuilderFrom(internalUri).appendPath("/v1/agent/slot/").appendPath(slotId.toString()).build();
         URI slotExternalUri = uriBuilderFrom(externalUri).appendPath("/v1/agent/slot/").appendPath(slotId.toString()).build();
-        Slot slot = new DeploymentSlot(slotInternalUri, slotExternalUri, deploymentManager, lifecycleManager, installation, maxLockWait);
+        Slot slot = new DeploymentSlot(slotInternalUri, slotExternalUri, deploymentManager, lifecycleManager, installation, maxLockWait, statusChangeNotifier);
         slots.put(slotId, slot);
+        statusChangeNotifier.statusChanged();
 
         // return last slot status
         return slot.getLastSlotStatus();
@@ -217,6 +353,7 @@ public class Agent
         SlotStatus status = slot.terminate();
         if (status.getState() == TERMINATED) {
             slots.remove(slotId);
+            statusChangeNotifier.statusChanged();
         }
         return status;
     }
@@ -0,0 +1,72 @@
+package io.airlift.airship.agent;
+
+import io.airlift.airship.shared.BinaryCache;
+import org.weakref.jmx.Managed;
+
+import javax.inject.Inject;
+import java.io.File;
+
+public class AgentBinaryCache extends BinaryCache
+{
+    @Inject
+    public AgentBinaryCache(AgentConfig config)
+    {
+        super(new File(config.getBinaryCacheDir()), config.getBinaryCacheMaxSizeInMegabytes() * 1024L * 1024L);
+    }
+
+    @Managed
+    @Override
+    public long getHits()
+    {
+        return super.getHits();
+    }
+
+    @Managed
+    @Override
+    public long getMisses()
+    {
+        return super.getMisses();
+    }
+
+    @Managed
+    @Override
+    public long getBypasses()
+    {
+        return super.getBypasses();
+    }
+
+    @Managed
+    @Override
+    public long getSourceDownloads()
+    {
+        return super.getSourceDownloads();
+    }
+
+    @Managed
+    @Override
+    public long getChecksumMismatches()
+    {
+        return super.getChecksumMismatches();
+    }
+
+    @Managed
+    @Override
+    public double getHitRatio()
+    {
+        return super.getHitRatio();
+    }
+
+    @Managed
+    @Override
+    public long getSize()
+    {
+        return super.getSize();
+    }
+
+    @Managed
+    @Override
+    public int getBinaryCount()
+    {
+        return super.getBinaryCount();
+    }
+}
@@ -0,0 +1,102 @@
+package io.airlift.airship.agent;
+
+import io.airlift.airship.shared.CommandExecutor;
+import org.weakref.jmx.Managed;
+
+import javax.inject.Inject;
+
+/**
+ * Runs the launcher, tar and symlink commands of this agent.
+ */
+public class AgentCommandExecutor extends CommandExecutor
+{
+    @Inject
+    public AgentCommandExecutor(AgentConfig config)
+    {
+        super(config.getCommandMaxConcurrency(), config.getCommandMaxQueued());
+    }
+
+    @Managed
+    @Override
+    public int getMaxConcurrency()
+    {
+        return super.getMaxConcurrency();
+    }
+
+    @Managed
+    @Override
+    public int getMaxQueued()
+    {
+        return super.getMaxQueued();
+    }
+
+    @Managed
+    @Override
+    public int getQueuedCommands()
+    {
+        return super.getQueuedCommands();
+    }
+
+    @Managed
+    @Override
+    public int getRunningCommands()
+    {
+        return super.getRunningCommands();
+    }
+
+    @Managed
+    @Override
+    public long getSucceededCommands()
+    {
+        return super.getSucceededCommands();
+    }
+
+    @Managed
+    @Override
+    public long getFailedCommands()
+    {
+        return super.getFailedCommands();
+    }
+
+    @Managed
+    @Override
+    public long getTimedOutCommands()
+    {
+        return super.getTimedOutCommands();
+    }
+
+    @Managed
+    @Override
+    public long getRejectedCommands()
+    {
+        return super.getRejectedCommands();
+    }
+
+    @Managed
+    @Override
+    public long getQueueTimedOutCommands()
+    {
+        return super.getQueueTimedOutCommands();
+    }
+
+    @Managed
+    @Override
+    public double getAverageQueueMillis()
+    {
+        return super.getAverageQueueMillis();
+    }
+
+    @Managed
+    @Override
+    public double getAverageExecutionMillis()
+    {
+        return super.getAverageExecutionMillis();
+    }
+
+    @Managed
+    @Override
+    public double getMaxExecutionMillis()
+    {
+        return super.getMaxExecutionMillis();
+    }
+}
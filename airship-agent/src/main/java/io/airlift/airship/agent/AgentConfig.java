@@ -17,6 +17,7 @@ import com.google.common.base.Preconditions;
 import com.proofpoint.configuration.Config;
 import com.proofpoint.units.Duration;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.util.concurrent.TimeUnit;
 
@@ -26,8 +27,17 @@ public class AgentConfig
     private String resourcesFile = "etc/resources.properties";
     private Duration launcherTimeout = new Duration(1, TimeUnit.SECONDS);
     private Duration launcherStopTimeout = new Duration(10, TimeUnit.SECONDS);
+    private boolean launcherPidFileStatusEnabled = true;
     private Duration tarTimeout = new Duration(1, TimeUnit.MINUTES);
     private Duration maxLockWait = new Duration(1, TimeUnit.SECONDS);
+    private Duration slotStatusRefreshInterval = new Duration(5, TimeUnit.SECONDS);
+    private Duration statusMaxWait = new Duration(1, TimeUnit.MINUTES);
+    private String binaryCacheDir = "binary-cache";
+    private int binaryCacheMaxSizeInMegabytes = 2048;
+    private String configBundleCacheDir = "config-bundle-cache";
+    private int configBundleCacheMaxBundles = 100;
+    private int commandMaxConcurrency = 16;
+    private int commandMaxQueued = 256;
 
     @NotNull
     public String getSlotsDir()
@@ -81,6 +91,18 @@ public class AgentConfig
         return this;
     }
 
+    public boolean isLauncherPidFileStatusEnabled()
+    {
+        return launcherPidFileStatusEnabled;
+    }
+
+    @Config("agent.launcher-pid-file-status-enabled")
+    public AgentConfig setLauncherPidFileStatusEnabled(boolean launcherPidFileStatusEnabled)
+    {
+        this.launcherPidFileStatusEnabled = launcherPidFileStatusEnabled;
+        return this;
+    }
+
     @NotNull
     public Duration getTarTimeout()
     {
@@ -110,4 +132,108 @@ public class AgentConfig
         this.maxLockWait = lockWait;
         return this;
     }
+
+    @NotNull
+    public Duration getSlotStatusRefreshInterval()
+    {
+        return slotStatusRefreshInterval;
+    }
+
+    @Config("agent.slot-status-refresh-interval")
+    public AgentConfig setSlotStatusRefreshInterval(Duration slotStatusRefreshInterval)
+    {
+        this.slotStatusRefreshInterval = slotStatusRefreshInterval;
+        return this;
+    }
+
+    @NotNull
+    public Duration getStatusMaxWait()
+    {
+        return statusMaxWait;
+    }
+
+    @Config("agent.status-max-wait")
+    public AgentConfig setStatusMaxWait(Duration statusMaxWait)
+    {
+        this.statusMaxWait = statusMaxWait;
+        return this;
+    }
+
+    @NotNull
+    public String getBinaryCacheDir()
+    {
+        return binaryCacheDir;
+    }
+
+    @Config("agent.binary-cache-dir")
+    public AgentConfig setBinaryCacheDir(String binaryCacheDir)
+    {
+        this.binaryCacheDir = binaryCacheDir;
+        return this;
+    }
+
+    @Min(0)
+    public int getBinaryCacheMaxSizeInMegabytes()
+    {
+        return binaryCacheMaxSizeInMegabytes;
+    }
+
+    @Config("agent.binary-cache-max-size-mb")
+    public AgentConfig setBinaryCacheMaxSizeInMegabytes(int binaryCacheMaxSizeInMegabytes)
+    {
+        this.binaryCacheMaxSizeInMegabytes = binaryCacheMaxSizeInMegabytes;
+        return this;
+    }
+
+    @NotNull
+    public String getConfigBundleCacheDir()
+    {
+        return configBundleCacheDir;
+    }
+
+    @Config("agent.config-bundle-cache-dir")
+    public AgentConfig setConfigBundleCacheDir(String configBundleCacheDir)
+    {
+        this.configBundleCacheDir = configBundleCacheDir;
+        return this;
+    }
+
+    @Min(1)
+    public int getConfigBundleCacheMaxBundles()
+    {
+        return configBundleCacheMaxBundles;
+    }
+
+    @Config("agent.config-bundle-cache-max-bundles")
+    public AgentConfig setConfigBundleCacheMaxBundles(int configBundleCacheMaxBundles)
+    {
+        this.configBundleCacheMaxBundles = configBundleCacheMaxBundles;
+        return this;
+    }
+
+    @Min(1)
+    public int getCommandMaxConcurrency()
+    {
+        return commandMaxConcurrency;
+    }
+
+    @Config("agent.command-max-concurrency")
+    public AgentConfig setCommandMaxConcurrency(int commandMaxConcurrency)
+    {
+        this.commandMaxConcurrency = commandMaxConcurrency;
+        return this;
+    }
+
+    @Min(0)
+    public int getCommandMaxQueued()
+    {
+        return commandMaxQueued;
+    }
+
+    @Config("agent.command-max-queued")
+    public AgentConfig setCommandMaxQueued(int commandMaxQueued)
+    {
+        this.commandMaxQueued = commandMaxQueued;
+        return this;
+    }
 }
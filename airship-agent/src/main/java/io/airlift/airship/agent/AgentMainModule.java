@@ -17,6 +17,9 @@ import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.google.inject.Scopes;
 import com.proofpoint.configuration.ConfigurationModule;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.CommandExecutor;
+import io.airlift.airship.shared.ConfigBundleCache;
 import io.airlift.airship.shared.VersionConflictExceptionMapper;
 import org.weakref.jmx.guice.MBeanModule;
 
@@ -38,8 +41,18 @@ public class AgentMainModule
         binder.bind(LifecycleResource.class).in(Scopes.SINGLETON);
         binder.bind(VersionConflictExceptionMapper.class).in(Scopes.SINGLETON);
 
+        binder.bind(AgentBinaryCache.class).in(Scopes.SINGLETON);
+        binder.bind(BinaryCache.class).to(AgentBinaryCache.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(AgentBinaryCache.class).withGeneratedName();
+        binder.bind(AgentConfigBundleCache.class).in(Scopes.SINGLETON);
+        binder.bind(ConfigBundleCache.class).to(AgentConfigBundleCache.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(AgentConfigBundleCache.class).withGeneratedName();
+        binder.bind(BinaryResource.class).in(Scopes.SINGLETON);
         binder.bind(DeploymentManagerFactory.class).to(DirectoryDeploymentManagerFactory.class).in(Scopes.SINGLETON);
         binder.bind(LifecycleManager.class).to(LauncherLifecycleManager.class).in(Scopes.SINGLETON);
+        binder.bind(AgentCommandExecutor.class).in(Scopes.SINGLETON);
+        binder.bind(CommandExecutor.class).to(AgentCommandExecutor.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(AgentCommandExecutor.class).withGeneratedName();
 
         binder.bind(ServiceInventoryResource.class).in(Scopes.SINGLETON);
 
@@ -17,36 +17,76 @@ import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.AgentStatusRepresentation;
+import com.proofpoint.units.Duration;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENT_VERSION_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_MAX_WAIT_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER;
 
 @Path("/v1/agent/")
 public class AgentResource
 {
     private final Agent agent;
+    private final ServiceInventoryResource serviceInventoryResource;
+    private final Duration statusMaxWait;
 
     @Inject
-    public AgentResource(Agent agent)
+    public AgentResource(Agent agent, ServiceInventoryResource serviceInventoryResource, AgentConfig config)
     {
         Preconditions.checkNotNull(agent, "agent is null");
+        Preconditions.checkNotNull(serviceInventoryResource, "serviceInventoryResource is null");
+        Preconditions.checkNotNull(config, "config is null");
 
         this.agent = agent;
+        this.serviceInventoryResource = serviceInventoryResource;
+        this.statusMaxWait = config.getStatusMaxWait();
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllSlotsStatus()
+    public Response getAllSlotsStatus(@HeaderParam(IF_NONE_MATCH) String ifNoneMatch, @HeaderParam(AIRSHIP_MAX_WAIT_HEADER) Duration maxWait)
+            throws InterruptedException
     {
-        AgentStatus agentStatus = agent.getAgentStatus();
+        AgentStatus agentStatus;
+        if (ifNoneMatch != null && maxWait != null) {
+            // long poll: hold the request until the status moves away from the version the caller has, but never
+            // longer than the configured maximum, since every waiting request holds a server thread
+            if (maxWait.toMillis() > statusMaxWait.toMillis()) {
+                maxWait = statusMaxWait;
+            }
+            agentStatus = agent.waitForStatusChange(EntityTag.valueOf(ifNoneMatch).getValue(), maxWait);
+        }
+        else {
+            agentStatus = agent.getAgentStatus();
+        }
+        EntityTag entityTag = new EntityTag(agentStatus.getVersion());
+
+        // the service inventory is not part of the agent status, so report its version on every poll; this lets the
+        // coordinator notice an agent that restarted and lost the inventory even when the status itself is unchanged
+        String serviceInventoryVersion = serviceInventoryResource.getVersion();
+
+        // coordinators poll this resource constantly, so skip the body when the caller already has this version
+        if (entityTag.toString().equals(ifNoneMatch)) {
+            return Response.notModified(entityTag)
+                    .header(AIRSHIP_AGENT_VERSION_HEADER, agentStatus.getVersion())
+                    .header(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER, serviceInventoryVersion)
+                    .build();
+        }
+
         AgentStatusRepresentation agentStatusRepresentation = AgentStatusRepresentation.from(agentStatus);
         return Response.ok(agentStatusRepresentation)
+                .tag(entityTag)
                 .header(AIRSHIP_AGENT_VERSION_HEADER, agentStatus.getVersion())
+                .header(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER, serviceInventoryVersion)
                 .build();
     }
 }
@@ -0,0 +1,99 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.airship.agent;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+import com.sun.jersey.spi.CloseableService;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.BinaryCache.CachedBinary;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * Serves the binaries in the agent binary cache to peer agents, so a rollout does not have to
+ * pull every copy from the coordinator.  Only binaries that are already cached are served.
+ */
+@Path("/v1/agent/binary")
+public class BinaryResource
+{
+    private final BinaryCache binaryCache;
+
+    @Inject
+    public BinaryResource(BinaryCache binaryCache)
+    {
+        Preconditions.checkNotNull(binaryCache, "binaryCache is null");
+
+        this.binaryCache = binaryCache;
+    }
+
+    @GET
+    @Produces("application/octet-stream")
+    public Response getBinary(@QueryParam("location") String location, @Context CloseableService requestResources)
+    {
+        Preconditions.checkNotNull(requestResources, "requestResources is null");
+
+        if (location == null) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        URI uri;
+        try {
+            uri = URI.create(location);
+        }
+        catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
+
+        final CachedBinary binary = binaryCache.getCachedBinary(uri);
+        if (binary == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        // the binary stays pinned in the cache until the response is written, or until the request
+        // completes if the response is never written, as for a HEAD request or a client that goes away
+        requestResources.add(binary);
+        StreamingOutput entity = new StreamingOutput()
+        {
+            @Override
+            public void write(OutputStream output)
+                    throws IOException
+            {
+                try {
+                    Files.copy(binary.getFile(), output);
+                }
+                finally {
+                    binary.close();
+                }
+            }
+        };
+        return Response.ok(entity)
+                .tag(new EntityTag(binary.getSha256()))
+                .header("Content-Length", binary.getFile().length())
+                .header("X-Checksum-Sha256", binary.getSha256())
+                .build();
+    }
+}
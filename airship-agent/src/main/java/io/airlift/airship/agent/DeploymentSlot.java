@@ -47,6 +47,7 @@ public class DeploymentSlot implements Slot
     private final DeploymentManager deploymentManager;
     private final LifecycleManager lifecycleManager;
     private final AtomicReference<SlotStatus> lastSlotStatus;
+    private final StatusChangeNotifier statusChangeNotifier;
     private boolean terminated;
 
     private final ReentrantLock lock = new ReentrantLock();
@@ -57,17 +58,20 @@ public class DeploymentSlot implements Slot
             URI externalUri,
             DeploymentManager deploymentManager,
             LifecycleManager lifecycleManager,
-            Duration maxLockWait)
+            Duration maxLockWait,
+            StatusChangeNotifier statusChangeNotifier)
     {
         Preconditions.checkNotNull(self, "self is null");
         Preconditions.checkNotNull(externalUri, "externalUri is null");
         Preconditions.checkNotNull(deploymentManager, "deploymentManager is null");
         Preconditions.checkNotNull(lifecycleManager, "lifecycleManager is null");
         Preconditions.checkNotNull(maxLockWait, "maxLockWait is null");
+        Preconditions.checkNotNull(statusChangeNotifier, "statusChangeNotifier is null");
 
         this.location = deploymentManager.getLocation();
         this.deploymentManager = deploymentManager;
         this.lifecycleManager = lifecycleManager;
+        this.statusChangeNotifier = statusChangeNotifier;
 
         lockWait = maxLockWait;
         id = deploymentManager.getSlotId();
@@ -95,16 +99,19 @@ public class DeploymentSlot implements Slot
             DeploymentManager deploymentManager,
             LifecycleManager lifecycleManager,
             Installation installation,
-            Duration maxLockWait)
+            Duration maxLockWait,
+            StatusChangeNotifier statusChangeNotifier)
     {
         Preconditions.checkNotNull(deploymentManager, "deploymentManager is null");
         Preconditions.checkNotNull(lifecycleManager, "lifecycleManager is null");
         Preconditions.checkNotNull(installation, "installation is null");
         Preconditions.checkNotNull(maxLockWait, "maxLockWait is null");
+        Preconditions.checkNotNull(statusChangeNotifier, "statusChangeNotifier is null");
 
         this.location = deploymentManager.getLocation();
         this.deploymentManager = deploymentManager;
         this.lifecycleManager = lifecycleManager;
+        this.statusChangeNotifier = statusChangeNotifier;
 
         this.lockWait = maxLockWait;
         this.id = deploymentManager.getSlotId();
@@ -194,7 +201,7 @@ public class DeploymentSlot implements Slot
                     deployment.getDataDir().getAbsolutePath(),
                     deployment.getResources());
 
-            lastSlotStatus.set(slotStatus);
+            setLastSlotStatus(slotStatus);
             return slotStatus;
         }
         finally {
@@ -220,7 +227,7 @@ public class DeploymentSlot implements Slot
             }
 
             SlotStatus slotStatus = lastSlotStatus.get().changeState(TERMINATED);
-            lastSlotStatus.set(slotStatus);
+            setLastSlotStatus(slotStatus);
             return slotStatus;
         }
         finally {
@@ -257,7 +264,7 @@ public class DeploymentSlot implements Slot
             }
 
             SlotStatus slotStatus = lastSlotStatus.get().changeState(lifecycleManager.status(activeDeployment));
-            lastSlotStatus.set(slotStatus);
+            setLastSlotStatus(slotStatus);
             return slotStatus;
         }
         finally {
@@ -280,7 +287,7 @@ public class DeploymentSlot implements Slot
             SlotLifecycleState state = lifecycleManager.start(activeDeployment);
 
             SlotStatus slotStatus = lastSlotStatus.get().changeState(state);
-            lastSlotStatus.set(slotStatus);
+            setLastSlotStatus(slotStatus);
             return slotStatus;
         }
         finally {
@@ -303,7 +310,7 @@ public class DeploymentSlot implements Slot
             SlotLifecycleState state = lifecycleManager.restart(activeDeployment);
 
             SlotStatus slotStatus = lastSlotStatus.get().changeState(state);
-            lastSlotStatus.set(slotStatus);
+            setLastSlotStatus(slotStatus);
             return slotStatus;
         }
         finally {
@@ -326,7 +333,7 @@ public class DeploymentSlot implements Slot
             SlotLifecycleState state = lifecycleManager.stop(activeDeployment);
 
             SlotStatus slotStatus = lastSlotStatus.get().changeState(state);
-            lastSlotStatus.set(slotStatus);
+            setLastSlotStatus(slotStatus);
             return slotStatus;
         }
         finally {
@@ -335,6 +342,14 @@ public class DeploymentSlot implements Slot
     }
 
 
+    private void setLastSlotStatus(SlotStatus slotStatus)
+    {
+        SlotStatus oldSlotStatus = lastSlotStatus.getAndSet(slotStatus);
+        if (!slotStatus.equals(oldSlotStatus)) {
+            statusChangeNotifier.statusChanged();
+        }
+    }
+
     private void lock()
     {
         try {
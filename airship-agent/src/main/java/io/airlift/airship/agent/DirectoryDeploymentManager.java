@@ -6,14 +6,18 @@ import com.google.common.io.Resources;
 import io.airlift.airship.shared.ConfigUtils;
 import com.proofpoint.json.JsonCodec;
 import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.BinaryCache.CachedBinary;
+import io.airlift.airship.shared.CommandExecutor;
 import io.airlift.airship.shared.CommandFailedException;
+import io.airlift.airship.shared.ConfigBundleCache;
 import io.airlift.airship.shared.Installation;
 import com.proofpoint.log.Logger;
 import com.proofpoint.units.Duration;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,18 +36,36 @@ public class DirectoryDeploymentManager implements DeploymentManager
     private final UUID slotId;
     private final String location;
     private final Duration tarTimeout;
+    private final CommandExecutor commandExecutor;
+    private final BinaryCache binaryCache;
+    private final ConfigBundleCache configBundleCache;
 
     private final File baseDir;
     private final File deploymentFile;
     private Deployment deployment;
 
-    public DirectoryDeploymentManager(File baseDir, String location, Duration tarTimeout)
+    public DirectoryDeploymentManager(File baseDir, String location, Duration tarTimeout, CommandExecutor commandExecutor)
+    {
+        this(baseDir, location, tarTimeout, commandExecutor, null, null);
+    }
+
+    public DirectoryDeploymentManager(File baseDir,
+            String location,
+            Duration tarTimeout,
+            CommandExecutor commandExecutor,
+            @Nullable BinaryCache binaryCache,
+            @Nullable ConfigBundleCache configBundleCache)
     {
         Preconditions.checkNotNull(location, "location is null");
         Preconditions.checkArgument(location.startsWith("/"), "location must start with /");
         this.location = location;
         this.tarTimeout = tarTimeout;
 
+        Preconditions.checkNotNull(commandExecutor, "commandExecutor is null");
+        this.commandExecutor = commandExecutor;
+        this.binaryCache = binaryCache;
+        this.configBundleCache = configBundleCache;
+
         Preconditions.checkNotNull(baseDir, "baseDir is null");
         baseDir.mkdirs();
         Preconditions.checkArgument(baseDir.isDirectory(), "baseDir is not a directory: " + baseDir.getAbsolutePath());
@@ -128,11 +150,22 @@ public class DirectoryDeploymentManager implements DeploymentManager
 
         Deployment deployment = new Deployment(slotId, location, deploymentDir, dataDir, assignment, installation.getResources());
         File tempDir = createTempDir(baseDir, "tmp-install");
+        CachedBinary cachedBinary = null;
         try {
-            // download the binary
-            File binary = new File(tempDir, "airship-binary.tar.gz");
+            // download the binary, from a peer if possible, unless another slot already has
+            File binary = null;
             try {
-                Files.copy(Resources.newInputStreamSupplier(installation.getBinaryFile().toURL()), binary);
+                if (binaryCache != null) {
+                    // the cached binary stays pinned until it is extracted, so other installs can not evict it
+                    cachedBinary = binaryCache.getBinary(installation.getBinaryFile(), installation.getBinarySources(), installation.getBinarySha256());
+                    if (cachedBinary != null) {
+                        binary = cachedBinary.getFile();
+                    }
+                }
+                if (binary == null) {
+                    binary = new File(tempDir, "airship-binary.tar.gz");
+                    Files.copy(Resources.newInputStreamSupplier(installation.getBinaryFile().toURL()), binary);
+                }
             }
             catch (IOException e) {
                 throw new RuntimeException("Unable to download binary " + assignment.getBinary() + " from " + installation.getBinaryFile(), e);
@@ -142,11 +175,16 @@ public class DirectoryDeploymentManager implements DeploymentManager
             File unpackDir = new File(tempDir, "unpack");
             unpackDir.mkdirs();
             try {
-                extractTar(binary, unpackDir, tarTimeout);
+                extractTar(binary, unpackDir, tarTimeout, commandExecutor);
             }
             catch (CommandFailedException e) {
                 throw new RuntimeException("Unable to extract tar file " + assignment.getBinary() + ": " + e.getMessage());
             }
+            finally {
+                if (cachedBinary != null) {
+                    cachedBinary.close();
+                }
+            }
 
             // find the archive root dir (it should be the only file in the temp unpack dir)
             List<File> files = listFiles(unpackDir);
@@ -157,8 +195,7 @@ public class DirectoryDeploymentManager implements DeploymentManager
 
             // unpack config bundle
             try {
-                URL url = installation.getConfigFile().toURL();
-                ConfigUtils.unpackConfig(Resources.newInputStreamSupplier(url), binaryRootDir);
+                ConfigUtils.unpackConfig(ConfigUtils.newConfigBundleSupplier(installation.getConfigFile(), configBundleCache), binaryRootDir);
             }
             catch (Exception e) {
                 throw new RuntimeException("Unable to extract config bundle " + assignment.getConfig() + ": " + e.getMessage());
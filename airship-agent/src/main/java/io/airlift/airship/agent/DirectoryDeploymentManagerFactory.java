@@ -6,6 +6,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.CommandExecutor;
+import io.airlift.airship.shared.ConfigBundleCache;
 import io.airlift.airship.shared.FileUtils;
 import io.airlift.airship.shared.Installation;
 import io.airlift.airship.shared.MavenCoordinates;
@@ -23,22 +26,43 @@ public class DirectoryDeploymentManagerFactory implements DeploymentManagerFacto
 {
     private final String location;
     private final Duration tarTimeout;
+    private final CommandExecutor commandExecutor;
     private final File slotDir;
+    private final BinaryCache binaryCache;
+    private final ConfigBundleCache configBundleCache;
 
     @Inject
-    public DirectoryDeploymentManagerFactory(NodeInfo nodeInfo, AgentConfig config)
+    public DirectoryDeploymentManagerFactory(NodeInfo nodeInfo,
+            AgentConfig config,
+            CommandExecutor commandExecutor,
+            BinaryCache binaryCache,
+            ConfigBundleCache configBundleCache)
     {
-        this(nodeInfo.getLocation(), config.getSlotsDir(), config.getTarTimeout());
+        this(nodeInfo.getLocation(), config.getSlotsDir(), config.getTarTimeout(), commandExecutor, binaryCache, configBundleCache);
     }
 
-    public DirectoryDeploymentManagerFactory(String location, String slotsDir, Duration tarTimeout)
+    public DirectoryDeploymentManagerFactory(String location, String slotsDir, Duration tarTimeout, CommandExecutor commandExecutor)
+    {
+        this(location, slotsDir, tarTimeout, commandExecutor, null, null);
+    }
+
+    public DirectoryDeploymentManagerFactory(String location,
+            String slotsDir,
+            Duration tarTimeout,
+            CommandExecutor commandExecutor,
+            @Nullable BinaryCache binaryCache,
+            @Nullable ConfigBundleCache configBundleCache)
     {
         Preconditions.checkNotNull(location, "location is null");
         Preconditions.checkNotNull(slotsDir, "slotsDir is null");
         Preconditions.checkNotNull(tarTimeout, "tarTimeout is null");
+        Preconditions.checkNotNull(commandExecutor, "commandExecutor is null");
 
         this.location = location;
         this.tarTimeout = tarTimeout;
+        this.commandExecutor = commandExecutor;
+        this.binaryCache = binaryCache;
+        this.configBundleCache = configBundleCache;
 
         this.slotDir = new File(slotsDir);
 
@@ -54,7 +78,7 @@ public class DirectoryDeploymentManagerFactory implements DeploymentManagerFacto
         ImmutableList.Builder<DeploymentManager> builder = ImmutableList.builder();
         for (File dir : listFiles(slotDir)) {
             if (dir.isDirectory() && new File(dir, "airship-slot-id.txt").canRead()) {
-                DirectoryDeploymentManager deploymentManager = new DirectoryDeploymentManager(dir, location + "/" + dir.getName(), tarTimeout);
+                DirectoryDeploymentManager deploymentManager = new DirectoryDeploymentManager(dir, location + "/" + dir.getName(), tarTimeout, commandExecutor, binaryCache, configBundleCache);
                 builder.add(deploymentManager);
             }
         }
@@ -65,7 +89,7 @@ public class DirectoryDeploymentManagerFactory implements DeploymentManagerFacto
     public DirectoryDeploymentManager createDeploymentManager(Installation installation)
     {
         File slotDirectory = getSlotDirectory(installation);
-        return new DirectoryDeploymentManager(slotDirectory, location + "/" + slotDirectory.getName(), tarTimeout);
+        return new DirectoryDeploymentManager(slotDirectory, location + "/" + slotDirectory.getName(), tarTimeout, commandExecutor, binaryCache, configBundleCache);
     }
 
     private synchronized File getSlotDirectory(Installation installation)
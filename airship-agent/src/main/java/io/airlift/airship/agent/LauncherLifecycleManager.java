@@ -2,12 +2,13 @@ package io.airlift.airship.agent;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import com.google.common.net.InetAddresses;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import io.airlift.airship.shared.Command;
+import io.airlift.airship.shared.CommandExecutor;
 import io.airlift.airship.shared.CommandFailedException;
 import io.airlift.airship.shared.SlotLifecycleState;
 import com.proofpoint.http.server.HttpServerInfo;
@@ -19,8 +20,6 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
@@ -31,7 +30,7 @@ public class LauncherLifecycleManager implements LifecycleManager
 {
     private static final Logger log = Logger.get(LauncherLifecycleManager.class);
 
-    private final Executor executor;
+    private final CommandExecutor executor;
     private final InetAddress internalIp;
     private final String externalAddress;
     private final Duration launcherTimeout;
@@ -39,9 +38,10 @@ public class LauncherLifecycleManager implements LifecycleManager
     private final String environment;
     private final InetAddress bindIp;
     private final URI serviceInventoryUri;
+    private final boolean pidFileStatusEnabled;
 
     @Inject
-    public LauncherLifecycleManager(AgentConfig config, NodeInfo nodeInfo, HttpServerInfo httpServerInfo)
+    public LauncherLifecycleManager(AgentConfig config, NodeInfo nodeInfo, HttpServerInfo httpServerInfo, CommandExecutor executor)
     {
         this(nodeInfo.getEnvironment(),
                 nodeInfo.getInternalIp(),
@@ -49,7 +49,9 @@ public class LauncherLifecycleManager implements LifecycleManager
                 nodeInfo.getBindIp(),
                 config.getLauncherTimeout(),
                 config.getLauncherStopTimeout(),
-                uriBuilderFrom(httpServerInfo.getHttpsUri() != null ? httpServerInfo.getHttpsUri() : httpServerInfo.getHttpUri()).appendPath("/v1/serviceInventory").build()
+                uriBuilderFrom(httpServerInfo.getHttpsUri() != null ? httpServerInfo.getHttpsUri() : httpServerInfo.getHttpUri()).appendPath("/v1/serviceInventory").build(),
+                config.isLauncherPidFileStatusEnabled(),
+                executor
         );
     }
 
@@ -59,23 +61,47 @@ public class LauncherLifecycleManager implements LifecycleManager
             InetAddress bindIp,
             Duration launcherTimeout,
             Duration launcherStopTimeout,
-            URI serviceInventoryUri)
+            URI serviceInventoryUri,
+            CommandExecutor executor)
     {
+        this(environment, internalIp, externalAddress, bindIp, launcherTimeout, launcherStopTimeout, serviceInventoryUri, true, executor);
+    }
+
+    public LauncherLifecycleManager(String environment,
+            InetAddress internalIp,
+            String externalAddress,
+            InetAddress bindIp,
+            Duration launcherTimeout,
+            Duration launcherStopTimeout,
+            URI serviceInventoryUri,
+            boolean pidFileStatusEnabled,
+            CommandExecutor executor)
+    {
+        Preconditions.checkNotNull(executor, "executor is null");
+
         this.launcherTimeout = launcherTimeout;
         stopTimeout = launcherStopTimeout;
 
-        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("launcher-command-%s").build());
+        this.executor = executor;
         this.environment = environment;
         this.internalIp = internalIp;
         this.externalAddress = externalAddress;
         this.bindIp = bindIp;
 
         this.serviceInventoryUri = serviceInventoryUri;
+        this.pidFileStatusEnabled = pidFileStatusEnabled;
     }
 
     @Override
     public SlotLifecycleState status(Deployment deployment)
     {
+        if (pidFileStatusEnabled) {
+            SlotLifecycleState state = PidFileStatus.getStatus(PidFileStatus.getPidFile(deployment));
+            if (state != null) {
+                return state;
+            }
+        }
+
         try {
             int exitCode = createCommand("status", deployment, launcherTimeout)
                     .setSuccessfulExitCodes(0, 1, 2, 3)
@@ -0,0 +1,140 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.airship.agent;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+import io.airlift.airship.shared.SlotLifecycleState;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+
+/**
+ * Checks if the process in a launcher pid file is alive by reading /proc, instead of running
+ * the launcher status command.
+ * <p/>
+ * The launcher writes the pid file from the process it starts, so the process must have started
+ * before the pid file was last modified.  A live process that started later reused the pid of a
+ * process that is gone.
+ */
+public final class PidFileStatus
+{
+    private static final File PROC = new File("/proc");
+
+    // USER_HZ, which the kernel uses for the times in /proc, is 100 on all supported platforms
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+    // process start times are computed from the boot time, which moves with clock adjustments
+    private static final long START_TIME_TOLERANCE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private PidFileStatus()
+    {
+    }
+
+    /**
+     * Gets the default launcher pid file of a deployment.
+     */
+    public static File getPidFile(Deployment deployment)
+    {
+        return new File(deployment.getDataDir(), "var/run/launcher.pid");
+    }
+
+    /**
+     * @return RUNNING or STOPPED, or null if the status can not be determined without the launcher,
+     * because the pid file does not exist or this system does not have /proc
+     */
+    public static SlotLifecycleState getStatus(File pidFile)
+    {
+        if (!new File(PROC, "self/stat").canRead()) {
+            return null;
+        }
+
+        long pidFileModified = pidFile.lastModified();
+        int pid;
+        try {
+            pid = Integer.parseInt(Files.readFirstLine(pidFile, Charsets.UTF_8).trim());
+        }
+        catch (Exception e) {
+            // missing, partially written or corrupt pid file
+            return null;
+        }
+
+        List<String> stat = readStat(pid);
+        if (stat == null) {
+            return STOPPED;
+        }
+
+        // zombies have exited, but have not been reaped by their parent yet
+        if (stat.get(0).equals("Z") || stat.get(0).equals("X")) {
+            return STOPPED;
+        }
+
+        Long bootTime = getBootTime();
+        if (bootTime == null || pidFileModified == 0) {
+            return RUNNING;
+        }
+        long startTime = bootTime + TimeUnit.SECONDS.toMillis(Long.parseLong(stat.get(19))) / CLOCK_TICKS_PER_SECOND;
+        if (startTime > pidFileModified + START_TIME_TOLERANCE_MILLIS) {
+            return STOPPED;
+        }
+        return RUNNING;
+    }
+
+    /**
+     * Reads the fields of /proc/[pid]/stat that follow the command name, starting with the state.
+     */
+    private static List<String> readStat(int pid)
+    {
+        String stat;
+        try {
+            stat = Files.toString(new File(PROC, pid + "/stat"), Charsets.US_ASCII);
+        }
+        catch (IOException e) {
+            return null;
+        }
+
+        // the command name is in parentheses and can contain spaces and parentheses itself
+        int commandEnd = stat.lastIndexOf(')');
+        if (commandEnd < 0) {
+            return null;
+        }
+        List<String> fields = newArrayList(Splitter.on(' ').omitEmptyStrings().trimResults().split(stat.substring(commandEnd + 1)));
+        if (fields.size() < 20) {
+            return null;
+        }
+        return fields;
+    }
+
+    private static Long getBootTime()
+    {
+        try {
+            for (String line : Files.readLines(new File(PROC, "stat"), Charsets.US_ASCII)) {
+                if (line.startsWith("btime ")) {
+                    return TimeUnit.SECONDS.toMillis(Long.parseLong(Iterables.get(Splitter.on(' ').omitEmptyStrings().split(line), 1)));
+                }
+            }
+        }
+        catch (Exception ignored) {
+        }
+        return null;
+    }
+}
@@ -22,6 +22,7 @@ import com.proofpoint.node.NodeInfo;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -30,6 +31,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER;
 import static java.lang.String.format;
 
 @Path("/v1/serviceInventory")
@@ -37,6 +39,7 @@ public class ServiceInventoryResource
 {
     private final String environment;
     private final AtomicReference<ServiceDescriptorsRepresentation> descriptor = new AtomicReference<ServiceDescriptorsRepresentation>();
+    private volatile String version;
 
     @Inject
     public ServiceInventoryResource(NodeInfo nodeInfo)
@@ -45,23 +48,38 @@ public class ServiceInventoryResource
         descriptor.set(new ServiceDescriptorsRepresentation(environment, ImmutableList.<ServiceDescriptor>of()));
     }
 
+    /**
+     * Gets the version of the service inventory last put by the coordinator, or null if there is none since this agent started.
+     */
+    public String getVersion()
+    {
+        return version;
+    }
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response getServiceInventory()
     {
-        ServiceDescriptorsRepresentation descriptor = this.descriptor.get();
-        return Response.ok(descriptor).build();
+        ServiceDescriptorsRepresentation descriptor;
+        String version;
+        synchronized (this) {
+            descriptor = this.descriptor.get();
+            version = this.version;
+        }
+        return Response.ok(descriptor).header(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER, version).build();
     }
 
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response setServiceInventory(ServiceDescriptorsRepresentation descriptor)
+    public Response setServiceInventory(@HeaderParam(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER) String version, ServiceDescriptorsRepresentation descriptor)
     {
         if (!environment.equals(descriptor.getEnvironment())) {
             return Response.status(Status.BAD_REQUEST).entity(format("Expected environment to be %s, but was %s", environment, descriptor.getEnvironment())).build();
         }
-        this.descriptor.set(descriptor);
-        return Response.ok().build();
+        synchronized (this) {
+            this.descriptor.set(descriptor);
+            this.version = version;
+        }
+        return Response.ok().header(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER, version).build();
     }
-
 }
@@ -0,0 +1,59 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.airship.agent;
+
+import com.google.common.base.Preconditions;
+import com.proofpoint.units.Duration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts slot status changes on this agent and lets readers block until the next change.
+ */
+public class StatusChangeNotifier
+{
+    private long changeCount;
+
+    public synchronized long getChangeCount()
+    {
+        return changeCount;
+    }
+
+    public synchronized void statusChanged()
+    {
+        changeCount++;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the change count moves past lastChangeCount.
+     *
+     * @return true if a change was observed, false if maxWait elapsed first
+     */
+    public synchronized boolean waitForChange(long lastChangeCount, Duration maxWait)
+            throws InterruptedException
+    {
+        Preconditions.checkNotNull(maxWait, "maxWait is null");
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) maxWait.toMillis());
+        while (changeCount == lastChangeCount) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+}
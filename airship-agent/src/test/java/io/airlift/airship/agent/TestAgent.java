@@ -3,19 +3,27 @@ package io.airlift.airship.agent;
 import com.proofpoint.http.server.HttpServerConfig;
 import com.proofpoint.http.server.HttpServerInfo;
 import com.proofpoint.node.NodeInfo;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.airship.shared.SlotStatus;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.airlift.airship.agent.ResourcesUtil.TEST_RESOURCES;
+import static io.airlift.airship.shared.InstallationHelper.APPLE_INSTALLATION;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
 import static org.testng.Assert.assertEquals;
 
 public class TestAgent
 {
     private Agent agent;
     private NodeInfo nodeInfo;
+    private final AtomicInteger statusCalls = new AtomicInteger();
 
     @BeforeMethod
     public void setup()
@@ -38,6 +46,14 @@ public class TestAgent
                 nodeInfo,
                 new MockDeploymentManagerFactory(),
                 new MockLifecycleManager()
+                {
+                    @Override
+                    public SlotLifecycleState status(Deployment deployment)
+                    {
+                        statusCalls.incrementAndGet();
+                        return super.status(deployment);
+                    }
+                }
         );
     }
 
@@ -49,4 +65,26 @@ public class TestAgent
         assertEquals(agent.getResources(), TEST_RESOURCES);
     }
 
+    @Test
+    public void testRefreshedStatusIsServedFromCache()
+    {
+        SlotStatus slotStatus = agent.install(APPLE_INSTALLATION);
+        agent.refreshSlotStatus();
+        int refreshStatusCalls = statusCalls.get();
+
+        // status requests do not ask the lifecycle manager once the slot status is refreshed
+        AgentStatus agentStatus = agent.getAgentStatus();
+        assertEquals(agentStatus.getSlotStatus(slotStatus.getId()).getState(), STOPPED);
+        assertEquals(agent.getAgentStatus().getVersion(), agentStatus.getVersion());
+        assertEquals(statusCalls.get(), refreshStatusCalls);
+
+        // lifecycle operations are recorded immediately
+        agent.getSlot(slotStatus.getId()).start();
+        assertEquals(agent.getAgentStatus().getSlotStatus(slotStatus.getId()).getState(), RUNNING);
+        assertEquals(statusCalls.get(), refreshStatusCalls);
+
+        agent.getSlot(slotStatus.getId()).stop();
+        agent.terminateSlot(slotStatus.getId());
+    }
+
 }
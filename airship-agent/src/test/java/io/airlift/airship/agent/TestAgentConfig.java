@@ -31,8 +31,17 @@ public class TestAgentConfig
                 .setResourcesFile("etc/resources.properties")
                 .setLauncherTimeout(new Duration(1, TimeUnit.SECONDS))
                 .setLauncherStopTimeout(new Duration(10, TimeUnit.SECONDS))
+                .setLauncherPidFileStatusEnabled(true)
                 .setTarTimeout(new Duration(1, TimeUnit.MINUTES))
                 .setMaxLockWait(new Duration(1, TimeUnit.SECONDS))
+                .setSlotStatusRefreshInterval(new Duration(5, TimeUnit.SECONDS))
+                .setStatusMaxWait(new Duration(1, TimeUnit.MINUTES))
+                .setBinaryCacheDir("binary-cache")
+                .setBinaryCacheMaxSizeInMegabytes(2048)
+                .setConfigBundleCacheDir("config-bundle-cache")
+                .setConfigBundleCacheMaxBundles(100)
+                .setCommandMaxConcurrency(16)
+                .setCommandMaxQueued(256)
         );
     }
 
@@ -44,8 +53,17 @@ public class TestAgentConfig
                 .put("agent.resources-file", "resources-file")
                 .put("agent.launcher-timeout", "5m")
                 .put("agent.launcher-stop-timeout", "50m")
+                .put("agent.launcher-pid-file-status-enabled", "false")
                 .put("agent.tar-timeout", "10m")
                 .put("agent.max-lock-wait", "1m")
+                .put("agent.slot-status-refresh-interval", "30s")
+                .put("agent.status-max-wait", "5m")
+                .put("agent.binary-cache-dir", "binaries")
+                .put("agent.binary-cache-max-size-mb", "512")
+                .put("agent.config-bundle-cache-dir", "config-bundles")
+                .put("agent.config-bundle-cache-max-bundles", "10")
+                .put("agent.command-max-concurrency", "4")
+                .put("agent.command-max-queued", "32")
                 .build();
 
         AgentConfig expected = new AgentConfig()
@@ -53,8 +71,17 @@ public class TestAgentConfig
                 .setResourcesFile("resources-file")
                 .setLauncherTimeout(new Duration(5, TimeUnit.MINUTES))
                 .setLauncherStopTimeout(new Duration(50, TimeUnit.MINUTES))
+                .setLauncherPidFileStatusEnabled(false)
                 .setTarTimeout(new Duration(10, TimeUnit.MINUTES))
-                .setMaxLockWait(new Duration(1, TimeUnit.MINUTES));
+                .setMaxLockWait(new Duration(1, TimeUnit.MINUTES))
+                .setSlotStatusRefreshInterval(new Duration(30, TimeUnit.SECONDS))
+                .setStatusMaxWait(new Duration(5, TimeUnit.MINUTES))
+                .setBinaryCacheDir("binaries")
+                .setBinaryCacheMaxSizeInMegabytes(512)
+                .setConfigBundleCacheDir("config-bundles")
+                .setConfigBundleCacheMaxBundles(10)
+                .setCommandMaxConcurrency(4)
+                .setCommandMaxQueued(32);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
@@ -1,23 +1,39 @@
 package io.airlift.airship.agent;
 
+import com.google.common.collect.ImmutableList;
+import com.proofpoint.discovery.client.ServiceDescriptor;
+import com.proofpoint.discovery.client.ServiceDescriptorsRepresentation;
 import io.airlift.airship.shared.AgentStatusRepresentation;
+import io.airlift.airship.shared.SlotStatus;
 import com.proofpoint.http.server.HttpServerConfig;
 import com.proofpoint.http.server.HttpServerInfo;
 import com.proofpoint.node.NodeInfo;
+import com.proofpoint.units.Duration;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static io.airlift.airship.agent.ResourcesUtil.TEST_RESOURCES;
 import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
+import static io.airlift.airship.shared.InstallationHelper.APPLE_INSTALLATION;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 public class TestAgentResource
 {
     private Agent agent;
     private AgentResource agentResource;
+    private ServiceInventoryResource serviceInventoryResource;
 
     @BeforeMethod
     public void setup()
@@ -39,13 +55,15 @@ public class TestAgentResource
                 new MockDeploymentManagerFactory(),
                 new MockLifecycleManager()
         );
-        agentResource = new AgentResource(agent);
+        serviceInventoryResource = new ServiceInventoryResource(new NodeInfo("test"));
+        agentResource = new AgentResource(agent, serviceInventoryResource, config);
     }
 
     @Test
     public void testGetAllSlotsStatus()
+            throws Exception
     {
-        Response response = agentResource.getAllSlotsStatus();
+        Response response = agentResource.getAllSlotsStatus(null, null);
         AgentStatusRepresentation actual = (AgentStatusRepresentation) response.getEntity();
         assertEquals(actual.getAgentId(), agent.getAgentId());
         assertEquals(actual.getState(), ONLINE);
@@ -54,4 +72,92 @@ public class TestAgentResource
         assertEquals(actual.getLocation(), agent.getLocation());
     }
 
+    @Test
+    public void testGetAllSlotsStatusNotModified()
+            throws Exception
+    {
+        String version = agent.getAgentStatus().getVersion();
+
+        Response response = agentResource.getAllSlotsStatus(new EntityTag(version).toString(), null);
+        assertEquals(response.getStatus(), Status.NOT_MODIFIED.getStatusCode());
+        assertNull(response.getEntity());
+
+        response = agentResource.getAllSlotsStatus(new EntityTag("stale").toString(), null);
+        assertEquals(response.getStatus(), Status.OK.getStatusCode());
+        assertEquals(((AgentStatusRepresentation) response.getEntity()).getVersion(), version);
+    }
+
+    @Test
+    public void testServiceInventoryVersion()
+            throws Exception
+    {
+        String version = agent.getAgentStatus().getVersion();
+
+        // no service inventory since the agent started
+        Response response = agentResource.getAllSlotsStatus(null, null);
+        assertNull(response.getMetadata().getFirst(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER));
+
+        serviceInventoryResource.setServiceInventory("inventory-version", new ServiceDescriptorsRepresentation("test", ImmutableList.<ServiceDescriptor>of()));
+
+        response = agentResource.getAllSlotsStatus(null, null);
+        assertEquals(response.getMetadata().getFirst(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER), "inventory-version");
+
+        // reported even when the status has not changed
+        response = agentResource.getAllSlotsStatus(new EntityTag(version).toString(), null);
+        assertEquals(response.getStatus(), Status.NOT_MODIFIED.getStatusCode());
+        assertEquals(response.getMetadata().getFirst(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER), "inventory-version");
+    }
+
+    @Test
+    public void testLongPollTimesOutWithoutChange()
+            throws Exception
+    {
+        String version = agent.getAgentStatus().getVersion();
+
+        Response response = agentResource.getAllSlotsStatus(new EntityTag(version).toString(), new Duration(10, TimeUnit.MILLISECONDS));
+        assertEquals(response.getStatus(), Status.NOT_MODIFIED.getStatusCode());
+    }
+
+    @Test
+    public void testLongPollWaitIsCapped()
+            throws Exception
+    {
+        AgentResource resource = new AgentResource(agent, serviceInventoryResource, new AgentConfig().setStatusMaxWait(new Duration(10, TimeUnit.MILLISECONDS)));
+        String version = agent.getAgentStatus().getVersion();
+
+        long start = System.nanoTime();
+        Response response = resource.getAllSlotsStatus(new EntityTag(version).toString(), new Duration(1, TimeUnit.HOURS));
+        assertEquals(response.getStatus(), Status.NOT_MODIFIED.getStatusCode());
+        assertTrue(System.nanoTime() - start < TimeUnit.MINUTES.toNanos(1));
+    }
+
+    @Test
+    public void testLongPollReturnsOnChange()
+            throws Exception
+    {
+        String version = agent.getAgentStatus().getVersion();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(new Callable<SlotStatus>()
+            {
+                @Override
+                public SlotStatus call()
+                        throws Exception
+                {
+                    Thread.sleep(100);
+                    return agent.install(APPLE_INSTALLATION);
+                }
+            });
+
+            Response response = agentResource.getAllSlotsStatus(new EntityTag(version).toString(), new Duration(1, TimeUnit.MINUTES));
+            assertEquals(response.getStatus(), Status.OK.getStatusCode());
+            AgentStatusRepresentation actual = (AgentStatusRepresentation) response.getEntity();
+            assertEquals(actual.getSlots().size(), agent.getAllSlots().size());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
 }
@@ -0,0 +1,169 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.airship.agent;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.sun.jersey.spi.CloseableService;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.BinaryCache.CachedBinary;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+
+public class TestBinaryResource
+{
+    private static final String APPLE_SHA256 = "3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b";
+
+    private File tempDir;
+    private File apple;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        tempDir = createTempDir("binary-resource");
+        apple = new File(tempDir, "repo/apple-1.0.tar.gz");
+        apple.getParentFile().mkdirs();
+        Files.write("apple", apple, Charsets.UTF_8);
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testGetBinary()
+            throws Exception
+    {
+        BinaryCache binaryCache = new BinaryCache(new File(tempDir, "binary-cache"), 1024);
+        binaryCache.getBinary(apple.toURI()).close();
+        BinaryResource resource = new BinaryResource(binaryCache);
+
+        Response response = resource.getBinary(apple.toURI().toString(), new RequestResources());
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getMetadata().getFirst("ETag"), new EntityTag(APPLE_SHA256));
+        assertEquals(response.getMetadata().getFirst("X-Checksum-Sha256"), APPLE_SHA256);
+        assertEquals(response.getMetadata().getFirst("Content-Length"), 5L);
+        assertEquals(write(response), "apple");
+    }
+
+    @Test
+    public void testNotCached()
+    {
+        BinaryResource resource = new BinaryResource(new BinaryCache(new File(tempDir, "binary-cache"), 1024));
+
+        // peers only serve what they already have
+        assertEquals(resource.getBinary(apple.toURI().toString(), new RequestResources()).getStatus(), 404);
+        assertEquals(resource.getBinary(new File(tempDir, "repo/apple-1.0-SNAPSHOT.tar.gz").toURI().toString(), new RequestResources()).getStatus(), 404);
+    }
+
+    @Test
+    public void testInvalidLocation()
+    {
+        BinaryResource resource = new BinaryResource(new BinaryCache(new File(tempDir, "binary-cache"), 1024));
+
+        assertEquals(resource.getBinary(null, new RequestResources()).getStatus(), 400);
+        assertEquals(resource.getBinary("not a uri", new RequestResources()).getStatus(), 400);
+    }
+
+    @Test
+    public void testBinaryIsNotEvictedWhileStreaming()
+            throws Exception
+    {
+        File banana = new File(tempDir, "repo/banana-1.0.tar.gz");
+        Files.write("banana", banana, Charsets.UTF_8);
+
+        BinaryCache binaryCache = new BinaryCache(new File(tempDir, "binary-cache"), 8);
+        binaryCache.getBinary(apple.toURI()).close();
+        BinaryResource resource = new BinaryResource(binaryCache);
+
+        // caching banana would evict apple, but apple is still being served
+        Response response = resource.getBinary(apple.toURI().toString(), new RequestResources());
+        CachedBinary bananaBinary = binaryCache.getBinary(banana.toURI());
+        assertEquals(binaryCache.getBinaryCount(), 2);
+        assertEquals(write(response), "apple");
+
+        // apple is evicted once it has been served
+        assertEquals(binaryCache.getBinaryCount(), 1);
+        assertEquals(resource.getBinary(apple.toURI().toString(), new RequestResources()).getStatus(), 404);
+        bananaBinary.close();
+    }
+
+    @Test
+    public void testUnwrittenResponseIsReleasedWhenRequestCompletes()
+            throws Exception
+    {
+        File banana = new File(tempDir, "repo/banana-1.0.tar.gz");
+        Files.write("banana", banana, Charsets.UTF_8);
+
+        BinaryCache binaryCache = new BinaryCache(new File(tempDir, "binary-cache"), 8);
+        binaryCache.getBinary(apple.toURI()).close();
+        BinaryResource resource = new BinaryResource(binaryCache);
+
+        // the peer goes away before the entity is written
+        RequestResources requestResources = new RequestResources();
+        assertEquals(resource.getBinary(apple.toURI().toString(), requestResources).getStatus(), 200);
+        CachedBinary bananaBinary = binaryCache.getBinary(banana.toURI());
+        assertEquals(binaryCache.getBinaryCount(), 2);
+
+        // apple is evicted once the request completes
+        requestResources.close();
+        assertEquals(binaryCache.getBinaryCount(), 1);
+        assertEquals(resource.getBinary(apple.toURI().toString(), new RequestResources()).getStatus(), 404);
+        bananaBinary.close();
+    }
+
+    private static String write(Response response)
+            throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return new String(out.toByteArray(), Charsets.UTF_8);
+    }
+
+    private static class RequestResources implements CloseableService
+    {
+        private final List<Closeable> closeables = Lists.newArrayList();
+
+        @Override
+        public void add(Closeable closeable)
+        {
+            closeables.add(closeable);
+        }
+
+        public void close()
+        {
+            for (Closeable closeable : closeables) {
+                Closeables.closeQuietly(closeable);
+            }
+        }
+    }
+}
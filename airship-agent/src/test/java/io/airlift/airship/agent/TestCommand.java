@@ -2,19 +2,16 @@ package io.airlift.airship.agent;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.airship.shared.Command;
+import io.airlift.airship.shared.CommandExecutor;
 import io.airlift.airship.shared.CommandFailedException;
 import io.airlift.airship.shared.CommandTimeoutException;
 import com.proofpoint.testing.EquivalenceTester;
 import com.proofpoint.units.Duration;
-import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
@@ -23,20 +20,13 @@ import static org.testng.Assert.assertNotSame;
 
 public class TestCommand
 {
-    private ExecutorService executor;
+    private CommandExecutor executor;
 
     @BeforeClass
     public void setUp()
             throws Exception
     {
-        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("process-input-reader-%s").build());
-    }
-
-    @AfterClass
-    public void tearDown()
-            throws Exception
-    {
-        executor.shutdownNow();
+        executor = new CommandExecutor(4, 16);
     }
 
     @Test
@@ -0,0 +1,167 @@
+package io.airlift.airship.agent;
+
+import io.airlift.airship.shared.Command;
+import io.airlift.airship.shared.CommandExecutor;
+import io.airlift.airship.shared.CommandFailedException;
+import io.airlift.airship.shared.CommandRejectedException;
+import io.airlift.airship.shared.CommandTimeoutException;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestCommandExecutor
+{
+    @Test
+    public void testExecute()
+            throws Exception
+    {
+        CommandExecutor executor = new CommandExecutor(2, 2);
+        assertEquals(new Command("sh", "-c", "exit 3").setSuccessfulExitCodes(3).execute(executor), 3);
+
+        try {
+            new Command("sh", "-c", "echo apple; exit 1").execute(executor);
+            fail("expected CommandFailedException");
+        }
+        catch (CommandFailedException e) {
+            assertEquals(e.getExitCode(), Integer.valueOf(1));
+            assertEquals(e.getOutput().trim(), "apple");
+        }
+
+        try {
+            new Command("sleep", "10").setTimeLimit(100, TimeUnit.MILLISECONDS).execute(executor);
+            fail("expected CommandTimeoutException");
+        }
+        catch (CommandTimeoutException expected) {
+        }
+
+        assertEquals(executor.getSucceededCommands(), 1);
+        assertEquals(executor.getFailedCommands(), 1);
+        assertEquals(executor.getTimedOutCommands(), 1);
+        assertEquals(executor.getRunningCommands(), 0);
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull()
+            throws Exception
+    {
+        final CommandExecutor executor = new CommandExecutor(1, 0);
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> sleep = threads.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                        throws Exception
+                {
+                    return new Command("sleep", "1").execute(executor);
+                }
+            });
+
+            while (executor.getRunningCommands() == 0) {
+                Thread.sleep(10);
+            }
+
+            try {
+                new Command("true").execute(executor);
+                fail("expected CommandRejectedException");
+            }
+            catch (CommandRejectedException expected) {
+            }
+            assertEquals(executor.getRejectedCommands(), 1);
+
+            assertEquals(sleep.get().intValue(), 0);
+            assertEquals(new Command("true").execute(executor), 0);
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueueTimeout()
+            throws Exception
+    {
+        final CommandExecutor executor = new CommandExecutor(1, 1);
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> sleep = threads.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                        throws Exception
+                {
+                    return new Command("sleep", "1").execute(executor);
+                }
+            });
+
+            while (executor.getRunningCommands() == 0) {
+                Thread.sleep(10);
+            }
+
+            // the command gives up waiting for a process slot once its time limit expires
+            try {
+                new Command("true").setTimeLimit(100, TimeUnit.MILLISECONDS).execute(executor);
+                fail("expected CommandTimeoutException");
+            }
+            catch (CommandTimeoutException expected) {
+            }
+            assertEquals(executor.getQueueTimedOutCommands(), 1);
+            assertEquals(executor.getTimedOutCommands(), 0);
+            assertEquals(executor.getQueuedCommands(), 0);
+
+            assertEquals(sleep.get().intValue(), 0);
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTimeLimitIncludesQueueWait()
+            throws Exception
+    {
+        final CommandExecutor executor = new CommandExecutor(1, 1);
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> sleep = threads.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                        throws Exception
+                {
+                    return new Command("sleep", "1").execute(executor);
+                }
+            });
+
+            while (executor.getRunningCommands() == 0) {
+                Thread.sleep(10);
+            }
+
+            // the command waits about a second for a process slot, so it only runs for the rest of its time limit
+            long start = System.nanoTime();
+            try {
+                new Command("sleep", "10").setTimeLimit(2, TimeUnit.SECONDS).execute(executor);
+                fail("expected CommandTimeoutException");
+            }
+            catch (CommandTimeoutException expected) {
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < 2900, "command ran for " + elapsedMillis + "ms");
+            assertEquals(executor.getTimedOutCommands(), 1);
+            assertEquals(executor.getQueueTimedOutCommands(), 0);
+
+            assertEquals(sleep.get().intValue(), 0);
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+}
@@ -14,6 +14,8 @@
 package io.airlift.airship.agent;
 
 import com.google.common.io.Files;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.CommandExecutor;
 import io.airlift.airship.shared.InstallationHelper;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -40,7 +42,7 @@ public class TestDirectoryDeploymentManager extends AbstractDeploymentManagerTes
         bananaInstallation = installationHelper.getBananaInstallation();
         tempDir = Files.createTempDir().getCanonicalFile();
         final AgentConfig config = new AgentConfig();
-        manager = new DirectoryDeploymentManager(tempDir, "/location/test", config.getTarTimeout());
+        manager = new DirectoryDeploymentManager(tempDir, "/location/test", config.getTarTimeout(), new CommandExecutor(4, 16));
     }
 
     @AfterMethod
@@ -63,9 +65,41 @@ public class TestDirectoryDeploymentManager extends AbstractDeploymentManagerTes
 
         // replace the deployment manager with a new one, which will cause the persistent data to reload
         final AgentConfig config = new AgentConfig();
-        manager = new DirectoryDeploymentManager(tempDir, appleDeployment.getLocation(), config.getTarTimeout());
+        manager = new DirectoryDeploymentManager(tempDir, appleDeployment.getLocation(), config.getTarTimeout(), new CommandExecutor(4, 16));
 
         // active deployment should still be apple
         assertEquals(manager.getDeployment(), appleDeployment);
     }
+
+    @Test
+    public void testReinstallFromBinaryCache()
+    {
+        BinaryCache binaryCache = new BinaryCache(new File(tempDir, "binary-cache"), 1024 * 1024);
+        final AgentConfig config = new AgentConfig();
+        manager = new DirectoryDeploymentManager(new File(tempDir, "slot"), "/location/test", config.getTarTimeout(), new CommandExecutor(4, 16), binaryCache, null);
+
+        manager.install(appleInstallation);
+        manager.clear();
+        Deployment appleDeployment = manager.install(appleInstallation);
+        assertEquals(appleDeployment.getAssignment(), appleInstallation.getAssignment());
+
+        // the binary was only downloaded once
+        assertEquals(binaryCache.getMisses(), 1);
+        assertEquals(binaryCache.getHits(), 1);
+    }
+
+    @Test
+    public void testBinaryIsReleasedAfterInstall()
+    {
+        BinaryCache binaryCache = new BinaryCache(new File(tempDir, "binary-cache"), 1);
+        final AgentConfig config = new AgentConfig();
+        manager = new DirectoryDeploymentManager(new File(tempDir, "slot"), "/location/test", config.getTarTimeout(), new CommandExecutor(4, 16), binaryCache, null);
+
+        Deployment appleDeployment = manager.install(appleInstallation);
+        assertEquals(appleDeployment.getAssignment(), appleInstallation.getAssignment());
+
+        // the binary is no longer pinned once it is extracted, so it is evicted from the undersized cache
+        assertEquals(binaryCache.getBinaryCount(), 0);
+        assertEquals(binaryCache.getSize(), 0);
+    }
 }
@@ -18,6 +18,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import io.airlift.airship.shared.ArchiveHelper;
 import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.CommandExecutor;
 import com.proofpoint.http.server.HttpServerConfig;
 import com.proofpoint.http.server.HttpServerInfo;
 import com.proofpoint.node.NodeInfo;
@@ -60,7 +61,8 @@ public class TestLauncherLifecycleManager extends AbstractLifecycleManagerTest
                         .setSlotsDir(slotDir.getAbsolutePath())
                         .setLauncherTimeout(new Duration(5, TimeUnit.SECONDS)),
                 nodeInfo,
-                new HttpServerInfo(new HttpServerConfig(), nodeInfo));
+                new HttpServerInfo(new HttpServerConfig(), nodeInfo),
+                new CommandExecutor(4, 16));
 
         appleDeployment = createDeploymentDir("apple", APPLE_ASSIGNMENT);
         bananaDeployment = createDeploymentDir("banana", BANANA_ASSIGNMENT);
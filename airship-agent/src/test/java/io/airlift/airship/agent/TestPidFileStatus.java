@@ -0,0 +1,88 @@
+package io.airlift.airship.agent;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class TestPidFileStatus
+{
+    private File tempDir;
+    private File pidFile;
+
+    @BeforeMethod
+    public void setup()
+    {
+        if (!new File("/proc/self/stat").canRead()) {
+            throw new SkipException("/proc is not available");
+        }
+        tempDir = createTempDir("pid-file");
+        pidFile = new File(tempDir, "var/run/launcher.pid");
+        pidFile.getParentFile().mkdirs();
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        if (tempDir != null) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testRunning()
+            throws Exception
+    {
+        Files.write(getPid() + "\n", pidFile, Charsets.UTF_8);
+        assertEquals(PidFileStatus.getStatus(pidFile), RUNNING);
+    }
+
+    @Test
+    public void testProcessGone()
+            throws Exception
+    {
+        // larger than the maximum pid of any kernel
+        Files.write("2147483647\n", pidFile, Charsets.UTF_8);
+        assertEquals(PidFileStatus.getStatus(pidFile), STOPPED);
+    }
+
+    @Test
+    public void testPidReused()
+            throws Exception
+    {
+        // the pid file was written long before this process started
+        Files.write(getPid() + "\n", pidFile, Charsets.UTF_8);
+        pidFile.setLastModified(ManagementFactory.getRuntimeMXBean().getStartTime() - TimeUnit.HOURS.toMillis(1));
+        assertEquals(PidFileStatus.getStatus(pidFile), STOPPED);
+    }
+
+    @Test
+    public void testNoPidFile()
+            throws Exception
+    {
+        assertNull(PidFileStatus.getStatus(pidFile));
+
+        Files.write("not a pid", pidFile, Charsets.UTF_8);
+        assertNull(PidFileStatus.getStatus(pidFile));
+    }
+
+    private static String getPid()
+    {
+        // the runtime name is pid@hostname
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        return name.substring(0, name.indexOf('@'));
+    }
+}
@@ -46,7 +46,8 @@ public class TestSlot
                 deploymentManager,
                 lifecycleManager,
                 APPLE_INSTALLATION,
-                new Duration(1, SECONDS));
+                new Duration(1, SECONDS),
+                new StatusChangeNotifier());
         SlotStatus status = slot.status();
         assertNotNull(status);
         assertEquals(status.getAssignment(), APPLE_ASSIGNMENT);
@@ -79,7 +80,8 @@ public class TestSlot
                 new MockDeploymentManager(),
                 new MockLifecycleManager(),
                 APPLE_INSTALLATION,
-                new Duration(1, SECONDS));
+                new Duration(1, SECONDS),
+                new StatusChangeNotifier());
         SlotStatus status1 = slot.status();
         SlotStatus running = status1.changeAssignment(RUNNING, APPLE_ASSIGNMENT, status1.getResources());
         SlotStatus status = slot.status();
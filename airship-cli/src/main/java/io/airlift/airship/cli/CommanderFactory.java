@@ -8,11 +8,14 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.net.InetAddresses;
 import com.proofpoint.discovery.client.ServiceDescriptor;
 import io.airlift.airship.agent.Agent;
+import io.airlift.airship.agent.AgentCommandExecutor;
+import io.airlift.airship.agent.AgentConfig;
 import io.airlift.airship.agent.DeploymentManagerFactory;
 import io.airlift.airship.agent.DirectoryDeploymentManagerFactory;
 import io.airlift.airship.agent.LauncherLifecycleManager;
 import io.airlift.airship.agent.LifecycleManager;
 import io.airlift.airship.agent.Slot;
+import io.airlift.airship.coordinator.ArtifactProbe;
 import io.airlift.airship.coordinator.Coordinator;
 import io.airlift.airship.coordinator.CoordinatorConfig;
 import io.airlift.airship.coordinator.HttpRepository;
@@ -20,20 +23,24 @@ import io.airlift.airship.coordinator.HttpServiceInventory;
 import io.airlift.airship.coordinator.InMemoryStateManager;
 import io.airlift.airship.coordinator.Instance;
 import io.airlift.airship.coordinator.MavenRepository;
+import io.airlift.airship.coordinator.PlacementStrategy;
 import io.airlift.airship.coordinator.Provisioner;
 import io.airlift.airship.coordinator.RemoteAgent;
 import io.airlift.airship.coordinator.RemoteAgentFactory;
 import io.airlift.airship.coordinator.RemoteSlot;
+import io.airlift.airship.coordinator.RepositoryResolutionCache;
 import io.airlift.airship.coordinator.ServiceInventory;
 import io.airlift.airship.coordinator.StateManager;
 import io.airlift.airship.shared.AgentLifecycleState;
 import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.CommandExecutor;
 import io.airlift.airship.shared.CoordinatorLifecycleState;
 import io.airlift.airship.shared.CoordinatorStatus;
 import io.airlift.airship.shared.ExpectedSlotStatus;
 import io.airlift.airship.shared.Installation;
 import io.airlift.airship.shared.Repository;
 import io.airlift.airship.shared.RepositorySet;
+import io.airlift.airship.shared.ResolutionCache;
 import io.airlift.airship.shared.SlotStatus;
 import com.proofpoint.json.JsonCodec;
 import com.proofpoint.units.Duration;
@@ -165,7 +172,8 @@ public class CommanderFactory
         //
         String slotsDir = coordinatorUri.getPath();
         String agentLocation = this.location == null ? Joiner.on('/').join("", "local", agentId, "agent") : location;
-        DeploymentManagerFactory deploymentManagerFactory = new DirectoryDeploymentManagerFactory(agentLocation, slotsDir, COMMAND_TIMEOUT);
+        CommandExecutor commandExecutor = new AgentCommandExecutor(new AgentConfig());
+        DeploymentManagerFactory deploymentManagerFactory = new DirectoryDeploymentManagerFactory(agentLocation, slotsDir, COMMAND_TIMEOUT, commandExecutor);
 
         LifecycleManager lifecycleManager = new LauncherLifecycleManager(
                 environment,
@@ -174,7 +182,8 @@ public class CommanderFactory
                 null,
                 COMMAND_TIMEOUT,
                 COMMAND_TIMEOUT,
-                new File(slotsDir, "service-inventory.json").toURI());
+                new File(slotsDir, "service-inventory.json").toURI(),
+                commandExecutor);
 
         Agent agent = new Agent(agentId,
                 agentLocation,
@@ -192,9 +201,12 @@ public class CommanderFactory
         CoordinatorConfig coordinatorConfig = new CoordinatorConfig()
                 .setRepositories(repositories)
                 .setDefaultRepositoryGroupId(mavenDefaultGroupIds);
+        ResolutionCache resolutionCache = new RepositoryResolutionCache(coordinatorConfig);
+        ArtifactProbe artifactProbe = new ArtifactProbe(coordinatorConfig);
         Repository repository = new RepositorySet(ImmutableSet.<Repository>of(
-                new MavenRepository(coordinatorConfig),
-                new HttpRepository(coordinatorConfig)));
+                new MavenRepository(coordinatorConfig, resolutionCache, artifactProbe),
+                new HttpRepository(coordinatorConfig, resolutionCache, artifactProbe)),
+                resolutionCache);
         ServiceInventory serviceInventory = new HttpServiceInventory(repository,
                 JsonCodec.listJsonCodec(ServiceDescriptor.class),
                 new File(slotsDir, "service-inventory-cache"));
@@ -224,7 +236,17 @@ public class CommanderFactory
                 stateManager,
                 serviceInventory,
                 new Duration(100, TimeUnit.DAYS),
-                true);
+                true,
+                1,
+                null,
+                1,
+                1,
+                1,
+                PlacementStrategy.SPREAD,
+                0,
+                0,
+                null,
+                null);
 
         return new LocalCommander(environment, new File(slotsDir), coordinator, repository, serviceInventory);
     }
@@ -345,7 +367,14 @@ public class CommanderFactory
         }
 
         @Override
-        public void setServiceInventory(List<ServiceDescriptor> serviceInventory)
+        public boolean watchStatus(Duration maxWait)
+        {
+            // status is read directly from the local agent, so there is nothing to watch
+            return false;
+        }
+
+        @Override
+        public void setServiceInventory(List<ServiceDescriptor> serviceInventory, String serviceInventoryVersion)
         {
         }
     }
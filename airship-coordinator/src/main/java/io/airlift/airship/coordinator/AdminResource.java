@@ -5,7 +5,6 @@ import com.google.inject.Inject;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.CoordinatorStatus;
 import io.airlift.airship.shared.Repository;
-import io.airlift.airship.shared.SlotStatus;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -20,7 +19,6 @@ import javax.ws.rs.core.UriInfo;
 import java.util.List;
 
 import static com.google.common.collect.Lists.transform;
-import static io.airlift.airship.shared.AgentStatus.idGetter;
 import static io.airlift.airship.shared.AgentStatusRepresentation.fromAgentStatus;
 import static io.airlift.airship.shared.CoordinatorStatusRepresentation.fromCoordinatorStatus;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENTS_VERSION_HEADER;
@@ -74,16 +72,16 @@ public class AdminResource
     @Produces(MediaType.APPLICATION_JSON)
     public Response getAllAgents(@Context UriInfo uriInfo)
     {
-        List<SlotStatus> allSlotStatus = coordinator.getAllSlotStatus();
+        FleetSnapshot fleet = coordinator.getFleetSnapshot();
         Predicate<AgentStatus> agentPredicate = AgentFilterBuilder.build(uriInfo,
-                transform(coordinator.getAgents(), idGetter()),
-                transform(allSlotStatus, SlotStatus.uuidGetter()),
+                fleet.getAgentIds(),
+                fleet.getSlotUuids(),
                 false,
                 repository);
 
-        List<AgentStatus> agents = coordinator.getAgents(agentPredicate);
+        List<AgentStatus> agents = fleet.getAgents(agentPredicate);
 
-        return Response.ok(transform(agents, fromAgentStatus(coordinator.getAgents(), repository)))
+        return Response.ok(transform(agents, fromAgentStatus(fleet.getAgentRepresentationFactory(repository))))
                 .header(AIRSHIP_AGENTS_VERSION_HEADER, createAgentsVersion(agents))
                 .build();
     }
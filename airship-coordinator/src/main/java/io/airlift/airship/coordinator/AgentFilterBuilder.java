@@ -309,15 +309,10 @@ public class AgentFilterBuilder
         @Override
         public boolean apply(AgentStatus agentStatus)
         {
-            if (agentStatus == null) {
-                return false;
-            }
-            for (SlotStatus slotStatus : agentStatus.getSlotStatuses()) {
-                if (predicate.apply(slotStatus)) {
-                    return true;
-                }
-            }
-            return false;
+            // the agent indexes its slots by id
+            return agentStatus != null &&
+                    predicate.getUuid() != null &&
+                    agentStatus.getSlotStatus(predicate.getUuid()) != null;
         }
     }
 
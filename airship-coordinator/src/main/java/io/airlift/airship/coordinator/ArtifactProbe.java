@@ -0,0 +1,205 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.proofpoint.units.Duration;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Checks whether artifacts exist in a repository without downloading them.  HTTP locations are
+ * checked with a HEAD request, falling back to a GET of the first few bytes for servers that do
+ * not support HEAD.  The JDK keeps the connections alive between probes of the same server.
+ * <p/>
+ * Probes run concurrently on the probe executor.  When the executor is saturated, the probe runs in
+ * the calling thread instead of queueing, so nested probes can not deadlock.
+ */
+public class ArtifactProbe
+{
+    private static final int MAX_PROBE_THREADS = 32;
+
+    private final ExecutorService executor;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    /**
+     * Creates a probe with the default timeouts, for repositories created outside of the coordinator.
+     */
+    public ArtifactProbe()
+    {
+        this(new CoordinatorConfig());
+    }
+
+    @Inject
+    public ArtifactProbe(CoordinatorConfig config)
+    {
+        this(config.getRepositoryProbeConnectTimeout(), config.getRepositoryProbeReadTimeout(), createExecutor());
+    }
+
+    public ArtifactProbe(Duration connectTimeout, Duration readTimeout, ExecutorService executor)
+    {
+        Preconditions.checkNotNull(connectTimeout, "connectTimeout is null");
+        Preconditions.checkNotNull(readTimeout, "readTimeout is null");
+        Preconditions.checkNotNull(executor, "executor is null");
+
+        this.connectTimeoutMillis = Ints.checkedCast((long) connectTimeout.toMillis());
+        this.readTimeoutMillis = Ints.checkedCast((long) readTimeout.toMillis());
+        this.executor = executor;
+    }
+
+    private static ExecutorService createExecutor()
+    {
+        return new ThreadPoolExecutor(0, MAX_PROBE_THREADS,
+                60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("artifact-probe-%s").build(),
+                new CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Checks all the locations concurrently.
+     *
+     * @return whether each location exists, in the order of the locations
+     */
+    public List<Boolean> exists(List<URI> uris)
+    {
+        List<Callable<Boolean>> probes = newArrayList();
+        for (final URI uri : uris) {
+            probes.add(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return exists(uri);
+                }
+            });
+        }
+        return invokeAll(probes);
+    }
+
+    public boolean exists(URI uri)
+    {
+        try {
+            URLConnection connection = openConnection(uri);
+            if (!(connection instanceof HttpURLConnection)) {
+                return readsBytes(connection);
+            }
+
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            httpConnection.setRequestMethod("HEAD");
+            int status = httpConnection.getResponseCode();
+            Closeables.closeQuietly(httpConnection.getErrorStream());
+            if (status / 100 == 2) {
+                return true;
+            }
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                return false;
+            }
+
+            // the server does not handle HEAD, so ask for the first few bytes instead
+            connection = openConnection(uri);
+            connection.setRequestProperty("Range", "bytes=0-9");
+            return readsBytes(connection);
+        }
+        catch (Exception ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the tasks concurrently and returns their results in order.  A task failure is rethrown.
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks)
+    {
+        // a single task does not need another thread, and a stopped executor would drop the tasks
+        if (tasks.size() == 1 || executor.isShutdown()) {
+            List<T> results = newArrayList();
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                }
+                catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = newArrayList();
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+
+        List<T> results = newArrayList();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            }
+            catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private URLConnection openConnection(URI uri)
+            throws IOException
+    {
+        URLConnection connection = uri.toURL().openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        return connection;
+    }
+
+    private static boolean readsBytes(URLConnection connection)
+            throws IOException
+    {
+        InputStream in = connection.getInputStream();
+        try {
+            // make sure we got at least 10 bytes, or the whole file if it is smaller
+            byte[] buffer = new byte[10];
+            int count = 0;
+            while (count < buffer.length) {
+                int read = in.read(buffer, count, buffer.length - count);
+                if (read < 0) {
+                    break;
+                }
+                count += read;
+            }
+            return true;
+        }
+        finally {
+            in.close();
+        }
+    }
+}
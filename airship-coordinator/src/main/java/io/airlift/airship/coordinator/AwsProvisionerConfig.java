@@ -26,6 +26,7 @@ public class AwsProvisionerConfig
     private String s3KeystoreBucket;
     private String s3KeystorePath;
     private Duration s3KeystoreRefreshInterval = new Duration(10, TimeUnit.SECONDS);
+    private Duration expectedStateRefreshInterval = new Duration(10, TimeUnit.SECONDS);
 
     @Config("coordinator.aws.credentials-file")
     @ConfigDescription("File containing aws credentials")
@@ -204,4 +205,18 @@ public class AwsProvisionerConfig
         this.s3KeystoreRefreshInterval = s3KeystoreRefreshInterval;
         return this;
     }
+
+    @NotNull
+    public Duration getExpectedStateRefreshInterval()
+    {
+        return expectedStateRefreshInterval;
+    }
+
+    @Config("coordinator.aws.expected-state.refresh")
+    @ConfigDescription("Refresh interval for the local copy of the expected state stored in SimpleDB")
+    public AwsProvisionerConfig setExpectedStateRefreshInterval(Duration expectedStateRefreshInterval)
+    {
+        this.expectedStateRefreshInterval = expectedStateRefreshInterval;
+        return this;
+    }
 }
@@ -1,27 +1,56 @@
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Preconditions;
 import com.google.common.io.Resources;
+import com.proofpoint.log.Logger;
+import com.sun.jersey.spi.CloseableService;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.BinaryCache.CachedBinary;
 import io.airlift.airship.shared.MavenCoordinates;
 import io.airlift.airship.shared.Repository;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Path("/v1/binary/")
 public class BinaryResource
 {
+    private static final Logger log = Logger.get(BinaryResource.class);
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final int REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+    private static final int PARTIAL_CONTENT = 206;
+
     private final Repository repository;
+    private final BinaryCache binaryCache;
 
-    @Inject
     public BinaryResource(Repository repository)
     {
         this.repository = repository;
+        this.binaryCache = null;
+    }
+
+    @Inject
+    public BinaryResource(Repository repository, BinaryCache binaryCache)
+    {
+        Preconditions.checkNotNull(binaryCache, "binaryCache is null");
+        this.repository = repository;
+        this.binaryCache = binaryCache;
     }
 
     @GET
@@ -29,9 +58,12 @@ public class BinaryResource
     public Response getBinary(@PathParam("groupId") String groupId,
             @PathParam("artifactId") String artifactId,
             @PathParam("version") String version,
-            @PathParam("packaging") String packaging)
+            @PathParam("packaging") String packaging,
+            @HeaderParam("Range") String range,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+            @Context CloseableService requestResources)
     {
-        return getBinary(groupId, artifactId, version, packaging, null);
+        return getBinary(groupId, artifactId, version, packaging, null, range, ifNoneMatch, requestResources);
     }
 
     @GET
@@ -40,13 +72,59 @@ public class BinaryResource
             @PathParam("artifactId") String artifactId,
             @PathParam("version") String version,
             @PathParam("packaging") String packaging,
-            @PathParam("classifier") String classifier)
+            @PathParam("classifier") String classifier,
+            @HeaderParam("Range") String range,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch,
+            @Context CloseableService requestResources)
+    {
+        Preconditions.checkNotNull(requestResources, "requestResources is null");
+        return serveBinary(new MavenCoordinates(groupId, artifactId, version, packaging, classifier, null), range, ifNoneMatch, requestResources);
+    }
+
+    /**
+     * Answers with the headers of the binary.  Without an explicit HEAD method, JAX-RS would answer
+     * HEAD with the GET method and discard the entity, so the binary would stay pinned.
+     */
+    @HEAD
+    @Path("{groupId}/{artifactId}/{version}/{packaging}")
+    public Response headBinary(@PathParam("groupId") String groupId,
+            @PathParam("artifactId") String artifactId,
+            @PathParam("version") String version,
+            @PathParam("packaging") String packaging,
+            @HeaderParam("Range") String range,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch)
     {
-        MavenCoordinates coordinates = new MavenCoordinates(groupId, artifactId, version, packaging, classifier, null);
+        return headBinary(groupId, artifactId, version, packaging, null, range, ifNoneMatch);
+    }
 
+    @HEAD
+    @Path("{groupId}/{artifactId}/{version}/{packaging}/{classifier}")
+    public Response headBinary(@PathParam("groupId") String groupId,
+            @PathParam("artifactId") String artifactId,
+            @PathParam("version") String version,
+            @PathParam("packaging") String packaging,
+            @PathParam("classifier") String classifier,
+            @HeaderParam("Range") String range,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch)
+    {
+        return serveBinary(new MavenCoordinates(groupId, artifactId, version, packaging, classifier, null), range, ifNoneMatch, null);
+    }
+
+    /**
+     * Serves the binary from the cache.  For a GET, the binary stays pinned until the response is
+     * written, or until the request completes if the response is never written.  A HEAD has no request
+     * resources and no entity, so the binary is released before returning.
+     */
+    private Response serveBinary(MavenCoordinates coordinates, String range, String ifNoneMatch, @Nullable CloseableService requestResources)
+    {
+        boolean head = requestResources == null;
+
+        URI binaryUri = repository.binaryToHttpUri(coordinates.toGAV());
         URL binaryUrl = null;
         try {
-            binaryUrl = repository.binaryToHttpUri(coordinates.toGAV()).toURL();
+            if (binaryUri != null) {
+                binaryUrl = binaryUri.toURL();
+            }
         }
         catch (MalformedURLException e) {
         }
@@ -55,6 +133,82 @@ public class BinaryResource
             return Response.status(Status.NOT_FOUND).build();
         }
 
-        return Response.ok(new InputSupplierStreamingOutput(Resources.newInputStreamSupplier(binaryUrl))).build();
+        CachedBinary binary = null;
+        if (binaryCache != null) {
+            try {
+                binary = binaryCache.getBinary(binaryUri);
+            }
+            catch (IOException e) {
+                // fall back to streaming from the repository
+                log.warn(e, "Error caching binary %s", binaryUri);
+            }
+        }
+
+        if (binary == null) {
+            if (head) {
+                return Response.ok().build();
+            }
+            return Response.ok(new InputSupplierStreamingOutput(Resources.newInputStreamSupplier(binaryUrl))).build();
+        }
+
+        // the binary stays pinned in the cache until the response is written or the request completes
+        boolean streaming = false;
+        try {
+            EntityTag eTag = new EntityTag(binary.getSha256());
+            if (ifNoneMatch != null && (ifNoneMatch.contains(eTag.toString()) || ifNoneMatch.trim().equals("*"))) {
+                return Response.notModified(eTag).build();
+            }
+
+            long length = binary.getFile().length();
+            long start = 0;
+            long end = length - 1;
+            boolean partial = false;
+            if (range != null) {
+                Matcher matcher = BYTE_RANGE.matcher(range.trim());
+                if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                    if (matcher.group(1).isEmpty()) {
+                        // suffix range: the last n bytes
+                        start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+                    }
+                    else {
+                        start = Long.parseLong(matcher.group(1));
+                        if (!matcher.group(2).isEmpty()) {
+                            end = Math.min(end, Long.parseLong(matcher.group(2)));
+                        }
+                    }
+                    if (start > end) {
+                        return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+                                .header("Content-Range", "bytes */" + length)
+                                .build();
+                    }
+                    partial = true;
+                }
+                // multiple or malformed ranges are ignored and the whole binary is sent
+            }
+
+            Response.ResponseBuilder response = Response.status(partial ? PARTIAL_CONTENT : Status.OK.getStatusCode())
+                    .tag(eTag)
+                    .header("Accept-Ranges", "bytes")
+                    .header("Content-Length", end - start + 1)
+                    .header("X-Checksum-Sha256", binary.getSha256());
+            if (partial) {
+                response.header("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+            if (head) {
+                return response.build();
+            }
+
+            // the container closes the request resources when the request completes, even if the
+            // response is never written, so the pin can not leak
+            requestResources.add(binary);
+            response.entity(new FileRegionStreamingOutput(binary, start, end - start + 1));
+            streaming = true;
+            return response.build();
+        }
+        finally {
+            if (!streaming) {
+                binary.close();
+            }
+        }
     }
 }
@@ -0,0 +1,169 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import io.airlift.airship.shared.AgentLifecycleState;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.airship.shared.SlotStatus;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
+
+/**
+ * Picks the peer agents an agent should try to download a binary from before the coordinator.
+ * Any online agent with a slot of the exact same binary has it in its binary cache, and the
+ * agents that share the longest location prefix with the target are preferred.  Peers at the same
+ * distance are shuffled, so a rollout spreads the downloads over all of them.
+ * <p/>
+ * The peers are found once for an operation, and then ranked for each target.  An agent only
+ * becomes a peer once it holds the exact binary, so agents of the same operation can only serve
+ * each other if the operation adds them with {@link #withPeer} as they finish, as a sequential
+ * install does, or finds the peers again for each stage, as a rolling upgrade does for each batch.
+ */
+public class BinarySources
+{
+    private final Installation installation;
+    private final List<AgentStatus> peers;
+    private final int limit;
+
+    public BinarySources(Installation installation, Iterable<AgentStatus> agents, int limit)
+    {
+        Preconditions.checkNotNull(installation, "installation is null");
+        Preconditions.checkNotNull(agents, "agents is null");
+        Preconditions.checkArgument(limit >= 0, "limit is negative");
+
+        this.installation = installation;
+        this.limit = limit;
+
+        ImmutableList.Builder<AgentStatus> peers = ImmutableList.builder();
+        if (limit > 0) {
+            for (AgentStatus agent : agents) {
+                if (isPeer(agent, installation)) {
+                    peers.add(agent);
+                }
+            }
+        }
+        this.peers = peers.build();
+    }
+
+    private BinarySources(Installation installation, List<AgentStatus> peers, int limit)
+    {
+        this.installation = installation;
+        this.peers = peers;
+        this.limit = limit;
+    }
+
+    /**
+     * @param agent status of an agent that finished installing the binary during the operation
+     * @return sources that also use the agent as a peer, if it now has the binary
+     */
+    public BinarySources withPeer(AgentStatus agent)
+    {
+        Preconditions.checkNotNull(agent, "agent is null");
+
+        if (limit == 0 || !isPeer(agent, installation)) {
+            return this;
+        }
+        List<AgentStatus> peers = newArrayList();
+        for (AgentStatus peer : this.peers) {
+            if (!agent.getInternalUri().equals(peer.getInternalUri())) {
+                peers.add(peer);
+            }
+        }
+        peers.add(agent);
+        return new BinarySources(installation, ImmutableList.copyOf(peers), limit);
+    }
+
+    /**
+     * @param targetLocation location of the agent, or of the slot, that will install the binary, or null if it is not known
+     * @return the installation with the peers the target should try first
+     */
+    public Installation forTarget(@Nullable String targetLocation)
+    {
+        if (targetLocation == null || peers.isEmpty()) {
+            return installation;
+        }
+        return installation.withBinarySources(selectBinarySources(targetLocation));
+    }
+
+    /**
+     * @param targetLocation location of the agent, or of the slot, that will install the binary
+     */
+    public List<URI> selectBinarySources(String targetLocation)
+    {
+        Preconditions.checkNotNull(targetLocation, "targetLocation is null");
+
+        List<AgentStatus> candidates = newArrayList();
+        for (AgentStatus peer : peers) {
+            if (!isSameAgent(peer.getLocation(), targetLocation)) {
+                candidates.add(peer);
+            }
+        }
+
+        final List<String> target = ImmutableList.copyOf(Splitter.on('/').omitEmptyStrings().split(targetLocation));
+        Collections.shuffle(candidates);
+        Collections.sort(candidates, new Comparator<AgentStatus>()
+        {
+            @Override
+            public int compare(AgentStatus a, AgentStatus b)
+            {
+                return commonPrefixLength(target, b.getLocation()) - commonPrefixLength(target, a.getLocation());
+            }
+        });
+
+        ImmutableList.Builder<URI> sources = ImmutableList.builder();
+        for (AgentStatus peer : candidates.subList(0, Math.min(limit, candidates.size()))) {
+            sources.add(uriBuilderFrom(peer.getInternalUri())
+                    .replacePath("/v1/agent/binary")
+                    .addParameter("location", installation.getBinaryFile().toString())
+                    .build());
+        }
+        return sources.build();
+    }
+
+    private static boolean isSameAgent(String agentLocation, String targetLocation)
+    {
+        return targetLocation.equals(agentLocation) || targetLocation.startsWith(agentLocation + "/");
+    }
+
+    private static boolean isPeer(AgentStatus agent, Installation installation)
+    {
+        return agent.getState() == AgentLifecycleState.ONLINE &&
+                agent.getInternalUri() != null &&
+                agent.getLocation() != null &&
+                hasBinary(agent, installation.getAssignment().getBinary());
+    }
+
+    private static boolean hasBinary(AgentStatus agent, String binary)
+    {
+        for (SlotStatus slot : agent.getSlotStatuses()) {
+            if (slot.getAssignment() != null &&
+                    slot.getState() != SlotLifecycleState.TERMINATED &&
+                    slot.getState() != SlotLifecycleState.UNKNOWN &&
+                    binary.equals(slot.getAssignment().getBinary())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int commonPrefixLength(List<String> target, String location)
+    {
+        int length = 0;
+        Iterator<String> segments = Splitter.on('/').omitEmptyStrings().split(location).iterator();
+        while (length < target.size() && segments.hasNext() && target.get(length).equals(segments.next())) {
+            length++;
+        }
+        return length;
+    }
+}
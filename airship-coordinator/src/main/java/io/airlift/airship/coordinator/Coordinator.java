@@ -2,6 +2,7 @@ package io.airlift.airship.coordinator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
@@ -9,17 +10,22 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.proofpoint.discovery.client.ServiceDescriptor;
 import io.airlift.airship.shared.AgentLifecycleState;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.BinaryCache.CachedBinary;
+import io.airlift.airship.shared.ConfigBundleCache;
 import io.airlift.airship.shared.CoordinatorLifecycleState;
 import io.airlift.airship.shared.CoordinatorStatus;
+import io.airlift.airship.shared.DigestUtils;
 import io.airlift.airship.shared.ExpectedSlotStatus;
 import io.airlift.airship.shared.Installation;
 import io.airlift.airship.shared.InstallationUtils;
@@ -27,14 +33,20 @@ import io.airlift.airship.shared.Repository;
 import io.airlift.airship.shared.SlotLifecycleState;
 import io.airlift.airship.shared.SlotStatus;
 import io.airlift.airship.shared.UpgradeVersions;
+import io.airlift.airship.shared.VersionConflictException;
 import com.proofpoint.http.server.HttpServerInfo;
 import com.proofpoint.log.Logger;
 import com.proofpoint.node.NodeInfo;
 import com.proofpoint.units.Duration;
+import org.weakref.jmx.Managed;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -42,16 +54,25 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.newArrayList;
@@ -62,24 +83,55 @@ import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
 import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
 import static io.airlift.airship.shared.SlotLifecycleState.TERMINATED;
 import static io.airlift.airship.shared.SlotLifecycleState.UNKNOWN;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
 import static io.airlift.airship.shared.VersionsUtil.checkSlotsVersion;
+import static io.airlift.airship.shared.VersionsUtil.createSlotsVersion;
 
 public class Coordinator
 {
     private static final Logger log = Logger.get(Coordinator.class);
+    private static final SlotOperationListener IGNORE_PROGRESS = new SlotOperationListener()
+    {
+        @Override
+        public void slotCompleted(SlotStatus slotStatus)
+        {
+        }
+    };
 
     private final ConcurrentMap<String, CoordinatorStatus> coordinators = new ConcurrentHashMap<String, CoordinatorStatus>();
     private final ConcurrentMap<String, RemoteAgent> agents = new ConcurrentHashMap<String, RemoteAgent>();
+    private final SlotIndex slotIndex = new SlotIndex();
+    private final PlacementEngine placementEngine;
 
     private final CoordinatorStatus coordinatorStatus;
     private final Repository repository;
     private final ScheduledExecutorService timerService;
+    private final ExecutorService agentUpdateExecutor;
+    private final ExecutorService agentWatchExecutor;
+    private final SlotOperationExecutor slotOperationExecutor;
+    private final Duration agentWatchMaxWait;
+    private final Set<String> watchedAgents = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private final Duration statusExpiration;
     private final Provisioner provisioner;
     private final RemoteAgentFactory remoteAgentFactory;
     private final ServiceInventory serviceInventory;
     private final StateManager stateManager;
     private final boolean allowDuplicateInstallationsOnAnAgent;
+    private final int binaryPeerSources;
+    private final BinaryCache binaryCache;
+    private final ConfigBundleCache configBundleCache;
+
+    private final AtomicLong agentUpdateCycles = new AtomicLong();
+    private final AtomicLong agentUpdateTimeouts = new AtomicLong();
+    private final AtomicLong agentUpdateFailures = new AtomicLong();
+    private volatile Duration lastAgentUpdateDuration = new Duration(0, TimeUnit.MILLISECONDS);
+
+    private final Object fleetSnapshotLock = new Object();
+    // guarded by fleetSnapshotLock
+    private Map<UUID, ExpectedSlotStatus> snapshotExpectedStates = ImmutableMap.of();
+    // guarded by fleetSnapshotLock
+    private long snapshotSlotIndexVersion = -1;
+    private volatile FleetSnapshot fleetSnapshot = new FleetSnapshot(0, ImmutableList.<AgentStatus>of(), ImmutableList.<SlotStatus>of());
 
     @Inject
     public Coordinator(NodeInfo nodeInfo,
@@ -88,7 +140,9 @@ public class Coordinator
             RemoteAgentFactory remoteAgentFactory,
             Repository repository,
             Provisioner provisioner,
-            StateManager stateManager, ServiceInventory serviceInventory)
+            StateManager stateManager, ServiceInventory serviceInventory,
+            @Nullable BinaryCache binaryCache,
+            @Nullable ConfigBundleCache configBundleCache)
     {
         this(
                 new CoordinatorStatus(nodeInfo.getInstanceId(),
@@ -104,7 +158,17 @@ public class Coordinator
                 stateManager,
                 serviceInventory,
                 checkNotNull(config, "config is null").getStatusExpiration(),
-                config.isAllowDuplicateInstallationsOnAnAgent());
+                config.isAllowDuplicateInstallationsOnAnAgent(),
+                config.getAgentUpdateConcurrency(),
+                config.isAgentWatchEnabled() ? config.getAgentWatchMaxWait() : null,
+                config.getAgentWatchConcurrency(),
+                config.getSlotOperationConcurrency(),
+                config.getSlotOperationAgentConcurrency(),
+                PlacementStrategy.fromConfigName(config.getPlacementStrategy()),
+                config.getPlacementAntiAffinityDepth(),
+                config.getBinaryPeerSources(),
+                binaryCache,
+                configBundleCache);
     }
 
     public Coordinator(CoordinatorStatus coordinatorStatus,
@@ -114,7 +178,17 @@ public class Coordinator
             StateManager stateManager,
             ServiceInventory serviceInventory,
             Duration statusExpiration,
-            boolean allowDuplicateInstallationsOnAnAgent)
+            boolean allowDuplicateInstallationsOnAnAgent,
+            int agentUpdateConcurrency,
+            Duration agentWatchMaxWait,
+            int agentWatchConcurrency,
+            int slotOperationConcurrency,
+            int slotOperationAgentConcurrency,
+            PlacementStrategy placementStrategy,
+            int placementAntiAffinityDepth,
+            int binaryPeerSources,
+            @Nullable BinaryCache binaryCache,
+            @Nullable ConfigBundleCache configBundleCache)
     {
         Preconditions.checkNotNull(coordinatorStatus, "coordinatorStatus is null");
         Preconditions.checkNotNull(remoteAgentFactory, "remoteAgentFactory is null");
@@ -123,6 +197,9 @@ public class Coordinator
         Preconditions.checkNotNull(stateManager, "stateManager is null");
         Preconditions.checkNotNull(serviceInventory, "serviceInventory is null");
         Preconditions.checkNotNull(statusExpiration, "statusExpiration is null");
+        Preconditions.checkArgument(agentUpdateConcurrency > 0, "agentUpdateConcurrency must be at least 1");
+        Preconditions.checkArgument(agentWatchConcurrency > 0, "agentWatchConcurrency must be at least 1");
+        Preconditions.checkArgument(binaryPeerSources >= 0, "binaryPeerSources is negative");
 
         this.coordinatorStatus = coordinatorStatus;
         this.remoteAgentFactory = remoteAgentFactory;
@@ -132,8 +209,17 @@ public class Coordinator
         this.serviceInventory = serviceInventory;
         this.statusExpiration = statusExpiration;
         this.allowDuplicateInstallationsOnAnAgent = allowDuplicateInstallationsOnAnAgent;
+        this.agentWatchMaxWait = agentWatchMaxWait;
+        this.binaryPeerSources = binaryPeerSources;
+        this.binaryCache = binaryCache;
+        this.configBundleCache = configBundleCache;
 
         timerService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("coordinator-agent-monitor").setDaemon(true).build());
+        agentUpdateExecutor = Executors.newFixedThreadPool(agentUpdateConcurrency, new ThreadFactoryBuilder().setNameFormat("coordinator-agent-update-%s").setDaemon(true).build());
+        // each watch holds a thread for the life of the agent, so the pool is bounded and never queues
+        agentWatchExecutor = new ThreadPoolExecutor(0, agentWatchConcurrency, 1, TimeUnit.MINUTES, new SynchronousQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("coordinator-agent-watch-%s").setDaemon(true).build());
+        slotOperationExecutor = new SlotOperationExecutor(slotOperationConcurrency, slotOperationAgentConcurrency);
+        placementEngine = new PlacementEngine(placementStrategy, placementAntiAffinityDepth);
 
         updateAllCoordinators();
         updateAllAgents();
@@ -163,6 +249,39 @@ public class Coordinator
         }, 0, (long) statusExpiration.toMillis(), TimeUnit.MILLISECONDS);
     }
 
+    @PreDestroy
+    public void stop()
+    {
+        timerService.shutdownNow();
+        agentUpdateExecutor.shutdownNow();
+        agentWatchExecutor.shutdownNow();
+        slotOperationExecutor.stop();
+    }
+
+    @Managed
+    public long getAgentUpdateCycles()
+    {
+        return agentUpdateCycles.get();
+    }
+
+    @Managed
+    public long getAgentUpdateTimeouts()
+    {
+        return agentUpdateTimeouts.get();
+    }
+
+    @Managed
+    public long getAgentUpdateFailures()
+    {
+        return agentUpdateFailures.get();
+    }
+
+    @Managed
+    public double getLastAgentUpdateMillis()
+    {
+        return lastAgentUpdateDuration.toMillis();
+    }
+
     public CoordinatorStatus status()
     {
         return coordinatorStatus;
@@ -331,10 +450,115 @@ public class Coordinator
         // remove any agents not in the provisioner list
         agents.keySet().retainAll(instanceIds);
 
-        List<ServiceDescriptor> serviceDescriptors = serviceInventory.getServiceInventory(transform(getAllSlots(), getSlotStatus()));
-        for (RemoteAgent remoteAgent : agents.values()) {
-            remoteAgent.updateStatus();
-            remoteAgent.setServiceInventory(serviceDescriptors);
+        final List<ServiceDescriptor> serviceDescriptors = serviceInventory.getServiceInventory(getSlotIndex().getAllSlots());
+        final String serviceInventoryVersion = createServiceInventoryVersion(serviceDescriptors);
+
+        // poll all agents concurrently, so a cycle costs roughly the slowest agent rather than the sum of all agents
+        List<Callable<Void>> updates = newArrayList();
+        for (final RemoteAgent remoteAgent : agents.values()) {
+            updates.add(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    remoteAgent.updateStatus();
+                    remoteAgent.setServiceInventory(serviceDescriptors, serviceInventoryVersion);
+                    return null;
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        try {
+            // the whole cycle must finish before the next one is due; agents still outstanding keep their previous status
+            List<Future<Void>> futures = agentUpdateExecutor.invokeAll(updates, (long) statusExpiration.toMillis(), TimeUnit.MILLISECONDS);
+            for (Future<Void> future : futures) {
+                if (future.isCancelled()) {
+                    agentUpdateTimeouts.incrementAndGet();
+                    continue;
+                }
+                try {
+                    future.get();
+                }
+                catch (ExecutionException e) {
+                    agentUpdateFailures.incrementAndGet();
+                    log.error(e.getCause(), "Unexpected exception updating agent");
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            lastAgentUpdateDuration = new Duration(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            agentUpdateCycles.incrementAndGet();
+        }
+
+        // other coordinators may share the state manager, so the expected states are reloaded every cycle
+        reloadFleetSnapshot();
+
+        watchAgents();
+    }
+
+    @VisibleForTesting
+    static String createServiceInventoryVersion(List<ServiceDescriptor> serviceDescriptors)
+    {
+        // descriptor ids are not assigned by the coordinator, so hash the content in a stable order
+        List<String> descriptors = newArrayList();
+        for (ServiceDescriptor descriptor : serviceDescriptors) {
+            descriptors.add(Joiner.on("||").useForNull("--NULL--").join(
+                    descriptor.getNodeId(),
+                    descriptor.getType(),
+                    descriptor.getPool(),
+                    descriptor.getLocation(),
+                    descriptor.getState(),
+                    ImmutableSortedMap.copyOf(descriptor.getProperties())));
+        }
+        Collections.sort(descriptors);
+        return DigestUtils.md5Hex(descriptors.toString());
+    }
+
+    private void watchAgents()
+    {
+        if (agentWatchMaxWait == null) {
+            return;
+        }
+
+        for (Entry<String, RemoteAgent> entry : agents.entrySet()) {
+            final String instanceId = entry.getKey();
+            final RemoteAgent remoteAgent = entry.getValue();
+            if (remoteAgent.status().getState() != AgentLifecycleState.ONLINE || !watchedAgents.add(instanceId)) {
+                continue;
+            }
+
+            // a watch runs until the agent stops answering or is replaced; the next update cycle starts a new one
+            try {
+                agentWatchExecutor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try {
+                            while (agents.get(instanceId) == remoteAgent && !Thread.currentThread().isInterrupted()) {
+                                if (!remoteAgent.watchStatus(agentWatchMaxWait)) {
+                                    break;
+                                }
+                                refreshFleetSnapshot();
+                            }
+                        }
+                        catch (Throwable e) {
+                            log.error(e, "Unexpected exception watching agent %s", instanceId);
+                        }
+                        finally {
+                            watchedAgents.remove(instanceId);
+                        }
+                    }
+                });
+            }
+            catch (RejectedExecutionException e) {
+                // every watch thread is busy; the regular status updates still cover this agent
+                watchedAgents.remove(instanceId);
+            }
         }
     }
 
@@ -363,6 +587,7 @@ public class Coordinator
 
             agents.add(remoteAgent.status());
         }
+        refreshFleetSnapshot();
         return agents;
     }
 
@@ -385,81 +610,316 @@ public class Coordinator
             throw new IllegalStateException("Cannot terminate agent that has slots: " + agentId);
         }
         provisioner.terminateAgents(ImmutableList.of(agentId));
+        refreshFleetSnapshot();
         return agent.status().changeState(AgentLifecycleState.TERMINATED);
     }
 
     public List<SlotStatus> install(Predicate<AgentStatus> filter, int limit, Assignment assignment)
     {
-        Installation installation = InstallationUtils.toInstallation(repository, assignment);
+        return install(filter, limit, assignment, IGNORE_PROGRESS);
+    }
+
+    public List<SlotStatus> install(Predicate<AgentStatus> filter, int limit, Assignment assignment, SlotOperationListener listener)
+    {
+        Preconditions.checkNotNull(listener, "listener is null");
+
+        Installation installation = InstallationUtils.toInstallation(repository, assignment, configBundleCache);
 
-        List<RemoteAgent> targetAgents = selectAgents(filter, installation);
+        // place the whole batch before installing anything
+        List<RemoteAgent> targetAgents = selectAgents(filter, installation, limit);
 
-        // randomize agents so all processes don't end up on the same node
-        // todo sort agents by number of process already installed on them
+        BinarySources binarySources = createBinarySources(installation);
         List<SlotStatus> slots = newArrayList();
-        for (RemoteAgent agent : targetAgents) {
-            if (slots.size() >= limit) {
-                break;
+        List<ExpectedSlotStatus> expectedStates = newArrayList();
+        try {
+            for (RemoteAgent agent : targetAgents) {
+                // install
+                SlotStatus slotStatus = agent.install(binarySources.forTarget(agent.status().getLocation()));
+                expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
+                slots.add(slotStatus);
+                listener.slotCompleted(slotStatus);
+
+                // the agents are installed one at a time, so each agent can serve the binary to the next ones
+                binarySources = binarySources.withPeer(agent.status());
             }
-
-            // install
-            SlotStatus slotStatus = agent.install(installation);
-            stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
-            slots.add(slotStatus);
+        }
+        finally {
+            // the new slots must not have expected state yet
+            storeExpectedStates(expectedStates, ImmutableMap.<UUID, Long>of());
         }
         return ImmutableList.copyOf(slots);
     }
 
-    private List<RemoteAgent> selectAgents(Predicate<AgentStatus> filter, Installation installation)
+    private List<RemoteAgent> selectAgents(Predicate<AgentStatus> filter, Installation installation, int limit)
     {
-        // randomize agents so all processes don't end up on the same node
-        // todo sort agents by number of process already installed on them
-        List<RemoteAgent> targetAgents = newArrayList();
-        List<RemoteAgent> allAgents = newArrayList(filter(this.agents.values(), filterAgentsBy(filter)));
+        Iterable<RemoteAgent> candidates = filter(this.agents.values(), filterAgentsBy(filter));
         if (!allowDuplicateInstallationsOnAnAgent) {
-            allAgents = newArrayList(filter(allAgents, filterAgentsWithAssignment(installation)));
+            candidates = filter(candidates, filterAgentsWithAssignment(installation));
         }
-        Collections.shuffle(allAgents);
-        for (RemoteAgent agent : allAgents) {
-            // verify agent state
+
+        Map<String, RemoteAgent> onlineAgents = Maps.newHashMap();
+        for (RemoteAgent agent : candidates) {
             AgentStatus status = agent.status();
-            if (status.getState() != AgentLifecycleState.ONLINE) {
-                continue;
+            if (status.getState() == AgentLifecycleState.ONLINE) {
+                onlineAgents.put(status.getInstanceId(), agent);
             }
+        }
 
-            // agents without declared resources are considered to have unlimited resources
-            if (!status.getResources().isEmpty()) {
-                // verify that required resources are available
-                Map<String, Integer> availableResources = InstallationUtils.getAvailableResources(status);
-                if (!InstallationUtils.resourcesAreAvailable(availableResources, installation.getResources())) {
-                    continue;
+        // only agents that replaced their status since the last placement are re-indexed
+        placementEngine.update(Maps.transformValues(agents, getAgentStatus()));
+        List<String> placements = placementEngine.place(onlineAgents.keySet(), installation.getResources(), isInstanceOf(installation.getAssignment()), limit);
+
+        return ImmutableList.copyOf(transform(placements, Functions.forMap(onlineAgents)));
+    }
+
+    public List<SlotStatus> upgrade(Predicate<SlotStatus> filter, UpgradeVersions upgradeVersions, String expectedSlotsVersion)
+    {
+        return upgrade(filter, upgradeVersions, expectedSlotsVersion, IGNORE_PROGRESS);
+    }
+
+    /**
+     * Upgrades all the slots in parallel.  The peers that serve the binary are found before any slot
+     * is upgraded, so the upgraded agents do not serve each other; a rolling upgrade finds the peers
+     * again for each batch.
+     */
+    public List<SlotStatus> upgrade(Predicate<SlotStatus> filter, UpgradeVersions upgradeVersions, String expectedSlotsVersion, SlotOperationListener listener)
+    {
+        List<SlotStatus> selectedSlots = selectSlots(filter);
+        Map<UUID, Long> expectedVersions = getExpectedStateVersions(selectedSlots);
+        List<RemoteSlot> slotsToUpgrade = getUpgradableSlots(selectRemoteSlots(filter, selectedSlots, expectedSlotsVersion));
+
+        // no slots to upgrade
+        final Installation installation = createUpgradeInstallation(slotsToUpgrade, upgradeVersions);
+        if (installation == null) {
+            return ImmutableList.of();
+        }
+
+        final BinarySources binarySources = createBinarySources(installation);
+
+        // expected states are recorded in one batch, including those of the slots that succeeded when others fail
+        final Queue<ExpectedSlotStatus> expectedStates = new ConcurrentLinkedQueue<ExpectedSlotStatus>();
+        try {
+            return slotOperationExecutor.execute(slotsToUpgrade, new Function<RemoteSlot, SlotStatus>()
+            {
+                @Override
+                public SlotStatus apply(RemoteSlot slot)
+                {
+                    SlotStatus slotStatus = slot.assign(binarySources.forTarget(slot.status().getLocation()));
+                    expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
+                    return slotStatus;
                 }
+            }, listener);
+        }
+        finally {
+            storeExpectedStates(ImmutableList.copyOf(expectedStates), expectedVersions);
+        }
+    }
+
+    public List<SlotStatus> rollingUpgrade(Predicate<SlotStatus> filter, UpgradeVersions upgradeVersions, String expectedSlotsVersion, RollingUpgradePolicy policy)
+    {
+        return rollingUpgrade(filter, upgradeVersions, expectedSlotsVersion, policy, IGNORE_PROGRESS);
+    }
+
+    /**
+     * Upgrades the slots a batch at a time.  Slots that were running are restarted after the upgrade,
+     * and the next batch is only started once every restarted slot in the current batch runs the new
+     * assignment and passes the policy health check.  If a restarted slot stops, disappears, or does not
+     * become healthy within the policy health timeout, the upgrade halts and the remaining slots are
+     * left untouched.
+     */
+    public List<SlotStatus> rollingUpgrade(Predicate<SlotStatus> filter, UpgradeVersions upgradeVersions, String expectedSlotsVersion, RollingUpgradePolicy policy, SlotOperationListener listener)
+    {
+        Preconditions.checkNotNull(policy, "policy is null");
+        Preconditions.checkNotNull(listener, "listener is null");
+
+        List<SlotStatus> selectedSlots = selectSlots(filter);
+        Map<UUID, Long> expectedVersions = getExpectedStateVersions(selectedSlots);
+        List<RemoteSlot> slotsToUpgrade = getUpgradableSlots(selectRemoteSlots(filter, selectedSlots, expectedSlotsVersion));
+
+        // no slots to upgrade
+        final Installation installation = createUpgradeInstallation(slotsToUpgrade, upgradeVersions);
+        if (installation == null) {
+            return ImmutableList.of();
+        }
+
+        ImmutableList.Builder<SlotStatus> results = ImmutableList.builder();
+        for (List<RemoteSlot> batch : Lists.partition(slotsToUpgrade, policy.getBatchSize(slotsToUpgrade.size()))) {
+            // the agents of the previous batches now have the binary and serve it to this batch
+            final BinarySources binarySources = createBinarySources(installation);
+            final Queue<ExpectedSlotStatus> expectedStates = new ConcurrentLinkedQueue<ExpectedSlotStatus>();
+            List<SlotStatus> batchStatus;
+            try {
+                batchStatus = slotOperationExecutor.execute(batch, new Function<RemoteSlot, SlotStatus>()
+                {
+                    @Override
+                    public SlotStatus apply(RemoteSlot slot)
+                    {
+                        boolean restart = slot.status().getState() == RUNNING;
+                        SlotStatus slotStatus = slot.assign(binarySources.forTarget(slot.status().getLocation()));
+                        if (restart && slotStatus.getState() == STOPPED) {
+                            slotStatus = slot.start();
+                        }
+                        expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), restart ? RUNNING : STOPPED, installation.getAssignment()));
+                        return slotStatus;
+                    }
+                }, listener);
+            }
+            finally {
+                storeExpectedStates(ImmutableList.copyOf(expectedStates), expectedVersions);
             }
 
-            targetAgents.add(agent);
+            List<SlotStatus> unhealthySlots = waitForHealthySlots(batchStatus, expectedStates, installation.getAssignment(), policy);
+            if (!unhealthySlots.isEmpty()) {
+                log.warn("Rolling upgrade to %s halted: %s slots are not healthy after %s", installation.getAssignment(), unhealthySlots.size(), policy.getHealthTimeout());
+                for (SlotStatus slotStatus : batchStatus) {
+                    if (unhealthySlots.contains(slotStatus)) {
+                        slotStatus = slotStatus.changeStatusMessage("Rolling upgrade halted; slot is not healthy");
+                    }
+                    results.add(slotStatus);
+                }
+                break;
+            }
+            results.addAll(batchStatus);
         }
-        return targetAgents;
+        return results.build();
     }
 
-    public List<SlotStatus> upgrade(Predicate<SlotStatus> filter, UpgradeVersions upgradeVersions, String expectedSlotsVersion)
+    private List<SlotStatus> waitForHealthySlots(List<SlotStatus> batchStatus, Collection<ExpectedSlotStatus> expectedStates, final Assignment assignment, RollingUpgradePolicy policy)
     {
-        List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, expectedSlotsVersion);
+        // every slot of the batch that is expected to run must come up, including slots that failed to start
+        final Set<UUID> expectedRunning = newHashSet();
+        for (ExpectedSlotStatus expectedState : expectedStates) {
+            if (expectedState.getStatus() == RUNNING) {
+                expectedRunning.add(expectedState.getId());
+            }
+        }
+        List<SlotStatus> pending = newArrayList(filter(batchStatus, new Predicate<SlotStatus>()
+        {
+            @Override
+            public boolean apply(SlotStatus slotStatus)
+            {
+                return expectedRunning.contains(slotStatus.getId());
+            }
+        }));
 
-        HashSet<Assignment> newAssignments = new HashSet<Assignment>();
+        // a healthy slot runs the new assignment and passes the policy checks
+        Predicate<SlotStatus> healthy = Predicates.and(new Predicate<SlotStatus>()
+        {
+            @Override
+            public boolean apply(SlotStatus slotStatus)
+            {
+                return slotStatus.getState() == RUNNING && assignment.equals(slotStatus.getAssignment());
+            }
+        }, policy.getHealthCheck(), createHealthProbe(policy));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) policy.getHealthTimeout().toMillis());
+        while (true) {
+            boolean failed = false;
+            for (Iterator<SlotStatus> iterator = pending.iterator(); iterator.hasNext(); ) {
+                SlotStatus slotStatus = getCurrentSlotStatus(iterator.next().getId());
+                if (slotStatus != null && healthy.apply(slotStatus)) {
+                    iterator.remove();
+                }
+                else if (slotStatus == null || slotStatus.getState() == STOPPED || slotStatus.getState() == TERMINATED) {
+                    // the slot is gone or did not start, so waiting will not make it healthy
+                    failed = true;
+                }
+            }
+            if (pending.isEmpty() || failed || System.nanoTime() >= deadline) {
+                return pending;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.MILLISECONDS.toNanos((long) policy.getPollInterval().toMillis()), deadline - System.nanoTime()));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return pending;
+            }
+        }
+    }
+
+    private Predicate<SlotStatus> createHealthProbe(RollingUpgradePolicy policy)
+    {
+        if (policy.getHealthPath() == null) {
+            return Predicates.<SlotStatus>alwaysTrue();
+        }
+
+        final HttpHealthCheck healthCheck = new HttpHealthCheck(policy.getHealthPath(), policy.getHealthTimeout());
+        return new Predicate<SlotStatus>()
+        {
+            @Override
+            public boolean apply(SlotStatus slotStatus)
+            {
+                // the service inventory is only rebuilt for slots that changed since the last call
+                List<ServiceDescriptor> serviceInventory = Coordinator.this.serviceInventory.getServiceInventory(fleetSnapshot.getSlots());
+                return healthCheck.isHealthy(slotStatus.getId(), serviceInventory);
+            }
+        };
+    }
+
+    private SlotStatus getCurrentSlotStatus(UUID slotId)
+    {
+        // refresh the owning agent rather than waiting for the next monitor cycle
+        String instanceId = getSlotIndex().getAgentInstanceId(slotId);
+        RemoteAgent agent = instanceId == null ? null : agents.get(instanceId);
+        if (agent != null) {
+            agent.updateStatus();
+            refreshFleetSnapshot();
+        }
+        return getSlotIndex().getSlot(slotId);
+    }
+
+    /**
+     * Lets the agents of an operation download the binary from peers that already have it.  Copies
+     * from peers are verified with the SHA-256 of the binary in the coordinator binary cache, so
+     * peers are only used when the coordinator has the binary.
+     */
+    private BinarySources createBinarySources(Installation installation)
+    {
+        if (binaryPeerSources == 0 || binaryCache == null) {
+            return new BinarySources(installation, ImmutableList.<AgentStatus>of(), 0);
+        }
+
+        CachedBinary binary = null;
+        try {
+            binary = binaryCache.getBinary(installation.getBinaryFile());
+        }
+        catch (IOException e) {
+            log.warn(e, "Error caching binary %s", installation.getBinaryFile());
+        }
+        if (binary == null) {
+            return new BinarySources(installation, ImmutableList.<AgentStatus>of(), 0);
+        }
+        try {
+            installation = installation.withBinarySha256(binary.getSha256());
+        }
+        finally {
+            binary.close();
+        }
+        return new BinarySources(installation, transform(agents.values(), getAgentStatus()), binaryPeerSources);
+    }
+
+    private static List<RemoteSlot> getUpgradableSlots(List<RemoteSlot> slots)
+    {
         List<RemoteSlot> slotsToUpgrade = new ArrayList<RemoteSlot>();
-        for (RemoteSlot slot : filteredSlots) {
-            SlotStatus status = slot.status();
-            SlotLifecycleState state = status.getState();
+        for (RemoteSlot slot : slots) {
+            SlotLifecycleState state = slot.status().getState();
             if (state != TERMINATED && state != UNKNOWN) {
-                Assignment assignment = upgradeVersions.upgradeAssignment(repository, status.getAssignment());
-                newAssignments.add(assignment);
                 slotsToUpgrade.add(slot);
             }
         }
+        return slotsToUpgrade;
+    }
+
+    private Installation createUpgradeInstallation(List<RemoteSlot> slotsToUpgrade, UpgradeVersions upgradeVersions)
+    {
+        HashSet<Assignment> newAssignments = new HashSet<Assignment>();
+        for (RemoteSlot slot : slotsToUpgrade) {
+            newAssignments.add(upgradeVersions.upgradeAssignment(repository, slot.status().getAssignment()));
+        }
 
-        // no slots to upgrade
         if (newAssignments.isEmpty()) {
-            return ImmutableList.of();
+            return null;
         }
 
         // must upgrade to a single new version
@@ -470,78 +930,94 @@ public class Coordinator
 
         URI configFile = repository.configToHttpUri(assignment.getConfig());
 
-        final Installation installation = new Installation(
+        return new Installation(
                 repository.configShortName(assignment.getConfig()),
                 assignment,
                 repository.binaryToHttpUri(assignment.getBinary()),
                 configFile, ImmutableMap.<String, Integer>of());
-
-        return ImmutableList.copyOf(transform(slotsToUpgrade, new Function<RemoteSlot, SlotStatus>()
-        {
-            @Override
-            public SlotStatus apply(RemoteSlot slot)
-            {
-                SlotStatus slotStatus = slot.assign(installation);
-                stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), STOPPED, installation.getAssignment()));
-                return slotStatus;
-            }
-        }));
     }
 
     public List<SlotStatus> terminate(Predicate<SlotStatus> filter, String expectedSlotsVersion)
+    {
+        return terminate(filter, expectedSlotsVersion, IGNORE_PROGRESS);
+    }
+
+    public List<SlotStatus> terminate(Predicate<SlotStatus> filter, String expectedSlotsVersion, SlotOperationListener listener)
     {
         Preconditions.checkNotNull(filter, "filter is null");
 
         // filter the slots
-        List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, expectedSlotsVersion);
-
-        ImmutableList.Builder<SlotStatus> builder = ImmutableList.builder();
-        for (RemoteSlot slot : filteredSlots) {
-            if (filter.apply(slot.status())) {
-                SlotStatus slotStatus = slot.terminate();
-                if (slotStatus.getState() == TERMINATED) {
-                    stateManager.deleteExpectedState(slotStatus.getId());
+        List<SlotStatus> selectedSlots = selectSlots(filter);
+        Map<UUID, Long> expectedVersions = getExpectedStateVersions(selectedSlots);
+        List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, selectedSlots, expectedSlotsVersion);
+
+        final Queue<UUID> terminatedSlots = new ConcurrentLinkedQueue<UUID>();
+        try {
+            return slotOperationExecutor.execute(filteredSlots, new Function<RemoteSlot, SlotStatus>()
+            {
+                @Override
+                public SlotStatus apply(RemoteSlot slot)
+                {
+                    SlotStatus slotStatus = slot.terminate();
+                    if (slotStatus.getState() == TERMINATED) {
+                        terminatedSlots.add(slotStatus.getId());
+                    }
+                    return slotStatus;
                 }
-                builder.add(slotStatus);
-            }
+            }, listener);
+        }
+        finally {
+            deleteExpectedStates(ImmutableList.copyOf(terminatedSlots), expectedVersions);
         }
-        return builder.build();
     }
 
-    public List<SlotStatus> setState(final SlotLifecycleState state, Predicate<SlotStatus> filter, String expectedSlotsVersion)
+    public List<SlotStatus> setState(SlotLifecycleState state, Predicate<SlotStatus> filter, String expectedSlotsVersion)
+    {
+        return setState(state, filter, expectedSlotsVersion, IGNORE_PROGRESS);
+    }
+
+    public List<SlotStatus> setState(final SlotLifecycleState state, Predicate<SlotStatus> filter, String expectedSlotsVersion, SlotOperationListener listener)
     {
         Preconditions.checkArgument(EnumSet.of(RUNNING, RESTARTING, STOPPED).contains(state), "Unsupported lifecycle state: " + state);
 
         // filter the slots
-        List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, expectedSlotsVersion);
+        List<SlotStatus> selectedSlots = selectSlots(filter);
+        Map<UUID, Long> expectedVersions = getExpectedStateVersions(selectedSlots);
+        List<RemoteSlot> filteredSlots = selectRemoteSlots(filter, selectedSlots, expectedSlotsVersion);
 
-        return ImmutableList.copyOf(transform(filteredSlots, new Function<RemoteSlot, SlotStatus>()
-        {
-            @Override
-            public SlotStatus apply(RemoteSlot slot)
+        final Queue<ExpectedSlotStatus> expectedStates = new ConcurrentLinkedQueue<ExpectedSlotStatus>();
+        try {
+            return slotOperationExecutor.execute(filteredSlots, new Function<RemoteSlot, SlotStatus>()
             {
-                SlotStatus slotStatus;
-                SlotLifecycleState expectedState;
-                switch (state) {
-                    case RUNNING:
-                        slotStatus = slot.start();
-                        expectedState = RUNNING;
-                        break;
-                    case RESTARTING:
-                        slotStatus = slot.restart();
-                        expectedState = RUNNING;
-                        break;
-                    case STOPPED:
-                        slotStatus = slot.stop();
-                        expectedState = STOPPED;
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Unexpected state transition " + state);
+                @Override
+                public SlotStatus apply(RemoteSlot slot)
+                {
+                    SlotStatus slotStatus;
+                    SlotLifecycleState expectedState;
+                    switch (state) {
+                        case RUNNING:
+                            slotStatus = slot.start();
+                            expectedState = RUNNING;
+                            break;
+                        case RESTARTING:
+                            slotStatus = slot.restart();
+                            expectedState = RUNNING;
+                            break;
+                        case STOPPED:
+                            slotStatus = slot.stop();
+                            expectedState = STOPPED;
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unexpected state transition " + state);
+                    }
+                    expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), expectedState, slotStatus.getAssignment()));
+                    return slotStatus;
                 }
-                stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), expectedState, slotStatus.getAssignment()));
-                return slotStatus;
-            }
-        }));
+            }, listener);
+        }
+        finally {
+            storeExpectedStates(ImmutableList.copyOf(expectedStates), expectedVersions);
+        }
     }
 
     public List<SlotStatus> resetExpectedState(Predicate<SlotStatus> filter, String expectedSlotsVersion)
@@ -552,31 +1028,198 @@ public class Coordinator
         // verify the state of the system hasn't changed
         checkSlotsVersion(expectedSlotsVersion, filteredSlots);
 
-        return ImmutableList.copyOf(transform(filteredSlots, new Function<SlotStatus, SlotStatus>()
-        {
-            @Override
-            public SlotStatus apply(SlotStatus slotStatus)
-            {
-                if (slotStatus.getState() != SlotLifecycleState.UNKNOWN) {
-                    stateManager.setExpectedState(new ExpectedSlotStatus(slotStatus.getId(), slotStatus.getState(), slotStatus.getAssignment()));
+        List<ExpectedSlotStatus> expectedStates = newArrayList();
+        List<UUID> unknownSlots = newArrayList();
+        for (SlotStatus slotStatus : filteredSlots) {
+            if (slotStatus.getState() != SlotLifecycleState.UNKNOWN) {
+                expectedStates.add(new ExpectedSlotStatus(slotStatus.getId(), slotStatus.getState(), slotStatus.getAssignment()));
+            }
+            else {
+                unknownSlots.add(slotStatus.getId());
+            }
+        }
+        storeExpectedStates(expectedStates);
+        deleteExpectedStates(unknownSlots);
+        return ImmutableList.copyOf(filteredSlots);
+    }
+
+    private List<SlotStatus> selectSlots(Predicate<SlotStatus> filter)
+    {
+        return ImmutableList.copyOf(filter(getSlotIndex().getAllSlots(), filter));
+    }
+
+    /**
+     * Verifies the selected slots against the expected slots version, and looks up their remote slots.
+     */
+    private List<RemoteSlot> selectRemoteSlots(Predicate<SlotStatus> filter, List<SlotStatus> filteredSlots, String expectedSlotsVersion)
+    {
+        SlotIndex slotIndex = getSlotIndex();
+
+        // verify the state of the system hasn't changed
+        checkSlotsVersion(expectedSlotsVersion, getAllSlotsStatus(filter, filteredSlots));
+
+        // only fetch remote slots from the agents that own a selected slot
+        Map<String, Map<UUID, RemoteSlot>> remoteSlotsByAgent = Maps.newHashMap();
+        ImmutableList.Builder<RemoteSlot> remoteSlots = ImmutableList.builder();
+        for (SlotStatus slotStatus : filteredSlots) {
+            String instanceId = slotIndex.getAgentInstanceId(slotStatus.getId());
+            Map<UUID, RemoteSlot> agentSlots = remoteSlotsByAgent.get(instanceId);
+            if (agentSlots == null) {
+                RemoteAgent agent = instanceId == null ? null : agents.get(instanceId);
+                if (agent == null) {
+                    agentSlots = ImmutableMap.of();
                 }
                 else {
-                    stateManager.deleteExpectedState(slotStatus.getId());
+                    agentSlots = Maps.uniqueIndex(agent.getSlots(), remoteSlotIdGetter());
                 }
-                return slotStatus;
+                remoteSlotsByAgent.put(instanceId, agentSlots);
             }
-        }));
+            RemoteSlot remoteSlot = agentSlots.get(slotStatus.getId());
+            if (remoteSlot != null) {
+                remoteSlots.add(remoteSlot);
+            }
+        }
+        return remoteSlots.build();
     }
 
-    private List<RemoteSlot> selectRemoteSlots(Predicate<SlotStatus> filter, String expectedSlotsVersion)
+    /**
+     * Gets the current fleet snapshot.  The snapshot is rebuilt by the monitor cycle, the agent
+     * watches and the slot operations when the slot index or the expected states change, and the
+     * same instance is shared by all readers until then.
+     */
+    public FleetSnapshot getFleetSnapshot()
     {
-        // filter the slots
-        List<RemoteSlot> filteredSlots = ImmutableList.copyOf(filter(getAllSlots(), filterSlotsBy(filter)));
+        return fleetSnapshot;
+    }
 
-        // verify the state of the system hasn't changed
-        checkSlotsVersion(expectedSlotsVersion, getAllSlotsStatus(filter, filteredSlots));
+    /**
+     * Reads the versions of the expected state of the slots at the start of an operation, so the operation
+     * only records its expected states if no other writer changed the slots in the meantime.  A state
+     * manager without versions returns no versions.
+     */
+    private Map<UUID, Long> getExpectedStateVersions(List<SlotStatus> slots)
+    {
+        if (!(stateManager instanceof VersionedStateManager)) {
+            return ImmutableMap.of();
+        }
+        return ((VersionedStateManager) stateManager).getVersions(Lists.transform(slots, SlotStatus.uuidGetter()));
+    }
+
+    private void storeExpectedStates(Collection<ExpectedSlotStatus> expectedStates)
+    {
+        writeExpectedStates(expectedStates, ImmutableList.<UUID>of(), null);
+    }
+
+    private void storeExpectedStates(Collection<ExpectedSlotStatus> expectedStates, Map<UUID, Long> expectedVersions)
+    {
+        writeExpectedStates(expectedStates, ImmutableList.<UUID>of(), expectedVersions);
+    }
+
+    private void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        writeExpectedStates(ImmutableList.<ExpectedSlotStatus>of(), slotIds, null);
+    }
+
+    private void deleteExpectedStates(Collection<UUID> slotIds, Map<UUID, Long> expectedVersions)
+    {
+        writeExpectedStates(ImmutableList.<ExpectedSlotStatus>of(), slotIds, expectedVersions);
+    }
+
+    /**
+     * Writes the expected states.  With expected versions and a versioned state manager, every written
+     * slot must still have its expected version, or version 0 if it has none, and otherwise nothing is
+     * written and the write fails with a version conflict.
+     */
+    private void writeExpectedStates(Collection<ExpectedSlotStatus> expectedStates, Collection<UUID> deletedSlotIds, @Nullable Map<UUID, Long> expectedVersions)
+    {
+        if (expectedStates.isEmpty() && deletedSlotIds.isEmpty()) {
+            return;
+        }
+
+        if (expectedVersions != null && stateManager instanceof VersionedStateManager) {
+            Map<UUID, Long> versions = Maps.newHashMap();
+            for (ExpectedSlotStatus expectedState : expectedStates) {
+                versions.put(expectedState.getId(), Objects.firstNonNull(expectedVersions.get(expectedState.getId()), 0L));
+            }
+            for (UUID slotId : deletedSlotIds) {
+                versions.put(slotId, Objects.firstNonNull(expectedVersions.get(slotId), 0L));
+            }
+            if (!((VersionedStateManager) stateManager).compareAndSetExpectedStates(versions, expectedStates, deletedSlotIds)) {
+                // another writer changed the slots since this operation read them
+                List<SlotStatus> slots = getAllSlotsStatus(Predicates.compose(Predicates.in(versions.keySet()), SlotStatus.uuidGetter()));
+                throw new VersionConflictException(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(slots));
+            }
+        }
+        else {
+            stateManager.setExpectedStates(expectedStates);
+            stateManager.deleteExpectedStates(deletedSlotIds);
+        }
+
+        // apply the write locally rather than reading back every expected state
+        synchronized (fleetSnapshotLock) {
+            Map<UUID, ExpectedSlotStatus> newExpectedStates = Maps.newLinkedHashMap(snapshotExpectedStates);
+            for (ExpectedSlotStatus expectedState : expectedStates) {
+                newExpectedStates.put(expectedState.getId(), expectedState);
+            }
+            newExpectedStates.keySet().removeAll(deletedSlotIds);
+            snapshotExpectedStates = ImmutableMap.copyOf(newExpectedStates);
+            updateFleetSnapshot(true);
+        }
+    }
+
+    private void reloadFleetSnapshot()
+    {
+        synchronized (fleetSnapshotLock) {
+            // readers never take this lock, so a slow state manager only delays the next snapshot
+            Map<UUID, ExpectedSlotStatus> expectedStates = Maps.uniqueIndex(stateManager.getAllExpectedStates(), ExpectedSlotStatus.uuidGetter());
+            boolean changed = !sameExpectedStates(snapshotExpectedStates, expectedStates);
+            snapshotExpectedStates = expectedStates;
+            updateFleetSnapshot(changed);
+        }
+    }
+
+    private void refreshFleetSnapshot()
+    {
+        synchronized (fleetSnapshotLock) {
+            updateFleetSnapshot(false);
+        }
+    }
 
-        return filteredSlots;
+    // must hold fleetSnapshotLock
+    private void updateFleetSnapshot(boolean expectedStatesChanged)
+    {
+        // hold the index lock so agents and slots come from the same index state
+        long slotIndexVersion;
+        List<AgentStatus> agents;
+        List<SlotStatus> slots;
+        synchronized (slotIndex) {
+            SlotIndex slotIndex = getSlotIndex();
+            slotIndexVersion = slotIndex.getVersion();
+            agents = slotIndex.getAllAgents();
+            slots = slotIndex.getAllSlots();
+        }
+        if (!expectedStatesChanged && slotIndexVersion == snapshotSlotIndexVersion) {
+            return;
+        }
+        snapshotSlotIndexVersion = slotIndexVersion;
+        fleetSnapshot = new FleetSnapshot(fleetSnapshot.getVersion() + 1,
+                agents,
+                getAllSlotsStatus(Predicates.<SlotStatus>alwaysTrue(), slots, snapshotExpectedStates.values()));
+    }
+
+    private static boolean sameExpectedStates(Map<UUID, ExpectedSlotStatus> oldStates, Map<UUID, ExpectedSlotStatus> newStates)
+    {
+        // expected slot status equality only compares the slot id
+        if (!oldStates.keySet().equals(newStates.keySet())) {
+            return false;
+        }
+        for (ExpectedSlotStatus newState : newStates.values()) {
+            ExpectedSlotStatus oldState = oldStates.get(newState.getId());
+            if (oldState.getStatus() != newState.getStatus() || !Objects.equal(oldState.getAssignment(), newState.getAssignment())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public List<SlotStatus> getAllSlotStatus()
@@ -586,63 +1229,35 @@ public class Coordinator
 
     public List<SlotStatus> getAllSlotsStatus(Predicate<SlotStatus> slotFilter)
     {
-        return getAllSlotsStatus(slotFilter, getAllSlots());
+        return getAllSlotsStatus(slotFilter, getSlotIndex().getAllSlots());
     }
 
-    private List<SlotStatus> getAllSlotsStatus(Predicate<SlotStatus> slotFilter, List<RemoteSlot> allSlots)
+    private List<SlotStatus> getAllSlotsStatus(Predicate<SlotStatus> slotFilter, List<SlotStatus> actualSlots)
     {
-        ImmutableMap<UUID, ExpectedSlotStatus> expectedStates = Maps.uniqueIndex(stateManager.getAllExpectedStates(), ExpectedSlotStatus.uuidGetter());
-        ImmutableMap<UUID, SlotStatus> actualStates = Maps.uniqueIndex(transform(allSlots, getSlotStatus()), SlotStatus.uuidGetter());
+        return getAllSlotsStatus(slotFilter, actualSlots, stateManager.getAllExpectedStates());
+    }
 
+    private static List<SlotStatus> getAllSlotsStatus(Predicate<SlotStatus> slotFilter, List<SlotStatus> actualSlots, Collection<ExpectedSlotStatus> allExpectedStates)
+    {
+        ImmutableMap<UUID, ExpectedSlotStatus> expectedStates = Maps.uniqueIndex(allExpectedStates, ExpectedSlotStatus.uuidGetter());
+
+        Set<UUID> actualSlotIds = newHashSet();
         ArrayList<SlotStatus> stats = newArrayList();
-        for (UUID uuid : Sets.union(actualStates.keySet(), expectedStates.keySet())) {
-            final SlotStatus actualState = actualStates.get(uuid);
-            final ExpectedSlotStatus expectedState = expectedStates.get(uuid);
-
-            SlotStatus fullSlotStatus;
-            if (actualState == null) {
-                // skip terminated slots
-                if (expectedState == null || expectedState.getStatus() == SlotLifecycleState.TERMINATED) {
-                    continue;
-                }
-                // missing slot
-                fullSlotStatus = SlotStatus.createSlotStatusWithExpectedState(uuid,
-                        null,
-                        null,
-                        null,
-                        "/unknown",
-                        UNKNOWN,
-                        expectedState.getAssignment(),
-                        null,
-                        ImmutableMap.<String, Integer>of(), expectedState.getStatus(),
-                        expectedState.getAssignment(),
-                        "Slot is missing; Expected slot to be " + expectedState.getStatus());
-            }
-            else if (expectedState == null) {
-                // unexpected slot
-                fullSlotStatus = actualState.changeStatusMessage("Unexpected slot").changeExpectedState(null, null);
+        for (SlotStatus actualState : actualSlots) {
+            actualSlotIds.add(actualState.getId());
+            SlotStatus fullSlotStatus = mergeSlotStatus(actualState.getId(), actualState, expectedStates.get(actualState.getId()));
+            if (slotFilter.apply(fullSlotStatus)) {
+                stats.add(fullSlotStatus);
             }
-            else {
-                fullSlotStatus = actualState.changeExpectedState(expectedState.getStatus(), expectedState.getAssignment());
+        }
 
-                // add error message if actual state doesn't match expected state
-                List<String> messages = newArrayList();
-                if (!Objects.equal(actualState.getState(), expectedState.getStatus())) {
-                    messages.add("Expected state to be " + expectedState.getStatus());
-                }
-                if (!Objects.equal(actualState.getAssignment(), expectedState.getAssignment())) {
-                    Assignment assignment = expectedState.getAssignment();
-                    if (assignment != null) {
-                        messages.add("Expected assignment to be " + assignment.getBinary() + " " + assignment.getConfig());
-                    }
-                    else {
-                        messages.add("Expected no assignment");
-                    }
-                }
-                if (!messages.isEmpty()) {
-                    fullSlotStatus = fullSlotStatus.changeStatusMessage(Joiner.on("; ").join(messages));
-                }
+        // expected slots that no agent reports
+        for (ExpectedSlotStatus expectedState : expectedStates.values()) {
+            // skip slots an agent reports, and terminated slots
+            if (actualSlotIds.contains(expectedState.getId()) || expectedState.getStatus() == SlotLifecycleState.TERMINATED) {
+                continue;
             }
+            SlotStatus fullSlotStatus = mergeSlotStatus(expectedState.getId(), null, expectedState);
             if (slotFilter.apply(fullSlotStatus)) {
                 stats.add(fullSlotStatus);
             }
@@ -651,27 +1266,56 @@ public class Coordinator
         return stats;
     }
 
-    private Predicate<RemoteSlot> filterSlotsBy(final Predicate<SlotStatus> filter)
+    private static SlotStatus mergeSlotStatus(UUID uuid, SlotStatus actualState, ExpectedSlotStatus expectedState)
     {
-        return new Predicate<RemoteSlot>()
-        {
-            @Override
-            public boolean apply(RemoteSlot input)
-            {
-                return filter.apply(input.status());
+        SlotStatus fullSlotStatus;
+        if (actualState == null) {
+            // missing slot
+            fullSlotStatus = SlotStatus.createSlotStatusWithExpectedState(uuid,
+                    null,
+                    null,
+                    null,
+                    "/unknown",
+                    UNKNOWN,
+                    expectedState.getAssignment(),
+                    null,
+                    ImmutableMap.<String, Integer>of(), expectedState.getStatus(),
+                    expectedState.getAssignment(),
+                    "Slot is missing; Expected slot to be " + expectedState.getStatus());
+        }
+        else if (expectedState == null) {
+            // unexpected slot
+            fullSlotStatus = actualState.changeStatusMessage("Unexpected slot").changeExpectedState(null, null);
+        }
+        else {
+            fullSlotStatus = actualState.changeExpectedState(expectedState.getStatus(), expectedState.getAssignment());
+
+            // add error message if actual state doesn't match expected state
+            List<String> messages = newArrayList();
+            if (!Objects.equal(actualState.getState(), expectedState.getStatus())) {
+                messages.add("Expected state to be " + expectedState.getStatus());
             }
-        };
+            if (!Objects.equal(actualState.getAssignment(), expectedState.getAssignment())) {
+                Assignment assignment = expectedState.getAssignment();
+                if (assignment != null) {
+                    messages.add("Expected assignment to be " + assignment.getBinary() + " " + assignment.getConfig());
+                }
+                else {
+                    messages.add("Expected no assignment");
+                }
+            }
+            if (!messages.isEmpty()) {
+                fullSlotStatus = fullSlotStatus.changeStatusMessage(Joiner.on("; ").join(messages));
+            }
+        }
+        return fullSlotStatus;
     }
 
-    private List<RemoteSlot> getAllSlots()
+    private SlotIndex getSlotIndex()
     {
-        return ImmutableList.copyOf(concat(Iterables.transform(agents.values(), new Function<RemoteAgent, List<? extends RemoteSlot>>()
-        {
-            public List<? extends RemoteSlot> apply(RemoteAgent agent)
-            {
-                return agent.getSlots();
-            }
-        })));
+        // only agents that replaced their status since the last call are re-indexed
+        slotIndex.update(Maps.transformValues(agents, getAgentStatus()));
+        return slotIndex;
     }
 
     private Predicate<RemoteAgent> filterAgentsBy(final Predicate<AgentStatus> filter)
@@ -686,14 +1330,14 @@ public class Coordinator
         };
     }
 
-    private Function<RemoteSlot, SlotStatus> getSlotStatus()
+    private static Function<RemoteSlot, UUID> remoteSlotIdGetter()
     {
-        return new Function<RemoteSlot, SlotStatus>()
+        return new Function<RemoteSlot, UUID>()
         {
             @Override
-            public SlotStatus apply(RemoteSlot slot)
+            public UUID apply(RemoteSlot slot)
             {
-                return slot.status();
+                return slot.getId();
             }
         };
     }
@@ -721,8 +1365,7 @@ public class Coordinator
             public boolean apply(RemoteAgent agent)
             {
                 for (RemoteSlot slot : agent.getSlots()) {
-                    if (repository.binaryEqualsIgnoreVersion(assignment.getBinary(), slot.status().getAssignment().getBinary()) &&
-                            repository.configEqualsIgnoreVersion(assignment.getConfig(), slot.status().getAssignment().getConfig())) {
+                    if (isInstanceOf(assignment).apply(slot.status())) {
                         return false;
                     }
                 }
@@ -730,4 +1373,18 @@ public class Coordinator
             }
         };
     }
+
+    private Predicate<SlotStatus> isInstanceOf(final Assignment assignment)
+    {
+        return new Predicate<SlotStatus>()
+        {
+            @Override
+            public boolean apply(SlotStatus slotStatus)
+            {
+                return slotStatus.getAssignment() != null &&
+                        repository.binaryEqualsIgnoreVersion(assignment.getBinary(), slotStatus.getAssignment().getBinary()) &&
+                        repository.configEqualsIgnoreVersion(assignment.getConfig(), slotStatus.getAssignment().getConfig());
+            }
+        };
+    }
 }
@@ -13,29 +13,31 @@
  */
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import com.proofpoint.units.Duration;
 import io.airlift.airship.shared.Repository;
 import io.airlift.airship.shared.SlotStatus;
 import io.airlift.airship.shared.UpgradeVersions;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.List;
-import java.util.UUID;
 
 import static com.google.common.collect.Collections2.transform;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
-import static io.airlift.airship.shared.SlotStatusRepresentation.fromSlotStatus;
+import static io.airlift.airship.shared.VersionsUtil.checkSlotsVersion;
 import static io.airlift.airship.shared.VersionsUtil.createSlotsVersion;
 
 @Path("/v1/slot/assignment")
@@ -43,36 +45,91 @@ public class CoordinatorAssignmentResource
 {
     private final Coordinator coordinator;
     private final Repository repository;
+    private final JobManager jobManager;
 
     @Inject
-    public CoordinatorAssignmentResource(Coordinator coordinator, Repository repository)
+    public CoordinatorAssignmentResource(Coordinator coordinator, Repository repository, JobManager jobManager)
     {
         Preconditions.checkNotNull(coordinator, "coordinator must not be null");
         Preconditions.checkNotNull(repository, "repository is null");
+        Preconditions.checkNotNull(jobManager, "jobManager is null");
 
         this.coordinator = coordinator;
         this.repository = repository;
+        this.jobManager = jobManager;
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response upgrade(UpgradeVersions upgradeVersions,
+    public Response upgrade(final UpgradeVersions upgradeVersions,
             @Context UriInfo uriInfo,
-            @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) String expectedSlotsVersion)
+            @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) final String expectedSlotsVersion,
+            @QueryParam("batch") String batchSize,
+            @DefaultValue("5m") @QueryParam("healthTimeout") Duration healthTimeout,
+            @QueryParam("healthPath") String healthPath,
+            @QueryParam("async") boolean async)
     {
         Preconditions.checkNotNull(upgradeVersions, "upgradeRepresentation must not be null");
 
         // build filter
-        List<UUID> uuids = Lists.transform(coordinator.getAllSlotStatus(), SlotStatus.uuidGetter());
-        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, uuids);
+        FleetSnapshot fleet = coordinator.getFleetSnapshot();
+        final Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, fleet.getSlotUuids());
+
+        // a batch size turns the upgrade into a rolling upgrade
+        final RollingUpgradePolicy policy;
+        if (batchSize == null) {
+            policy = null;
+        }
+        else {
+            try {
+                policy = RollingUpgradePolicy.valueOf(batchSize, healthTimeout, healthPath);
+            }
+            catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+            }
+        }
+
+        // run the upgrade in the background when requested
+        if (async) {
+            // reject a stale version before accepting the job, so the conflict is reported synchronously
+            checkSlotsVersion(expectedSlotsVersion, fleet.getSlots(slotFilter));
+
+            Job job = jobManager.submit("upgrade", new Function<SlotOperationListener, List<SlotStatus>>()
+            {
+                @Override
+                public List<SlotStatus> apply(SlotOperationListener listener)
+                {
+                    return upgrade(slotFilter, upgradeVersions, expectedSlotsVersion, policy, listener);
+                }
+            });
+            return JobResource.jobAccepted(job, uriInfo, fleet, repository);
+        }
 
         // upgrade slots
-        List<SlotStatus> results = coordinator.upgrade(slotFilter, upgradeVersions, expectedSlotsVersion);
+        List<SlotStatus> results;
+        if (policy == null) {
+            results = coordinator.upgrade(slotFilter, upgradeVersions, expectedSlotsVersion);
+        }
+        else {
+            results = coordinator.rollingUpgrade(slotFilter, upgradeVersions, expectedSlotsVersion, policy);
+        }
 
         // build response
-        return Response.ok(transform(results, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(transform(results, fromSlotStatus(fleet.getSlotRepresentationFactory(repository))))
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(results))
                 .build();
     }
+
+    private List<SlotStatus> upgrade(Predicate<SlotStatus> slotFilter,
+            UpgradeVersions upgradeVersions,
+            String expectedSlotsVersion,
+            RollingUpgradePolicy policy,
+            SlotOperationListener listener)
+    {
+        if (policy == null) {
+            return coordinator.upgrade(slotFilter, upgradeVersions, expectedSlotsVersion, listener);
+        }
+        return coordinator.rollingUpgrade(slotFilter, upgradeVersions, expectedSlotsVersion, policy, listener);
+    }
 }
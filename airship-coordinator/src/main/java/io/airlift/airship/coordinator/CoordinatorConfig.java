@@ -20,7 +20,9 @@ import com.proofpoint.configuration.ConfigDescription;
 import com.proofpoint.configuration.LegacyConfig;
 import com.proofpoint.units.Duration;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -30,6 +32,19 @@ public class CoordinatorConfig
 
     private String airshipVersion;
     private Duration statusExpiration = new Duration(30, TimeUnit.SECONDS);
+    private int agentUpdateConcurrency = 32;
+    private Duration agentUpdateTimeout = new Duration(10, TimeUnit.SECONDS);
+    private boolean agentWatchEnabled = true;
+    private Duration agentWatchMaxWait = new Duration(30, TimeUnit.SECONDS);
+    private int agentWatchConcurrency = 256;
+    private int slotOperationConcurrency = 32;
+    private int slotOperationAgentConcurrency = 1;
+    private Duration jobRetention = new Duration(1, TimeUnit.HOURS);
+    private int jobConcurrency = 16;
+    private int jobMaxQueued = 100;
+    private Duration jobMaxWait = new Duration(1, TimeUnit.MINUTES);
+    private String placementStrategy = "spread";
+    private int placementAntiAffinityDepth;
 
     private String serviceInventoryCacheDir = "service-inventory-cache";
 
@@ -43,6 +58,18 @@ public class CoordinatorConfig
     private String httpRepoBinaryVersionPattern;
     private String httpRepoConfigVersionPattern;
 
+    private Duration repositoryCacheReleaseTtl = new Duration(1, TimeUnit.HOURS);
+    private Duration repositoryCacheSnapshotTtl = new Duration(1, TimeUnit.MINUTES);
+    private Duration repositoryCacheMissTtl = new Duration(10, TimeUnit.SECONDS);
+    private Duration repositoryProbeConnectTimeout = new Duration(5, TimeUnit.SECONDS);
+    private Duration repositoryProbeReadTimeout = new Duration(10, TimeUnit.SECONDS);
+
+    private String binaryCacheDir = "binary-cache";
+    private int binaryCacheMaxSizeInMegabytes = 10240;
+    private int binaryPeerSources = 3;
+    private String configBundleCacheDir = "config-bundle-cache";
+    private int configBundleCacheMaxBundles = 100;
+
 
     @NotNull
     public String getAirshipVersion()
@@ -70,6 +97,188 @@ public class CoordinatorConfig
         return this;
     }
 
+    @Min(1)
+    public int getAgentUpdateConcurrency()
+    {
+        return agentUpdateConcurrency;
+    }
+
+    @Config("coordinator.agent.update-concurrency")
+    @ConfigDescription("Maximum number of agents polled concurrently")
+    public CoordinatorConfig setAgentUpdateConcurrency(int agentUpdateConcurrency)
+    {
+        this.agentUpdateConcurrency = agentUpdateConcurrency;
+        return this;
+    }
+
+    @NotNull
+    public Duration getAgentUpdateTimeout()
+    {
+        return agentUpdateTimeout;
+    }
+
+    @Config("coordinator.agent.update-timeout")
+    @ConfigDescription("Maximum time to wait for a single agent status update")
+    public CoordinatorConfig setAgentUpdateTimeout(Duration agentUpdateTimeout)
+    {
+        this.agentUpdateTimeout = agentUpdateTimeout;
+        return this;
+    }
+
+    public boolean isAgentWatchEnabled()
+    {
+        return agentWatchEnabled;
+    }
+
+    @Config("coordinator.agent.watch-enabled")
+    @ConfigDescription("Long poll agents for slot status changes between regular status updates")
+    public CoordinatorConfig setAgentWatchEnabled(boolean agentWatchEnabled)
+    {
+        this.agentWatchEnabled = agentWatchEnabled;
+        return this;
+    }
+
+    @NotNull
+    public Duration getAgentWatchMaxWait()
+    {
+        return agentWatchMaxWait;
+    }
+
+    @Config("coordinator.agent.watch-max-wait")
+    @ConfigDescription("Maximum time an agent holds a status watch request open")
+    public CoordinatorConfig setAgentWatchMaxWait(Duration agentWatchMaxWait)
+    {
+        this.agentWatchMaxWait = agentWatchMaxWait;
+        return this;
+    }
+
+    @Min(1)
+    public int getAgentWatchConcurrency()
+    {
+        return agentWatchConcurrency;
+    }
+
+    @Config("coordinator.agent.watch-concurrency")
+    @ConfigDescription("Maximum number of agents watched concurrently; other agents are only updated by the regular status updates")
+    public CoordinatorConfig setAgentWatchConcurrency(int agentWatchConcurrency)
+    {
+        this.agentWatchConcurrency = agentWatchConcurrency;
+        return this;
+    }
+
+    @Min(1)
+    public int getSlotOperationConcurrency()
+    {
+        return slotOperationConcurrency;
+    }
+
+    @Config("coordinator.slot-operation.concurrency")
+    @ConfigDescription("Maximum number of slot operations run concurrently by a bulk lifecycle request")
+    public CoordinatorConfig setSlotOperationConcurrency(int slotOperationConcurrency)
+    {
+        this.slotOperationConcurrency = slotOperationConcurrency;
+        return this;
+    }
+
+    @Min(1)
+    public int getSlotOperationAgentConcurrency()
+    {
+        return slotOperationAgentConcurrency;
+    }
+
+    @Config("coordinator.slot-operation.agent-concurrency")
+    @ConfigDescription("Maximum number of concurrent slot operations on a single agent")
+    public CoordinatorConfig setSlotOperationAgentConcurrency(int slotOperationAgentConcurrency)
+    {
+        this.slotOperationAgentConcurrency = slotOperationAgentConcurrency;
+        return this;
+    }
+
+    @NotNull
+    public Duration getJobRetention()
+    {
+        return jobRetention;
+    }
+
+    @Config("coordinator.job.retention")
+    @ConfigDescription("How long the results of a finished asynchronous job are kept")
+    public CoordinatorConfig setJobRetention(Duration jobRetention)
+    {
+        this.jobRetention = jobRetention;
+        return this;
+    }
+
+    @Min(1)
+    public int getJobConcurrency()
+    {
+        return jobConcurrency;
+    }
+
+    @Config("coordinator.job.concurrency")
+    @ConfigDescription("Maximum number of asynchronous jobs run concurrently")
+    public CoordinatorConfig setJobConcurrency(int jobConcurrency)
+    {
+        this.jobConcurrency = jobConcurrency;
+        return this;
+    }
+
+    @Min(1)
+    public int getJobMaxQueued()
+    {
+        return jobMaxQueued;
+    }
+
+    @Config("coordinator.job.max-queued")
+    @ConfigDescription("Maximum number of asynchronous jobs waiting to run; further jobs are rejected")
+    public CoordinatorConfig setJobMaxQueued(int jobMaxQueued)
+    {
+        this.jobMaxQueued = jobMaxQueued;
+        return this;
+    }
+
+    @NotNull
+    public Duration getJobMaxWait()
+    {
+        return jobMaxWait;
+    }
+
+    @Config("coordinator.job.max-wait")
+    @ConfigDescription("Maximum time a request waits for a job to finish")
+    public CoordinatorConfig setJobMaxWait(Duration jobMaxWait)
+    {
+        this.jobMaxWait = jobMaxWait;
+        return this;
+    }
+
+    @NotNull
+    @Pattern(regexp = "spread|bin-pack", message = "must be spread or bin-pack")
+    public String getPlacementStrategy()
+    {
+        return placementStrategy;
+    }
+
+    @Config("coordinator.placement.strategy")
+    @ConfigDescription("Placement of new slots: spread (least loaded agents first) or bin-pack (most loaded agents first)")
+    public CoordinatorConfig setPlacementStrategy(String placementStrategy)
+    {
+        this.placementStrategy = placementStrategy;
+        return this;
+    }
+
+    @Min(0)
+    public int getPlacementAntiAffinityDepth()
+    {
+        return placementAntiAffinityDepth;
+    }
+
+    @Config("coordinator.placement.anti-affinity-depth")
+    @ConfigDescription("Number of leading agent location segments that form a failure domain for spreading instances of a service (0 uses the full agent location)")
+    public CoordinatorConfig setPlacementAntiAffinityDepth(int placementAntiAffinityDepth)
+    {
+        this.placementAntiAffinityDepth = placementAntiAffinityDepth;
+        return this;
+    }
+
     @NotNull
     public String getServiceInventoryCacheDir()
     {
@@ -183,4 +392,144 @@ public class CoordinatorConfig
         this.httpRepoConfigVersionPattern = httpRepoConfigVersionPattern;
         return this;
     }
+
+    @NotNull
+    public Duration getRepositoryCacheReleaseTtl()
+    {
+        return repositoryCacheReleaseTtl;
+    }
+
+    @Config("coordinator.repository.cache.release-ttl")
+    @ConfigDescription("How long a resolved release binary or config is cached")
+    public CoordinatorConfig setRepositoryCacheReleaseTtl(Duration repositoryCacheReleaseTtl)
+    {
+        this.repositoryCacheReleaseTtl = repositoryCacheReleaseTtl;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRepositoryCacheSnapshotTtl()
+    {
+        return repositoryCacheSnapshotTtl;
+    }
+
+    @Config("coordinator.repository.cache.snapshot-ttl")
+    @ConfigDescription("How long a resolved SNAPSHOT binary or config is cached")
+    public CoordinatorConfig setRepositoryCacheSnapshotTtl(Duration repositoryCacheSnapshotTtl)
+    {
+        this.repositoryCacheSnapshotTtl = repositoryCacheSnapshotTtl;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRepositoryCacheMissTtl()
+    {
+        return repositoryCacheMissTtl;
+    }
+
+    @Config("coordinator.repository.cache.miss-ttl")
+    @ConfigDescription("How long a binary or config that could not be resolved is remembered as missing")
+    public CoordinatorConfig setRepositoryCacheMissTtl(Duration repositoryCacheMissTtl)
+    {
+        this.repositoryCacheMissTtl = repositoryCacheMissTtl;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRepositoryProbeConnectTimeout()
+    {
+        return repositoryProbeConnectTimeout;
+    }
+
+    @Config("coordinator.repository.probe.connect-timeout")
+    @ConfigDescription("How long to wait for a connection when checking if a binary or config exists")
+    public CoordinatorConfig setRepositoryProbeConnectTimeout(Duration repositoryProbeConnectTimeout)
+    {
+        this.repositoryProbeConnectTimeout = repositoryProbeConnectTimeout;
+        return this;
+    }
+
+    @NotNull
+    public Duration getRepositoryProbeReadTimeout()
+    {
+        return repositoryProbeReadTimeout;
+    }
+
+    @Config("coordinator.repository.probe.read-timeout")
+    @ConfigDescription("How long to wait for a response when checking if a binary or config exists")
+    public CoordinatorConfig setRepositoryProbeReadTimeout(Duration repositoryProbeReadTimeout)
+    {
+        this.repositoryProbeReadTimeout = repositoryProbeReadTimeout;
+        return this;
+    }
+
+    @NotNull
+    public String getBinaryCacheDir()
+    {
+        return binaryCacheDir;
+    }
+
+    @Config("coordinator.binary-cache.dir")
+    @ConfigDescription("Directory where binaries served to agents are cached")
+    public CoordinatorConfig setBinaryCacheDir(String binaryCacheDir)
+    {
+        this.binaryCacheDir = binaryCacheDir;
+        return this;
+    }
+
+    @Min(0)
+    public int getBinaryCacheMaxSizeInMegabytes()
+    {
+        return binaryCacheMaxSizeInMegabytes;
+    }
+
+    @Config("coordinator.binary-cache.max-size-mb")
+    @ConfigDescription("Maximum size of the binary cache in megabytes; least recently used binaries are removed beyond it")
+    public CoordinatorConfig setBinaryCacheMaxSizeInMegabytes(int binaryCacheMaxSizeInMegabytes)
+    {
+        this.binaryCacheMaxSizeInMegabytes = binaryCacheMaxSizeInMegabytes;
+        return this;
+    }
+
+    @NotNull
+    public String getConfigBundleCacheDir()
+    {
+        return configBundleCacheDir;
+    }
+
+    @Config("coordinator.config-bundle-cache.dir")
+    @ConfigDescription("Directory where config bundles read by the coordinator are cached")
+    public CoordinatorConfig setConfigBundleCacheDir(String configBundleCacheDir)
+    {
+        this.configBundleCacheDir = configBundleCacheDir;
+        return this;
+    }
+
+    @Min(1)
+    public int getConfigBundleCacheMaxBundles()
+    {
+        return configBundleCacheMaxBundles;
+    }
+
+    @Config("coordinator.config-bundle-cache.max-bundles")
+    @ConfigDescription("Maximum number of config bundles to cache; least recently used bundles are removed beyond it")
+    public CoordinatorConfig setConfigBundleCacheMaxBundles(int configBundleCacheMaxBundles)
+    {
+        this.configBundleCacheMaxBundles = configBundleCacheMaxBundles;
+        return this;
+    }
+
+    @Min(0)
+    public int getBinaryPeerSources()
+    {
+        return binaryPeerSources;
+    }
+
+    @Config("coordinator.binary.peer-sources")
+    @ConfigDescription("Maximum number of peer agents an agent tries to download a binary from before the coordinator (0 disables peer downloads)")
+    public CoordinatorConfig setBinaryPeerSources(int binaryPeerSources)
+    {
+        this.binaryPeerSources = binaryPeerSources;
+        return this;
+    }
 }
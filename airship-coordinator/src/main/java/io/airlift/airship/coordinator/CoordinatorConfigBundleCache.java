@@ -0,0 +1,51 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.ConfigBundleCache;
+import org.weakref.jmx.Managed;
+
+import javax.inject.Inject;
+import java.io.File;
+
+public class CoordinatorConfigBundleCache extends ConfigBundleCache
+{
+    @Inject
+    public CoordinatorConfigBundleCache(CoordinatorConfig config)
+    {
+        super(new File(config.getConfigBundleCacheDir()), config.getConfigBundleCacheMaxBundles());
+    }
+
+    @Managed
+    @Override
+    public long getHits()
+    {
+        return super.getHits();
+    }
+
+    @Managed
+    @Override
+    public long getMisses()
+    {
+        return super.getMisses();
+    }
+
+    @Managed
+    @Override
+    public int getSize()
+    {
+        return super.getSize();
+    }
+
+    @Managed
+    @Override
+    public int getMaxSize()
+    {
+        return super.getMaxSize();
+    }
+
+    @Managed
+    @Override
+    public void invalidateAll()
+    {
+        super.invalidateAll();
+    }
+}
@@ -13,9 +13,9 @@
  */
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import io.airlift.airship.shared.Repository;
 import io.airlift.airship.shared.SlotLifecycleState;
@@ -25,17 +25,17 @@ import javax.ws.rs.HeaderParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.List;
-import java.util.UUID;
 
 import static com.google.common.collect.Collections2.transform;
 import static io.airlift.airship.shared.SlotLifecycleState.UNKNOWN;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
-import static io.airlift.airship.shared.SlotStatusRepresentation.fromSlotStatus;
+import static io.airlift.airship.shared.VersionsUtil.checkSlotsVersion;
 import static io.airlift.airship.shared.VersionsUtil.createSlotsVersion;
 
 @Path("/v1/slot/lifecycle")
@@ -43,39 +43,59 @@ public class CoordinatorLifecycleResource
 {
     private final Coordinator coordinator;
     private final Repository repository;
+    private final JobManager jobManager;
 
     @Inject
-    public CoordinatorLifecycleResource(Coordinator coordinator, Repository repository)
+    public CoordinatorLifecycleResource(Coordinator coordinator, Repository repository, JobManager jobManager)
     {
         Preconditions.checkNotNull(coordinator, "coordinator must not be null");
         Preconditions.checkNotNull(repository, "repository is null");
+        Preconditions.checkNotNull(jobManager, "jobManager is null");
 
         this.coordinator = coordinator;
         this.repository = repository;
+        this.jobManager = jobManager;
     }
 
     @PUT
     @Produces(MediaType.APPLICATION_JSON)
     public Response setState(String newState,
             @Context UriInfo uriInfo,
-            @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) String expectedSlotsVersion)
+            @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) final String expectedSlotsVersion,
+            @QueryParam("async") boolean async)
     {
         Preconditions.checkNotNull(newState, "newState must not be null");
 
-        SlotLifecycleState state = SlotLifecycleState.lookup(newState);
+        final SlotLifecycleState state = SlotLifecycleState.lookup(newState);
         if (state == null || state == UNKNOWN) {
             return Response.status(Response.Status.BAD_REQUEST).build();
         }
 
         // build filter
-        List<UUID> uuids = Lists.transform(coordinator.getAllSlotStatus(), SlotStatus.uuidGetter());
-        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, uuids);
+        FleetSnapshot fleet = coordinator.getFleetSnapshot();
+        final Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, fleet.getSlotUuids());
+
+        // run the state change in the background when requested
+        if (async) {
+            // reject a stale version before accepting the job, so the conflict is reported synchronously
+            checkSlotsVersion(expectedSlotsVersion, fleet.getSlots(slotFilter));
+
+            Job job = jobManager.submit("lifecycle", new Function<SlotOperationListener, List<SlotStatus>>()
+            {
+                @Override
+                public List<SlotStatus> apply(SlotOperationListener listener)
+                {
+                    return coordinator.setState(state, slotFilter, expectedSlotsVersion, listener);
+                }
+            });
+            return JobResource.jobAccepted(job, uriInfo, fleet, repository);
+        }
 
         // set slot state
         List<SlotStatus> results = coordinator.setState(state, slotFilter, expectedSlotsVersion);
 
         // build response
-        return Response.ok(transform(results, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(transform(results, fromSlotStatus(fleet.getSlotRepresentationFactory(repository))))
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(results))
                 .build();
      }
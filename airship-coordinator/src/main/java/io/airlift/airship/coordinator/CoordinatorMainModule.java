@@ -23,14 +23,18 @@ import io.airlift.airship.coordinator.auth.AuthConfig;
 import io.airlift.airship.coordinator.auth.AuthFilter;
 import io.airlift.airship.coordinator.auth.SignatureVerifier;
 import io.airlift.airship.shared.AgentStatusRepresentation;
+import io.airlift.airship.shared.BinaryCache;
+import io.airlift.airship.shared.ConfigBundleCache;
 import io.airlift.airship.shared.Repository;
 import io.airlift.airship.shared.ExpectedSlotStatus;
 import io.airlift.airship.shared.InstallationRepresentation;
 import io.airlift.airship.shared.RepositorySet;
+import io.airlift.airship.shared.ResolutionCache;
 import io.airlift.airship.shared.SlotStatusRepresentation;
 import io.airlift.airship.shared.VersionConflictExceptionMapper;
 import com.proofpoint.http.server.TheServlet;
 import com.proofpoint.json.JsonCodecBinder;
+import org.weakref.jmx.guice.MBeanModule;
 
 import javax.servlet.Filter;
 
@@ -45,19 +49,33 @@ public class CoordinatorMainModule
         binder.requireExplicitBindings();
 
         binder.bind(Coordinator.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(Coordinator.class).withGeneratedName();
         binder.bind(CoordinatorSlotResource.class).in(Scopes.SINGLETON);
         binder.bind(CoordinatorAssignmentResource.class).in(Scopes.SINGLETON);
         binder.bind(CoordinatorLifecycleResource.class).in(Scopes.SINGLETON);
         binder.bind(ExpectedStateResource.class).in(Scopes.SINGLETON);
+        binder.bind(JobManager.class).in(Scopes.SINGLETON);
+        binder.bind(JobResource.class).in(Scopes.SINGLETON);
         binder.bind(InvalidSlotFilterExceptionMapper.class).in(Scopes.SINGLETON);
+        binder.bind(JobRejectedExceptionMapper.class).in(Scopes.SINGLETON);
         binder.bind(AdminResource.class).in(Scopes.SINGLETON);
         binder.bind(VersionConflictExceptionMapper.class).in(Scopes.SINGLETON);
         binder.bind(RemoteAgentFactory.class).to(HttpRemoteAgentFactory.class).in(Scopes.SINGLETON);
 
+        binder.bind(RepositoryResolutionCache.class).in(Scopes.SINGLETON);
+        binder.bind(ResolutionCache.class).to(RepositoryResolutionCache.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(RepositoryResolutionCache.class).withGeneratedName();
+        binder.bind(ArtifactProbe.class).in(Scopes.SINGLETON);
         binder.bind(Repository.class).to(RepositorySet.class).in(Scopes.SINGLETON);
         Multibinder.newSetBinder(binder, Repository.class).addBinding().to(MavenRepository.class).in(Scopes.SINGLETON);
         Multibinder.newSetBinder(binder, Repository.class).addBinding().to(HttpRepository.class).in(Scopes.SINGLETON);
 
+        binder.bind(CoordinatorBinaryCache.class).in(Scopes.SINGLETON);
+        binder.bind(BinaryCache.class).to(CoordinatorBinaryCache.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(CoordinatorBinaryCache.class).withGeneratedName();
+        binder.bind(CoordinatorConfigBundleCache.class).in(Scopes.SINGLETON);
+        binder.bind(ConfigBundleCache.class).to(CoordinatorConfigBundleCache.class).in(Scopes.SINGLETON);
+        MBeanModule.newExporter(binder).export(CoordinatorConfigBundleCache.class).withGeneratedName();
         binder.bind(BinaryResource.class).in(Scopes.SINGLETON);
 
         binder.bind(ServiceInventory.class).to(HttpServiceInventory.class).in(Scopes.SINGLETON);
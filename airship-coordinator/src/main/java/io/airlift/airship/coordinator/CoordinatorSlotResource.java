@@ -13,6 +13,7 @@
  */
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
@@ -37,15 +38,13 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.List;
-import java.util.UUID;
 
 import static com.google.common.collect.Lists.transform;
-import static io.airlift.airship.shared.AgentStatus.idGetter;
-import static io.airlift.airship.shared.SlotStatus.uuidGetter;
 import static io.airlift.airship.shared.SlotStatusRepresentation.fromSlotStatus;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENTS_VERSION_HEADER;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
 import static io.airlift.airship.shared.VersionsUtil.checkAgentsVersion;
+import static io.airlift.airship.shared.VersionsUtil.checkSlotsVersion;
 import static io.airlift.airship.shared.VersionsUtil.createSlotsVersion;
 
 @Path("/v1/slot")
@@ -55,30 +54,34 @@ public class CoordinatorSlotResource
 
     private final Coordinator coordinator;
     private final Repository repository;
+    private final JobManager jobManager;
 
     @Inject
-    public CoordinatorSlotResource(Coordinator coordinator, Repository repository)
+    public CoordinatorSlotResource(Coordinator coordinator, Repository repository, JobManager jobManager)
     {
         Preconditions.checkNotNull(coordinator, "coordinator must not be null");
         Preconditions.checkNotNull(repository, "repository is null");
+        Preconditions.checkNotNull(jobManager, "jobManager is null");
 
         this.coordinator = coordinator;
         this.repository = repository;
+        this.jobManager = jobManager;
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response getAllSlots(@Context UriInfo uriInfo)
     {
+        FleetSnapshot fleet = coordinator.getFleetSnapshot();
+
         // build filter
-        List<UUID> uuids = transform(coordinator.getAllSlotStatus(), uuidGetter());
-        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, false, uuids);
+        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, false, fleet.getSlotUuids());
 
         // select slots
-        List<SlotStatus> slots = coordinator.getAllSlotsStatus(slotFilter);
+        List<SlotStatus> slots = fleet.getSlots(slotFilter);
 
         // build response
-        return Response.ok(Iterables.transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(Iterables.transform(slots, fromSlotStatus(fleet.getSlotRepresentationFactory(repository))))
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(slots))
                 .build();
     }
@@ -88,31 +91,46 @@ public class CoordinatorSlotResource
     @Produces(MediaType.APPLICATION_JSON)
     public Response install(
             AssignmentRepresentation assignmentRepresentation,
-            @DefaultValue("1") @QueryParam("limit") int limit,
+            @DefaultValue("1") @QueryParam("limit") final int limit,
             @Context UriInfo uriInfo,
-            @HeaderParam(AIRSHIP_AGENTS_VERSION_HEADER) String expectedAgentsVersion)
+            @HeaderParam(AIRSHIP_AGENTS_VERSION_HEADER) String expectedAgentsVersion,
+            @QueryParam("async") boolean async)
     {
         Preconditions.checkNotNull(assignmentRepresentation, "assignmentRepresentation must not be null");
         Preconditions.checkArgument(limit > 0, "limit must be at least 1");
 
-        Assignment assignment = assignmentRepresentation.toAssignment();
+        final Assignment assignment = assignmentRepresentation.toAssignment();
 
         // select the target agents
-        Predicate<AgentStatus> agentFilter = AgentFilterBuilder.build(uriInfo,
-                transform(coordinator.getAgents(), idGetter()),
-                transform(coordinator.getAllSlotStatus(), uuidGetter()),
+        FleetSnapshot fleet = coordinator.getFleetSnapshot();
+        final Predicate<AgentStatus> agentFilter = AgentFilterBuilder.build(uriInfo,
+                fleet.getAgentIds(),
+                fleet.getSlotUuids(),
                 false,
                 repository);
-        List<AgentStatus> agents = coordinator.getAgents(agentFilter);
+        List<AgentStatus> agents = fleet.getAgents(agentFilter);
 
         // verify the expected status of agents
         checkAgentsVersion(expectedAgentsVersion, agents);
 
+        // run the install in the background when requested
+        if (async) {
+            Job job = jobManager.submit("install", new Function<SlotOperationListener, List<SlotStatus>>()
+            {
+                @Override
+                public List<SlotStatus> apply(SlotOperationListener listener)
+                {
+                    return coordinator.install(agentFilter, limit, assignment, listener);
+                }
+            });
+            return JobResource.jobAccepted(job, uriInfo, fleet, repository);
+        }
+
         // install the software
         List<SlotStatus> slots = coordinator.install(agentFilter, limit, assignment);
 
         // calculate unique prefix size with the new slots included
-        return Response.ok(transform(slots, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(transform(slots, fromSlotStatus(fleet.getSlotsWith(slots), repository)))
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(slots))
                 .build();
     }
@@ -120,17 +138,34 @@ public class CoordinatorSlotResource
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
     public Response terminateSlots(@Context UriInfo uriInfo,
-            @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) String expectedSlotsVersion)
+            @HeaderParam(AIRSHIP_SLOTS_VERSION_HEADER) final String expectedSlotsVersion,
+            @QueryParam("async") boolean async)
     {
         // build filter
-        List<UUID> uuids = transform(coordinator.getAllSlotStatus(), uuidGetter());
-        Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, uuids);
+        FleetSnapshot fleet = coordinator.getFleetSnapshot();
+        final Predicate<SlotStatus> slotFilter = SlotFilterBuilder.build(uriInfo, true, fleet.getSlotUuids());
+
+        // run the terminate in the background when requested
+        if (async) {
+            // reject a stale version before accepting the job, so the conflict is reported synchronously
+            checkSlotsVersion(expectedSlotsVersion, fleet.getSlots(slotFilter));
+
+            Job job = jobManager.submit("terminate", new Function<SlotOperationListener, List<SlotStatus>>()
+            {
+                @Override
+                public List<SlotStatus> apply(SlotOperationListener listener)
+                {
+                    return coordinator.terminate(slotFilter, expectedSlotsVersion, listener);
+                }
+            });
+            return JobResource.jobAccepted(job, uriInfo, fleet, repository);
+        }
 
         // terminate slots
         List<SlotStatus> result = coordinator.terminate(slotFilter, expectedSlotsVersion);
 
         // build response
-        return Response.ok(transform(result, fromSlotStatus(coordinator.getAllSlotStatus(), repository)))
+        return Response.ok(transform(result, fromSlotStatus(fleet.getSlotRepresentationFactory(repository))))
                 .header(AIRSHIP_SLOTS_VERSION_HEADER, createSlotsVersion(result))
                 .build();
     }
@@ -0,0 +1,59 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.BinaryCache.CachedBinary;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a region of a cached binary with {@link FileChannel#transferTo}, so the bytes are not copied
+ * through a heap buffer.  The binary is closed when the region has been written.
+ */
+class FileRegionStreamingOutput implements StreamingOutput
+{
+    private final CachedBinary binary;
+    private final long position;
+    private final long length;
+
+    public FileRegionStreamingOutput(CachedBinary binary, long position, long length)
+    {
+        this.binary = binary;
+        this.position = position;
+        this.length = length;
+    }
+
+    public void write(OutputStream output)
+            throws IOException, WebApplicationException
+    {
+        File file = binary.getFile();
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                WritableByteChannel target = Channels.newChannel(output);
+                long written = 0;
+                while (written < length) {
+                    long transferred = channel.transferTo(position + written, length - written, target);
+                    if (transferred <= 0) {
+                        throw new IOException("Unexpected end of file " + file);
+                    }
+                    written += transferred;
+                }
+                output.flush();
+            }
+            finally {
+                in.close();
+            }
+        }
+        finally {
+            binary.close();
+        }
+    }
+}
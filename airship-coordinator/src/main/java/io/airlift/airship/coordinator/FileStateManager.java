@@ -2,6 +2,9 @@ package io.airlift.airship.coordinator;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 import com.google.common.io.PatternFilenameFilter;
 import io.airlift.airship.shared.ExpectedSlotStatus;
@@ -9,20 +12,86 @@ import io.airlift.airship.shared.FileUtils;
 import com.proofpoint.json.JsonCodec;
 import com.proofpoint.log.Logger;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.zip.CRC32;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
 
+/**
+ * Keeps the expected state in memory and persists it to an append-only journal in the data directory.
+ * Reads never touch the disk.  Concurrent writers share a single fsync of the journal, and once the
+ * journal grows larger than the state itself, it is compacted into a snapshot.
+ * <p/>
+ * The snapshot and the journal start with the generation of the snapshot.  Each compaction writes the
+ * next generation, and a journal is only replayed on top of the snapshot of the same generation.
+ * <p/>
+ * Expected state written by earlier versions as one {@code <uuid>.json} file per slot is imported into
+ * the snapshot on startup.
+ * <p/>
+ * The data directory is locked while the state manager is open, so a second coordinator configured
+ * with the same directory fails on startup instead of corrupting the journal.  A write that can not
+ * be made durable fails, and the next write rewrites the whole state into a new snapshot.
+ */
 public class FileStateManager implements StateManager
 {
     private static final Logger log = Logger.get(FileStateManager.class);
+
+    private static final String SNAPSHOT_FILE = "expected-state.snapshot";
+    private static final String JOURNAL_FILE = "expected-state.journal";
+    static final String LOCK_FILE = "expected-state.lock";
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private static final int SNAPSHOT_MAGIC = 0x41535353;
+    private static final int JOURNAL_MAGIC = 0x4153534A;
+
+    // magic, generation
+    private static final int HEADER_SIZE = 4 + 8;
+
+    private static final byte SET_RECORD = 1;
+    private static final byte DELETE_RECORD = 2;
+
+    // data directories locked by this process, guarded by itself
+    private static final Set<File> lockedDataDirs = newHashSet();
+
     private final File dataDir;
     private final JsonCodec<ExpectedSlotStatus> codec;
+    private final FileLock dataDirLock;
+
+    private final Map<UUID, ExpectedSlotStatus> expectedStates = new LinkedHashMap<UUID, ExpectedSlotStatus>();
+    private List<ExpectedSlotStatus> allExpectedStates;
+    private long generation;
+
+    // journal writes are guarded by this, journal syncs and compactions by syncLock
+    private final Object syncLock = new Object();
+    private RandomAccessFile journalFile;
+    private DataOutputStream journal;
+    private long journalRecords;
+    private long writtenSequence;
+    private long syncedSequence;
+
+    // the journal may be missing writes, so the next sync must write a snapshot instead
+    private boolean journalFailed;
 
     @Inject
     public FileStateManager(LocalProvisionerConfig localProvisionerConfig, JsonCodec<ExpectedSlotStatus> codec)
@@ -31,6 +100,14 @@ public class FileStateManager implements StateManager
     }
 
     public FileStateManager(File dataDir, JsonCodec<ExpectedSlotStatus> codec)
+    {
+        this(dataDir, codec, true);
+    }
+
+    /**
+     * @param lockDataDir false if the caller already holds the data directory lock
+     */
+    FileStateManager(File dataDir, JsonCodec<ExpectedSlotStatus> codec, boolean lockDataDir)
     {
         Preconditions.checkNotNull(dataDir, "dataDir is null");
         Preconditions.checkNotNull(codec, "codec is null");
@@ -39,41 +116,478 @@ public class FileStateManager implements StateManager
 
         dataDir.mkdirs();
         Preconditions.checkArgument(dataDir.isDirectory(), "dataDir is not a directory");
+
+        dataDirLock = lockDataDir ? lockDataDir(dataDir) : null;
+        try {
+            List<File> legacyFiles = loadLegacyFiles();
+
+            File snapshotFile = new File(dataDir, SNAPSHOT_FILE);
+            if (snapshotFile.exists()) {
+                generation = readGeneration(snapshotFile, SNAPSHOT_MAGIC);
+                if (generation < 0) {
+                    throw new IOException("Expected state snapshot in " + dataDir + " is corrupted");
+                }
+                readRecords(snapshotFile);
+            }
+
+            // a journal of another generation was written before the last compaction finished, so its
+            // records are already in the snapshot
+            File journalFile = new File(dataDir, JOURNAL_FILE);
+            long journalGeneration = journalFile.exists() ? readGeneration(journalFile, JOURNAL_MAGIC) : -1;
+            if (journalGeneration == generation) {
+                journalRecords = readRecords(journalFile);
+            }
+            else {
+                if (journalGeneration >= 0) {
+                    log.info("Skipping expected state journal of generation %s, the snapshot is generation %s", journalGeneration, generation);
+                }
+                startJournal();
+            }
+            openJournal();
+
+            // fold the legacy files into the snapshot, so they can be removed
+            if (!legacyFiles.isEmpty()) {
+                compact();
+                for (File file : legacyFiles) {
+                    file.delete();
+                }
+            }
+        }
+        catch (IOException e) {
+            close();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Locks the expected state directory.
+     *
+     * @throws IllegalStateException if the directory is locked by another state manager
+     */
+    static FileLock lockDataDir(File dataDir)
+    {
+        // closing any channel of the lock file releases the locks of the whole process, so locks
+        // held by this process are tracked here instead of by trying to lock the file again
+        File lockedDir = dataDir.getAbsoluteFile();
+        synchronized (lockedDataDirs) {
+            if (!lockedDataDirs.add(lockedDir)) {
+                throw new IllegalStateException("Expected state directory " + dataDir + " is in use by another state manager");
+            }
+        }
+
+        RandomAccessFile lockFile = null;
+        try {
+            lockFile = new RandomAccessFile(new File(dataDir, LOCK_FILE), "rw");
+            FileLock lock = lockFile.getChannel().tryLock();
+            if (lock == null) {
+                throw new IllegalStateException("Expected state directory " + dataDir + " is in use by another process");
+            }
+            return lock;
+        }
+        catch (IOException e) {
+            releaseDataDir(lockedDir, lockFile);
+            throw Throwables.propagate(e);
+        }
+        catch (RuntimeException e) {
+            releaseDataDir(lockedDir, lockFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the lock taken by {@link #lockDataDir}.
+     */
+    static void unlockDataDir(File dataDir, FileLock lock)
+    {
+        // the lock is released only once, even if the state manager is closed again
+        if (lock != null && lock.channel().isOpen()) {
+            releaseDataDir(dataDir.getAbsoluteFile(), lock.channel());
+        }
+    }
+
+    private static void releaseDataDir(File lockedDir, Closeable lockFile)
+    {
+        // closing the lock file releases the lock
+        Closeables.closeQuietly(lockFile);
+        synchronized (lockedDataDirs) {
+            lockedDataDirs.remove(lockedDir);
+        }
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        synchronized (syncLock) {
+            synchronized (this) {
+                Closeables.closeQuietly(journal);
+                Closeables.closeQuietly(journalFile);
+                journal = null;
+                unlockDataDir(dataDir, dataDirLock);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Collection<ExpectedSlotStatus> getAllExpectedStates()
+    {
+        if (allExpectedStates == null) {
+            allExpectedStates = ImmutableList.copyOf(expectedStates.values());
+        }
+        return allExpectedStates;
+    }
+
+    @Override
+    public void deleteExpectedState(UUID slotId)
+    {
+        Preconditions.checkNotNull(slotId, "slotId is null");
+
+        long sequence;
+        synchronized (this) {
+            sequence = appendRecord(DELETE_RECORD, slotId.toString());
+            expectedStates.remove(slotId);
+            allExpectedStates = null;
+        }
+        sync(sequence);
+    }
+
+    @Override
+    public void setExpectedState(ExpectedSlotStatus slotStatus)
+    {
+        Preconditions.checkNotNull(slotStatus, "slotStatus is null");
+
+        long sequence;
+        synchronized (this) {
+            sequence = appendRecord(SET_RECORD, codec.toJson(slotStatus));
+            expectedStates.put(slotStatus.getId(), slotStatus);
+            allExpectedStates = null;
+        }
+        sync(sequence);
+    }
+
+    @Override
+    public void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+        if (slotIds.isEmpty()) {
+            return;
+        }
+
+        long sequence;
+        synchronized (this) {
+            List<String> values = newArrayList();
+            for (UUID slotId : slotIds) {
+                values.add(slotId.toString());
+            }
+            sequence = appendRecords(DELETE_RECORD, values);
+            for (UUID slotId : slotIds) {
+                expectedStates.remove(slotId);
+            }
+            allExpectedStates = null;
+        }
+        sync(sequence);
     }
 
     @Override
-    public Collection<ExpectedSlotStatus> getAllExpectedStates()
+    public void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses)
     {
-        List<ExpectedSlotStatus> slots = newArrayList();
-        for (File file : FileUtils.listFiles(dataDir, new PatternFilenameFilter("[^\\.].*\\.json"))) {
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+        if (slotStatuses.isEmpty()) {
+            return;
+        }
+
+        long sequence;
+        synchronized (this) {
+            List<String> values = newArrayList();
+            for (ExpectedSlotStatus slotStatus : slotStatuses) {
+                values.add(codec.toJson(slotStatus));
+            }
+            sequence = appendRecords(SET_RECORD, values);
+            for (ExpectedSlotStatus slotStatus : slotStatuses) {
+                expectedStates.put(slotStatus.getId(), slotStatus);
+            }
+            allExpectedStates = null;
+        }
+        sync(sequence);
+    }
+
+    private long appendRecord(byte type, String value)
+    {
+        return appendRecords(type, ImmutableList.of(value));
+    }
+
+    /**
+     * Appends the records to the journal as one write, which is committed by a single sync.  The
+     * caller applies the records to the in-memory state only after they were appended.
+     */
+    private synchronized long appendRecords(byte type, List<String> values)
+    {
+        if (!journalFailed) {
+            try {
+                for (String value : values) {
+                    writeRecord(journal, type, value);
+                    journalRecords++;
+                }
+            }
+            catch (IOException e) {
+                // a partial record may be buffered, so the journal can not be appended to anymore
+                journalFailed = true;
+                throw Throwables.propagate(e);
+            }
+        }
+        return ++writtenSequence;
+    }
+
+    /**
+     * Waits until the journal is synced up to the specified write.  The first waiting writer syncs
+     * every write made so far, so writers that arrive during a sync are committed by the next one.
+     * <p/>
+     * If the sync fails, every waiting writer fails, although its change stays in memory.  The next
+     * sync then writes the whole in-memory state to a new snapshot.
+     */
+    private void sync(long sequence)
+    {
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+
+            long sequenceToSync;
+            try {
+                synchronized (this) {
+                    sequenceToSync = writtenSequence;
+                    if (journalFailed) {
+                        compact();
+                        syncedSequence = sequenceToSync;
+                        return;
+                    }
+                    journal.flush();
+                }
+                journalFile.getFD().sync();
+            }
+            catch (IOException e) {
+                synchronized (this) {
+                    journalFailed = true;
+                }
+                throw Throwables.propagate(e);
+            }
+            syncedSequence = sequenceToSync;
+
+            synchronized (this) {
+                if (journalRecords > Math.max(MIN_COMPACTION_RECORDS, expectedStates.size())) {
+                    try {
+                        compact();
+                    }
+                    catch (IOException e) {
+                        // the writes are already durable in the journal
+                        log.error(e, "Error compacting expected slot status");
+                        journalFailed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the current state to a snapshot of the next generation and starts an empty journal of
+     * that generation.  After a crash between the two steps, the old journal is skipped on startup.
+     */
+    private void compact()
+            throws IOException
+    {
+        synchronized (syncLock) {
+            synchronized (this) {
+                File tempFile = new File(dataDir, SNAPSHOT_FILE + ".tmp");
+                FileOutputStream out = new FileOutputStream(tempFile);
+                try {
+                    DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(out));
+                    writeHeader(snapshot, SNAPSHOT_MAGIC, generation + 1);
+                    for (ExpectedSlotStatus expectedSlotStatus : expectedStates.values()) {
+                        writeRecord(snapshot, SET_RECORD, codec.toJson(expectedSlotStatus));
+                    }
+                    snapshot.flush();
+                    out.getFD().sync();
+                }
+                finally {
+                    out.close();
+                }
+                if (!tempFile.renameTo(new File(dataDir, SNAPSHOT_FILE))) {
+                    throw new IOException("Unable to replace expected state snapshot in " + dataDir);
+                }
+                generation++;
+
+                Closeables.closeQuietly(journal);
+                Closeables.closeQuietly(journalFile);
+                startJournal();
+                journalRecords = 0;
+                openJournal();
+                journalFailed = false;
+            }
+        }
+    }
+
+    /**
+     * Replaces the journal with an empty journal of the current generation.
+     */
+    private void startJournal()
+            throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(dataDir, JOURNAL_FILE)));
+        try {
+            writeHeader(out, JOURNAL_MAGIC, generation);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private void openJournal()
+            throws IOException
+    {
+        journalFile = new RandomAccessFile(new File(dataDir, JOURNAL_FILE), "rw");
+        journalFile.seek(journalFile.length());
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile.getFD())));
+    }
+
+    private List<File> loadLegacyFiles()
+    {
+        List<File> files = FileUtils.listFiles(dataDir, new PatternFilenameFilter("[^\\.].*\\.json"));
+        for (File file : files) {
             try {
                 String json = Files.toString(file, Charsets.UTF_8);
                 ExpectedSlotStatus expectedSlotStatus = codec.fromJson(json);
-                slots.add(expectedSlotStatus);
+                expectedStates.put(expectedSlotStatus.getId(), expectedSlotStatus);
             }
             catch (Exception e) {
                 // skip corrupted entries... these will be marked as unexpected
                 // and someone will resolve the conflict (and overwrite the corrupted record)
             }
         }
-        return slots;
+        return files;
     }
 
-    @Override
-    public void deleteExpectedState(UUID slotId)
+    /**
+     * @return the generation in the header of the file, or -1 if the header is missing or corrupted
+     */
+    private static long readGeneration(File file, int magic)
+            throws IOException
     {
-         new File(dataDir, slotId.toString() + ".json").delete();
+        if (file.length() < HEADER_SIZE) {
+            return -1;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            if (in.readInt() != magic) {
+                return -1;
+            }
+            return in.readLong();
+        }
+        finally {
+            in.close();
+        }
     }
 
-    @Override
-    public void setExpectedState(ExpectedSlotStatus slotStatus)
+    /**
+     * Applies the records after the header of the file to the in-memory state.  A torn record at the end of the file
+     * is left over from a crash during a write, and it is truncated.
+     *
+     * @return the number of records read
+     */
+    private long readRecords(File file)
+            throws IOException
     {
-        Preconditions.checkNotNull(slotStatus, "slotStatus is null");
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long records = 0;
+        long validLength = HEADER_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
         try {
-            Files.write(codec.toJson(slotStatus), new File(dataDir, slotStatus.getId().toString() + ".json"), Charsets.UTF_8);
+            in.readFully(new byte[HEADER_SIZE]);
+            while (true) {
+                byte type;
+                byte[] bytes;
+                try {
+                    type = in.readByte();
+                    int length = in.readInt();
+                    if (length < 0 || length > file.length()) {
+                        log.warn("Ignoring corrupted expected state record in %s", file);
+                        break;
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    if (checksum(type, bytes) != in.readLong()) {
+                        log.warn("Ignoring corrupted expected state record in %s", file);
+                        break;
+                    }
+                }
+                catch (EOFException e) {
+                    break;
+                }
+
+                applyRecord(type, new String(bytes, Charsets.UTF_8));
+                records++;
+                validLength += 1 + 4 + bytes.length + 8;
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        if (validLength < file.length()) {
+            RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+            try {
+                truncate.setLength(validLength);
+            }
+            finally {
+                truncate.close();
+            }
         }
-        catch (Exception e) {
-            log.error(e, "Error writing expected slot status");
+        return records;
+    }
+
+    private void applyRecord(byte type, String value)
+    {
+        switch (type) {
+            case SET_RECORD:
+                try {
+                    ExpectedSlotStatus expectedSlotStatus = codec.fromJson(value);
+                    expectedStates.put(expectedSlotStatus.getId(), expectedSlotStatus);
+                }
+                catch (Exception e) {
+                    // skip corrupted entries... these will be marked as unexpected
+                }
+                break;
+            case DELETE_RECORD:
+                expectedStates.remove(UUID.fromString(value));
+                break;
+            default:
+                log.warn("Ignoring unknown expected state record type %s", type);
         }
     }
+
+    private static void writeHeader(DataOutputStream out, int magic, long generation)
+            throws IOException
+    {
+        out.writeInt(magic);
+        out.writeLong(generation);
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, String value)
+            throws IOException
+    {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        out.writeByte(type);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeLong(checksum(type, bytes));
+    }
+
+    private static long checksum(byte type, byte[] bytes)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(bytes);
+        return crc.getValue();
+    }
 }
@@ -0,0 +1,238 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.AgentStatusRepresentation.AgentStatusRepresentationFactory;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.Repository;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.airship.shared.SlotStatusRepresentation.SlotStatusRepresentationFactory;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.google.common.collect.Iterables.filter;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.transform;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
+import static io.airlift.airship.shared.Strings.commonPrefixSegments;
+import static io.airlift.airship.shared.Strings.shortestUniquePrefix;
+
+/**
+ * Immutable view of the agents and the merged actual/expected slot state at one point in time.
+ * A request should take a single snapshot so filtering, listing and id prefix computation all
+ * see the same fleet.  The coordinator builds a new snapshot only when the fleet changes and
+ * shares it between requests, so the short id and location sizes are computed once per snapshot.
+ * <p/>
+ * The slots are also indexed by host, binary and config.  The index covers the merged slots,
+ * including expected slots that no agent reports, so it is built here rather than in the
+ * {@link SlotIndex} of the actual slots.
+ */
+public class FleetSnapshot
+{
+    private final long version;
+    private final List<AgentStatus> agents;
+    private final List<SlotStatus> slots;
+    private final int agentIdPrefixSize;
+    private final int agentLocationParts;
+    private final int slotIdPrefixSize;
+    private final int slotLocationParts;
+    private final Map<UUID, Integer> slotPositions;
+    private final SetMultimap<String, UUID> slotsByHost;
+    private final SetMultimap<String, UUID> slotsByBinary;
+    private final SetMultimap<String, UUID> slotsByConfig;
+
+    public FleetSnapshot(long version, List<AgentStatus> agents, List<SlotStatus> slots)
+    {
+        Preconditions.checkNotNull(agents, "agents is null");
+        Preconditions.checkNotNull(slots, "slots is null");
+
+        this.version = version;
+        this.agents = ImmutableList.copyOf(agents);
+        this.slots = ImmutableList.copyOf(slots);
+
+        agentIdPrefixSize = shortestUniquePrefix(transform(this.agents, AgentStatus.idGetter()), AgentStatusRepresentationFactory.MIN_PREFIX_SIZE);
+        agentLocationParts = commonPrefixSegments('/', transform(this.agents, AgentStatus.locationGetter()), AgentStatusRepresentationFactory.MIN_LOCATION_SEGMENTS);
+        slotIdPrefixSize = shortestUniquePrefix(transform(this.slots, SlotStatus.idGetter()), SlotStatusRepresentationFactory.MIN_PREFIX_SIZE);
+        slotLocationParts = commonPrefixSegments('/', transform(this.slots, SlotStatus.locationGetter()), SlotStatusRepresentationFactory.MIN_LOCATION_SEGMENTS);
+
+        Map<UUID, Integer> slotPositions = newHashMap();
+        SetMultimap<String, UUID> slotsByHost = HashMultimap.create();
+        SetMultimap<String, UUID> slotsByBinary = HashMultimap.create();
+        SetMultimap<String, UUID> slotsByConfig = HashMultimap.create();
+        for (int position = 0; position < this.slots.size(); position++) {
+            SlotStatus slotStatus = this.slots.get(position);
+            UUID slotId = slotStatus.getId();
+            slotPositions.put(slotId, position);
+            // a slot matches a host filter on either of its URIs
+            for (URI uri : newArrayList(slotStatus.getExternalUri(), slotStatus.getSelf())) {
+                if (uri != null && uri.getHost() != null) {
+                    slotsByHost.put(uri.getHost(), slotId);
+                }
+            }
+            Assignment assignment = slotStatus.getAssignment();
+            if (assignment != null) {
+                if (assignment.getBinary() != null) {
+                    slotsByBinary.put(assignment.getBinary(), slotId);
+                }
+                if (assignment.getConfig() != null) {
+                    slotsByConfig.put(assignment.getConfig(), slotId);
+                }
+            }
+        }
+        this.slotPositions = ImmutableMap.copyOf(slotPositions);
+        this.slotsByHost = ImmutableSetMultimap.copyOf(slotsByHost);
+        this.slotsByBinary = ImmutableSetMultimap.copyOf(slotsByBinary);
+        this.slotsByConfig = ImmutableSetMultimap.copyOf(slotsByConfig);
+    }
+
+    /**
+     * Gets the version of this snapshot.  A newer snapshot has a higher version.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public List<AgentStatus> getAgents()
+    {
+        return agents;
+    }
+
+    public List<AgentStatus> getAgents(Predicate<AgentStatus> agentFilter)
+    {
+        return ImmutableList.copyOf(filter(agents, agentFilter));
+    }
+
+    public List<String> getAgentIds()
+    {
+        return transform(agents, AgentStatus.idGetter());
+    }
+
+    public List<SlotStatus> getSlots()
+    {
+        return slots;
+    }
+
+    public List<SlotStatus> getSlots(Predicate<SlotStatus> slotFilter)
+    {
+        if (slotFilter instanceof IndexedSlotFilter) {
+            return ((IndexedSlotFilter) slotFilter).select(this);
+        }
+        return ImmutableList.copyOf(filter(slots, slotFilter));
+    }
+
+    /**
+     * Gets the given slots of this snapshot that match the filter, in snapshot order.  Ids of slots
+     * that are not part of this snapshot are ignored.
+     */
+    public List<SlotStatus> getSlots(Collection<UUID> slotIds, Predicate<SlotStatus> slotFilter)
+    {
+        List<Integer> positions = newArrayList();
+        for (UUID slotId : slotIds) {
+            Integer position = slotPositions.get(slotId);
+            if (position != null) {
+                positions.add(position);
+            }
+        }
+        Collections.sort(positions);
+
+        ImmutableList.Builder<SlotStatus> builder = ImmutableList.builder();
+        for (Integer position : positions) {
+            SlotStatus slotStatus = slots.get(position);
+            if (slotFilter.apply(slotStatus)) {
+                builder.add(slotStatus);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the ids of the slots with an external or internal URI host that matches the filter.  The
+     * filter is applied once per distinct host.
+     */
+    public Set<UUID> getSlotIdsByHost(Predicate<String> hostFilter)
+    {
+        return getSlotIds(slotsByHost, hostFilter);
+    }
+
+    /**
+     * Gets the ids of the slots assigned a binary that matches the filter.  The filter is applied
+     * once per distinct binary.
+     */
+    public Set<UUID> getSlotIdsByBinary(Predicate<String> binaryFilter)
+    {
+        return getSlotIds(slotsByBinary, binaryFilter);
+    }
+
+    /**
+     * Gets the ids of the slots assigned a config that matches the filter.  The filter is applied
+     * once per distinct config.
+     */
+    public Set<UUID> getSlotIdsByConfig(Predicate<String> configFilter)
+    {
+        return getSlotIds(slotsByConfig, configFilter);
+    }
+
+    private static Set<UUID> getSlotIds(SetMultimap<String, UUID> index, Predicate<String> keyFilter)
+    {
+        Set<UUID> slotIds = newHashSet();
+        for (Entry<String, Collection<UUID>> entry : index.asMap().entrySet()) {
+            if (keyFilter.apply(entry.getKey())) {
+                slotIds.addAll(entry.getValue());
+            }
+        }
+        return slotIds;
+    }
+
+    public List<UUID> getSlotUuids()
+    {
+        return transform(slots, SlotStatus.uuidGetter());
+    }
+
+    /**
+     * Creates agent representations with short ids and locations computed over all agents of this snapshot.
+     */
+    public AgentStatusRepresentationFactory getAgentRepresentationFactory(Repository repository)
+    {
+        return new AgentStatusRepresentationFactory(agentIdPrefixSize, agentLocationParts, repository);
+    }
+
+    /**
+     * Creates slot representations with short ids and locations computed over all slots of this snapshot.
+     */
+    public SlotStatusRepresentationFactory getSlotRepresentationFactory(Repository repository)
+    {
+        return new SlotStatusRepresentationFactory(slotIdPrefixSize, slotLocationParts, repository);
+    }
+
+    /**
+     * Gets the slots of this snapshot, followed by the given slots that are not part of it, such as
+     * slots installed after the snapshot was taken.  Short slot ids computed from this list are unique
+     * among both.
+     */
+    public List<SlotStatus> getSlotsWith(List<SlotStatus> changedSlots)
+    {
+        Set<UUID> slotIds = newHashSet(getSlotUuids());
+        ImmutableList.Builder<SlotStatus> builder = ImmutableList.<SlotStatus>builder().addAll(slots);
+        for (SlotStatus slotStatus : changedSlots) {
+            if (slotIds.add(slotStatus.getId())) {
+                builder.add(slotStatus);
+            }
+        }
+        return builder.build();
+    }
+}
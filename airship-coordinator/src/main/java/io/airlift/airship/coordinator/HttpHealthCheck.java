@@ -0,0 +1,108 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.primitives.Ints;
+import com.proofpoint.discovery.client.ServiceDescriptor;
+import com.proofpoint.units.Duration;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
+
+/**
+ * Checks the health of a slot by fetching a path from the HTTP services the slot announces in the
+ * service inventory.  A service is healthy when the path answers with a 2xx status within the timeout.
+ */
+public class HttpHealthCheck
+{
+    private static final List<String> HTTP_PROPERTIES = ImmutableList.of("http", "https");
+
+    private final String path;
+    private final int timeoutMillis;
+
+    public HttpHealthCheck(String path, Duration timeout)
+    {
+        Preconditions.checkNotNull(path, "path is null");
+        Preconditions.checkNotNull(timeout, "timeout is null");
+
+        this.path = path;
+        this.timeoutMillis = Ints.checkedCast((long) timeout.toMillis());
+    }
+
+    /**
+     * Checks every HTTP service the slot announces.  A slot that announces no HTTP service can not
+     * pass the check, so it is not healthy.
+     */
+    public boolean isHealthy(UUID slotId, List<ServiceDescriptor> serviceInventory)
+    {
+        List<URI> serviceUris = getHttpServiceUris(slotId, serviceInventory);
+        if (serviceUris.isEmpty()) {
+            return false;
+        }
+        for (URI serviceUri : serviceUris) {
+            if (!isHealthy(serviceUri)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isHealthy(URI serviceUri)
+    {
+        InputStream in = null;
+        try {
+            URI uri = uriBuilderFrom(serviceUri).replacePath(path).build();
+            HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                Closeables.closeQuietly(connection.getErrorStream());
+                return false;
+            }
+
+            // drain the response so the connection can be reused
+            in = connection.getInputStream();
+            ByteStreams.toByteArray(in);
+            return true;
+        }
+        catch (Exception ignored) {
+            return false;
+        }
+        finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    private static List<URI> getHttpServiceUris(UUID slotId, List<ServiceDescriptor> serviceInventory)
+    {
+        // the service inventory uses the slot id as the node id of the services of the slot
+        String nodeId = slotId.toString();
+        ImmutableList.Builder<URI> serviceUris = ImmutableList.builder();
+        for (ServiceDescriptor descriptor : serviceInventory) {
+            if (!nodeId.equals(descriptor.getNodeId())) {
+                continue;
+            }
+            for (String property : HTTP_PROPERTIES) {
+                String value = descriptor.getProperties().get(property);
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    serviceUris.add(URI.create(value));
+                }
+                catch (IllegalArgumentException ignored) {
+                    // not a URI, so it can not be checked
+                }
+            }
+        }
+        return serviceUris.build();
+    }
+}
@@ -1,6 +1,7 @@
 package io.airlift.airship.coordinator;
 
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -17,23 +18,32 @@ import io.airlift.airship.shared.SlotStatusRepresentation;
 import com.proofpoint.http.client.HttpClient;
 import com.proofpoint.http.client.Request;
 import com.proofpoint.http.client.RequestBuilder;
+import com.proofpoint.http.client.Response;
+import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.StatusResponseHandler.StatusResponse;
 import com.proofpoint.json.JsonCodec;
 import com.proofpoint.log.Logger;
+import com.proofpoint.units.Duration;
 
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response.Status;
 import java.net.URI;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
 import static io.airlift.airship.shared.AgentLifecycleState.OFFLINE;
 import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
 import static io.airlift.airship.shared.AgentLifecycleState.PROVISIONING;
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_AGENT_VERSION_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_MAX_WAIT_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER;
 import static com.proofpoint.http.client.JsonBodyGenerator.jsonBodyGenerator;
 import static com.proofpoint.http.client.JsonResponseHandler.createJsonResponseHandler;
 import static com.proofpoint.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static java.lang.String.format;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 
 public class HttpRemoteAgent implements RemoteAgent
@@ -45,15 +55,27 @@ public class HttpRemoteAgent implements RemoteAgent
     private final JsonCodec<SlotStatusRepresentation> slotStatusCodec;
     private final JsonCodec<ServiceDescriptorsRepresentation> serviceDescriptorsCodec;
 
-    private AgentStatus agentStatus;
-    private String environment;
+    // written while holding this, so the status, its version and the change count move together; status() reads without the lock
+    private volatile AgentStatus agentStatus;
+    // version of the last full status returned by the agent; cleared whenever the local copy is modified
+    private String agentStatusVersion;
+    // number of local changes, including service inventory puts, so a status requested before a local change is not applied over it
+    private long localChanges;
+    private final String environment;
     private final HttpClient httpClient;
+    private final HttpClient statusHttpClient;
+    private final HttpClient watchHttpClient;
 
     private final AtomicBoolean serviceInventoryUp = new AtomicBoolean(true);
+    // version of the service inventory the agent reported in its last answer; an agent that restarted reports none
+    // written while holding this, so a report requested before a put finished does not replace the version of the put
+    private volatile String serviceInventoryVersion;
 
     public HttpRemoteAgent(AgentStatus agentStatus,
             String environment,
             HttpClient httpClient,
+            HttpClient statusHttpClient,
+            HttpClient watchHttpClient,
             JsonCodec<InstallationRepresentation> installationCodec,
             JsonCodec<AgentStatusRepresentation> agentStatusCodec,
             JsonCodec<SlotStatusRepresentation> slotStatusCodec,
@@ -62,10 +84,14 @@ public class HttpRemoteAgent implements RemoteAgent
         Preconditions.checkNotNull(agentStatus, "agentStatus is null");
         Preconditions.checkNotNull(environment, "environment is null");
         Preconditions.checkNotNull(httpClient, "httpClient is null");
+        Preconditions.checkNotNull(statusHttpClient, "statusHttpClient is null");
+        Preconditions.checkNotNull(watchHttpClient, "watchHttpClient is null");
 
         this.agentStatus = agentStatus;
         this.environment = environment;
         this.httpClient = httpClient;
+        this.statusHttpClient = statusHttpClient;
+        this.watchHttpClient = watchHttpClient;
         this.installationCodec = installationCodec;
         this.agentStatusCodec = agentStatusCodec;
         this.slotStatusCodec = slotStatusCodec;
@@ -79,9 +105,15 @@ public class HttpRemoteAgent implements RemoteAgent
     }
 
     @Override
-    public void setInternalUri(URI internalUri)
+    public synchronized void setInternalUri(URI internalUri)
     {
-        agentStatus = agentStatus.changeInternalUri(internalUri);
+        // keep the status object when nothing changed, so the coordinator does not re-index the agent
+        if (!Objects.equal(agentStatus.getInternalUri(), internalUri)) {
+            agentStatusVersion = null;
+            serviceInventoryVersion = null;
+            localChanges++;
+            agentStatus = agentStatus.changeInternalUri(internalUri);
+        }
     }
 
     @Override
@@ -98,24 +130,35 @@ public class HttpRemoteAgent implements RemoteAgent
     }
 
     @Override
-    public void setServiceInventory(List<ServiceDescriptor> serviceInventory)
+    public void setServiceInventory(List<ServiceDescriptor> serviceInventory, String serviceInventoryVersion)
     {
         if (agentStatus.getState() == ONLINE) {
             Preconditions.checkNotNull(serviceInventory, "serviceInventory is null");
+            Preconditions.checkNotNull(serviceInventoryVersion, "serviceInventoryVersion is null");
+            if (serviceInventoryVersion.equals(this.serviceInventoryVersion)) {
+                return;
+            }
+
             URI internalUri = agentStatus.getInternalUri();
             try {
                 Request request = RequestBuilder.preparePut()
                         .setUri(uriBuilderFrom(internalUri).appendPath("/v1/serviceInventory").build())
                         .setHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .setHeader(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER, serviceInventoryVersion)
                         .setBodyGenerator(jsonBodyGenerator(serviceDescriptorsCodec, new ServiceDescriptorsRepresentation(environment, serviceInventory)))
                         .build();
-                httpClient.execute(request, createStatusResponseHandler());
+                StatusResponse response = statusHttpClient.execute(request, createStatusResponseHandler());
+                if (response.getStatusCode() / 100 != 2) {
+                    throw new RuntimeException(format("Unexpected response %s %s", response.getStatusCode(), response.getStatusMessage()));
+                }
+                putServiceInventoryVersion(serviceInventoryVersion);
 
                 if (serviceInventoryUp.compareAndSet(false, true)) {
                     log.info("Service inventory put succeeded for agent at %s", internalUri);
                 }
             }
             catch (Exception e) {
+                putServiceInventoryVersion(null);
                 if (serviceInventoryUp.compareAndSet(true, false) && !log.isDebugEnabled()) {
                     log.error("Unable to post service inventory to agent at %s: %s", internalUri, e.getMessage());
                 }
@@ -127,14 +170,32 @@ public class HttpRemoteAgent implements RemoteAgent
     @Override
     public void updateStatus()
     {
+        AgentStatus agentStatus;
+        String knownVersion;
+        long knownChanges;
+        synchronized (this) {
+            agentStatus = this.agentStatus;
+            knownVersion = agentStatusVersion;
+            knownChanges = localChanges;
+        }
+
         URI internalUri = agentStatus.getInternalUri();
         if (internalUri != null) {
             try {
-                Request request = RequestBuilder.prepareGet()
-                        .setUri(uriBuilderFrom(internalUri).replacePath("/v1/agent/").build())
-                        .build();
-                AgentStatusRepresentation agentStatusRepresentation = httpClient.execute(request, createJsonResponseHandler(agentStatusCodec));
-                agentStatus = agentStatusRepresentation.toAgentStatus(agentStatus.getInstanceId(), agentStatus.getInstanceType());
+                RequestBuilder requestBuilder = RequestBuilder.prepareGet()
+                        .setUri(uriBuilderFrom(internalUri).replacePath("/v1/agent/").build());
+
+                // only ask for changes if the cached status is exactly what the agent last reported
+                if (knownVersion != null && agentStatus.getState() == ONLINE) {
+                    requestBuilder.setHeader(IF_NONE_MATCH, new EntityTag(knownVersion).toString());
+                }
+
+                AgentStatusResponse response = statusHttpClient.execute(requestBuilder.build(), new AgentStatusResponseHandler(createJsonResponseHandler(agentStatusCodec)));
+                applyServiceInventoryVersion(response.getServiceInventoryVersion(), knownChanges);
+                AgentStatusRepresentation agentStatusRepresentation = response.getAgentStatus();
+                if (agentStatusRepresentation != null) {
+                    applyStatus(agentStatusRepresentation, knownChanges);
+                }
                 return;
             }
             catch (Exception ignored) {
@@ -142,21 +203,110 @@ public class HttpRemoteAgent implements RemoteAgent
         }
 
         // error talking to agent -- mark agent offline
-        if (agentStatus.getState() != PROVISIONING) {
-            agentStatus = agentStatus.changeState(OFFLINE);
-            agentStatus = agentStatus.changeAllSlotsState(SlotLifecycleState.UNKNOWN);
+        synchronized (this) {
+            if (this.agentStatus.getState() != PROVISIONING) {
+                agentStatusVersion = null;
+                serviceInventoryVersion = null;
+                if (this.agentStatus.getState() != OFFLINE) {
+                    this.agentStatus = this.agentStatus.changeState(OFFLINE).changeAllSlotsState(SlotLifecycleState.UNKNOWN);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean watchStatus(Duration maxWait)
+    {
+        Preconditions.checkNotNull(maxWait, "maxWait is null");
+
+        AgentStatus agentStatus;
+        String knownVersion;
+        long knownChanges;
+        synchronized (this) {
+            agentStatus = this.agentStatus;
+            knownVersion = agentStatusVersion;
+            knownChanges = localChanges;
+        }
+
+        URI internalUri = agentStatus.getInternalUri();
+        if (internalUri == null || knownVersion == null || agentStatus.getState() != ONLINE) {
+            return false;
+        }
+
+        try {
+            Request request = RequestBuilder.prepareGet()
+                    .setUri(uriBuilderFrom(internalUri).replacePath("/v1/agent/").build())
+                    .setHeader(IF_NONE_MATCH, new EntityTag(knownVersion).toString())
+                    .setHeader(AIRSHIP_MAX_WAIT_HEADER, maxWait.toString())
+                    .build();
+            AgentStatusResponse response = watchHttpClient.execute(request, new AgentStatusResponseHandler(createJsonResponseHandler(agentStatusCodec)));
+            applyServiceInventoryVersion(response.getServiceInventoryVersion(), knownChanges);
+            AgentStatusRepresentation agentStatusRepresentation = response.getAgentStatus();
+            if (agentStatusRepresentation == null) {
+                // nothing changed within maxWait
+                return true;
+            }
+            if (knownVersion.equals(agentStatusRepresentation.getVersion())) {
+                // agent answered immediately with the same status, so it does not support long polling
+                return false;
+            }
+
+            applyStatus(agentStatusRepresentation, knownChanges);
+            return true;
+        }
+        catch (Exception e) {
+            synchronized (this) {
+                serviceInventoryVersion = null;
+            }
+            log.debug(e, "Unable to watch status of agent at %s: %s", internalUri, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the status with one the agent reported, unless the status was changed locally since the
+     * request was sent.  A skipped status is not lost: its version is not recorded, so the next poll fetches it again.
+     */
+    private synchronized void applyStatus(AgentStatusRepresentation agentStatusRepresentation, long knownChanges)
+    {
+        if (localChanges != knownChanges) {
+            return;
         }
+        agentStatus = agentStatusRepresentation.toAgentStatus(agentStatus.getInstanceId(), agentStatus.getInstanceType());
+        agentStatusVersion = agentStatusRepresentation.getVersion();
+    }
+
+    /**
+     * Records the service inventory version the agent reported, unless a service inventory put finished since the
+     * request was sent, because the report may predate the put.
+     */
+    private synchronized void applyServiceInventoryVersion(String serviceInventoryVersion, long knownChanges)
+    {
+        if (localChanges != knownChanges) {
+            return;
+        }
+        this.serviceInventoryVersion = serviceInventoryVersion;
+    }
+
+    private synchronized void putServiceInventoryVersion(String serviceInventoryVersion)
+    {
+        this.serviceInventoryVersion = serviceInventoryVersion;
+        localChanges++;
     }
 
-    public void setStatus(AgentStatus agentStatus)
+    public synchronized void setStatus(AgentStatus agentStatus)
     {
         Preconditions.checkNotNull(agentStatus, "agentStatus is null");
+        this.agentStatusVersion = null;
         this.agentStatus = agentStatus;
+        localChanges++;
     }
 
-    public void setSlotStatus(SlotStatus slotStatus)
+    public synchronized void setSlotStatus(SlotStatus slotStatus)
     {
+        agentStatusVersion = null;
         agentStatus = agentStatus.changeSlotStatus(slotStatus);
+        localChanges++;
     }
 
     @Override
@@ -175,7 +325,7 @@ public class HttpRemoteAgent implements RemoteAgent
             SlotStatusRepresentation slotStatusRepresentation = httpClient.execute(request, createJsonResponseHandler(slotStatusCodec, Status.CREATED.getStatusCode()));
 
             SlotStatus slotStatus = slotStatusRepresentation.toSlotStatus(agentStatus.getInstanceId());
-            agentStatus = agentStatus.changeSlotStatus(slotStatus);
+            setSlotStatus(slotStatus);
 
             return slotStatus;
         }
@@ -183,5 +333,62 @@ public class HttpRemoteAgent implements RemoteAgent
             throw Throwables.propagate(e);
         }
     }
-}
 
+    private static class AgentStatusResponse
+    {
+        private final AgentStatusRepresentation agentStatus;
+        private final String serviceInventoryVersion;
+
+        private AgentStatusResponse(AgentStatusRepresentation agentStatus, String serviceInventoryVersion)
+        {
+            this.agentStatus = agentStatus;
+            this.serviceInventoryVersion = serviceInventoryVersion;
+        }
+
+        /**
+         * @return the status, or null if the agent answered 304 Not Modified
+         */
+        public AgentStatusRepresentation getAgentStatus()
+        {
+            return agentStatus;
+        }
+
+        /**
+         * @return the version of the service inventory the agent has, or null if it has none or does not report it
+         */
+        public String getServiceInventoryVersion()
+        {
+            return serviceInventoryVersion;
+        }
+    }
+
+    /**
+     * Reads the status and service inventory version from an agent status response, delegating the body to the wrapped handler.
+     */
+    private static class AgentStatusResponseHandler
+            implements ResponseHandler<AgentStatusResponse, RuntimeException>
+    {
+        private final ResponseHandler<AgentStatusRepresentation, RuntimeException> delegate;
+
+        private AgentStatusResponseHandler(ResponseHandler<AgentStatusRepresentation, RuntimeException> delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public RuntimeException handleException(Request request, Exception exception)
+        {
+            return delegate.handleException(request, exception);
+        }
+
+        @Override
+        public AgentStatusResponse handle(Request request, Response response)
+        {
+            String serviceInventoryVersion = response.getHeader(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER);
+            if (response.getStatusCode() == Status.NOT_MODIFIED.getStatusCode()) {
+                return new AgentStatusResponse(null, serviceInventoryVersion);
+            }
+            return new AgentStatusResponse(delegate.handle(request, response), serviceInventoryVersion);
+        }
+    }
+}
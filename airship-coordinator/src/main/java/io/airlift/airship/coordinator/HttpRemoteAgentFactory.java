@@ -12,13 +12,19 @@ import io.airlift.airship.shared.SlotStatus;
 import io.airlift.airship.shared.SlotStatusRepresentation;
 import com.proofpoint.http.client.ApacheHttpClient;
 import com.proofpoint.http.client.HttpClient;
+import com.proofpoint.http.client.HttpClientConfig;
 import com.proofpoint.json.JsonCodec;
 import com.proofpoint.node.NodeInfo;
+import com.proofpoint.units.Duration;
+
+import java.util.concurrent.TimeUnit;
 
 public class HttpRemoteAgentFactory implements RemoteAgentFactory
 {
     private final String environment;
     private final HttpClient httpClient;
+    private final HttpClient statusHttpClient;
+    private final HttpClient watchHttpClient;
     private final JsonCodec<InstallationRepresentation> installationCodec;
     private final JsonCodec<AgentStatusRepresentation> agentStatusCodec;
     private final JsonCodec<SlotStatusRepresentation> slotStatusCodec;
@@ -26,6 +32,7 @@ public class HttpRemoteAgentFactory implements RemoteAgentFactory
 
     @Inject
     public HttpRemoteAgentFactory(NodeInfo nodeInfo,
+            CoordinatorConfig config,
             JsonCodec<InstallationRepresentation> installationCodec,
             JsonCodec<SlotStatusRepresentation> slotStatusCodec,
             JsonCodec<AgentStatusRepresentation> agentStatusCodec,
@@ -34,6 +41,17 @@ public class HttpRemoteAgentFactory implements RemoteAgentFactory
         environment = nodeInfo.getEnvironment();
         this.agentStatusCodec = agentStatusCodec;
         this.httpClient = new ApacheHttpClient();
+
+        // status polls must not hold up the monitor cycle, so they use a client bounded by the per-agent deadline
+        this.statusHttpClient = new ApacheHttpClient(new HttpClientConfig()
+                .setConnectTimeout(config.getAgentUpdateTimeout())
+                .setReadTimeout(config.getAgentUpdateTimeout()));
+
+        // watches are long polls, so the agent may legitimately hold the response for the full max wait
+        Duration watchTimeout = new Duration(config.getAgentWatchMaxWait().toMillis() + config.getAgentUpdateTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        this.watchHttpClient = new ApacheHttpClient(new HttpClientConfig()
+                .setConnectTimeout(config.getAgentUpdateTimeout())
+                .setReadTimeout(watchTimeout));
         this.installationCodec = installationCodec;
         this.slotStatusCodec = slotStatusCodec;
         this.serviceDescriptorsCodec = serviceDescriptorsCodec;
@@ -52,6 +70,6 @@ public class HttpRemoteAgentFactory implements RemoteAgentFactory
                 ImmutableList.<SlotStatus>of(),
                 ImmutableMap.<String, Integer>of());
 
-        return new HttpRemoteAgent(agentStatus, environment, httpClient, installationCodec, agentStatusCodec, slotStatusCodec, serviceDescriptorsCodec);
+        return new HttpRemoteAgent(agentStatus, environment, httpClient, statusHttpClient, watchHttpClient, installationCodec, agentStatusCodec, slotStatusCodec, serviceDescriptorsCodec);
     }
 }
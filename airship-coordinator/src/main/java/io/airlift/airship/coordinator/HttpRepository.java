@@ -2,23 +2,21 @@ package io.airlift.airship.coordinator;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.io.ByteProcessor;
-import com.google.common.io.ByteStreams;
-import com.google.common.io.InputSupplier;
-import com.google.common.io.Resources;
 import io.airlift.airship.shared.Repository;
+import io.airlift.airship.shared.ResolutionCache;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.MavenCoordinates.DEFAULT_BINARY_PACKAGING;
@@ -30,9 +28,16 @@ public class HttpRepository implements Repository
     private final Pattern configShortNamePattern;
     private final Pattern configVersionPattern;
     private final Pattern binaryVersionPattern;
+    private final ResolutionCache resolutionCache;
+    private final ArtifactProbe artifactProbe;
 
-    @Inject
     public HttpRepository(CoordinatorConfig config)
+    {
+        this(config, ResolutionCache.disabled(), new ArtifactProbe(config));
+    }
+
+    @Inject
+    public HttpRepository(CoordinatorConfig config, ResolutionCache resolutionCache, ArtifactProbe artifactProbe)
     {
         this(
                 Lists.transform(config.getRepositories(), new Function<String, URI>()
@@ -45,14 +50,25 @@ public class HttpRepository implements Repository
                 }),
                 config.getHttpShortNamePattern(),
                 config.getHttpRepoConfigVersionPattern(),
-                config.getHttpRepoBinaryVersionPattern());
+                config.getHttpRepoBinaryVersionPattern(),
+                resolutionCache,
+                artifactProbe);
     }
 
     public HttpRepository(Iterable<URI> baseUris, String configShortNamePattern, String configVersionPattern, String binaryVersionPattern)
+    {
+        this(baseUris, configShortNamePattern, configVersionPattern, binaryVersionPattern, ResolutionCache.disabled(), new ArtifactProbe());
+    }
+
+    public HttpRepository(Iterable<URI> baseUris, String configShortNamePattern, String configVersionPattern, String binaryVersionPattern, ResolutionCache resolutionCache, ArtifactProbe artifactProbe)
     {
         Preconditions.checkNotNull(baseUris, "baseUris is null");
+        Preconditions.checkNotNull(resolutionCache, "resolutionCache is null");
+        Preconditions.checkNotNull(artifactProbe, "artifactProbe is null");
 
         this.baseUris = ImmutableList.copyOf(baseUris);
+        this.resolutionCache = resolutionCache;
+        this.artifactProbe = artifactProbe;
 
         if (configShortNamePattern != null) {
             this.configShortNamePattern = Pattern.compile(configShortNamePattern);
@@ -243,45 +259,63 @@ public class HttpRepository implements Repository
         return path1NoVersion.equals(path2NoVersion);
     }
 
-    private URI toHttpUri(String path, String defaultExtension)
+    private URI toHttpUri(final String path, final String defaultExtension)
+    {
+        // an http spec is a fixed location, so a redeployed snapshot does not change where it resolves to
+        return resolutionCache.get("http-uri:" + defaultExtension + ":" + path, null, new Supplier<URI>()
+        {
+            @Override
+            public URI get()
+            {
+                return toHttpUriUncached(path, defaultExtension);
+            }
+        });
+    }
+
+    private URI toHttpUriUncached(String path, String defaultExtension)
     {
         try {
             URI uri = URI.create(path);
             if (uri.isAbsolute()) {
-                if (isValidLocation(uri)) {
-                    return uri;
+                List<URI> candidates = ImmutableList.of(uri, uri.resolve("." + defaultExtension));
+                List<Boolean> exists = artifactProbe.exists(candidates);
+                if (exists.get(0)) {
+                    return candidates.get(0);
+                }
+                else if (exists.get(1)) {
+                    return candidates.get(1);
                 }
                 else {
-                    uri = uri.resolve("." + defaultExtension);
-                    if (isValidLocation(uri)) {
-                        return uri;
-                    }
-                    else {
-                        return null;
-                    }
+                    return null;
                 }
             }
         }
         catch (Exception ignored) {
         }
 
-        Set<URI> uris = newHashSet();
+        // probe the path, with and without the default extension, in all repositories at once
+        List<URI> candidates = newArrayList();
         for (URI baseUri : baseUris) {
             try {
                 URI uri = uriBuilderFrom(baseUri).appendPath(path).build();
-                if (isValidLocation(uri)) {
-                    uris.add(uri);
-                }
-                else {
-                    uri = uri.resolve("." + defaultExtension);
-                    if (isValidLocation(uri)) {
-                        uris.add(uri);
-                    }
-                }
+                URI uriWithExtension = uri.resolve("." + defaultExtension);
+                candidates.add(uri);
+                candidates.add(uriWithExtension);
             }
             catch (Exception ignored) {
             }
         }
+        List<Boolean> exists = artifactProbe.exists(candidates);
+
+        Set<URI> uris = newHashSet();
+        for (int i = 0; i < candidates.size(); i += 2) {
+            if (exists.get(i)) {
+                uris.add(candidates.get(i));
+            }
+            else if (exists.get(i + 1)) {
+                uris.add(candidates.get(i + 1));
+            }
+        }
 
         if (uris.size() > 1) {
             throw new RuntimeException("Ambiguous spec " + path + "  matched " + uris);
@@ -294,33 +328,6 @@ public class HttpRepository implements Repository
         return uris.iterator().next();
     }
 
-    private boolean isValidLocation(URI uri)
-    {
-        try {
-            InputSupplier<InputStream> inputSupplier = Resources.newInputStreamSupplier(uri.toURL());
-            ByteStreams.readBytes(inputSupplier, new ByteProcessor<Void>()
-            {
-                private int count;
-
-                public boolean processBytes(byte[] buffer, int offset, int length)
-                {
-                    count += length;
-                    // make sure we got at least 10 bytes
-                    return count < 10;
-                }
-
-                public Void getResult()
-                {
-                    return null;
-                }
-            });
-            return true;
-        }
-        catch (Exception ignored) {
-        }
-        return false;
-    }
-
     public static String upgradePath(String spec, String version, Pattern versionPattern)
     {
         Matcher matcher = versionPattern.matcher(spec);
@@ -14,7 +14,10 @@
 package io.airlift.airship.coordinator;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.CharStreams;
@@ -24,6 +27,7 @@ import com.google.inject.Inject;
 import com.proofpoint.discovery.client.ServiceDescriptor;
 import com.proofpoint.discovery.client.ServiceState;
 import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.ConfigBundleCache;
 import io.airlift.airship.shared.DigestUtils;
 import io.airlift.airship.shared.Repository;
 import io.airlift.airship.shared.ConfigUtils;
@@ -32,6 +36,7 @@ import io.airlift.airship.shared.SlotStatus;
 import com.proofpoint.json.JsonCodec;
 import com.proofpoint.log.Logger;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -41,24 +46,52 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
 
+import static com.google.common.base.Objects.firstNonNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
+
+/**
+ * Builds the service inventory from the airship-service-inventory.json of each slot's config.
+ * <p/>
+ * The inventory is requested every monitor cycle and for every service inventory request, but it
+ * rarely changes, so the parsed descriptors of each config are kept in memory, and the descriptors
+ * of a slot are only rebuilt when its assignment, state, location or host changes.  When no slot
+ * changed, the previous inventory is returned.  Service inventories are read from the repository
+ * without holding the lock, so a slow repository does not block other callers.
+ */
 public class HttpServiceInventory implements ServiceInventory
 {
     private static final Logger log = Logger.get(HttpServiceInventory.class);
+    private static final String AIRSHIP_HOST = "${airship.host}";
+
     private final Repository repository;
     private final JsonCodec<List<ServiceDescriptor>> descriptorsJsonCodec;
     private final Set<String> invalidServiceInventory = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private final File cacheDir;
+    private final ConfigBundleCache configBundleCache;
+
+    // guarded by this
+    private final Map<String, List<ServiceTemplate>> serviceTemplates = newHashMap();
+    private Map<UUID, SlotInventory> slotInventories = ImmutableMap.of();
+    private List<SlotInventory> slotInventoryOrder = ImmutableList.of();
+    private ImmutableList<ServiceDescriptor> serviceInventory = ImmutableList.of();
 
     @Inject
-    public HttpServiceInventory(Repository repository, JsonCodec<List<ServiceDescriptor>> descriptorsJsonCodec, CoordinatorConfig config)
+    public HttpServiceInventory(Repository repository, JsonCodec<List<ServiceDescriptor>> descriptorsJsonCodec, CoordinatorConfig config, ConfigBundleCache configBundleCache)
     {
-        this(repository, descriptorsJsonCodec, new File(config.getServiceInventoryCacheDir()));
+        this(repository, descriptorsJsonCodec, new File(config.getServiceInventoryCacheDir()), configBundleCache);
     }
 
     public HttpServiceInventory(Repository repository, JsonCodec<List<ServiceDescriptor>> descriptorsJsonCodec, File cacheDir)
+    {
+        this(repository, descriptorsJsonCodec, cacheDir, null);
+    }
+
+    public HttpServiceInventory(Repository repository, JsonCodec<List<ServiceDescriptor>> descriptorsJsonCodec, File cacheDir, @Nullable ConfigBundleCache configBundleCache)
     {
         Preconditions.checkNotNull(repository, "repository is null");
         Preconditions.checkNotNull(descriptorsJsonCodec, "descriptorsJsonCodec is null");
@@ -66,45 +99,102 @@ public class HttpServiceInventory implements ServiceInventory
         this.repository = repository;
         this.descriptorsJsonCodec = descriptorsJsonCodec;
         this.cacheDir = cacheDir;
+        this.configBundleCache = configBundleCache;
     }
 
     @Override
     public ImmutableList<ServiceDescriptor> getServiceInventory(Iterable<SlotStatus> allSlotStatus)
     {
-        ImmutableList.Builder<ServiceDescriptor> newDescriptors = ImmutableList.builder();
+        Map<UUID, SlotInventory> currentSlotInventories;
+        Map<String, List<ServiceTemplate>> templates;
+        synchronized (this) {
+            currentSlotInventories = slotInventories;
+            templates = newHashMap(serviceTemplates);
+        }
+
+        // reading a service inventory may download a config bundle, so it is done without the lock
+        Map<UUID, SlotInventory> newSlotInventories = newHashMap();
+        List<SlotInventory> newSlotInventoryOrder = newArrayList();
+        boolean complete = true;
         for (SlotStatus slotStatus : allSlotStatus) {
             // if the self reference is null, the slot is totally offline so skip for now
             if (slotStatus.getSelf() == null) {
                 continue;
             }
 
+            SlotInventory slotInventory = currentSlotInventories.get(slotStatus.getId());
+            if (slotInventory == null || !slotInventory.matches(slotStatus)) {
+                slotInventory = createSlotInventory(slotStatus, templates);
+                if (slotInventory == null) {
+                    // the service inventory could not be read, so try again next time
+                    complete = false;
+                    continue;
+                }
+            }
+            newSlotInventories.put(slotStatus.getId(), slotInventory);
+            newSlotInventoryOrder.add(slotInventory);
+        }
+
+        synchronized (this) {
+            // slot inventories are reused when unchanged, so this is an identity comparison
+            if (complete && newSlotInventoryOrder.equals(slotInventoryOrder)) {
+                return serviceInventory;
+            }
+
+            ImmutableList.Builder<ServiceDescriptor> newDescriptors = ImmutableList.builder();
+            Set<String> configs = newHashSet();
+            for (SlotInventory slotInventory : newSlotInventoryOrder) {
+                newDescriptors.addAll(slotInventory.getServiceDescriptors());
+                if (slotInventory.getAssignment() != null) {
+                    configs.add(slotInventory.getAssignment().getConfig());
+                }
+            }
+
+            // keep the descriptors read by this call, and forget those of configs that are no longer assigned
+            serviceTemplates.putAll(templates);
+            serviceTemplates.keySet().retainAll(configs);
+
+            slotInventories = newSlotInventories;
+            slotInventoryOrder = newSlotInventoryOrder;
+            serviceInventory = newDescriptors.build();
+            return serviceInventory;
+        }
+    }
+
+    private SlotInventory createSlotInventory(SlotStatus slotStatus, Map<String, List<ServiceTemplate>> serviceTemplates)
+    {
+        Assignment assignment = slotStatus.getAssignment();
+        if (assignment == null) {
+            return new SlotInventory(slotStatus, ImmutableList.<ServiceDescriptor>of());
+        }
+
+        List<ServiceTemplate> templates = serviceTemplates.get(assignment.getConfig());
+        if (templates == null) {
             List<ServiceDescriptor> serviceDescriptors = getServiceInventory(slotStatus);
             if (serviceDescriptors == null) {
-                continue;
+                return null;
             }
+            ImmutableList.Builder<ServiceTemplate> builder = ImmutableList.builder();
             for (ServiceDescriptor serviceDescriptor : serviceDescriptors) {
-                newDescriptors.add(new ServiceDescriptor(null,
-                        slotStatus.getId().toString(),
-                        serviceDescriptor.getType(),
-                        serviceDescriptor.getPool(),
-                        slotStatus.getLocation(),
-                        slotStatus.getState() == SlotLifecycleState.RUNNING ? ServiceState.RUNNING : ServiceState.STOPPED,
-                        interpolateProperties(serviceDescriptor.getProperties(), slotStatus)));
+                builder.add(new ServiceTemplate(serviceDescriptor));
             }
+            templates = builder.build();
+            serviceTemplates.put(assignment.getConfig(), templates);
         }
-        return newDescriptors.build();
-    }
 
-    private Map<String, String> interpolateProperties(Map<String, String> properties, SlotStatus slotStatus)
-    {
-        ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
-        for (Entry<String, String> entry : properties.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            value = value.replaceAll(Pattern.quote("${airship.host}"), slotStatus.getSelf().getHost());
-            builder.put(key, value);
-        }
-        return builder.build();
+        String host = slotStatus.getSelf().getHost();
+        ServiceState state = slotStatus.getState() == SlotLifecycleState.RUNNING ? ServiceState.RUNNING : ServiceState.STOPPED;
+        ImmutableList.Builder<ServiceDescriptor> descriptors = ImmutableList.builder();
+        for (ServiceTemplate template : templates) {
+            descriptors.add(new ServiceDescriptor(null,
+                    slotStatus.getId().toString(),
+                    template.getType(),
+                    template.getPool(),
+                    slotStatus.getLocation(),
+                    state,
+                    template.interpolateProperties(host)));
+        }
+        return new SlotInventory(slotStatus, descriptors.build());
     }
 
     private List<ServiceDescriptor> getServiceInventory(SlotStatus slotStatus)
@@ -122,7 +212,7 @@ public class HttpServiceInventory implements ServiceInventory
                 String json = CharStreams.toString(Files.newReaderSupplier(cacheFile, Charsets.UTF_8));
                 List<ServiceDescriptor> descriptors = descriptorsJsonCodec.fromJson(json);
                 invalidServiceInventory.remove(config);
-                return descriptors;
+                return firstNonNull(descriptors, ImmutableList.<ServiceDescriptor>of());
             }
             catch (Exception ignored) {
                 // delete the bad cache file
@@ -130,7 +220,7 @@ public class HttpServiceInventory implements ServiceInventory
             }
         }
 
-        InputSupplier<? extends InputStream> configFile = ConfigUtils.newConfigEntrySupplier(repository, config, "airship-service-inventory.json");
+        InputSupplier<? extends InputStream> configFile = ConfigUtils.newConfigEntrySupplier(repository, config, "airship-service-inventory.json", configBundleCache);
         if (configFile == null) {
             return null;
         }
@@ -152,7 +242,7 @@ public class HttpServiceInventory implements ServiceInventory
             Files.write(json, cacheFile, Charsets.UTF_8);
 
             List<ServiceDescriptor> descriptors = descriptorsJsonCodec.fromJson(json);
-            return descriptors;
+            return firstNonNull(descriptors, ImmutableList.<ServiceDescriptor>of());
         }
         catch (Exception e) {
             if (invalidServiceInventory.add(config)) {
@@ -173,4 +263,97 @@ public class HttpServiceInventory implements ServiceInventory
         cacheName = cacheName + "_" + DigestUtils.md5Hex(cacheName);
         return new File(cacheDir, cacheName).getAbsoluteFile();
     }
+
+    /**
+     * The service descriptors of a slot, and the slot status they were built from.
+     */
+    private static class SlotInventory
+    {
+        private final Assignment assignment;
+        private final SlotLifecycleState state;
+        private final String location;
+        private final String host;
+        private final List<ServiceDescriptor> serviceDescriptors;
+
+        private SlotInventory(SlotStatus slotStatus, List<ServiceDescriptor> serviceDescriptors)
+        {
+            this.assignment = slotStatus.getAssignment();
+            this.state = slotStatus.getState();
+            this.location = slotStatus.getLocation();
+            this.host = slotStatus.getSelf().getHost();
+            this.serviceDescriptors = serviceDescriptors;
+        }
+
+        public Assignment getAssignment()
+        {
+            return assignment;
+        }
+
+        public List<ServiceDescriptor> getServiceDescriptors()
+        {
+            return serviceDescriptors;
+        }
+
+        public boolean matches(SlotStatus slotStatus)
+        {
+            return Objects.equal(assignment, slotStatus.getAssignment()) &&
+                    state == slotStatus.getState() &&
+                    Objects.equal(location, slotStatus.getLocation()) &&
+                    Objects.equal(host, slotStatus.getSelf().getHost());
+        }
+    }
+
+    /**
+     * A service descriptor from a config, with its property values split around ${airship.host}.
+     */
+    private static class ServiceTemplate
+    {
+        private final String type;
+        private final String pool;
+        private final Map<String, String> constantProperties;
+        private final Map<String, List<String>> hostProperties;
+
+        private ServiceTemplate(ServiceDescriptor serviceDescriptor)
+        {
+            this.type = serviceDescriptor.getType();
+            this.pool = serviceDescriptor.getPool();
+
+            ImmutableMap.Builder<String, String> constantProperties = ImmutableMap.builder();
+            ImmutableMap.Builder<String, List<String>> hostProperties = ImmutableMap.builder();
+            for (Entry<String, String> entry : serviceDescriptor.getProperties().entrySet()) {
+                if (entry.getValue().contains(AIRSHIP_HOST)) {
+                    hostProperties.put(entry.getKey(), ImmutableList.copyOf(Splitter.on(AIRSHIP_HOST).split(entry.getValue())));
+                }
+                else {
+                    constantProperties.put(entry.getKey(), entry.getValue());
+                }
+            }
+            this.constantProperties = constantProperties.build();
+            this.hostProperties = hostProperties.build();
+        }
+
+        public String getType()
+        {
+            return type;
+        }
+
+        public String getPool()
+        {
+            return pool;
+        }
+
+        public Map<String, String> interpolateProperties(String host)
+        {
+            if (hostProperties.isEmpty()) {
+                return constantProperties;
+            }
+
+            ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+            builder.putAll(constantProperties);
+            for (Entry<String, List<String>> entry : hostProperties.entrySet()) {
+                builder.put(entry.getKey(), Joiner.on(host).join(entry.getValue()));
+            }
+            return builder.build();
+        }
+    }
 }
@@ -1,20 +1,29 @@
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import io.airlift.airship.shared.ExpectedSlotStatus;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-public class InMemoryStateManager implements StateManager
+public class InMemoryStateManager implements VersionedStateManager
 {
     private final ConcurrentMap<String, ExpectedSlotStatus> expectedState = new ConcurrentHashMap<String, ExpectedSlotStatus>();
 
-    public void clearAll()
+    // guarded by this
+    private final Map<UUID, Long> versions = new LinkedHashMap<UUID, Long>();
+    private long sequence;
+
+    public synchronized void clearAll()
     {
         expectedState.clear();
+        versions.clear();
     }
 
     @Override
@@ -24,14 +33,68 @@ public class InMemoryStateManager implements StateManager
     }
 
     @Override
-    public void deleteExpectedState(UUID slotId)
+    public synchronized void deleteExpectedState(UUID slotId)
     {
         expectedState.remove(slotId.toString());
+        versions.remove(slotId);
     }
 
     @Override
-    public void setExpectedState(ExpectedSlotStatus slotStatus)
+    public synchronized void setExpectedState(ExpectedSlotStatus slotStatus)
     {
         expectedState.put(slotStatus.getId().toString(), slotStatus);
+        versions.put(slotStatus.getId(), ++sequence);
+    }
+
+    @Override
+    public synchronized void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        for (UUID slotId : slotIds) {
+            deleteExpectedState(slotId);
+        }
+    }
+
+    @Override
+    public synchronized void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses)
+    {
+        for (ExpectedSlotStatus slotStatus : slotStatuses) {
+            setExpectedState(slotStatus);
+        }
+    }
+
+    @Override
+    public synchronized Map<UUID, Long> getVersions(Collection<UUID> slotIds)
+    {
+        Map<UUID, Long> result = new LinkedHashMap<UUID, Long>();
+        for (UUID slotId : slotIds) {
+            result.put(slotId, getVersion(slotId));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean compareAndSetExpectedStates(Map<UUID, Long> expectedVersions, Collection<ExpectedSlotStatus> slotStatuses, Collection<UUID> deletedSlotIds)
+    {
+        Preconditions.checkNotNull(expectedVersions, "expectedVersions is null");
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+        Preconditions.checkNotNull(deletedSlotIds, "deletedSlotIds is null");
+
+        for (Entry<UUID, Long> entry : expectedVersions.entrySet()) {
+            if (getVersion(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        setExpectedStates(slotStatuses);
+        deleteExpectedStates(deletedSlotIds);
+        return true;
+    }
+
+    private long getVersion(UUID slotId)
+    {
+        Long version = versions.get(slotId);
+        if (version == null) {
+            return 0;
+        }
+        return version;
     }
 }
@@ -0,0 +1,16 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Predicate;
+import io.airlift.airship.shared.SlotStatus;
+
+import java.util.List;
+
+/**
+ * A slot filter that can look up its slots in the indexes of a fleet snapshot instead of
+ * testing every slot of the fleet.  The selected slots must be exactly the slots of the
+ * snapshot the filter applies to, in snapshot order.
+ */
+public interface IndexedSlotFilter extends Predicate<SlotStatus>
+{
+    List<SlotStatus> select(FleetSnapshot fleet);
+}
@@ -0,0 +1,127 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.shared.SlotStatus;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * A coordinator operation running in the background.  Slot results are recorded as each slot
+ * operation completes, so clients can follow the progress of a large operation.
+ */
+public class Job
+        implements SlotOperationListener
+{
+    private final String id;
+    private final String operation;
+    private final long createTime = System.currentTimeMillis();
+
+    private final List<SlotStatus> completedSlots = newArrayList();
+    private JobState state = JobState.RUNNING;
+    private List<SlotStatus> results;
+    private String errorMessage;
+    private long completionTime;
+
+    public Job(String id, String operation)
+    {
+        Preconditions.checkNotNull(id, "id is null");
+        Preconditions.checkNotNull(operation, "operation is null");
+
+        this.id = id;
+        this.operation = operation;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getOperation()
+    {
+        return operation;
+    }
+
+    public long getCreateTime()
+    {
+        return createTime;
+    }
+
+    public synchronized JobState getState()
+    {
+        return state;
+    }
+
+    public synchronized String getErrorMessage()
+    {
+        return errorMessage;
+    }
+
+    public synchronized long getCompletionTime()
+    {
+        return completionTime;
+    }
+
+    /**
+     * Returns the final slot results once the job succeeded, and otherwise the slots completed so far.
+     */
+    public synchronized List<SlotStatus> getSlots()
+    {
+        if (results != null) {
+            return results;
+        }
+        return ImmutableList.copyOf(completedSlots);
+    }
+
+    @Override
+    public synchronized void slotCompleted(SlotStatus slotStatus)
+    {
+        Preconditions.checkNotNull(slotStatus, "slotStatus is null");
+        completedSlots.add(slotStatus);
+    }
+
+    public synchronized void succeeded(List<SlotStatus> results)
+    {
+        Preconditions.checkNotNull(results, "results is null");
+        this.results = ImmutableList.copyOf(results);
+        complete(JobState.SUCCEEDED);
+    }
+
+    public synchronized void failed(Throwable cause)
+    {
+        Preconditions.checkNotNull(cause, "cause is null");
+        this.errorMessage = Objects.firstNonNull(cause.getMessage(), cause.getClass().getName());
+        complete(JobState.FAILED);
+    }
+
+    private void complete(JobState state)
+    {
+        this.state = state;
+        this.completionTime = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    /**
+     * Waits up to maxWait for the job to finish.
+     *
+     * @return true if the job is finished
+     */
+    public synchronized boolean waitForCompletion(Duration maxWait)
+            throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) maxWait.toMillis());
+        while (state == JobState.RUNNING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.proofpoint.log.Logger;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.shared.SlotStatus;
+
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs long coordinator operations in the background and keeps finished jobs around for a while
+ * so clients can collect the results.  At most jobConcurrency jobs run at a time, and when
+ * maxQueued jobs are already waiting a new job is rejected instead of queued.
+ */
+public class JobManager
+{
+    private static final Logger log = Logger.get(JobManager.class);
+    private static final long MAX_PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<String, Job>();
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService purgeExecutor;
+    private final Duration jobRetention;
+
+    @Inject
+    public JobManager(CoordinatorConfig config)
+    {
+        this(Preconditions.checkNotNull(config, "config is null").getJobRetention(), config.getJobConcurrency(), config.getJobMaxQueued());
+    }
+
+    public JobManager(Duration jobRetention, int jobConcurrency, int maxQueued)
+    {
+        Preconditions.checkNotNull(jobRetention, "jobRetention is null");
+        Preconditions.checkArgument(jobConcurrency > 0, "jobConcurrency must be at least 1");
+        Preconditions.checkArgument(maxQueued > 0, "maxQueued must be at least 1");
+
+        this.jobRetention = jobRetention;
+        this.executor = new ThreadPoolExecutor(jobConcurrency,
+                jobConcurrency,
+                1,
+                TimeUnit.MINUTES,
+                new ArrayBlockingQueue<Runnable>(maxQueued),
+                new ThreadFactoryBuilder().setNameFormat("coordinator-job-%s").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+
+        // finished jobs are purged even when no new jobs are submitted
+        long purgeInterval = Math.max(1, Math.min((long) jobRetention.toMillis(), MAX_PURGE_INTERVAL_MILLIS));
+        purgeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("coordinator-job-purge").setDaemon(true).build());
+        purgeExecutor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    removeExpiredJobs();
+                }
+                catch (Throwable e) {
+                    log.error(e, "Unexpected exception purging expired jobs");
+                }
+            }
+        }, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        purgeExecutor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts the operation in the background.  The operation reports slot progress to the listener
+     * it is given and returns the final slot results.
+     *
+     * @throws JobRejectedException if too many jobs are already waiting to run
+     */
+    public Job submit(String operation, final Function<SlotOperationListener, List<SlotStatus>> task)
+    {
+        Preconditions.checkNotNull(operation, "operation is null");
+        Preconditions.checkNotNull(task, "task is null");
+
+        final Job job = new Job(UUID.randomUUID().toString(), operation);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        job.succeeded(task.apply(job));
+                    }
+                    catch (Throwable e) {
+                        log.warn(e, "Job %s (%s) failed", job.getId(), job.getOperation());
+                        job.failed(e);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new JobRejectedException(operation);
+        }
+        return job;
+    }
+
+    public Job getJob(String id)
+    {
+        Preconditions.checkNotNull(id, "id is null");
+        return jobs.get(id);
+    }
+
+    public int getRunningJobs()
+    {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedJobs()
+    {
+        return executor.getQueue().size();
+    }
+
+    void removeExpiredJobs()
+    {
+        long expiration = System.currentTimeMillis() - (long) jobRetention.toMillis();
+        for (Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext(); ) {
+            Job job = iterator.next();
+            if (job.getState() != JobState.RUNNING && job.getCompletionTime() < expiration) {
+                iterator.remove();
+            }
+        }
+    }
+}
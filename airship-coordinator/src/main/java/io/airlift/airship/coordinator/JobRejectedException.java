@@ -0,0 +1,9 @@
+package io.airlift.airship.coordinator;
+
+public class JobRejectedException extends RuntimeException
+{
+    public JobRejectedException(String operation)
+    {
+        super("Too many jobs are waiting to run; " + operation + " job rejected");
+    }
+}
@@ -0,0 +1,14 @@
+package io.airlift.airship.coordinator;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+
+public class JobRejectedExceptionMapper implements ExceptionMapper<JobRejectedException>
+{
+    @Override
+    public Response toResponse(JobRejectedException exception)
+    {
+        return Response.status(Status.SERVICE_UNAVAILABLE).entity(exception.getMessage()).build();
+    }
+}
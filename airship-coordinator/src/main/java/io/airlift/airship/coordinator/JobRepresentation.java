@@ -0,0 +1,88 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.airship.shared.SlotStatusRepresentation;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.net.URI;
+import java.util.List;
+
+import static com.google.common.collect.Lists.transform;
+
+public class JobRepresentation
+{
+    private final String id;
+    private final URI self;
+    private final String operation;
+    private final JobState state;
+    private final String errorMessage;
+    private final List<SlotStatusRepresentation> slots;
+
+    public static JobRepresentation from(Job job, URI self, Function<SlotStatus, SlotStatusRepresentation> slotRepresentation)
+    {
+        // read the state before the slots, so a finished job always carries its final results
+        JobState state = job.getState();
+        return new JobRepresentation(job.getId(),
+                self,
+                job.getOperation(),
+                state,
+                job.getErrorMessage(),
+                ImmutableList.copyOf(transform(job.getSlots(), slotRepresentation)));
+    }
+
+    @JsonCreator
+    public JobRepresentation(
+            @JsonProperty("id") String id,
+            @JsonProperty("self") URI self,
+            @JsonProperty("operation") String operation,
+            @JsonProperty("state") JobState state,
+            @JsonProperty("errorMessage") String errorMessage,
+            @JsonProperty("slots") List<SlotStatusRepresentation> slots)
+    {
+        this.id = id;
+        this.self = self;
+        this.operation = operation;
+        this.state = state;
+        this.errorMessage = errorMessage;
+        this.slots = slots;
+    }
+
+    @JsonProperty
+    public String getId()
+    {
+        return id;
+    }
+
+    @JsonProperty
+    public URI getSelf()
+    {
+        return self;
+    }
+
+    @JsonProperty
+    public String getOperation()
+    {
+        return operation;
+    }
+
+    @JsonProperty
+    public JobState getState()
+    {
+        return state;
+    }
+
+    @JsonProperty
+    public String getErrorMessage()
+    {
+        return errorMessage;
+    }
+
+    @JsonProperty
+    public List<SlotStatusRepresentation> getSlots()
+    {
+        return slots;
+    }
+}
@@ -0,0 +1,92 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.shared.Repository;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+
+import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
+import static io.airlift.airship.shared.SlotStatusRepresentation.fromSlotStatus;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_MAX_WAIT_HEADER;
+
+@Path("/v1/job/{jobId}")
+public class JobResource
+{
+    private final JobManager jobManager;
+    private final Coordinator coordinator;
+    private final Repository repository;
+    private final Duration jobMaxWait;
+
+    @Inject
+    public JobResource(JobManager jobManager, Coordinator coordinator, Repository repository, CoordinatorConfig config)
+    {
+        Preconditions.checkNotNull(jobManager, "jobManager must not be null");
+        Preconditions.checkNotNull(coordinator, "coordinator must not be null");
+        Preconditions.checkNotNull(repository, "repository is null");
+        Preconditions.checkNotNull(config, "config is null");
+
+        this.jobManager = jobManager;
+        this.coordinator = coordinator;
+        this.repository = repository;
+        this.jobMaxWait = config.getJobMaxWait();
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJob(@PathParam("jobId") String jobId,
+            @HeaderParam(AIRSHIP_MAX_WAIT_HEADER) Duration maxWait,
+            @Context UriInfo uriInfo)
+            throws InterruptedException
+    {
+        Preconditions.checkNotNull(jobId, "jobId must not be null");
+
+        Job job = jobManager.getJob(jobId);
+        if (job == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        // long poll for completion, but never hold the request thread longer than the configured maximum
+        if (maxWait != null) {
+            if (maxWait.toMillis() > jobMaxWait.toMillis()) {
+                maxWait = jobMaxWait;
+            }
+            job.waitForCompletion(maxWait);
+        }
+
+        return Response.ok(createJobRepresentation(job, uriInfo)).build();
+    }
+
+    /**
+     * Responds to a request that was turned into a job with 202 Accepted and the location of the job.
+     */
+    public static Response jobAccepted(Job job, UriInfo uriInfo, FleetSnapshot fleet, Repository repository)
+    {
+        JobRepresentation representation = JobRepresentation.from(job, getJobUri(job, uriInfo), fromSlotStatus(fleet.getSlotRepresentationFactory(repository)));
+        return Response.status(Status.ACCEPTED)
+                .location(representation.getSelf())
+                .entity(representation)
+                .build();
+    }
+
+    private JobRepresentation createJobRepresentation(Job job, UriInfo uriInfo)
+    {
+        return JobRepresentation.from(job, getJobUri(job, uriInfo), fromSlotStatus(coordinator.getFleetSnapshot().getSlotRepresentationFactory(repository)));
+    }
+
+    private static URI getJobUri(Job job, UriInfo uriInfo)
+    {
+        return uriBuilderFrom(uriInfo.getBaseUri()).replacePath("/v1/job/").appendPath(job.getId()).build();
+    }
+}
@@ -0,0 +1,6 @@
+package io.airlift.airship.coordinator;
+
+public enum JobState
+{
+    RUNNING, SUCCEEDED, FAILED
+}
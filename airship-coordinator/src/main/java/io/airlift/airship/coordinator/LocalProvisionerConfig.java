@@ -6,12 +6,14 @@ import com.proofpoint.configuration.Config;
 import com.proofpoint.configuration.ConfigDescription;
 
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import java.util.List;
 
 public class LocalProvisionerConfig
 {
     private List<String> localAgentUris = ImmutableList.of();
     private String expectedStateDir = "expected-state";
+    private String expectedStateStore = "file";
     private String authorizedKeysDir = "authorized-keys";
 
     public List<String> getLocalAgentUris()
@@ -45,6 +47,21 @@ public class LocalProvisionerConfig
         return this;
     }
 
+    @NotNull
+    @Pattern(regexp = "file|log", message = "must be file or log")
+    public String getExpectedStateStore()
+    {
+        return expectedStateStore;
+    }
+
+    @Config("coordinator.expected-state.store")
+    @ConfigDescription("Store for the expected state: file (journal and snapshot) or log (log-structured data file with versioned slots)")
+    public LocalProvisionerConfig setExpectedStateStore(String expectedStateStore)
+    {
+        this.expectedStateStore = expectedStateStore;
+        return this;
+    }
+
     @NotNull
     public String getAuthorizedKeysDir()
     {
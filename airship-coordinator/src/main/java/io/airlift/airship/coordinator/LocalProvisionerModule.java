@@ -15,11 +15,15 @@ package io.airlift.airship.coordinator;
 
 import com.google.inject.Binder;
 import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.proofpoint.configuration.ConfigurationModule;
 import io.airlift.airship.coordinator.auth.AuthorizedKeyStore;
 import io.airlift.airship.coordinator.auth.FileAuthorizedKeyStore;
 
+import javax.inject.Singleton;
+
 public class LocalProvisionerModule
         implements Module
 {
@@ -29,8 +33,22 @@ public class LocalProvisionerModule
         binder.requireExplicitBindings();
 
         binder.bind(Provisioner.class).to(StaticProvisioner.class).in(Scopes.SINGLETON);
-        binder.bind(StateManager.class).to(FileStateManager.class).in(Scopes.SINGLETON);
+        binder.bind(FileStateManager.class);
+        binder.bind(LogStructuredStateManager.class);
         binder.bind(AuthorizedKeyStore.class).to(FileAuthorizedKeyStore.class).in(Scopes.SINGLETON);
         ConfigurationModule.bindConfig(binder).to(LocalProvisionerConfig.class);
     }
+
+    @Provides
+    @Singleton
+    public StateManager provideStateManager(LocalProvisionerConfig config,
+            Provider<FileStateManager> fileStateManagerProvider,
+            Provider<LogStructuredStateManager> logStructuredStateManagerProvider)
+    {
+        // only the selected store is created, since both keep their files in the expected state dir
+        if ("log".equals(config.getExpectedStateStore())) {
+            return logStructuredStateManagerProvider.get();
+        }
+        return fileStateManagerProvider.get();
+    }
 }
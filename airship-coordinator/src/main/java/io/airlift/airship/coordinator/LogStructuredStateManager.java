@@ -0,0 +1,791 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
+import com.google.common.io.PatternFilenameFilter;
+import com.proofpoint.json.JsonCodec;
+import com.proofpoint.log.Logger;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import io.airlift.airship.shared.FileUtils;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Keeps the expected state in memory and persists it to a single log-structured data file.  Every
+ * write appends a batch of records followed by a commit record, and on recovery a batch is only
+ * applied when its commit record is intact, so a crash never leaves half of a batch behind.
+ * <p/>
+ * Each slot is versioned with the sequence number of the commit that last wrote it, and a slot
+ * without expected state has version 0.  Versions are never reused, and a compare-and-set write
+ * checks the versions and commits its batch under the same lock.
+ * <p/>
+ * Once most of the data file is garbage, the live records are compacted into a new data file.  On
+ * compaction and shutdown, the location of every live record is checkpointed to an index file, so
+ * startup memory-maps the index and reads only the live records and the log written since.
+ * <p/>
+ * The data directory is locked while the state manager is open, with the same lock as
+ * {@link FileStateManager}.  A write that fails is thrown to the caller and is not applied in memory.
+ */
+public class LogStructuredStateManager implements VersionedStateManager
+{
+    private static final Logger log = Logger.get(LogStructuredStateManager.class);
+
+    private static final String DATA_FILE = "expected-state.db";
+    private static final String INDEX_FILE = "expected-state.index";
+
+    // expected state written by FileStateManager
+    private static final String FILE_STATE_MANAGER_FILES = "expected-state\\.(journal|snapshot)|[^\\.].*\\.json";
+    private static final String IMPORTED_SUFFIX = ".imported";
+
+    private static final int DATA_MAGIC = 0x41534442;
+    private static final int INDEX_MAGIC = 0x41534958;
+
+    // magic, generation
+    private static final int DATA_HEADER_SIZE = 4 + 8;
+
+    // type, sequence, slot id, value length, value, checksum
+    private static final int RECORD_OVERHEAD = 1 + 8 + 16 + 4 + 8;
+
+    // magic, generation, data length, sequence, entry count
+    private static final int INDEX_HEADER_SIZE = 4 + 8 + 8 + 8 + 4;
+
+    // slot id, version, offset
+    private static final int INDEX_ENTRY_SIZE = 16 + 8 + 8;
+
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private static final byte SET_RECORD = 1;
+    private static final byte DELETE_RECORD = 2;
+    private static final byte COMMIT_RECORD = 3;
+
+    private static final UUID COMMIT_ID = new UUID(0, 0);
+
+    private final File dataDir;
+    private final JsonCodec<ExpectedSlotStatus> codec;
+    private final FileLock dataDirLock;
+
+    private final Map<UUID, StoredState> expectedStates = new LinkedHashMap<UUID, StoredState>();
+    private List<ExpectedSlotStatus> allExpectedStates;
+
+    private RandomAccessFile dataFile;
+    private FileChannel channel;
+    private long generation;
+    private long sequence;
+    private long committedLength;
+    private long liveLength;
+
+    // a failed append leaves the data file behind the in-memory state until the next compaction
+    private boolean compactionRequired;
+
+    @Inject
+    public LogStructuredStateManager(LocalProvisionerConfig localProvisionerConfig, JsonCodec<ExpectedSlotStatus> codec)
+    {
+        this(new File(checkNotNull(localProvisionerConfig, "localProvisionerConfig is null").getExpectedStateDir()), codec);
+    }
+
+    public LogStructuredStateManager(File dataDir, JsonCodec<ExpectedSlotStatus> codec)
+    {
+        Preconditions.checkNotNull(dataDir, "dataDir is null");
+        Preconditions.checkNotNull(codec, "codec is null");
+        this.dataDir = dataDir;
+        this.codec = codec;
+
+        dataDir.mkdirs();
+        Preconditions.checkArgument(dataDir.isDirectory(), "dataDir is not a directory");
+
+        dataDirLock = FileStateManager.lockDataDir(dataDir);
+        try {
+            if (!new File(dataDir, DATA_FILE).exists()) {
+                createDataFile();
+            }
+            open();
+        }
+        catch (IOException e) {
+            closeDataFile();
+            throw Throwables.propagate(e);
+        }
+        catch (RuntimeException e) {
+            closeDataFile();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close()
+    {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            writeIndex();
+        }
+        catch (IOException e) {
+            log.warn(e, "Error writing expected state index");
+        }
+        closeDataFile();
+    }
+
+    private void closeDataFile()
+    {
+        Closeables.closeQuietly(channel);
+        Closeables.closeQuietly(dataFile);
+        channel = null;
+        FileStateManager.unlockDataDir(dataDir, dataDirLock);
+    }
+
+    @Override
+    public synchronized Collection<ExpectedSlotStatus> getAllExpectedStates()
+    {
+        if (allExpectedStates == null) {
+            ImmutableList.Builder<ExpectedSlotStatus> builder = ImmutableList.builder();
+            for (StoredState storedState : expectedStates.values()) {
+                builder.add(storedState.getSlotStatus());
+            }
+            allExpectedStates = builder.build();
+        }
+        return allExpectedStates;
+    }
+
+    /**
+     * Gets the version of the expected state of the slot, or 0 if the slot has no expected state.
+     */
+    public synchronized long getVersion(UUID slotId)
+    {
+        Preconditions.checkNotNull(slotId, "slotId is null");
+
+        StoredState storedState = expectedStates.get(slotId);
+        if (storedState == null) {
+            return 0;
+        }
+        return storedState.getVersion();
+    }
+
+    @Override
+    public synchronized Map<UUID, Long> getVersions(Collection<UUID> slotIds)
+    {
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+
+        Map<UUID, Long> versions = new LinkedHashMap<UUID, Long>();
+        for (UUID slotId : slotIds) {
+            versions.put(slotId, getVersion(slotId));
+        }
+        return versions;
+    }
+
+    @Override
+    public synchronized boolean compareAndSetExpectedStates(Map<UUID, Long> expectedVersions, Collection<ExpectedSlotStatus> slotStatuses, Collection<UUID> deletedSlotIds)
+    {
+        Preconditions.checkNotNull(expectedVersions, "expectedVersions is null");
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+        Preconditions.checkNotNull(deletedSlotIds, "deletedSlotIds is null");
+
+        for (Entry<UUID, Long> entry : expectedVersions.entrySet()) {
+            if (getVersion(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+
+        Map<UUID, ExpectedSlotStatus> writes = new LinkedHashMap<UUID, ExpectedSlotStatus>();
+        for (ExpectedSlotStatus slotStatus : slotStatuses) {
+            writes.put(slotStatus.getId(), slotStatus);
+        }
+        for (UUID slotId : deletedSlotIds) {
+            writes.put(slotId, null);
+        }
+        commit(writes);
+        return true;
+    }
+
+    @Override
+    public void deleteExpectedState(UUID slotId)
+    {
+        Preconditions.checkNotNull(slotId, "slotId is null");
+        deleteExpectedStates(ImmutableList.of(slotId));
+    }
+
+    @Override
+    public void setExpectedState(ExpectedSlotStatus slotStatus)
+    {
+        Preconditions.checkNotNull(slotStatus, "slotStatus is null");
+        setExpectedStates(ImmutableList.of(slotStatus));
+    }
+
+    @Override
+    public synchronized void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+
+        Map<UUID, ExpectedSlotStatus> writes = new LinkedHashMap<UUID, ExpectedSlotStatus>();
+        for (UUID slotId : slotIds) {
+            writes.put(slotId, null);
+        }
+        commit(writes);
+    }
+
+    @Override
+    public synchronized void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses)
+    {
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+
+        Map<UUID, ExpectedSlotStatus> writes = new LinkedHashMap<UUID, ExpectedSlotStatus>();
+        for (ExpectedSlotStatus slotStatus : slotStatuses) {
+            writes.put(slotStatus.getId(), slotStatus);
+        }
+        commit(writes);
+    }
+
+    /**
+     * Appends the writes to the data file as one batch, which is committed by a single sync, and
+     * applies them to the in-memory state.  A null expected state deletes the slot.  If the batch
+     * can not be written, the in-memory state is left unchanged and the failure is thrown.
+     */
+    private void commit(Map<UUID, ExpectedSlotStatus> writes)
+    {
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        long commitSequence = sequence + 1;
+        List<ByteBuffer> records = newArrayList();
+        int batchLength = 0;
+        for (Entry<UUID, ExpectedSlotStatus> entry : writes.entrySet()) {
+            ByteBuffer record;
+            if (entry.getValue() == null) {
+                record = encodeRecord(DELETE_RECORD, commitSequence, entry.getKey(), new byte[0]);
+            }
+            else {
+                record = encodeRecord(SET_RECORD, commitSequence, entry.getKey(), codec.toJson(entry.getValue()).getBytes(Charsets.UTF_8));
+            }
+            records.add(record);
+            batchLength += record.remaining();
+        }
+        ByteBuffer commitRecord = encodeRecord(COMMIT_RECORD, commitSequence, COMMIT_ID, new byte[0]);
+        records.add(commitRecord);
+        batchLength += commitRecord.remaining();
+
+        // apply the batch in memory, with the records at the offsets they are about to be written to
+        Map<UUID, StoredState> previousStates = new LinkedHashMap<UUID, StoredState>();
+        long offset = committedLength;
+        int index = 0;
+        for (Entry<UUID, ExpectedSlotStatus> entry : writes.entrySet()) {
+            int recordLength = records.get(index++).remaining();
+            StoredState previous;
+            if (entry.getValue() == null) {
+                previous = expectedStates.remove(entry.getKey());
+            }
+            else {
+                previous = expectedStates.put(entry.getKey(), new StoredState(entry.getValue(), commitSequence, offset, recordLength));
+                liveLength += recordLength;
+            }
+            if (previous != null) {
+                liveLength -= previous.getRecordLength();
+            }
+            previousStates.put(entry.getKey(), previous);
+            offset += recordLength;
+        }
+        allExpectedStates = null;
+
+        // the sequence is used up even if the write fails, so a version is never reused
+        sequence = commitSequence;
+
+        try {
+            if (compactionRequired) {
+                compact();
+                return;
+            }
+
+            ByteBuffer batch = ByteBuffer.allocate(batchLength);
+            for (ByteBuffer record : records) {
+                batch.put(record);
+            }
+            batch.flip();
+            writeFully(channel, batch, committedLength);
+            channel.force(false);
+            committedLength += batchLength;
+        }
+        catch (IOException e) {
+            // the data file may contain part of the batch, so it is replaced by the next write
+            compactionRequired = true;
+            for (Entry<UUID, StoredState> entry : previousStates.entrySet()) {
+                if (entry.getValue() == null) {
+                    expectedStates.remove(entry.getKey());
+                }
+                else {
+                    expectedStates.put(entry.getKey(), entry.getValue());
+                }
+            }
+            liveLength = computeLiveLength();
+            throw Throwables.propagate(e);
+        }
+
+        if (committedLength > MIN_COMPACTION_SIZE && committedLength > 2 * liveLength) {
+            try {
+                compact();
+            }
+            catch (IOException e) {
+                // the batch is already committed to the current data file
+                log.error(e, "Error compacting expected slot status");
+                compactionRequired = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the live records to a new data file as a single batch and replaces the current file with it.
+     */
+    private void compact()
+            throws IOException
+    {
+        Map<UUID, StoredState> compacted = writeDataFile(generation + 1, expectedStates.values());
+
+        Closeables.closeQuietly(channel);
+        Closeables.closeQuietly(dataFile);
+        dataFile = new RandomAccessFile(new File(dataDir, DATA_FILE), "rw");
+        channel = dataFile.getChannel();
+
+        expectedStates.clear();
+        expectedStates.putAll(compacted);
+        generation++;
+        committedLength = channel.size();
+        liveLength = computeLiveLength();
+        compactionRequired = false;
+
+        writeIndex();
+    }
+
+    /**
+     * Creates a new data file.  Expected state written by FileStateManager in the same directory is
+     * imported into the first batch, which makes switching stores transparent.  Once the data file is
+     * written, the imported files are renamed, so a later switch back to FileStateManager does not
+     * bring back stale expected state.
+     */
+    private void createDataFile()
+            throws IOException
+    {
+        List<StoredState> imported = newArrayList();
+        List<File> importedFiles = FileUtils.listFiles(dataDir, new PatternFilenameFilter(FILE_STATE_MANAGER_FILES));
+        if (!importedFiles.isEmpty()) {
+            // this state manager already holds the data directory lock
+            FileStateManager fileStateManager = new FileStateManager(dataDir, codec, false);
+            for (ExpectedSlotStatus slotStatus : fileStateManager.getAllExpectedStates()) {
+                imported.add(new StoredState(slotStatus, 1, 0, 0));
+            }
+            fileStateManager.close();
+
+            // the import may have folded legacy files into the snapshot
+            importedFiles = FileUtils.listFiles(dataDir, new PatternFilenameFilter(FILE_STATE_MANAGER_FILES));
+        }
+
+        // the generation distinguishes this file from the one an existing index was written for
+        writeDataFile(System.currentTimeMillis(), imported);
+
+        for (File file : importedFiles) {
+            if (!file.renameTo(new File(dataDir, file.getName() + IMPORTED_SUFFIX))) {
+                log.warn("Unable to rename imported expected state file %s", file);
+            }
+        }
+    }
+
+    /**
+     * Writes the states to a new data file as a single batch, and atomically replaces the data file.
+     *
+     * @return the states with their record locations in the new file
+     */
+    private Map<UUID, StoredState> writeDataFile(long newGeneration, Collection<StoredState> states)
+            throws IOException
+    {
+        Map<UUID, StoredState> written = new LinkedHashMap<UUID, StoredState>();
+        List<ByteBuffer> records = newArrayList();
+
+        ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+        header.putInt(DATA_MAGIC).putLong(newGeneration).flip();
+        records.add(header);
+
+        long offset = DATA_HEADER_SIZE;
+        long batchSequence = 0;
+        for (StoredState state : states) {
+            ExpectedSlotStatus slotStatus = state.getSlotStatus();
+            ByteBuffer record = encodeRecord(SET_RECORD, state.getVersion(), slotStatus.getId(), codec.toJson(slotStatus).getBytes(Charsets.UTF_8));
+            records.add(record);
+            written.put(slotStatus.getId(), new StoredState(slotStatus, state.getVersion(), offset, record.remaining()));
+            offset += record.remaining();
+            batchSequence = Math.max(batchSequence, state.getVersion());
+        }
+        records.add(encodeRecord(COMMIT_RECORD, Math.max(batchSequence, sequence), COMMIT_ID, new byte[0]));
+
+        File tempFile = new File(dataDir, DATA_FILE + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            FileChannel tempChannel = out.getChannel();
+            for (ByteBuffer record : records) {
+                while (record.hasRemaining()) {
+                    tempChannel.write(record);
+                }
+            }
+            tempChannel.force(false);
+        }
+        finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(new File(dataDir, DATA_FILE))) {
+            throw new IOException("Unable to replace expected state data file in " + dataDir);
+        }
+        return written;
+    }
+
+    /**
+     * Opens the data file and loads the state from the index and the records committed after it.
+     * Records after the last intact commit are left over from a crash during a write, and are truncated.
+     */
+    private void open()
+            throws IOException
+    {
+        dataFile = new RandomAccessFile(new File(dataDir, DATA_FILE), "rw");
+        channel = dataFile.getChannel();
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Expected state data file in " + dataDir + " is too large");
+        }
+
+        MappedByteBuffer data = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        if (data.limit() < DATA_HEADER_SIZE || data.getInt(0) != DATA_MAGIC) {
+            throw new IOException("Expected state data file in " + dataDir + " is corrupted");
+        }
+        generation = data.getLong(4);
+
+        long position = loadIndex(data);
+        if (position < 0) {
+            expectedStates.clear();
+            sequence = 0;
+            position = DATA_HEADER_SIZE;
+        }
+
+        committedLength = replay(data, position);
+        if (committedLength < data.limit()) {
+            log.warn("Discarding %s bytes of uncommitted expected state in %s", data.limit() - committedLength, dataDir);
+            channel.truncate(committedLength);
+        }
+        liveLength = computeLiveLength();
+    }
+
+    /**
+     * Loads the state checkpointed in the index, if the index was written for this data file.
+     *
+     * @return the data file position the index is current up to, or -1 if the index can not be used
+     */
+    private long loadIndex(ByteBuffer data)
+    {
+        File indexFile = new File(dataDir, INDEX_FILE);
+        if (!indexFile.exists()) {
+            return -1;
+        }
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+            try {
+                MappedByteBuffer index = file.getChannel().map(MapMode.READ_ONLY, 0, file.length());
+                if (index.limit() < INDEX_HEADER_SIZE + 8 || index.getInt(0) != INDEX_MAGIC || index.getLong(4) != generation) {
+                    return -1;
+                }
+                long dataLength = index.getLong(12);
+                long indexSequence = index.getLong(20);
+                int count = index.getInt(28);
+                if (dataLength > data.limit() || count < 0 || index.limit() != INDEX_HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE + 8) {
+                    return -1;
+                }
+                if (checksum(index, 0, index.limit() - 8) != index.getLong(index.limit() - 8)) {
+                    return -1;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    int position = INDEX_HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+                    UUID slotId = new UUID(index.getLong(position), index.getLong(position + 8));
+                    long version = index.getLong(position + 16);
+                    long offset = index.getLong(position + 24);
+
+                    Record record = readRecord(data, offset);
+                    if (record == null || record.getType() != SET_RECORD || !record.getSlotId().equals(slotId) || record.getSequence() != version) {
+                        log.warn("Expected state index in %s does not match the data file", dataDir);
+                        return -1;
+                    }
+                    applyRecord(record);
+                }
+                sequence = indexSequence;
+                return dataLength;
+            }
+            finally {
+                file.close();
+            }
+        }
+        catch (IOException e) {
+            log.warn(e, "Error reading expected state index in %s", dataDir);
+            return -1;
+        }
+    }
+
+    /**
+     * Applies the batches committed from the position on.
+     *
+     * @return the end of the last committed batch
+     */
+    private long replay(ByteBuffer data, long position)
+    {
+        long committed = position;
+        List<Record> batch = newArrayList();
+        for (Record record = readRecord(data, position); record != null; record = readRecord(data, position)) {
+            position += record.getLength();
+            if (record.getType() == COMMIT_RECORD) {
+                for (Record batchRecord : batch) {
+                    applyRecord(batchRecord);
+                }
+                batch.clear();
+                sequence = Math.max(sequence, record.getSequence());
+                committed = position;
+            }
+            else {
+                batch.add(record);
+            }
+        }
+        return committed;
+    }
+
+    private void applyRecord(Record record)
+    {
+        switch (record.getType()) {
+            case SET_RECORD:
+                try {
+                    ExpectedSlotStatus slotStatus = codec.fromJson(new String(record.getValue(), Charsets.UTF_8));
+                    expectedStates.put(record.getSlotId(), new StoredState(slotStatus, record.getSequence(), record.getOffset(), record.getLength()));
+                }
+                catch (Exception e) {
+                    // skip corrupted entries... these will be marked as unexpected
+                }
+                break;
+            case DELETE_RECORD:
+                expectedStates.remove(record.getSlotId());
+                break;
+            default:
+                log.warn("Ignoring unknown expected state record type %s", record.getType());
+        }
+    }
+
+    /**
+     * Checkpoints the location of the live records, so the next startup does not replay the whole data file.
+     */
+    private void writeIndex()
+            throws IOException
+    {
+        if (compactionRequired) {
+            // the data file does not contain the in-memory state
+            return;
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER_SIZE + expectedStates.size() * INDEX_ENTRY_SIZE + 8);
+        index.putInt(INDEX_MAGIC);
+        index.putLong(generation);
+        index.putLong(committedLength);
+        index.putLong(sequence);
+        index.putInt(expectedStates.size());
+        for (Entry<UUID, StoredState> entry : expectedStates.entrySet()) {
+            index.putLong(entry.getKey().getMostSignificantBits());
+            index.putLong(entry.getKey().getLeastSignificantBits());
+            index.putLong(entry.getValue().getVersion());
+            index.putLong(entry.getValue().getOffset());
+        }
+        index.putLong(checksum(index, 0, index.position()));
+        index.flip();
+
+        File tempFile = new File(dataDir, INDEX_FILE + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            while (index.hasRemaining()) {
+                out.getChannel().write(index);
+            }
+            out.getChannel().force(false);
+        }
+        finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(new File(dataDir, INDEX_FILE))) {
+            throw new IOException("Unable to replace expected state index in " + dataDir);
+        }
+    }
+
+    private long computeLiveLength()
+    {
+        long length = 0;
+        for (StoredState storedState : expectedStates.values()) {
+            length += storedState.getRecordLength();
+        }
+        return length;
+    }
+
+    private static ByteBuffer encodeRecord(byte type, long sequence, UUID slotId, byte[] value)
+    {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + value.length);
+        record.put(type);
+        record.putLong(sequence);
+        record.putLong(slotId.getMostSignificantBits());
+        record.putLong(slotId.getLeastSignificantBits());
+        record.putInt(value.length);
+        record.put(value);
+        record.putLong(checksum(record, 0, record.position()));
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Reads the record at the offset, or returns null if there is no intact record there.
+     */
+    private static Record readRecord(ByteBuffer data, long offset)
+    {
+        if (offset < DATA_HEADER_SIZE || offset + RECORD_OVERHEAD > data.limit()) {
+            return null;
+        }
+
+        int position = (int) offset;
+        byte type = data.get(position);
+        long sequence = data.getLong(position + 1);
+        UUID slotId = new UUID(data.getLong(position + 9), data.getLong(position + 17));
+        int length = data.getInt(position + 25);
+        if (length < 0 || length > data.limit() - position - RECORD_OVERHEAD) {
+            return null;
+        }
+        if (checksum(data, position, 1 + 8 + 16 + 4 + length) != data.getLong(position + 29 + length)) {
+            return null;
+        }
+
+        byte[] value = new byte[length];
+        ByteBuffer valueBuffer = data.duplicate();
+        valueBuffer.position(position + 29);
+        valueBuffer.get(value);
+        return new Record(type, sequence, slotId, value, offset);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long checksum(ByteBuffer buffer, int offset, int length)
+    {
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.get(bytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static class StoredState
+    {
+        private final ExpectedSlotStatus slotStatus;
+        private final long version;
+        private final long offset;
+        private final int recordLength;
+
+        private StoredState(ExpectedSlotStatus slotStatus, long version, long offset, int recordLength)
+        {
+            this.slotStatus = slotStatus;
+            this.version = version;
+            this.offset = offset;
+            this.recordLength = recordLength;
+        }
+
+        public ExpectedSlotStatus getSlotStatus()
+        {
+            return slotStatus;
+        }
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public int getRecordLength()
+        {
+            return recordLength;
+        }
+    }
+
+    private static class Record
+    {
+        private final byte type;
+        private final long sequence;
+        private final UUID slotId;
+        private final byte[] value;
+        private final long offset;
+
+        private Record(byte type, long sequence, UUID slotId, byte[] value, long offset)
+        {
+            this.type = type;
+            this.sequence = sequence;
+            this.slotId = slotId;
+            this.value = value;
+            this.offset = offset;
+        }
+
+        public byte getType()
+        {
+            return type;
+        }
+
+        public long getSequence()
+        {
+            return sequence;
+        }
+
+        public UUID getSlotId()
+        {
+            return slotId;
+        }
+
+        public byte[] getValue()
+        {
+            return value;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public int getLength()
+        {
+            return RECORD_OVERHEAD + value.length;
+        }
+    }
+}
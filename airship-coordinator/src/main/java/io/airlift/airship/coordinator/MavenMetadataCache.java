@@ -0,0 +1,143 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static io.airlift.airship.shared.MavenCoordinates.MAVEN_USER_AGENT;
+
+/**
+ * Keeps the parsed maven-metadata.xml files of a repository, and revalidates them with a
+ * conditional request, so an unchanged file is neither downloaded nor parsed again.
+ */
+public class MavenMetadataCache
+{
+    private static final int MAX_ENTRIES = 1000;
+
+    // entries are revalidated on every use, so expiration only bounds the memory of unused entries
+    private final Cache<URI, CachedMetadata> metadata = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ENTRIES)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    public MavenMetadata getMetadata(URI uri)
+            throws Exception
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+
+        CachedMetadata cached = metadata.getIfPresent(uri);
+
+        if ("file".equalsIgnoreCase(uri.getScheme())) {
+            return getFileMetadata(uri, cached);
+        }
+
+        URLConnection connection = uri.toURL().openConnection();
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            httpConnection.addRequestProperty("User-Agent", MAVEN_USER_AGENT);
+            if (cached != null) {
+                if (cached.getETag() != null) {
+                    httpConnection.addRequestProperty("If-None-Match", cached.getETag());
+                }
+                if (cached.getLastModified() != 0) {
+                    httpConnection.setIfModifiedSince(cached.getLastModified());
+                }
+            }
+
+            int status = httpConnection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                return cached.getMetadata();
+            }
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                Closeables.closeQuietly(httpConnection.getErrorStream());
+                metadata.invalidate(uri);
+                throw new FileNotFoundException(uri.toString());
+            }
+        }
+
+        InputStream in = connection.getInputStream();
+        String xml;
+        try {
+            xml = new String(ByteStreams.toByteArray(in), UTF_8);
+        }
+        finally {
+            in.close();
+        }
+        MavenMetadata mavenMetadata = MavenMetadata.unmarshalMavenMetadata(xml);
+
+        String eTag = connection.getHeaderField("ETag");
+        long lastModified = connection.getLastModified();
+        if (eTag != null || lastModified != 0) {
+            metadata.put(uri, new CachedMetadata(mavenMetadata, eTag, lastModified));
+        }
+        else {
+            metadata.invalidate(uri);
+        }
+        return mavenMetadata;
+    }
+
+    /**
+     * File repositories do not support conditional requests, so the file modification time is compared
+     * instead.  The file is checked directly, because a file URLConnection opens the file to report it.
+     */
+    private MavenMetadata getFileMetadata(URI uri, CachedMetadata cached)
+            throws Exception
+    {
+        File file = new File(uri);
+
+        // read the modification time first, so a concurrent deploy is noticed by the next check
+        long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            metadata.invalidate(uri);
+            throw new FileNotFoundException(uri.toString());
+        }
+        if (cached != null && cached.getLastModified() == lastModified) {
+            return cached.getMetadata();
+        }
+
+        MavenMetadata mavenMetadata = MavenMetadata.unmarshalMavenMetadata(Files.toString(file, UTF_8));
+        metadata.put(uri, new CachedMetadata(mavenMetadata, null, lastModified));
+        return mavenMetadata;
+    }
+
+    private static class CachedMetadata
+    {
+        private final MavenMetadata metadata;
+        private final String eTag;
+        private final long lastModified;
+
+        private CachedMetadata(MavenMetadata metadata, String eTag, long lastModified)
+        {
+            this.metadata = metadata;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        public MavenMetadata getMetadata()
+        {
+            return metadata;
+        }
+
+        public String getETag()
+        {
+            return eTag;
+        }
+
+        public long getLastModified()
+        {
+            return lastModified;
+        }
+    }
+}
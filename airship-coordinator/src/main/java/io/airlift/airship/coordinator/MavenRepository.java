@@ -2,31 +2,22 @@ package io.airlift.airship.coordinator;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.io.ByteProcessor;
-import com.google.common.io.ByteStreams;
-import com.google.common.io.CharStreams;
-import com.google.common.io.InputSupplier;
-import com.google.common.io.Resources;
 import com.google.inject.Inject;
 import io.airlift.airship.coordinator.MavenMetadata.SnapshotVersion;
 import io.airlift.airship.shared.HttpUriBuilder;
 import io.airlift.airship.shared.MavenCoordinates;
 import io.airlift.airship.shared.Repository;
+import io.airlift.airship.shared.ResolutionCache;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.collect.Lists.newArrayList;
 import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.airship.shared.MavenCoordinates.toBinaryGAV;
@@ -37,6 +28,9 @@ public class MavenRepository implements Repository
     private static final Pattern TIMESTAMP_VERSION = Pattern.compile("^(.+)-[0-9]{8}\\.[0-9]{6}\\-[0-9]+$");
     private final List<String> defaultGroupIds;
     private final List<URI> repositoryBases;
+    private final ResolutionCache resolutionCache;
+    private final ArtifactProbe artifactProbe;
+    private final MavenMetadataCache metadataCache = new MavenMetadataCache();
 
     public MavenRepository(Iterable<String> defaultGroupIds, URI repositoryBase, URI... repositoryBases)
     {
@@ -45,16 +39,36 @@ public class MavenRepository implements Repository
 
     public MavenRepository(Iterable<String> defaultGroupIds, Iterable<URI> repositoryBases)
     {
+        this(defaultGroupIds, repositoryBases, ResolutionCache.disabled(), new ArtifactProbe());
+    }
+
+    public MavenRepository(Iterable<String> defaultGroupIds, Iterable<URI> repositoryBases, ResolutionCache resolutionCache, ArtifactProbe artifactProbe)
+    {
+        Preconditions.checkNotNull(resolutionCache, "resolutionCache is null");
+        Preconditions.checkNotNull(artifactProbe, "artifactProbe is null");
+
         this.defaultGroupIds = ImmutableList.copyOf(defaultGroupIds);
         for (URI uri : repositoryBases) {
             Preconditions.checkArgument(uri.toASCIIString().endsWith("/"), "Uri must end with a '/' " + uri);
         }
         this.repositoryBases = ImmutableList.copyOf(repositoryBases);
+        this.resolutionCache = resolutionCache;
+        this.artifactProbe = artifactProbe;
     }
 
-    @Inject
     public MavenRepository(CoordinatorConfig config)
     {
+        this(config, ResolutionCache.disabled(), new ArtifactProbe(config));
+    }
+
+    @Inject
+    public MavenRepository(CoordinatorConfig config, ResolutionCache resolutionCache, ArtifactProbe artifactProbe)
+    {
+        Preconditions.checkNotNull(resolutionCache, "resolutionCache is null");
+        Preconditions.checkNotNull(artifactProbe, "artifactProbe is null");
+        this.resolutionCache = resolutionCache;
+        this.artifactProbe = artifactProbe;
+
         if (config.getDefaultRepositoryGroupId() != null) {
             this.defaultGroupIds = ImmutableList.copyOf(config.getDefaultRepositoryGroupId());
         } else {
@@ -254,44 +268,73 @@ public class MavenRepository implements Repository
         if (coordinates == null) {
             return null;
         }
-        List<URI> checkedUris = newArrayList();
-        for (URI repositoryBase : repositoryBases) {
-            // build the uri
-            HttpUriBuilder uriBuilder = uriBuilderFrom(repositoryBase);
-            uriBuilder.appendPath(coordinates.getGroupId().replace('.', '/'));
-            uriBuilder.appendPath(coordinates.getArtifactId());
-            uriBuilder.appendPath(coordinates.getVersion());
-
-            StringBuilder fileNameBuilder = new StringBuilder().append(coordinates.getArtifactId()).append('-').append(coordinates.getFileVersion());
-            if (coordinates.getClassifier() != null) {
-                fileNameBuilder.append('-').append(coordinates.getClassifier());
-            }
-            fileNameBuilder.append('.').append(coordinates.getPackaging());
-            uriBuilder.appendPath(fileNameBuilder.toString());
 
-            URI uri = uriBuilder.build();
-
-            // try to download some of the file
-            if (isValidBinary(uri)) {
-                return uri;
+        final MavenCoordinates resolvedCoordinates = coordinates;
+        URI uri = resolutionCache.get("maven-uri:" + coordinates, coordinates.getVersion(), new Supplier<URI>()
+        {
+            @Override
+            public URI get()
+            {
+                // probe all repositories at once, but prefer the earlier ones
+                List<URI> uris = newArrayList();
+                for (URI repositoryBase : repositoryBases) {
+                    uris.add(toRepositoryUri(repositoryBase, resolvedCoordinates));
+                }
+                List<Boolean> exists = artifactProbe.exists(uris);
+                for (int i = 0; i < uris.size(); i++) {
+                    if (exists.get(i)) {
+                        return uris.get(i);
+                    }
+                }
+                return null;
             }
+        });
 
-            checkedUris.add(uri);
-        }
-        if (required) {
+        if (uri == null && required) {
+            List<URI> checkedUris = newArrayList();
+            for (URI repositoryBase : repositoryBases) {
+                checkedUris.add(toRepositoryUri(repositoryBase, coordinates));
+            }
             throw new RuntimeException("Unable to find binary " + coordinates + " at " + checkedUris);
         }
-        else {
-            return null;
+        return uri;
+    }
+
+    private static URI toRepositoryUri(URI repositoryBase, MavenCoordinates coordinates)
+    {
+        HttpUriBuilder uriBuilder = uriBuilderFrom(repositoryBase);
+        uriBuilder.appendPath(coordinates.getGroupId().replace('.', '/'));
+        uriBuilder.appendPath(coordinates.getArtifactId());
+        uriBuilder.appendPath(coordinates.getVersion());
+
+        StringBuilder fileNameBuilder = new StringBuilder().append(coordinates.getArtifactId()).append('-').append(coordinates.getFileVersion());
+        if (coordinates.getClassifier() != null) {
+            fileNameBuilder.append('-').append(coordinates.getClassifier());
         }
+        fileNameBuilder.append('.').append(coordinates.getPackaging());
+        uriBuilder.appendPath(fileNameBuilder.toString());
+
+        return uriBuilder.build();
     }
 
-    public MavenCoordinates resolve(MavenCoordinates coordinates)
+    public MavenCoordinates resolve(final MavenCoordinates coordinates)
     {
         if (coordinates.isResolved()) {
             return coordinates;
         }
 
+        return resolutionCache.get("maven-resolve:" + coordinates, coordinates.getVersion(), new Supplier<MavenCoordinates>()
+        {
+            @Override
+            public MavenCoordinates get()
+            {
+                return resolveUncached(coordinates);
+            }
+        });
+    }
+
+    private MavenCoordinates resolveUncached(final MavenCoordinates coordinates)
+    {
         List<String> groupIds;
         if (coordinates.getGroupId() != null) {
             groupIds = ImmutableList.of(coordinates.getGroupId());
@@ -300,43 +343,23 @@ public class MavenRepository implements Repository
             groupIds = defaultGroupIds;
         }
 
-        List<MavenCoordinates> matchedCoordinates = newArrayList();
-        for (String groupId : groupIds) {
-            // check for a file with the exact name
-            MavenCoordinates resolvedSpec = new MavenCoordinates(groupId,
-                    coordinates.getArtifactId(),
-                    coordinates.getVersion(),
-                    coordinates.getPackaging(),
-                    coordinates.getClassifier(),
-                    coordinates.getFileVersion());
-
-            if (toHttpUri(resolvedSpec, false) != null) {
-                matchedCoordinates.add(resolvedSpec);
-                continue;
-            }
-
-            // check of a timestamped snapshot file
-            if (coordinates.getVersion().contains("SNAPSHOT")) {
-                MavenCoordinates timestampSpec = resolveSnapshotTimestamp(coordinates, groupId);
-                if (timestampSpec != null) {
-                    matchedCoordinates.add(timestampSpec);
-                    continue;
+        // resolve against all group ids at once
+        List<Callable<MavenCoordinates>> resolutions = newArrayList();
+        for (final String groupId : groupIds) {
+            resolutions.add(new Callable<MavenCoordinates>()
+            {
+                @Override
+                public MavenCoordinates call()
+                {
+                    return resolve(coordinates, groupId);
                 }
-            }
-
-            // Snapshot revisions are resolved to timestamp version which may need to be converted back to SNAPSHOT for resolution
-            Matcher timestampMatcher = TIMESTAMP_VERSION.matcher(coordinates.getVersion());
-            if (timestampMatcher.matches()) {
-                MavenCoordinates snapshotSpec = new MavenCoordinates(groupId,
-                        coordinates.getArtifactId(),
-                        timestampMatcher.group(1) + "-SNAPSHOT",
-                        coordinates.getPackaging(),
-                        coordinates.getClassifier(),
-                        coordinates.getVersion());
+            });
+        }
 
-                if (toHttpUri(snapshotSpec, false) != null) {
-                    matchedCoordinates.add(snapshotSpec);
-                }
+        List<MavenCoordinates> matchedCoordinates = newArrayList();
+        for (MavenCoordinates resolvedCoordinates : artifactProbe.invokeAll(resolutions)) {
+            if (resolvedCoordinates != null) {
+                matchedCoordinates.add(resolvedCoordinates);
             }
         }
 
@@ -351,6 +374,45 @@ public class MavenRepository implements Repository
         return matchedCoordinates.get(0);
     }
 
+    private MavenCoordinates resolve(MavenCoordinates coordinates, String groupId)
+    {
+        // check for a file with the exact name
+        MavenCoordinates resolvedSpec = new MavenCoordinates(groupId,
+                coordinates.getArtifactId(),
+                coordinates.getVersion(),
+                coordinates.getPackaging(),
+                coordinates.getClassifier(),
+                coordinates.getFileVersion());
+
+        if (toHttpUri(resolvedSpec, false) != null) {
+            return resolvedSpec;
+        }
+
+        // check of a timestamped snapshot file
+        if (coordinates.getVersion().contains("SNAPSHOT")) {
+            MavenCoordinates timestampSpec = resolveSnapshotTimestamp(coordinates, groupId);
+            if (timestampSpec != null) {
+                return timestampSpec;
+            }
+        }
+
+        // Snapshot revisions are resolved to timestamp version which may need to be converted back to SNAPSHOT for resolution
+        Matcher timestampMatcher = TIMESTAMP_VERSION.matcher(coordinates.getVersion());
+        if (timestampMatcher.matches()) {
+            MavenCoordinates snapshotSpec = new MavenCoordinates(groupId,
+                    coordinates.getArtifactId(),
+                    timestampMatcher.group(1) + "-SNAPSHOT",
+                    coordinates.getPackaging(),
+                    coordinates.getClassifier(),
+                    coordinates.getVersion());
+
+            if (toHttpUri(snapshotSpec, false) != null) {
+                return snapshotSpec;
+            }
+        }
+        return null;
+    }
+
     private MavenCoordinates resolveSnapshotTimestamp(MavenCoordinates coordinates, String groupId)
     {
 
@@ -363,7 +425,7 @@ public class MavenRepository implements Repository
                 uriBuilder.appendPath(coordinates.getVersion());
                 uriBuilder.appendPath("maven-metadata.xml");
                 URI uri = uriBuilder.build();
-                MavenMetadata metadata = MavenMetadata.unmarshalMavenMetadata(toString(uri));
+                MavenMetadata metadata = metadataCache.getMetadata(uri);
 
                 for (SnapshotVersion snapshotVersion : metadata.versioning.snapshotVersions) {
                     if (coordinates.getPackaging().equals(snapshotVersion.extension) && Objects.equal(coordinates.getClassifier(), snapshotVersion.classifier)) {
@@ -385,53 +447,6 @@ public class MavenRepository implements Repository
         return null;
     }
 
-    private String toString(URI uri)
-            throws IOException
-    {
-        final URL url = uri.toURL();
-        return CharStreams.toString(new InputSupplier<InputStreamReader>() {
-            @Override
-            public InputStreamReader getInput()
-                    throws IOException
-            {
-                URLConnection connection = url.openConnection();
-                if (connection instanceof HttpURLConnection) {
-                    HttpURLConnection httpConnection = (HttpURLConnection) connection;
-                    httpConnection.addRequestProperty("User-Agent", "User-Agent: Apache-Maven/3.0.3 (Java 1.6.0_29; Mac OS X 10.7.2)");
-                }
-                InputStream in = connection.getInputStream();
-                return new InputStreamReader(in, UTF_8);
-            }
-        });
-    }
-
-    private boolean isValidBinary(URI uri)
-    {
-        try {
-            InputSupplier<InputStream> inputSupplier = Resources.newInputStreamSupplier(uri.toURL());
-            ByteStreams.readBytes(inputSupplier, new ByteProcessor<Void>()
-            {
-                private int count;
-
-                public boolean processBytes(byte[] buffer, int offset, int length)
-                {
-                    count += length;
-                    // make sure we got at least 10 bytes
-                    return count < 10;
-                }
-
-                public Void getResult()
-                {
-                    return null;
-                }
-            });
-            return true;
-        }
-        catch (Exception ignored) {
-        }
-        return false;
-    }
-
     @Override
     public String toString()
     {
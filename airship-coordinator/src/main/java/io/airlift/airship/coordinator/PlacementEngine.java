@@ -0,0 +1,208 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.InstallationUtils;
+import io.airlift.airship.shared.SlotStatus;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Chooses the agents for new slots.  The free resources of each agent are indexed and only recomputed
+ * when the agent reports a new status.  A whole batch is placed in one pass: agents are first ranked by
+ * the number of instances of the service already running in their location (anti-affinity), and then
+ * by load according to the placement strategy.
+ */
+public class PlacementEngine
+{
+    private final PlacementStrategy strategy;
+    private final int antiAffinityDepth;
+    private final Map<String, AgentCapacity> capacities = new HashMap<String, AgentCapacity>();
+
+    /**
+     * @param antiAffinityDepth number of leading agent location segments that form a failure domain,
+     * or 0 to treat every agent location as its own failure domain
+     */
+    public PlacementEngine(PlacementStrategy strategy, int antiAffinityDepth)
+    {
+        Preconditions.checkNotNull(strategy, "strategy is null");
+        Preconditions.checkArgument(antiAffinityDepth >= 0, "antiAffinityDepth is negative");
+
+        this.strategy = strategy;
+        this.antiAffinityDepth = antiAffinityDepth;
+    }
+
+    /**
+     * Brings the index up to date with the current agent status, keyed by agent instance id.
+     */
+    public synchronized void update(Map<String, AgentStatus> agents)
+    {
+        Preconditions.checkNotNull(agents, "agents is null");
+
+        capacities.keySet().retainAll(agents.keySet());
+        for (Entry<String, AgentStatus> entry : agents.entrySet()) {
+            AgentCapacity capacity = capacities.get(entry.getKey());
+            if (capacity == null || capacity.getStatus() != entry.getValue()) {
+                capacities.put(entry.getKey(), new AgentCapacity(entry.getKey(), entry.getValue(), getFailureDomain(entry.getValue())));
+            }
+        }
+    }
+
+    /**
+     * Places up to limit slots, each on a different candidate agent with enough free resources.
+     *
+     * @param candidates instance ids of the agents that may receive a slot
+     * @param serviceFilter matches the existing slots of the service being placed
+     * @return instance ids of the chosen agents
+     */
+    public synchronized List<String> place(Collection<String> candidates, Map<String, Integer> requiredResources, Predicate<SlotStatus> serviceFilter, int limit)
+    {
+        Preconditions.checkNotNull(candidates, "candidates is null");
+        Preconditions.checkNotNull(requiredResources, "requiredResources is null");
+        Preconditions.checkNotNull(serviceFilter, "serviceFilter is null");
+
+        // count the instances of the service in each failure domain across the whole fleet
+        final Map<String, Integer> domainInstances = new HashMap<String, Integer>();
+        for (AgentCapacity capacity : capacities.values()) {
+            int instances = Iterables.size(Iterables.filter(capacity.getStatus().getSlotStatuses(), serviceFilter));
+            addInstances(domainInstances, capacity.getFailureDomain(), instances);
+        }
+
+        List<AgentCapacity> available = newArrayList();
+        for (String instanceId : candidates) {
+            AgentCapacity capacity = capacities.get(instanceId);
+            if (capacity != null && capacity.canFit(requiredResources)) {
+                available.add(capacity);
+            }
+        }
+
+        // randomize first, so ties do not always land on the same agent
+        Collections.shuffle(available);
+
+        Comparator<AgentCapacity> ranking = new Comparator<AgentCapacity>()
+        {
+            @Override
+            public int compare(AgentCapacity left, AgentCapacity right)
+            {
+                int result = Integer.valueOf(getInstances(domainInstances, left.getFailureDomain())).compareTo(getInstances(domainInstances, right.getFailureDomain()));
+                if (result != 0) {
+                    return result;
+                }
+                result = Double.compare(left.getUtilization(), right.getUtilization());
+                if (result == 0) {
+                    result = Integer.valueOf(left.getSlotCount()).compareTo(right.getSlotCount());
+                }
+                return strategy == PlacementStrategy.BIN_PACK ? -result : result;
+            }
+        };
+
+        ImmutableList.Builder<String> placements = ImmutableList.builder();
+        for (int i = 0; i < limit && !available.isEmpty(); i++) {
+            AgentCapacity best = Collections.min(available, ranking);
+            available.remove(best);
+            placements.add(best.getInstanceId());
+            addInstances(domainInstances, best.getFailureDomain(), 1);
+        }
+        return placements.build();
+    }
+
+    private String getFailureDomain(AgentStatus status)
+    {
+        String location = status.getLocation();
+        if (location == null) {
+            return "agent:" + status.getInstanceId();
+        }
+        if (antiAffinityDepth == 0) {
+            return location;
+        }
+
+        StringBuilder domain = new StringBuilder();
+        for (String segment : Iterables.limit(Splitter.on('/').omitEmptyStrings().split(location), antiAffinityDepth)) {
+            domain.append('/').append(segment);
+        }
+        return domain.toString();
+    }
+
+    private static int getInstances(Map<String, Integer> domainInstances, String domain)
+    {
+        return Objects.firstNonNull(domainInstances.get(domain), 0);
+    }
+
+    private static void addInstances(Map<String, Integer> domainInstances, String domain, int instances)
+    {
+        if (instances > 0) {
+            domainInstances.put(domain, getInstances(domainInstances, domain) + instances);
+        }
+    }
+
+    private static class AgentCapacity
+    {
+        private final String instanceId;
+        private final AgentStatus status;
+        private final String failureDomain;
+        private final Map<String, Integer> availableResources;
+        private final double utilization;
+
+        private AgentCapacity(String instanceId, AgentStatus status, String failureDomain)
+        {
+            this.instanceId = instanceId;
+            this.status = status;
+            this.failureDomain = failureDomain;
+            this.availableResources = InstallationUtils.getAvailableResources(status);
+
+            // utilization is the fraction used of the most used resource
+            double utilization = 0;
+            for (Entry<String, Integer> entry : status.getResources().entrySet()) {
+                if (entry.getValue() > 0) {
+                    int used = entry.getValue() - availableResources.get(entry.getKey());
+                    utilization = Math.max(utilization, (double) used / entry.getValue());
+                }
+            }
+            this.utilization = utilization;
+        }
+
+        public String getInstanceId()
+        {
+            return instanceId;
+        }
+
+        public AgentStatus getStatus()
+        {
+            return status;
+        }
+
+        public String getFailureDomain()
+        {
+            return failureDomain;
+        }
+
+        public double getUtilization()
+        {
+            return utilization;
+        }
+
+        public int getSlotCount()
+        {
+            return status.getSlotStatuses().size();
+        }
+
+        public boolean canFit(Map<String, Integer> requiredResources)
+        {
+            // agents without declared resources are considered to have unlimited resources
+            return status.getResources().isEmpty() || InstallationUtils.resourcesAreAvailable(availableResources, requiredResources);
+        }
+    }
+}
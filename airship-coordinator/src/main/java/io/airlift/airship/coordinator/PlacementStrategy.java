@@ -0,0 +1,25 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+
+public enum PlacementStrategy
+{
+    /**
+     * Places new slots on the least loaded agents, keeping load even across the fleet.
+     */
+    SPREAD,
+
+    /**
+     * Places new slots on the most loaded agents that still have room, keeping whole agents free.
+     */
+    BIN_PACK;
+
+    /**
+     * Parses the configuration name of a strategy, e.g. "spread" or "bin-pack".
+     */
+    public static PlacementStrategy fromConfigName(String name)
+    {
+        Preconditions.checkNotNull(name, "name is null");
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+}
@@ -1,6 +1,7 @@
 package io.airlift.airship.coordinator;
 
 import com.proofpoint.discovery.client.ServiceDescriptor;
+import com.proofpoint.units.Duration;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.Installation;
 import io.airlift.airship.shared.SlotStatus;
@@ -21,5 +22,15 @@ public interface RemoteAgent
 
     void updateStatus();
 
-    void setServiceInventory(List<ServiceDescriptor> serviceInventory);
+    /**
+     * Blocks until the agent reports a status change or maxWait elapses, updating the status on change.
+     *
+     * @return false if the agent can not be watched right now, in which case the caller should rely on {@link #updateStatus()}
+     */
+    boolean watchStatus(Duration maxWait);
+
+    /**
+     * Pushes the service inventory to the agent, unless the agent reported having the same version when its status was last updated.
+     */
+    void setServiceInventory(List<ServiceDescriptor> serviceInventory, String serviceInventoryVersion);
 }
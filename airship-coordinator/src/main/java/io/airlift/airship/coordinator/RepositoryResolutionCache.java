@@ -0,0 +1,50 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.ResolutionCache;
+import org.weakref.jmx.Managed;
+
+import javax.inject.Inject;
+
+public class RepositoryResolutionCache extends ResolutionCache
+{
+    @Inject
+    public RepositoryResolutionCache(CoordinatorConfig config)
+    {
+        super(config.getRepositoryCacheReleaseTtl(), config.getRepositoryCacheSnapshotTtl(), config.getRepositoryCacheMissTtl());
+    }
+
+    @Managed
+    @Override
+    public void invalidateAll()
+    {
+        super.invalidateAll();
+    }
+
+    @Managed
+    @Override
+    public long getHits()
+    {
+        return super.getHits();
+    }
+
+    @Managed
+    @Override
+    public long getMissingHits()
+    {
+        return super.getMissingHits();
+    }
+
+    @Managed
+    @Override
+    public long getMisses()
+    {
+        return super.getMisses();
+    }
+
+    @Managed
+    @Override
+    public long getSize()
+    {
+        return super.getSize();
+    }
+}
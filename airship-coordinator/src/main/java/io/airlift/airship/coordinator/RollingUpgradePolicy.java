@@ -0,0 +1,127 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.shared.SlotStatus;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controls how {@link Coordinator#rollingUpgrade} moves through the slots: how many slots are upgraded
+ * per batch, how a restarted slot is checked, and how long a restarted batch has to become healthy
+ * before the upgrade is halted.
+ */
+public class RollingUpgradePolicy
+{
+    private final int batchSize;
+    private final boolean percentage;
+    private final Duration healthTimeout;
+    private final Duration pollInterval;
+    private final Predicate<SlotStatus> healthCheck;
+    private final String healthPath;
+
+    public static RollingUpgradePolicy valueOf(String batchSize, Duration healthTimeout)
+    {
+        return valueOf(batchSize, healthTimeout, null);
+    }
+
+    /**
+     * Parses a batch size of the form {@code N} (slots) or {@code N%} (percentage of the upgraded slots).
+     * If a health path is specified, a restarted slot is only healthy once the path answers on every HTTP
+     * service the slot announces.
+     */
+    public static RollingUpgradePolicy valueOf(String batchSize, Duration healthTimeout, @Nullable String healthPath)
+    {
+        Preconditions.checkNotNull(batchSize, "batchSize is null");
+
+        String value = batchSize.trim();
+        boolean percentage = value.endsWith("%");
+        if (percentage) {
+            value = value.substring(0, value.length() - 1).trim();
+        }
+
+        int size;
+        try {
+            size = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        return new RollingUpgradePolicy(size, percentage, healthTimeout, new Duration(1, TimeUnit.SECONDS), Predicates.<SlotStatus>alwaysTrue(), healthPath);
+    }
+
+    public RollingUpgradePolicy(int batchSize, boolean percentage, Duration healthTimeout, Duration pollInterval, Predicate<SlotStatus> healthCheck)
+    {
+        this(batchSize, percentage, healthTimeout, pollInterval, healthCheck, null);
+    }
+
+    public RollingUpgradePolicy(int batchSize, boolean percentage, Duration healthTimeout, Duration pollInterval, Predicate<SlotStatus> healthCheck, @Nullable String healthPath)
+    {
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be at least 1");
+        Preconditions.checkArgument(!percentage || batchSize <= 100, "batch percentage must not exceed 100");
+        Preconditions.checkNotNull(healthTimeout, "healthTimeout is null");
+        Preconditions.checkNotNull(pollInterval, "pollInterval is null");
+        Preconditions.checkNotNull(healthCheck, "healthCheck is null");
+
+        this.batchSize = batchSize;
+        this.percentage = percentage;
+        this.healthTimeout = healthTimeout;
+        this.pollInterval = pollInterval;
+        this.healthCheck = healthCheck;
+        this.healthPath = healthPath;
+    }
+
+    /**
+     * Returns the number of slots to upgrade at once when upgrading the specified number of slots.
+     */
+    public int getBatchSize(int slotCount)
+    {
+        if (!percentage) {
+            return batchSize;
+        }
+        // round up so a small pool still makes progress
+        return Math.max(1, (slotCount * batchSize + 99) / 100);
+    }
+
+    public Duration getHealthTimeout()
+    {
+        return healthTimeout;
+    }
+
+    public Duration getPollInterval()
+    {
+        return pollInterval;
+    }
+
+    /**
+     * Additional check applied to a restarted slot once the agent reports it running the new assignment.
+     */
+    public Predicate<SlotStatus> getHealthCheck()
+    {
+        return healthCheck;
+    }
+
+    /**
+     * Path fetched from the HTTP services of a restarted slot to check its health, or null if the services are not checked.
+     */
+    @Nullable
+    public String getHealthPath()
+    {
+        return healthPath;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Objects.toStringHelper(this)
+                .add("batchSize", batchSize + (percentage ? "%" : ""))
+                .add("healthTimeout", healthTimeout)
+                .add("pollInterval", pollInterval)
+                .add("healthPath", healthPath)
+                .toString();
+    }
+}
@@ -3,63 +3,128 @@ package io.airlift.airship.coordinator;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.simpledb.AmazonSimpleDB;
 import com.amazonaws.services.simpledb.model.Attribute;
+import com.amazonaws.services.simpledb.model.BatchDeleteAttributesRequest;
+import com.amazonaws.services.simpledb.model.BatchPutAttributesRequest;
 import com.amazonaws.services.simpledb.model.CreateDomainRequest;
+import com.amazonaws.services.simpledb.model.DeletableItem;
 import com.amazonaws.services.simpledb.model.DeleteAttributesRequest;
 import com.amazonaws.services.simpledb.model.Item;
 import com.amazonaws.services.simpledb.model.PutAttributesRequest;
 import com.amazonaws.services.simpledb.model.ReplaceableAttribute;
+import com.amazonaws.services.simpledb.model.ReplaceableItem;
 import com.amazonaws.services.simpledb.model.SelectRequest;
 import com.amazonaws.services.simpledb.model.SelectResult;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.airship.shared.Assignment;
 import io.airlift.airship.shared.ExpectedSlotStatus;
 import io.airlift.airship.shared.SlotLifecycleState;
 import com.proofpoint.log.Logger;
 import com.proofpoint.node.NodeInfo;
+import com.proofpoint.units.Duration;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.collect.Lists.newArrayList;
 
+/**
+ * Stores the expected state in SimpleDB.  Reads are served from a local copy of the domain that is
+ * refreshed in the background, and local writes are applied to the copy immediately.
+ */
 public class SimpleDbStateManager implements StateManager
 {
     private static final Logger log = Logger.get(SimpleDbStateManager.class);
+
+    // SimpleDB accepts at most 25 items per batch request
+    private static final int MAX_BATCH_SIZE = 25;
+
+    // SimpleDB returns at most 2500 items per select
+    private static final int MAX_SELECT_SIZE = 2500;
+
+    // an eventually consistent read may miss writes made this long before the read started
+    private static final long CONSISTENCY_WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
     private final AmazonSimpleDB simpleDb;
     private final String domainName;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService executor;
+    private final Object refreshLock = new Object();
     private boolean domainCreated;
 
+    // local copy of the domain, and the local writes that a refresh may not see yet
+    private final Map<UUID, ExpectedSlotStatus> expectedStates = new LinkedHashMap<UUID, ExpectedSlotStatus>();
+    private final Map<UUID, LocalWrite> localWrites = new LinkedHashMap<UUID, LocalWrite>();
+    private List<ExpectedSlotStatus> allExpectedStates;
+    private boolean loaded;
+    private boolean consistentReadRequired = true;
+
     @Inject
-    public SimpleDbStateManager(AmazonSimpleDB simpleDb, NodeInfo nodeInfo)
+    public SimpleDbStateManager(AmazonSimpleDB simpleDb, NodeInfo nodeInfo, AwsProvisionerConfig awsProvisionerConfig)
+    {
+        this(simpleDb, "airship-" + nodeInfo.getEnvironment(), awsProvisionerConfig.getExpectedStateRefreshInterval());
+    }
+
+    public SimpleDbStateManager(AmazonSimpleDB simpleDb, String domainName, Duration refreshInterval)
     {
+        Preconditions.checkNotNull(simpleDb, "simpleDb is null");
+        Preconditions.checkNotNull(domainName, "domainName is null");
+        Preconditions.checkNotNull(refreshInterval, "refreshInterval is null");
+
         this.simpleDb = simpleDb;
-        domainName = "airship-" + nodeInfo.getEnvironment();
+        this.domainName = domainName;
+        this.refreshInterval = refreshInterval;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("SimpleDbStateManager-%s").build());
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        executor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                refresh();
+            }
+        }, 0, (long) refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        executor.shutdownNow();
     }
 
     @Override
     public Collection<ExpectedSlotStatus> getAllExpectedStates()
     {
-        List<ExpectedSlotStatus> slots = newArrayList();
-        if (isDomainCreated()) {
-            try {
-                String query = String.format("select itemName, state, binary, config from `%s`", domainName);
-                SelectResult select = simpleDb.select(new SelectRequest(query, true));
-                for (Item item : select.getItems()) {
-                    ExpectedSlotStatus expectedSlotStatus = loadSlotStatus(item);
-                    if (expectedSlotStatus != null) {
-                        slots.add(expectedSlotStatus);
-                    }
-                }
-                expectedStateStoreUp();
-            }
-            catch (Exception e) {
-                expectedStateStoreDown(e);
+        synchronized (this) {
+            if (loaded) {
+                return getCachedExpectedStates();
             }
         }
-        return slots;
+
+        // nothing has been loaded yet, so this read has to go to SimpleDB
+        refresh();
+        synchronized (this) {
+            return getCachedExpectedStates();
+        }
     }
 
     @Override
@@ -67,18 +132,16 @@ public class SimpleDbStateManager implements StateManager
     {
         Preconditions.checkNotNull(slotId, "id is null");
 
+        recordLocalWrite(slotId, null);
         if (isDomainCreated()) {
-            List<Attribute> attributes = newArrayList();
-            attributes.add(new Attribute("state", null));
-            attributes.add(new Attribute("binary", null));
-            attributes.add(new Attribute("config", null));
-
             try {
-                simpleDb.deleteAttributes(new DeleteAttributesRequest().withDomainName(domainName).withItemName(slotId.toString()).withAttributes(attributes));
+                simpleDb.deleteAttributes(new DeleteAttributesRequest().withDomainName(domainName).withItemName(slotId.toString()).withAttributes(createDeletedAttributes()));
+                localWriteCompleted(ImmutableList.of(slotId));
                 expectedStateStoreUp();
             }
             catch (Exception e) {
                 expectedStateStoreDown(e);
+                localWriteFailed(ImmutableList.of(slotId));
             }
         }
     }
@@ -88,24 +151,193 @@ public class SimpleDbStateManager implements StateManager
     {
         Preconditions.checkNotNull(slotStatus, "slotStatus is null");
 
+        recordLocalWrite(slotStatus.getId(), slotStatus);
         if (isDomainCreated()) {
-            List<ReplaceableAttribute> attributes = newArrayList();
-            attributes.add(new ReplaceableAttribute("state", slotStatus.getStatus().toString(), true));
-            if (slotStatus.getAssignment() != null) {
-                attributes.add(new ReplaceableAttribute("binary", slotStatus.getAssignment().getBinary(), true));
-                attributes.add(new ReplaceableAttribute("config", slotStatus.getAssignment().getConfig(), true));
-            }
-
             try {
-                simpleDb.putAttributes(new PutAttributesRequest().withDomainName(domainName).withItemName(slotStatus.getId().toString()).withAttributes(attributes));
+                simpleDb.putAttributes(new PutAttributesRequest().withDomainName(domainName).withItemName(slotStatus.getId().toString()).withAttributes(createAttributes(slotStatus)));
+                localWriteCompleted(ImmutableList.of(slotStatus.getId()));
                 expectedStateStoreUp();
             }
             catch (Exception e) {
                 expectedStateStoreDown(e);
+                localWriteFailed(ImmutableList.of(slotStatus.getId()));
+            }
+        }
+    }
+
+    @Override
+    public void deleteExpectedStates(Collection<UUID> slotIds)
+    {
+        Preconditions.checkNotNull(slotIds, "slotIds is null");
+
+        for (UUID slotId : slotIds) {
+            recordLocalWrite(slotId, null);
+        }
+        if (!slotIds.isEmpty() && isDomainCreated()) {
+            for (List<UUID> batch : Iterables.partition(slotIds, MAX_BATCH_SIZE)) {
+                List<DeletableItem> items = newArrayList();
+                for (UUID slotId : batch) {
+                    items.add(new DeletableItem().withName(slotId.toString()).withAttributes(createDeletedAttributes()));
+                }
+
+                try {
+                    simpleDb.batchDeleteAttributes(new BatchDeleteAttributesRequest().withDomainName(domainName).withItems(items));
+                    localWriteCompleted(batch);
+                    expectedStateStoreUp();
+                }
+                catch (Exception e) {
+                    expectedStateStoreDown(e);
+                    localWriteFailed(batch);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses)
+    {
+        Preconditions.checkNotNull(slotStatuses, "slotStatuses is null");
+
+        for (ExpectedSlotStatus slotStatus : slotStatuses) {
+            recordLocalWrite(slotStatus.getId(), slotStatus);
+        }
+        if (!slotStatuses.isEmpty() && isDomainCreated()) {
+            for (List<ExpectedSlotStatus> batch : Iterables.partition(slotStatuses, MAX_BATCH_SIZE)) {
+                List<ReplaceableItem> items = newArrayList();
+                List<UUID> slotIds = newArrayList();
+                for (ExpectedSlotStatus slotStatus : batch) {
+                    items.add(new ReplaceableItem().withName(slotStatus.getId().toString()).withAttributes(createAttributes(slotStatus)));
+                    slotIds.add(slotStatus.getId());
+                }
+
+                try {
+                    simpleDb.batchPutAttributes(new BatchPutAttributesRequest().withDomainName(domainName).withItems(items));
+                    localWriteCompleted(slotIds);
+                    expectedStateStoreUp();
+                }
+                catch (Exception e) {
+                    expectedStateStoreDown(e);
+                    localWriteFailed(slotIds);
+                }
             }
         }
     }
 
+    /**
+     * Reloads the local copy from SimpleDB, following the select pagination to the end.  Reads are
+     * only consistent for the first load and after a failed write, since otherwise the local writes
+     * cover anything an eventually consistent read might miss.
+     */
+    @VisibleForTesting
+    void refresh()
+    {
+        synchronized (refreshLock) {
+            if (isDomainCreated()) {
+                refreshExpectedStates();
+            }
+        }
+    }
+
+    private void refreshExpectedStates()
+    {
+        boolean consistentRead;
+        synchronized (this) {
+            consistentRead = consistentReadRequired;
+            consistentReadRequired = false;
+        }
+        long refreshStart = System.currentTimeMillis();
+
+        Map<UUID, ExpectedSlotStatus> states = new LinkedHashMap<UUID, ExpectedSlotStatus>();
+        try {
+            String query = String.format("select itemName, state, binary, config from `%s` limit %s", domainName, MAX_SELECT_SIZE);
+            String nextToken = null;
+            do {
+                SelectResult select = simpleDb.select(new SelectRequest(query, consistentRead).withNextToken(nextToken));
+                for (Item item : select.getItems()) {
+                    ExpectedSlotStatus expectedSlotStatus = loadSlotStatus(item);
+                    if (expectedSlotStatus != null) {
+                        states.put(expectedSlotStatus.getId(), expectedSlotStatus);
+                    }
+                }
+                nextToken = select.getNextToken();
+            } while (nextToken != null);
+            expectedStateStoreUp();
+        }
+        catch (Exception e) {
+            expectedStateStoreDown(e);
+            synchronized (this) {
+                consistentReadRequired |= consistentRead;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            applyRefresh(states, consistentRead ? refreshStart : refreshStart - CONSISTENCY_WINDOW_MILLIS);
+        }
+    }
+
+    private void applyRefresh(Map<UUID, ExpectedSlotStatus> states, long visibleBefore)
+    {
+        // keep the local writes the select may not have seen
+        for (Iterator<Entry<UUID, LocalWrite>> iterator = localWrites.entrySet().iterator(); iterator.hasNext(); ) {
+            Entry<UUID, LocalWrite> entry = iterator.next();
+            LocalWrite localWrite = entry.getValue();
+            if (localWrite.getWriteTime() < visibleBefore) {
+                iterator.remove();
+            }
+            else if (localWrite.getSlotStatus() == null) {
+                states.remove(entry.getKey());
+            }
+            else {
+                states.put(entry.getKey(), localWrite.getSlotStatus());
+            }
+        }
+
+        expectedStates.clear();
+        expectedStates.putAll(states);
+        allExpectedStates = null;
+        loaded = true;
+    }
+
+    private List<ExpectedSlotStatus> getCachedExpectedStates()
+    {
+        if (allExpectedStates == null) {
+            allExpectedStates = ImmutableList.copyOf(expectedStates.values());
+        }
+        return allExpectedStates;
+    }
+
+    private synchronized void recordLocalWrite(UUID slotId, ExpectedSlotStatus slotStatus)
+    {
+        // the write is kept over any refresh until it has been sent to SimpleDB
+        localWrites.put(slotId, new LocalWrite(slotStatus, Long.MAX_VALUE));
+        if (slotStatus == null) {
+            expectedStates.remove(slotId);
+        }
+        else {
+            expectedStates.put(slotId, slotStatus);
+        }
+        allExpectedStates = null;
+    }
+
+    private synchronized void localWriteCompleted(Collection<UUID> slotIds)
+    {
+        long writeTime = System.currentTimeMillis();
+        for (UUID slotId : slotIds) {
+            LocalWrite localWrite = localWrites.get(slotId);
+            if (localWrite != null && localWrite.getWriteTime() == Long.MAX_VALUE) {
+                localWrites.put(slotId, new LocalWrite(localWrite.getSlotStatus(), writeTime));
+            }
+        }
+    }
+
+    private synchronized void localWriteFailed(Collection<UUID> slotIds)
+    {
+        // SimpleDB may or may not have applied the write, so the next refresh must read the truth
+        localWrites.keySet().removeAll(slotIds);
+        consistentReadRequired = true;
+    }
+
     private synchronized boolean isDomainCreated()
     {
         if (!domainCreated) {
@@ -136,6 +368,26 @@ public class SimpleDbStateManager implements StateManager
         }
     }
 
+    private static List<Attribute> createDeletedAttributes()
+    {
+        List<Attribute> attributes = newArrayList();
+        attributes.add(new Attribute("state", null));
+        attributes.add(new Attribute("binary", null));
+        attributes.add(new Attribute("config", null));
+        return attributes;
+    }
+
+    private static List<ReplaceableAttribute> createAttributes(ExpectedSlotStatus slotStatus)
+    {
+        List<ReplaceableAttribute> attributes = newArrayList();
+        attributes.add(new ReplaceableAttribute("state", slotStatus.getStatus().toString(), true));
+        if (slotStatus.getAssignment() != null) {
+            attributes.add(new ReplaceableAttribute("binary", slotStatus.getAssignment().getBinary(), true));
+            attributes.add(new ReplaceableAttribute("config", slotStatus.getAssignment().getConfig(), true));
+        }
+        return attributes;
+    }
+
     private ExpectedSlotStatus loadSlotStatus(Item item)
     {
         String id = item.getName();
@@ -173,4 +425,26 @@ public class SimpleDbStateManager implements StateManager
             return null;
         }
     }
+
+    private static class LocalWrite
+    {
+        private final ExpectedSlotStatus slotStatus;
+        private final long writeTime;
+
+        private LocalWrite(ExpectedSlotStatus slotStatus, long writeTime)
+        {
+            this.slotStatus = slotStatus;
+            this.writeTime = writeTime;
+        }
+
+        public ExpectedSlotStatus getSlotStatus()
+        {
+            return slotStatus;
+        }
+
+        public long getWriteTime()
+        {
+            return writeTime;
+        }
+    }
 }
@@ -5,7 +5,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import io.airlift.airship.shared.HttpUriBuilder;
 import io.airlift.airship.shared.SlotLifecycleState;
 import io.airlift.airship.shared.SlotStatus;
@@ -16,6 +18,7 @@ import java.net.URI;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 
 import static com.google.common.base.Functions.compose;
@@ -134,83 +137,70 @@ public class SlotFilterBuilder
     public Predicate<SlotStatus> buildPredicate(boolean filterRequired, final List<UUID> allUuids)
     {
         // Filters are evaluated as: set | host | (env & version & type)
-        List<Predicate<SlotStatus>> andPredicates = Lists.newArrayListWithCapacity(6);
-        if (!slotUuidFilters.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(slotUuidFilters, new Function<String, Predicate<SlotStatus>>()
+        List<SlotUuidPredicate> slotUuidPredicates = ImmutableList.copyOf(Lists.transform(slotUuidFilters, new Function<String, SlotUuidPredicate>()
+        {
+            @Override
+            public SlotUuidPredicate apply(String shortId)
             {
-                @Override
-                public Predicate<SlotStatus> apply(String shortId)
-                {
-                    return new SlotUuidPredicate(shortId, allUuids);
-                }
-            }));
-            andPredicates.add(predicate);
-        }
+                return new SlotUuidPredicate(shortId, allUuids);
+            }
+        }));
 
-        if (!stateFilters.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(stateFilters, new Function<SlotLifecycleState, StatePredicate>()
+        List<StatePredicate> statePredicates = ImmutableList.copyOf(Lists.transform(stateFilters, new Function<SlotLifecycleState, StatePredicate>()
+        {
+            @Override
+            public StatePredicate apply(SlotLifecycleState state)
             {
-                @Override
-                public StatePredicate apply(SlotLifecycleState state)
-                {
-                    return new StatePredicate(state);
-                }
-            }));
-            andPredicates.add(predicate);
-        }
+                return new StatePredicate(state);
+            }
+        }));
 
-        if (!hostGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(hostGlobs, new Function<String, HostPredicate>()
+        List<HostPredicate> hostPredicates = ImmutableList.copyOf(Lists.transform(hostGlobs, new Function<String, HostPredicate>()
+        {
+            @Override
+            public HostPredicate apply(String hostGlob)
             {
-                @Override
-                public HostPredicate apply(String hostGlob)
-                {
-                    return new HostPredicate(hostGlob);
-                }
-            }));
-            andPredicates.add(predicate);
-        }
+                return new HostPredicate(hostGlob);
+            }
+        }));
 
-        if (!machineGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(machineGlobs, new Function<String, MachinePredicate>()
+        List<MachinePredicate> machinePredicates = ImmutableList.copyOf(Lists.transform(machineGlobs, new Function<String, MachinePredicate>()
+        {
+            @Override
+            public MachinePredicate apply(String machineGlob)
             {
-                @Override
-                public MachinePredicate apply(String machineGlob)
-                {
-                    return new MachinePredicate(machineGlob);
-                }
-            }));
-            andPredicates.add(predicate);
-        }
+                return new MachinePredicate(machineGlob);
+            }
+        }));
 
-        if (!binaryGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(binaryGlobs, new Function<String, BinarySpecPredicate>()
+        List<BinarySpecPredicate> binaryPredicates = ImmutableList.copyOf(Lists.transform(binaryGlobs, new Function<String, BinarySpecPredicate>()
+        {
+            @Override
+            public BinarySpecPredicate apply(String binarySpecPredicate)
             {
-                @Override
-                public BinarySpecPredicate apply(String binarySpecPredicate)
-                {
-                    return new BinarySpecPredicate(binarySpecPredicate);
-                }
-            }));
-            andPredicates.add(predicate);
-        }
-        if (!configGlobs.isEmpty()) {
-            Predicate<SlotStatus> predicate = Predicates.or(Lists.transform(configGlobs, new Function<String, ConfigSpecPredicate>()
+                return new BinarySpecPredicate(binarySpecPredicate);
+            }
+        }));
+
+        List<ConfigSpecPredicate> configPredicates = ImmutableList.copyOf(Lists.transform(configGlobs, new Function<String, ConfigSpecPredicate>()
+        {
+            @Override
+            public ConfigSpecPredicate apply(String configSpecPredicate)
             {
-                @Override
-                public ConfigSpecPredicate apply(String configSpecPredicate)
-                {
-                    return new ConfigSpecPredicate(configSpecPredicate);
-                }
-            }));
-            andPredicates.add(predicate);
-        }
+                return new ConfigSpecPredicate(configSpecPredicate);
+            }
+        }));
 
         if (selectAll) {
             return Predicates.alwaysTrue();
         }
-        else if (!andPredicates.isEmpty()) {
-            return Predicates.and(andPredicates);
+        else if (!slotUuidPredicates.isEmpty() ||
+                !statePredicates.isEmpty() ||
+                !hostPredicates.isEmpty() ||
+                !machinePredicates.isEmpty() ||
+                !binaryPredicates.isEmpty() ||
+                !configPredicates.isEmpty()) {
+            return new SlotFilterPredicate(slotUuidPredicates, statePredicates, hostPredicates, machinePredicates, binaryPredicates, configPredicates);
         }
         else if (!filterRequired) {
             return Predicates.alwaysTrue();
@@ -278,6 +268,15 @@ public class SlotFilterBuilder
             this.uuid = uuid;
         }
 
+        /**
+         * Gets the slot id the short id expands to, or null if no slot matches.
+         */
+        @Nullable
+        public UUID getUuid()
+        {
+            return uuid;
+        }
+
         @Override
         public boolean apply(@Nullable SlotStatus slotStatus)
         {
@@ -303,6 +302,11 @@ public class SlotFilterBuilder
             return slotStatus != null &&
                     (predicate.apply(slotStatus.getExternalUri()) || predicate.apply(slotStatus.getSelf()));
         }
+
+        public boolean matchesHost(@Nullable String host)
+        {
+            return predicate.matchesHost(host);
+        }
     }
 
     public static class MachinePredicate implements Predicate<SlotStatus>
@@ -352,6 +356,11 @@ public class SlotFilterBuilder
             return slotStatus != null &&
                     glob.apply(slotStatus.getAssignment().getBinary());
         }
+
+        public boolean matchesBinary(@Nullable String binary)
+        {
+            return binary != null && glob.apply(binary);
+        }
     }
 
     public static class ConfigSpecPredicate implements Predicate<SlotStatus>
@@ -369,5 +378,142 @@ public class SlotFilterBuilder
             return slotStatus != null &&
                     glob.apply(slotStatus.getAssignment().getConfig());
         }
+
+        public boolean matchesConfig(@Nullable String config)
+        {
+            return config != null && glob.apply(config);
+        }
+    }
+
+    /**
+     * The slot filter built from the query.  Each kind of filter matches any of its values and all kinds
+     * must match.  Against a fleet snapshot the id, host, binary and config filters are looked up in the
+     * snapshot indexes, so each distinct host, binary and config is matched once rather than once per slot,
+     * and only the remaining filters are applied to the slots found.
+     */
+    public static class SlotFilterPredicate implements IndexedSlotFilter
+    {
+        private final List<SlotUuidPredicate> slotUuidPredicates;
+        private final List<StatePredicate> statePredicates;
+        private final List<HostPredicate> hostPredicates;
+        private final List<MachinePredicate> machinePredicates;
+        private final List<BinarySpecPredicate> binaryPredicates;
+        private final List<ConfigSpecPredicate> configPredicates;
+        private final Predicate<SlotStatus> predicate;
+
+        private SlotFilterPredicate(List<SlotUuidPredicate> slotUuidPredicates,
+                List<StatePredicate> statePredicates,
+                List<HostPredicate> hostPredicates,
+                List<MachinePredicate> machinePredicates,
+                List<BinarySpecPredicate> binaryPredicates,
+                List<ConfigSpecPredicate> configPredicates)
+        {
+            this.slotUuidPredicates = slotUuidPredicates;
+            this.statePredicates = statePredicates;
+            this.hostPredicates = hostPredicates;
+            this.machinePredicates = machinePredicates;
+            this.binaryPredicates = binaryPredicates;
+            this.configPredicates = configPredicates;
+
+            List<Predicate<SlotStatus>> andPredicates = Lists.newArrayListWithCapacity(6);
+            addAnyOf(andPredicates, slotUuidPredicates);
+            addAnyOf(andPredicates, statePredicates);
+            addAnyOf(andPredicates, hostPredicates);
+            addAnyOf(andPredicates, machinePredicates);
+            addAnyOf(andPredicates, binaryPredicates);
+            addAnyOf(andPredicates, configPredicates);
+            predicate = Predicates.<SlotStatus>and(andPredicates);
+        }
+
+        @Override
+        public boolean apply(@Nullable SlotStatus slotStatus)
+        {
+            return predicate.apply(slotStatus);
+        }
+
+        @Override
+        public List<SlotStatus> select(FleetSnapshot fleet)
+        {
+            // null means the indexes did not narrow the selection
+            Set<UUID> slotIds = null;
+            if (!slotUuidPredicates.isEmpty()) {
+                Set<UUID> matches = Sets.newHashSet();
+                for (SlotUuidPredicate slotUuidPredicate : slotUuidPredicates) {
+                    if (slotUuidPredicate.getUuid() != null) {
+                        matches.add(slotUuidPredicate.getUuid());
+                    }
+                }
+                slotIds = matches;
+            }
+            if (!hostPredicates.isEmpty()) {
+                slotIds = retain(slotIds, fleet.getSlotIdsByHost(new Predicate<String>()
+                {
+                    @Override
+                    public boolean apply(String host)
+                    {
+                        for (HostPredicate hostPredicate : hostPredicates) {
+                            if (hostPredicate.matchesHost(host)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                }));
+            }
+            if (!binaryPredicates.isEmpty()) {
+                slotIds = retain(slotIds, fleet.getSlotIdsByBinary(new Predicate<String>()
+                {
+                    @Override
+                    public boolean apply(String binary)
+                    {
+                        for (BinarySpecPredicate binaryPredicate : binaryPredicates) {
+                            if (binaryPredicate.matchesBinary(binary)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                }));
+            }
+            if (!configPredicates.isEmpty()) {
+                slotIds = retain(slotIds, fleet.getSlotIdsByConfig(new Predicate<String>()
+                {
+                    @Override
+                    public boolean apply(String config)
+                    {
+                        for (ConfigSpecPredicate configPredicate : configPredicates) {
+                            if (configPredicate.matchesConfig(config)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                }));
+            }
+
+            if (slotIds == null) {
+                return fleet.getSlots(predicate);
+            }
+
+            List<Predicate<SlotStatus>> remainingPredicates = Lists.newArrayListWithCapacity(2);
+            addAnyOf(remainingPredicates, statePredicates);
+            addAnyOf(remainingPredicates, machinePredicates);
+            return fleet.getSlots(slotIds, Predicates.<SlotStatus>and(remainingPredicates));
+        }
+
+        private static Set<UUID> retain(@Nullable Set<UUID> slotIds, Set<UUID> matches)
+        {
+            if (slotIds == null) {
+                return matches;
+            }
+            return Sets.newHashSet(Sets.intersection(slotIds, matches));
+        }
+
+        private static void addAnyOf(List<Predicate<SlotStatus>> andPredicates, List<? extends Predicate<SlotStatus>> predicates)
+        {
+            if (!predicates.isEmpty()) {
+                andPredicates.add(Predicates.<SlotStatus>or(predicates));
+            }
+        }
     }
 }
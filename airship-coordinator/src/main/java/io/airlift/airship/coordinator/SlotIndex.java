@@ -0,0 +1,117 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.SetMultimap;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.SlotStatus;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+/**
+ * Index of the actual slot status reported by the agents.  Agent status objects are
+ * immutable, so an agent is only re-indexed when it reports a different status object.
+ */
+public class SlotIndex
+{
+    private final Map<String, AgentStatus> agents = new LinkedHashMap<String, AgentStatus>();
+    private final Map<UUID, SlotStatus> slotsById = new LinkedHashMap<UUID, SlotStatus>();
+    private final Map<UUID, String> agentsBySlot = new LinkedHashMap<UUID, String>();
+    private final SetMultimap<String, UUID> slotsByAgent = HashMultimap.create();
+
+    private List<AgentStatus> allAgents = ImmutableList.of();
+    private List<SlotStatus> allSlots = ImmutableList.of();
+    private long version;
+
+    /**
+     * Brings the index up to date with the current agent status, keyed by agent instance id.
+     *
+     * @return true if the index changed
+     */
+    public synchronized boolean update(Map<String, AgentStatus> currentAgents)
+    {
+        Preconditions.checkNotNull(currentAgents, "currentAgents is null");
+
+        boolean changed = false;
+        for (Iterator<Entry<String, AgentStatus>> iterator = agents.entrySet().iterator(); iterator.hasNext(); ) {
+            String instanceId = iterator.next().getKey();
+            if (!currentAgents.containsKey(instanceId)) {
+                removeSlots(instanceId);
+                iterator.remove();
+                changed = true;
+            }
+        }
+
+        for (Entry<String, AgentStatus> entry : currentAgents.entrySet()) {
+            String instanceId = entry.getKey();
+            AgentStatus agentStatus = entry.getValue();
+            if (agents.get(instanceId) == agentStatus) {
+                continue;
+            }
+
+            removeSlots(instanceId);
+            for (SlotStatus slotStatus : agentStatus.getSlotStatuses()) {
+                addSlot(instanceId, slotStatus);
+            }
+            agents.put(instanceId, agentStatus);
+            changed = true;
+        }
+
+        if (changed) {
+            allAgents = ImmutableList.copyOf(agents.values());
+            allSlots = ImmutableList.copyOf(slotsById.values());
+            version++;
+        }
+        return changed;
+    }
+
+    /**
+     * Gets a number that changes every time the index changes.
+     */
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    public synchronized List<AgentStatus> getAllAgents()
+    {
+        return allAgents;
+    }
+
+    public synchronized List<SlotStatus> getAllSlots()
+    {
+        return allSlots;
+    }
+
+    public synchronized SlotStatus getSlot(UUID slotId)
+    {
+        return slotsById.get(slotId);
+    }
+
+    public synchronized String getAgentInstanceId(UUID slotId)
+    {
+        return agentsBySlot.get(slotId);
+    }
+
+    private void addSlot(String instanceId, SlotStatus slotStatus)
+    {
+        UUID slotId = slotStatus.getId();
+        slotsById.put(slotId, slotStatus);
+        agentsBySlot.put(slotId, instanceId);
+        slotsByAgent.put(instanceId, slotId);
+    }
+
+    private void removeSlots(String instanceId)
+    {
+        for (UUID slotId : slotsByAgent.removeAll(instanceId)) {
+            slotsById.remove(slotId);
+            agentsBySlot.remove(slotId);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.airlift.airship.shared.SlotStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs an operation on many slots concurrently.  At most {@code concurrency} operations run at once,
+ * and at most {@code agentConcurrency} of them target the same agent, since an agent serializes
+ * operations on a slot anyway.
+ */
+public class SlotOperationExecutor
+{
+    private final ExecutorService executor;
+    private final int agentConcurrency;
+
+    public SlotOperationExecutor(int concurrency, int agentConcurrency)
+    {
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be at least 1");
+        Preconditions.checkArgument(agentConcurrency > 0, "agentConcurrency must be at least 1");
+
+        this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder().setNameFormat("coordinator-slot-operation-%s").setDaemon(true).build());
+        this.agentConcurrency = agentConcurrency;
+    }
+
+    public void stop()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Applies the operation to every slot and returns the results in the same order as the slots.
+     * Each successful slot operation is reported to the listener as soon as it completes.  If any
+     * operation fails, the remaining operations still run and the first failure is rethrown.
+     */
+    public List<SlotStatus> execute(List<? extends RemoteSlot> slots, Function<RemoteSlot, SlotStatus> slotOperation, SlotOperationListener listener)
+    {
+        Preconditions.checkNotNull(slots, "slots is null");
+        Preconditions.checkNotNull(slotOperation, "operation is null");
+        Preconditions.checkNotNull(listener, "listener is null");
+
+        final Function<RemoteSlot, SlotStatus> operation = notifying(slotOperation, listener);
+        if (slots.size() <= 1) {
+            return ImmutableList.copyOf(Lists.transform(slots, operation));
+        }
+
+        // group the work by agent, remembering the position of each slot in the result
+        ListMultimap<String, Integer> slotsByAgent = ArrayListMultimap.create();
+        for (int i = 0; i < slots.size(); i++) {
+            slotsByAgent.put(String.valueOf(slots.get(i).status().getInstanceId()), i);
+        }
+
+        final List<? extends RemoteSlot> slotList = slots;
+        final SlotStatus[] results = new SlotStatus[slots.size()];
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (Collection<Integer> agentSlots : slotsByAgent.asMap().values()) {
+            final Queue<Integer> queue = new ConcurrentLinkedQueue<Integer>(agentSlots);
+            int workers = Math.min(agentConcurrency, agentSlots.size());
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for (Integer index = queue.poll(); index != null; index = queue.poll()) {
+                            try {
+                                results[index] = operation.apply(slotList.get(index));
+                            }
+                            catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    }
+                }));
+            }
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            }
+            catch (ExecutionException e) {
+                failure.compareAndSet(null, e.getCause());
+            }
+        }
+        if (failure.get() != null) {
+            throw Throwables.propagate(failure.get());
+        }
+
+        return ImmutableList.copyOf(results);
+    }
+
+    private static Function<RemoteSlot, SlotStatus> notifying(final Function<RemoteSlot, SlotStatus> operation, final SlotOperationListener listener)
+    {
+        return new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                SlotStatus result = operation.apply(slot);
+                listener.slotCompleted(result);
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.SlotStatus;
+
+/**
+ * Receives the result of each slot operation of a bulk coordinator operation as soon as it completes.
+ * Implementations must be thread safe, since slot operations run concurrently.
+ */
+public interface SlotOperationListener
+{
+    void slotCompleted(SlotStatus slotStatus);
+}
@@ -12,4 +12,14 @@ public interface StateManager
     void deleteExpectedState(UUID slotId);
 
     void setExpectedState(ExpectedSlotStatus slotStatus);
+
+    /**
+     * Deletes the expected state of all the slots, in as few store operations as the store allows.
+     */
+    void deleteExpectedStates(Collection<UUID> slotIds);
+
+    /**
+     * Sets the expected state of all the slots, in as few store operations as the store allows.
+     */
+    void setExpectedStates(Collection<ExpectedSlotStatus> slotStatuses);
 }
@@ -19,11 +19,11 @@ public class UriHostPredicate implements Predicate<URI>
     @Override
     public boolean apply(@Nullable URI uri)
     {
-        if (uri == null) {
-            return false;
-        }
+        return uri != null && matchesHost(uri.getHost());
+    }
 
-        String host = uri.getHost();
+    public boolean matchesHost(@Nullable String host)
+    {
         if (host == null) {
             return false;
         }
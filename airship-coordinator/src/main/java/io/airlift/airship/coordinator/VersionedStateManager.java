@@ -0,0 +1,28 @@
+package io.airlift.airship.coordinator;
+
+import io.airlift.airship.shared.ExpectedSlotStatus;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A state manager that versions the expected state of each slot, so a writer can detect that another
+ * writer changed a slot since it read the slot.  A slot without expected state has version 0, and a
+ * version is never reused for the same slot.
+ */
+public interface VersionedStateManager extends StateManager
+{
+    /**
+     * Gets the version of the expected state of each slot.
+     */
+    Map<UUID, Long> getVersions(Collection<UUID> slotIds);
+
+    /**
+     * Sets the expected states and deletes the expected state of the deleted slots in a single store
+     * operation, but only if every slot in expectedVersions still has its expected version.
+     *
+     * @return true if the expected states were written, and false if nothing was written
+     */
+    boolean compareAndSetExpectedStates(Map<UUID, Long> expectedVersions, Collection<ExpectedSlotStatus> slotStatuses, Collection<UUID> deletedSlotIds);
+}
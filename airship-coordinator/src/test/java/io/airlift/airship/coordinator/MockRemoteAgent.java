@@ -1,6 +1,7 @@
 package io.airlift.airship.coordinator;
 
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -11,6 +12,7 @@ import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.Installation;
 import io.airlift.airship.shared.SlotLifecycleState;
 import io.airlift.airship.shared.SlotStatus;
+import com.proofpoint.units.Duration;
 
 import java.net.URI;
 import java.util.List;
@@ -26,6 +28,7 @@ public class MockRemoteAgent implements RemoteAgent
 {
     private final String instanceId;
     private final Map<String, AgentStatus> agents;
+    private volatile boolean failSlotStart;
 
     public MockRemoteAgent(String instanceId, Map<String, AgentStatus> agents)
     {
@@ -33,6 +36,19 @@ public class MockRemoteAgent implements RemoteAgent
         this.agents = agents;
     }
 
+    /**
+     * Makes slots on this agent stay stopped when they are started, as if the launcher failed.
+     */
+    public void setFailSlotStart(boolean failSlotStart)
+    {
+        this.failSlotStart = failSlotStart;
+    }
+
+    boolean isFailSlotStart()
+    {
+        return failSlotStart;
+    }
+
     @Override
     public AgentStatus status()
     {
@@ -42,7 +58,9 @@ public class MockRemoteAgent implements RemoteAgent
     @Override
     public void setInternalUri(URI internalUri)
     {
-        setAgentStatus(getAgentStatus().changeInternalUri(internalUri));
+        if (!Objects.equal(getAgentStatus().getInternalUri(), internalUri)) {
+            setAgentStatus(getAgentStatus().changeInternalUri(internalUri));
+        }
     }
 
     @Override
@@ -63,14 +81,20 @@ public class MockRemoteAgent implements RemoteAgent
     {
     }
 
-    void setSlotStatus(SlotStatus slotStatus)
+    @Override
+    public boolean watchStatus(Duration maxWait)
+    {
+        return false;
+    }
+
+    synchronized void setSlotStatus(SlotStatus slotStatus)
     {
         AgentStatus agentStatus = getAgentStatus().changeSlotStatus(slotStatus);
         setAgentStatus(agentStatus);
     }
 
     @Override
-    public void setServiceInventory(List<ServiceDescriptor> serviceInventory)
+    public void setServiceInventory(List<ServiceDescriptor> serviceInventory, String serviceInventoryVersion)
     {
     }
 
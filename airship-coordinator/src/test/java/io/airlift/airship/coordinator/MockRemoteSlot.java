@@ -59,6 +59,11 @@ public class MockRemoteSlot implements RemoteSlot
         if (slotStatus.getAssignment() == null) {
             throw new IllegalStateException("Slot can not be started because the slot is not assigned");
         }
+        if (mockRemoteAgent.isFailSlotStart()) {
+            slotStatus = slotStatus.changeState(STOPPED).changeStatusMessage("Start failed");
+            mockRemoteAgent.setSlotStatus(slotStatus);
+            return slotStatus;
+        }
         slotStatus = slotStatus.changeState(RUNNING);
         mockRemoteAgent.setSlotStatus(slotStatus);
         return slotStatus;
@@ -58,7 +58,17 @@ public class TestAdminResource
                 new InMemoryStateManager(),
                 new MockServiceInventory(),
                 new Duration(1, TimeUnit.DAYS),
-                false);
+                false,
+                1,
+                null,
+                1,
+                1,
+                1,
+                PlacementStrategy.SPREAD,
+                0,
+                0,
+                null,
+                null);
         resource = new AdminResource(coordinator, repository);
     }
 
@@ -0,0 +1,277 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.proofpoint.configuration.ConfigurationFactory;
+import com.proofpoint.configuration.ConfigurationModule;
+import com.proofpoint.http.server.testing.TestingHttpServer;
+import com.proofpoint.http.server.testing.TestingHttpServerModule;
+import com.proofpoint.jaxrs.JaxrsModule;
+import com.proofpoint.json.JsonModule;
+import com.proofpoint.node.testing.TestingNodeModule;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestArtifactProbe
+{
+    private TestingHttpServer server;
+    private ArtifactResource artifactResource;
+
+    private File dir;
+    private ArtifactProbe probe;
+
+    @BeforeClass
+    public void startServer()
+            throws Exception
+    {
+        Injector injector = Guice.createInjector(new TestingHttpServerModule(),
+                new TestingNodeModule(),
+                new JsonModule(),
+                new JaxrsModule(),
+                new ConfigurationModule(new ConfigurationFactory(ImmutableMap.<String, String>of())),
+                new Module()
+                {
+                    @Override
+                    public void configure(Binder binder)
+                    {
+                        binder.bind(ArtifactResource.class).in(Scopes.SINGLETON);
+                    }
+                });
+
+        server = injector.getInstance(TestingHttpServer.class);
+        artifactResource = injector.getInstance(ArtifactResource.class);
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer()
+            throws Exception
+    {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @BeforeMethod
+    public void setup()
+    {
+        dir = createTempDir("probe");
+        artifactResource.reset();
+        probe = new ArtifactProbe(new Duration(1, TimeUnit.SECONDS), new Duration(200, TimeUnit.MILLISECONDS), Executors.newCachedThreadPool());
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        probe.stop();
+        deleteRecursively(dir);
+    }
+
+    @Test
+    public void testExists()
+            throws Exception
+    {
+        File apple = new File(dir, "apple-1.0.tar.gz");
+        Files.write("apple", apple, Charsets.UTF_8);
+        File banana = new File(dir, "banana-1.0.tar.gz");
+
+        assertEquals(probe.exists(ImmutableList.of(banana.toURI(), apple.toURI(), banana.toURI())), ImmutableList.of(false, true, false));
+    }
+
+    @Test
+    public void testHead()
+    {
+        assertTrue(probe.exists(artifactUri("apple-1.0.tar.gz")));
+        assertEquals(artifactResource.getRequests(), ImmutableList.of("HEAD apple-1.0.tar.gz"));
+
+        artifactResource.setHeadStatus(404);
+        assertFalse(probe.exists(artifactUri("banana-1.0.tar.gz")));
+        assertEquals(artifactResource.getRequests(), ImmutableList.of("HEAD apple-1.0.tar.gz", "HEAD banana-1.0.tar.gz"));
+    }
+
+    @Test
+    public void testHeadNotAllowed()
+    {
+        // the server does not handle HEAD, so the first bytes are fetched instead
+        artifactResource.setHeadStatus(405);
+        assertTrue(probe.exists(artifactUri("apple-1.0.tar.gz")));
+        assertEquals(artifactResource.getRequests(), ImmutableList.of("HEAD apple-1.0.tar.gz", "GET apple-1.0.tar.gz bytes=0-9"));
+
+        artifactResource.setGetStatus(404);
+        assertFalse(probe.exists(artifactUri("banana-1.0.tar.gz")));
+    }
+
+    @Test
+    public void testServerError()
+    {
+        artifactResource.setHeadStatus(500);
+        artifactResource.setGetStatus(500);
+        assertFalse(probe.exists(artifactUri("apple-1.0.tar.gz")));
+    }
+
+    @Test
+    public void testConnectionRefused()
+            throws Exception
+    {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        assertFalse(probe.exists(URI.create("http://127.0.0.1:" + port + "/apple-1.0.tar.gz")));
+    }
+
+    @Test
+    public void testReadTimeout()
+    {
+        artifactResource.setDelayMillis(5000);
+
+        long start = System.nanoTime();
+        assertFalse(probe.exists(artifactUri("apple-1.0.tar.gz")));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "probe did not time out");
+    }
+
+    @Test
+    public void testInvokeAll()
+    {
+        List<Callable<Integer>> tasks = newArrayList();
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            tasks.add(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                {
+                    return value;
+                }
+            });
+        }
+
+        List<Integer> results = probe.invokeAll(tasks);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(results.get(i).intValue(), i);
+        }
+
+        // a stopped probe runs the tasks in the calling thread
+        probe.stop();
+        assertEquals(probe.invokeAll(tasks), results);
+    }
+
+    @Test
+    public void testInvokeAllFailure()
+    {
+        Callable<Integer> failure = new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+            {
+                throw new IllegalStateException("Ambiguous spec");
+            }
+        };
+
+        try {
+            probe.invokeAll(ImmutableList.of(failure, failure));
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+    }
+
+    private URI artifactUri(String name)
+    {
+        return server.getBaseUrl().resolve("/v1/artifact/" + name);
+    }
+
+    @Path("/v1/artifact/")
+    public static class ArtifactResource
+    {
+        private final List<String> requests = new CopyOnWriteArrayList<String>();
+        private volatile int headStatus;
+        private volatile int getStatus;
+        private volatile long delayMillis;
+
+        public void reset()
+        {
+            requests.clear();
+            headStatus = 200;
+            getStatus = 200;
+            delayMillis = 0;
+        }
+
+        public List<String> getRequests()
+        {
+            return ImmutableList.copyOf(requests);
+        }
+
+        public void setHeadStatus(int headStatus)
+        {
+            this.headStatus = headStatus;
+        }
+
+        public void setGetStatus(int getStatus)
+        {
+            this.getStatus = getStatus;
+        }
+
+        public void setDelayMillis(long delayMillis)
+        {
+            this.delayMillis = delayMillis;
+        }
+
+        @HEAD
+        @Path("{name}")
+        public Response head(@PathParam("name") String name)
+                throws InterruptedException
+        {
+            requests.add("HEAD " + name);
+            Thread.sleep(delayMillis);
+            return Response.status(headStatus).build();
+        }
+
+        @GET
+        @Path("{name}")
+        public Response get(@PathParam("name") String name, @HeaderParam("Range") String range)
+                throws InterruptedException
+        {
+            requests.add("GET " + name + " " + range);
+            Thread.sleep(delayMillis);
+            if (getStatus != 200) {
+                return Response.status(getStatus).build();
+            }
+            return Response.ok("0123456789abcdef").build();
+        }
+    }
+}
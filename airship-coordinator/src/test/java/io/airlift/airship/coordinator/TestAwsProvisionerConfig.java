@@ -42,6 +42,7 @@ public class TestAwsProvisionerConfig
                 .setS3KeystoreBucket(null)
                 .setS3KeystorePath(null)
                 .setS3KeystoreRefreshInterval(new Duration(10, TimeUnit.SECONDS))
+                .setExpectedStateRefreshInterval(new Duration(10, TimeUnit.SECONDS))
         );
     }
 
@@ -62,6 +63,7 @@ public class TestAwsProvisionerConfig
                 .put("coordinator.aws.s3-keystore.bucket", "bucket")
                 .put("coordinator.aws.s3-keystore.path", "path")
                 .put("coordinator.aws.s3-keystore.refresh", "30s")
+                .put("coordinator.aws.expected-state.refresh", "1m")
                 .build();
 
         AwsProvisionerConfig expected = new AwsProvisionerConfig()
@@ -77,7 +79,8 @@ public class TestAwsProvisionerConfig
                 .setAwsAgentDefaultInstanceType("a-t1.micro")
                 .setS3KeystoreBucket("bucket")
                 .setS3KeystorePath("path")
-                .setS3KeystoreRefreshInterval(new Duration(30, TimeUnit.SECONDS));
+                .setS3KeystoreRefreshInterval(new Duration(30, TimeUnit.SECONDS))
+                .setExpectedStateRefreshInterval(new Duration(1, TimeUnit.MINUTES));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
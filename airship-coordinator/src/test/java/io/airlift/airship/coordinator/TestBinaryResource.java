@@ -0,0 +1,250 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.sun.jersey.spi.CloseableService;
+import io.airlift.airship.shared.BinaryCache;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestBinaryResource
+{
+    private TestingMavenRepository repository;
+    private File cacheDir;
+    private byte[] apple;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        repository = new TestingMavenRepository();
+        cacheDir = createTempDir("binary-cache");
+        apple = Files.toByteArray(new File(repository.getTargetRepo(), "food/fruit/apple/1.0/apple-1.0.tar.gz"));
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        repository.destroy();
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void testGetBinary()
+            throws Exception
+    {
+        BinaryResource resource = new BinaryResource(repository, new BinaryCache(cacheDir, 1024 * 1024));
+
+        Response response = getApple(resource, null, null);
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getMetadata().getFirst("Content-Length"), (long) apple.length);
+        assertNull(response.getMetadata().getFirst("Content-Range"));
+        assertEquals(write(response), apple);
+    }
+
+    @Test
+    public void testRange()
+            throws Exception
+    {
+        BinaryResource resource = new BinaryResource(repository, new BinaryCache(cacheDir, 1024 * 1024));
+
+        Response response = getApple(resource, "bytes=0-9", null);
+        assertEquals(response.getStatus(), 206);
+        assertEquals(response.getMetadata().getFirst("Content-Range"), "bytes 0-9/" + apple.length);
+        assertEquals(response.getMetadata().getFirst("Content-Length"), 10L);
+        assertEquals(write(response), Arrays.copyOfRange(apple, 0, 10));
+
+        // the last bytes
+        response = getApple(resource, "bytes=-5", null);
+        assertEquals(response.getStatus(), 206);
+        assertEquals(response.getMetadata().getFirst("Content-Range"), "bytes " + (apple.length - 5) + "-" + (apple.length - 1) + "/" + apple.length);
+        assertEquals(write(response), Arrays.copyOfRange(apple, apple.length - 5, apple.length));
+
+        // the rest of the binary, as when resuming a download
+        response = getApple(resource, "bytes=10-", null);
+        assertEquals(response.getStatus(), 206);
+        assertEquals(write(response), Arrays.copyOfRange(apple, 10, apple.length));
+
+        // malformed ranges are ignored
+        response = getApple(resource, "bytes=a-b", null);
+        assertEquals(response.getStatus(), 200);
+        assertEquals(write(response), apple);
+    }
+
+    @Test
+    public void testUnsatisfiableRange()
+            throws Exception
+    {
+        BinaryCache binaryCache = new BinaryCache(cacheDir, 1);
+        BinaryResource resource = new BinaryResource(repository, binaryCache);
+
+        Response response = getApple(resource, "bytes=" + apple.length + "-", null);
+        assertEquals(response.getStatus(), 416);
+        assertEquals(response.getMetadata().getFirst("Content-Range"), "bytes */" + apple.length);
+
+        // the binary was released, so it is evicted from the undersized cache
+        addCherry();
+        write(getBinary(resource, "cherry"));
+        assertEquals(binaryCache.getBinaryCount(), 0);
+    }
+
+    @Test
+    public void testIfNoneMatch()
+            throws Exception
+    {
+        BinaryResource resource = new BinaryResource(repository, new BinaryCache(cacheDir, 1024 * 1024));
+
+        Response response = getApple(resource, null, null);
+        EntityTag eTag = (EntityTag) response.getMetadata().getFirst("ETag");
+        write(response);
+
+        response = getApple(resource, null, eTag.toString());
+        assertEquals(response.getStatus(), 304);
+        assertEquals(response.getMetadata().getFirst("ETag"), eTag);
+
+        response = getApple(resource, null, "\"other\", " + eTag);
+        assertEquals(response.getStatus(), 304);
+
+        response = getApple(resource, null, "*");
+        assertEquals(response.getStatus(), 304);
+
+        response = getApple(resource, null, "\"other\"");
+        assertEquals(response.getStatus(), 200);
+        assertEquals(write(response), apple);
+    }
+
+    @Test
+    public void testBinaryIsNotEvictedWhileStreaming()
+            throws Exception
+    {
+        addCherry();
+        BinaryCache binaryCache = new BinaryCache(cacheDir, 1);
+        BinaryResource resource = new BinaryResource(repository, binaryCache);
+
+        Response appleResponse = getApple(resource, null, null);
+        EntityTag eTag = (EntityTag) appleResponse.getMetadata().getFirst("ETag");
+        File appleBlob = new File(cacheDir, "blobs/" + eTag.getValue());
+
+        // caching another binary would evict apple, but it is still being served
+        Response cherryResponse = getBinary(resource, "cherry");
+        assertTrue(appleBlob.exists());
+        assertEquals(binaryCache.getBinaryCount(), 2);
+
+        assertEquals(write(appleResponse), apple);
+        assertFalse(appleBlob.exists());
+
+        assertEquals(new String(write(cherryResponse), Charsets.UTF_8), "cherry");
+        assertEquals(binaryCache.getBinaryCount(), 0);
+    }
+
+    @Test
+    public void testUnwrittenResponseIsReleasedWhenRequestCompletes()
+            throws Exception
+    {
+        addCherry();
+        BinaryCache binaryCache = new BinaryCache(cacheDir, 1);
+        BinaryResource resource = new BinaryResource(repository, binaryCache);
+
+        // the client goes away before the entity is written
+        RequestResources requestResources = new RequestResources();
+        Response appleResponse = resource.getBinary("food.fruit", "apple", "1.0", "tar.gz", null, null, requestResources);
+        EntityTag eTag = (EntityTag) appleResponse.getMetadata().getFirst("ETag");
+        File appleBlob = new File(cacheDir, "blobs/" + eTag.getValue());
+        assertEquals(binaryCache.getBinaryCount(), 1);
+
+        requestResources.close();
+        assertFalse(appleBlob.exists());
+        assertEquals(binaryCache.getBinaryCount(), 0);
+
+        // writing the response releases the binary once only
+        write(getBinary(resource, "cherry"));
+        assertEquals(binaryCache.getBinaryCount(), 0);
+    }
+
+    @Test
+    public void testHeadDoesNotPinBinary()
+            throws Exception
+    {
+        BinaryCache binaryCache = new BinaryCache(cacheDir, 1);
+        BinaryResource resource = new BinaryResource(repository, binaryCache);
+
+        Response response = resource.headBinary("food.fruit", "apple", "1.0", "tar.gz", null, null);
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.getMetadata().getFirst("Content-Length"), (long) apple.length);
+        assertEquals(response.getMetadata().getFirst("Accept-Ranges"), "bytes");
+        assertNull(response.getEntity());
+
+        EntityTag eTag = (EntityTag) response.getMetadata().getFirst("ETag");
+        assertEquals(resource.headBinary("food.fruit", "apple", "1.0", "tar.gz", null, eTag.toString()).getStatus(), 304);
+
+        response = resource.headBinary("food.fruit", "apple", "1.0", "tar.gz", "bytes=0-9", null);
+        assertEquals(response.getStatus(), 206);
+        assertEquals(response.getMetadata().getFirst("Content-Length"), 10L);
+
+        // nothing is pinned, so the binary is evicted from the undersized cache
+        assertEquals(binaryCache.getBinaryCount(), 0);
+    }
+
+    private void addCherry()
+            throws Exception
+    {
+        File cherry = new File(repository.getTargetRepo(), "food/fruit/cherry/1.0/cherry-1.0.tar.gz");
+        cherry.getParentFile().mkdirs();
+        Files.write("cherry", cherry, Charsets.UTF_8);
+    }
+
+    private static Response getApple(BinaryResource resource, String range, String ifNoneMatch)
+    {
+        return resource.getBinary("food.fruit", "apple", "1.0", "tar.gz", range, ifNoneMatch, new RequestResources());
+    }
+
+    private static Response getBinary(BinaryResource resource, String artifactId)
+    {
+        return resource.getBinary("food.fruit", artifactId, "1.0", "tar.gz", null, null, new RequestResources());
+    }
+
+    private static byte[] write(Response response)
+            throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return out.toByteArray();
+    }
+
+    private static class RequestResources implements CloseableService
+    {
+        private final List<Closeable> closeables = Lists.newArrayList();
+
+        @Override
+        public void add(Closeable closeable)
+        {
+            closeables.add(closeable);
+        }
+
+        public void close()
+        {
+            for (Closeable closeable : closeables) {
+                Closeables.closeQuietly(closeable);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.InstallationHelper.APPLE_INSTALLATION;
+import static io.airlift.airship.shared.InstallationHelper.BANANA_INSTALLATION;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestBinarySources
+{
+    private final List<AgentStatus> agents = ImmutableList.of(
+            createAgent("far", "/zone-b/rack-1/far", APPLE_ASSIGNMENT),
+            createAgent("near", "/zone-a/rack-1/near", APPLE_ASSIGNMENT),
+            createAgent("other", "/zone-a/rack-1/other", BANANA_ASSIGNMENT),
+            createAgent("self", "/zone-a/rack-1/self", APPLE_ASSIGNMENT));
+
+    @Test
+    public void testNearestPeersFirst()
+    {
+        List<URI> sources = new BinarySources(APPLE_INSTALLATION, agents, 3).selectBinarySources("/zone-a/rack-1/self");
+        assertEquals(sources.size(), 2);
+        assertEquals(sources.get(0).getHost(), "near");
+        assertEquals(sources.get(1).getHost(), "far");
+        assertEquals(sources.get(0).getPath(), "/v1/agent/binary");
+        assertTrue(sources.get(0).getRawQuery().startsWith("location="));
+    }
+
+    @Test
+    public void testLimit()
+    {
+        List<URI> sources = new BinarySources(APPLE_INSTALLATION, agents, 1).selectBinarySources("/zone-a/rack-1/self/apple");
+        assertEquals(sources.size(), 1);
+        assertEquals(sources.get(0).getHost(), "near");
+
+        assertEquals(new BinarySources(APPLE_INSTALLATION, agents, 0).selectBinarySources("/zone-a/rack-1/self"), ImmutableList.<URI>of());
+    }
+
+    @Test
+    public void testForTarget()
+    {
+        Installation installation = APPLE_INSTALLATION.withBinarySha256("3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b");
+        BinarySources binarySources = new BinarySources(installation, agents, 3);
+
+        // the peers are found once and ranked for each target
+        Installation selfInstallation = binarySources.forTarget("/zone-a/rack-1/self/apple");
+        assertEquals(selfInstallation.getBinarySources().size(), 2);
+        assertEquals(selfInstallation.getBinarySources().get(0).getHost(), "near");
+        assertEquals(selfInstallation.getBinarySha256(), installation.getBinarySha256());
+
+        // both peers are equally far from the other zone
+        Installation farInstallation = binarySources.forTarget("/zone-b/rack-1/far/apple");
+        assertEquals(farInstallation.getBinarySources().size(), 2);
+        assertEquals(ImmutableSet.of(farInstallation.getBinarySources().get(0).getHost(), farInstallation.getBinarySources().get(1).getHost()), ImmutableSet.of("near", "self"));
+
+        // unknown targets and operations without peers download from the repository
+        assertSame(binarySources.forTarget(null), installation);
+        assertSame(new BinarySources(installation, agents, 0).forTarget("/zone-a/rack-1/self/apple"), installation);
+        assertSame(new BinarySources(BANANA_INSTALLATION, ImmutableList.<AgentStatus>of(), 3).forTarget("/zone-a/rack-1/self/banana"), BANANA_INSTALLATION);
+    }
+
+    @Test
+    public void testWithPeer()
+    {
+        BinarySources binarySources = new BinarySources(APPLE_INSTALLATION, ImmutableList.of(agents.get(0)), 3);
+        assertEquals(binarySources.selectBinarySources("/zone-a/rack-1/self").size(), 1);
+
+        // an agent that finished the install serves the agents installed after it
+        binarySources = binarySources.withPeer(agents.get(1));
+        List<URI> sources = binarySources.selectBinarySources("/zone-a/rack-1/self");
+        assertEquals(sources.size(), 2);
+        assertEquals(sources.get(0).getHost(), "near");
+
+        // an agent is only added once, and only when it has the binary
+        assertEquals(binarySources.withPeer(agents.get(1)).selectBinarySources("/zone-a/rack-1/self").size(), 2);
+        assertSame(binarySources.withPeer(agents.get(2)), binarySources);
+        assertSame(new BinarySources(APPLE_INSTALLATION, agents, 0).withPeer(agents.get(1)).forTarget("/zone-a/rack-1/self"), APPLE_INSTALLATION);
+    }
+
+    private static AgentStatus createAgent(String instanceId, String location, Assignment assignment)
+    {
+        URI uri = URI.create("http://" + instanceId + ":8080/");
+        SlotStatus slot = createSlotStatus(UUID.randomUUID(),
+                uri.resolve("/v1/agent/slot/slot"),
+                uri.resolve("/v1/agent/slot/slot"),
+                instanceId,
+                location + "/slot",
+                RUNNING,
+                assignment,
+                "/slot",
+                ImmutableMap.<String, Integer>of());
+        return new AgentStatus(UUID.randomUUID().toString(),
+                ONLINE,
+                instanceId,
+                uri,
+                uri,
+                location,
+                "instance.type",
+                ImmutableList.of(slot),
+                ImmutableMap.<String, Integer>of());
+    }
+}
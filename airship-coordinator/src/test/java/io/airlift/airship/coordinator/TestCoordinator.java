@@ -1,14 +1,21 @@
 package io.airlift.airship.coordinator;
 
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.proofpoint.discovery.client.ServiceDescriptor;
+import com.proofpoint.discovery.client.ServiceState;
 import io.airlift.airship.shared.AgentLifecycleState;
 import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.CoordinatorLifecycleState;
 import io.airlift.airship.shared.CoordinatorStatus;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.SlotLifecycleState;
 import io.airlift.airship.shared.SlotStatus;
+import io.airlift.airship.shared.UpgradeVersions;
+import io.airlift.airship.shared.VersionConflictException;
 import com.proofpoint.units.Duration;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -18,17 +25,27 @@ import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT_2;
 import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
 import static io.airlift.airship.shared.AssignmentHelper.RESOLVED_APPLE_ASSIGNMENT;
 import static io.airlift.airship.shared.AssignmentHelper.SHORT_APPLE_ASSIGNMENT;
 import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SLOTS_VERSION_HEADER;
+import static io.airlift.airship.shared.VersionsUtil.createSlotsVersion;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class TestCoordinator
 {
@@ -59,7 +76,16 @@ public class TestCoordinator
                 new InMemoryStateManager(),
                 new MockServiceInventory(),
                 new Duration(1, TimeUnit.DAYS),
-                false);
+                false,
+                1,
+                null,
+                1,
+                1,
+                PlacementStrategy.SPREAD,
+                0,
+                0,
+                null,
+                null);
     }
 
     @AfterMethod
@@ -215,6 +241,20 @@ public class TestCoordinator
         assertEquals(coordinator.getCoordinator(instanceId).getState(), CoordinatorLifecycleState.ONLINE);
     }
 
+    @Test
+    public void testServiceInventoryVersion()
+            throws Exception
+    {
+        ServiceDescriptor apple = new ServiceDescriptor(null, "apple-node", "apple", "general", "/apple", ServiceState.RUNNING, ImmutableMap.of("http", "http://apple:8080"));
+        ServiceDescriptor banana = new ServiceDescriptor(null, "banana-node", "banana", "general", "/banana", ServiceState.RUNNING, ImmutableMap.of("http", "http://banana:8080"));
+        ServiceDescriptor stoppedBanana = new ServiceDescriptor(null, "banana-node", "banana", "general", "/banana", ServiceState.STOPPED, ImmutableMap.of("http", "http://banana:8080"));
+
+        String version = Coordinator.createServiceInventoryVersion(ImmutableList.of(apple, banana));
+        assertEquals(Coordinator.createServiceInventoryVersion(ImmutableList.of(banana, apple)), version);
+        assertFalse(version.equals(Coordinator.createServiceInventoryVersion(ImmutableList.of(apple, stoppedBanana))));
+        assertFalse(version.equals(Coordinator.createServiceInventoryVersion(ImmutableList.of(apple))));
+    }
+
     @Test
     public void testNoAgents()
             throws Exception
@@ -264,6 +304,358 @@ public class TestCoordinator
         assertEquals(actual.getResources(), resources);
     }
 
+    @Test
+    public void testFleetSnapshot()
+            throws Exception
+    {
+        UUID slotId = UUID.randomUUID();
+        SlotStatus slotStatus = SlotStatus.createSlotStatus(slotId,
+                URI.create("fake://agent/v1/agent/slot/apple"),
+                URI.create("fake://agent/v1/agent/slot/apple"),
+                "instance-id",
+                "/location",
+                STOPPED,
+                APPLE_ASSIGNMENT,
+                "/apple",
+                ImmutableMap.<String, Integer>of());
+        AgentStatus status = new AgentStatus(UUID.randomUUID().toString(),
+                AgentLifecycleState.ONLINE,
+                "instance-id",
+                URI.create("fake://agent/internal"),
+                URI.create("fake://agent/external"),
+                "/unknown/location",
+                "instance.type",
+                ImmutableList.of(slotStatus),
+                ImmutableMap.<String, Integer>of());
+        provisioner.addAgents(status);
+        coordinator.updateAllAgents();
+
+        FleetSnapshot fleet = coordinator.getFleetSnapshot();
+        assertEquals(fleet.getAgents(), coordinator.getAgents());
+        assertEquals(fleet.getSlots(), coordinator.getAllSlotStatus());
+        assertEquals(fleet.getSlotUuids(), ImmutableList.of(slotId));
+
+        // slots created after the snapshot are added once
+        SlotStatus newSlotStatus = SlotStatus.createSlotStatus(UUID.randomUUID(),
+                URI.create("fake://agent/v1/agent/slot/banana"),
+                URI.create("fake://agent/v1/agent/slot/banana"),
+                "instance-id",
+                "/location",
+                STOPPED,
+                BANANA_ASSIGNMENT,
+                "/banana",
+                ImmutableMap.<String, Integer>of());
+        assertEquals(fleet.getSlotsWith(ImmutableList.of(fleet.getSlots().get(0), newSlotStatus)), ImmutableList.of(fleet.getSlots().get(0), newSlotStatus));
+
+        // readers share the snapshot until the fleet changes
+        coordinator.updateAllAgents();
+        assertSame(coordinator.getFleetSnapshot(), fleet);
+
+        // the snapshot does not change when the fleet does
+        coordinator.setState(SlotLifecycleState.RUNNING, Predicates.<SlotStatus>alwaysTrue(), null);
+        assertEquals(fleet.getSlots().get(0).getState(), STOPPED);
+        assertEquals(coordinator.getFleetSnapshot().getSlots().get(0).getState(), SlotLifecycleState.RUNNING);
+        assertTrue(coordinator.getFleetSnapshot().getVersion() > fleet.getVersion());
+    }
+
+    @Test
+    public void testAgentsArePolledConcurrently()
+            throws Exception
+    {
+        int agentCount = 4;
+        final CountDownLatch allPolling = new CountDownLatch(agentCount);
+        final AtomicInteger concurrentPolls = new AtomicInteger();
+        PollingAgentFactory agentFactory = new PollingAgentFactory(provisioner.getAgentFactory());
+        Coordinator coordinator = createPollingCoordinator(agentFactory, new Duration(1, TimeUnit.MINUTES), agentCount);
+        for (int i = 0; i < agentCount; i++) {
+            String instanceId = addAgent();
+            agentFactory.setPoller(instanceId, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // every poll waits for all the others, so this only completes when the polls overlap
+                    allPolling.countDown();
+                    try {
+                        if (allPolling.await(10, TimeUnit.SECONDS)) {
+                            concurrentPolls.incrementAndGet();
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        try {
+            long cycles = coordinator.getAgentUpdateCycles();
+            coordinator.updateAllAgents();
+
+            assertEquals(concurrentPolls.get(), agentCount);
+            assertEquals(coordinator.getAgentUpdateCycles(), cycles + 1);
+            assertEquals(coordinator.getAgentUpdateTimeouts(), 0);
+            assertEquals(coordinator.getAgentUpdateFailures(), 0);
+            assertTrue(coordinator.getLastAgentUpdateMillis() < TimeUnit.SECONDS.toMillis(10));
+        }
+        finally {
+            coordinator.stop();
+        }
+    }
+
+    @Test
+    public void testHungAgentTimesOut()
+            throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger polls = new AtomicInteger();
+        PollingAgentFactory agentFactory = new PollingAgentFactory(provisioner.getAgentFactory());
+        Coordinator coordinator = createPollingCoordinator(agentFactory, new Duration(500, TimeUnit.MILLISECONDS), 2);
+        agentFactory.setPoller(addAgent(), new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        agentFactory.setPoller(addAgent(), new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                polls.incrementAndGet();
+            }
+        });
+
+        try {
+            long cycles = coordinator.getAgentUpdateCycles();
+            coordinator.updateAllAgents();
+
+            // the cycle gives up on the hung agent at the status expiration, and the other agent is still polled
+            assertEquals(polls.get(), 1);
+            assertEquals(coordinator.getAgentUpdateCycles(), cycles + 1);
+            assertEquals(coordinator.getAgentUpdateTimeouts(), 1);
+            assertTrue(coordinator.getLastAgentUpdateMillis() >= 500);
+            assertTrue(coordinator.getLastAgentUpdateMillis() < TimeUnit.SECONDS.toMillis(10));
+        }
+        finally {
+            release.countDown();
+            coordinator.stop();
+        }
+    }
+
+    @Test
+    public void testFailedAgentUpdate()
+            throws Exception
+    {
+        final AtomicInteger polls = new AtomicInteger();
+        PollingAgentFactory agentFactory = new PollingAgentFactory(provisioner.getAgentFactory());
+        Coordinator coordinator = createPollingCoordinator(agentFactory, new Duration(1, TimeUnit.MINUTES), 1);
+        agentFactory.setPoller(addAgent(), new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new IllegalStateException("poll failed");
+            }
+        });
+        agentFactory.setPoller(addAgent(), new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                polls.incrementAndGet();
+            }
+        });
+
+        try {
+            long cycles = coordinator.getAgentUpdateCycles();
+            coordinator.updateAllAgents();
+
+            assertEquals(polls.get(), 1);
+            assertEquals(coordinator.getAgentUpdateCycles(), cycles + 1);
+            assertEquals(coordinator.getAgentUpdateFailures(), 1);
+            assertEquals(coordinator.getAgentUpdateTimeouts(), 0);
+        }
+        finally {
+            coordinator.stop();
+        }
+    }
+
+    @Test
+    public void testAgentGoesOffline()
+            throws Exception
+    {
+        UUID slotId = UUID.randomUUID();
+        SlotStatus slotStatus = SlotStatus.createSlotStatus(slotId,
+                URI.create("fake://agent/v1/agent/slot/apple"),
+                URI.create("fake://agent/v1/agent/slot/apple"),
+                "instance-id",
+                "/location",
+                STOPPED,
+                APPLE_ASSIGNMENT,
+                "/apple",
+                ImmutableMap.<String, Integer>of());
+        AgentStatus onlineStatus = new AgentStatus(UUID.randomUUID().toString(),
+                AgentLifecycleState.ONLINE,
+                "instance-id",
+                URI.create("fake://agent/internal"),
+                URI.create("fake://agent/external"),
+                "/unknown/location",
+                "instance.type",
+                ImmutableList.of(slotStatus),
+                ImmutableMap.<String, Integer>of());
+        provisioner.addAgents(onlineStatus);
+
+        // the agent stops answering, which marks it offline the same way HttpRemoteAgent does
+        final AtomicBoolean reachable = new AtomicBoolean(true);
+        PollingAgentFactory agentFactory = new PollingAgentFactory(provisioner.getAgentFactory());
+        Coordinator coordinator = createPollingCoordinator(agentFactory, new Duration(1, TimeUnit.MINUTES), 1);
+        agentFactory.setOfflinePoller("instance-id", reachable, onlineStatus);
+
+        try {
+            coordinator.updateAllAgents();
+            coordinator.resetExpectedState(Predicates.<SlotStatus>alwaysTrue(), null);
+
+            reachable.set(false);
+            coordinator.updateAllAgents();
+
+            assertEquals(coordinator.getAgent("instance-id").getState(), AgentLifecycleState.OFFLINE);
+            SlotStatus actual = Iterables.getOnlyElement(coordinator.getAllSlotStatus());
+            assertEquals(actual.getId(), slotId);
+            assertEquals(actual.getState(), SlotLifecycleState.UNKNOWN);
+            assertEquals(actual.getExpectedState(), STOPPED);
+
+            // nothing is placed on an offline agent
+            assertTrue(coordinator.install(Predicates.<AgentStatus>alwaysTrue(), 1, APPLE_ASSIGNMENT).isEmpty());
+
+            reachable.set(true);
+            coordinator.updateAllAgents();
+
+            assertEquals(coordinator.getAgent("instance-id").getState(), AgentLifecycleState.ONLINE);
+            assertEquals(Iterables.getOnlyElement(coordinator.getAllSlotStatus()).getState(), STOPPED);
+        }
+        finally {
+            coordinator.stop();
+        }
+    }
+
+    @Test
+    public void testRollingUpgrade()
+            throws Exception
+    {
+        addRunningAppleAgent();
+
+        List<SlotStatus> slots = coordinator.rollingUpgrade(Predicates.<SlotStatus>alwaysTrue(), new UpgradeVersions("2.0", "2.0"), null, createPolicy(Predicates.<SlotStatus>alwaysTrue()));
+        assertEquals(slots.size(), 2);
+        for (SlotStatus slot : coordinator.getAllSlotStatus()) {
+            assertEquals(slot.getState(), SlotLifecycleState.RUNNING);
+            assertEquals(slot.getAssignment(), APPLE_ASSIGNMENT_2);
+        }
+    }
+
+    @Test
+    public void testRollingUpgradeHaltsWhenSlotFailsToStart()
+            throws Exception
+    {
+        MockRemoteAgent agent = addRunningAppleAgent();
+        agent.setFailSlotStart(true);
+
+        // the failed slot can not become healthy, so the upgrade halts without waiting for the health timeout
+        long start = System.nanoTime();
+        List<SlotStatus> slots = coordinator.rollingUpgrade(Predicates.<SlotStatus>alwaysTrue(), new UpgradeVersions("2.0", "2.0"), null, createPolicy(Predicates.<SlotStatus>alwaysTrue()));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+
+        SlotStatus failed = Iterables.getOnlyElement(slots);
+        assertEquals(failed.getState(), STOPPED);
+        assertEquals(failed.getStatusMessage(), "Rolling upgrade halted; slot is not healthy");
+
+        // the second batch was not touched
+        int upgraded = 0;
+        for (SlotStatus slot : coordinator.getAllSlotStatus()) {
+            if (slot.getId().equals(failed.getId())) {
+                assertEquals(slot.getAssignment(), APPLE_ASSIGNMENT_2);
+                upgraded++;
+            }
+            else {
+                assertEquals(slot.getState(), SlotLifecycleState.RUNNING);
+                assertEquals(slot.getAssignment(), APPLE_ASSIGNMENT);
+            }
+        }
+        assertEquals(upgraded, 1);
+    }
+
+    @Test
+    public void testRollingUpgradeHaltsWhenHealthCheckFails()
+            throws Exception
+    {
+        addRunningAppleAgent();
+
+        RollingUpgradePolicy policy = new RollingUpgradePolicy(1, false, new Duration(100, TimeUnit.MILLISECONDS), new Duration(10, TimeUnit.MILLISECONDS), Predicates.<SlotStatus>alwaysFalse());
+        List<SlotStatus> slots = coordinator.rollingUpgrade(Predicates.<SlotStatus>alwaysTrue(), new UpgradeVersions("2.0", "2.0"), null, policy);
+
+        // the slot is running, but never passes the health check
+        SlotStatus unhealthy = Iterables.getOnlyElement(slots);
+        assertEquals(unhealthy.getState(), SlotLifecycleState.RUNNING);
+        assertEquals(unhealthy.getStatusMessage(), "Rolling upgrade halted; slot is not healthy");
+    }
+
+    @Test
+    public void testConcurrentWriterLosesVersionRace()
+            throws Exception
+    {
+        addRunningAppleAgent();
+        UUID slotId = coordinator.getAllSlotStatus().get(0).getId();
+        final Predicate<SlotStatus> slotFilter = Predicates.compose(Predicates.equalTo(slotId), SlotStatus.uuidGetter());
+
+        // a second writer changes the slot after the first writer read it, but before the first writer records its expected state
+        try {
+            coordinator.setState(STOPPED, slotFilter, null, new SlotOperationListener()
+            {
+                @Override
+                public void slotCompleted(SlotStatus slotStatus)
+                {
+                    coordinator.setState(SlotLifecycleState.RUNNING, slotFilter, null);
+                }
+            });
+            fail("Expected VersionConflictException");
+        }
+        catch (VersionConflictException e) {
+            assertEquals(e.getName(), AIRSHIP_SLOTS_VERSION_HEADER);
+            assertEquals(e.getVersion(), createSlotsVersion(coordinator.getAllSlotsStatus(slotFilter)));
+        }
+
+        // the expected state of the second writer is kept
+        SlotStatus slotStatus = Iterables.getOnlyElement(coordinator.getAllSlotsStatus(slotFilter));
+        assertEquals(slotStatus.getExpectedState(), SlotLifecycleState.RUNNING);
+    }
+
+    @Test
+    public void testRollingUpgradeHaltsWhenHealthProbeFails()
+            throws Exception
+    {
+        addRunningAppleAgent();
+
+        // the slot announces no http service, so the health path can not be probed
+        RollingUpgradePolicy policy = new RollingUpgradePolicy(1,
+                false,
+                new Duration(100, TimeUnit.MILLISECONDS),
+                new Duration(10, TimeUnit.MILLISECONDS),
+                Predicates.<SlotStatus>alwaysTrue(),
+                "/v1/health");
+        List<SlotStatus> slots = coordinator.rollingUpgrade(Predicates.<SlotStatus>alwaysTrue(), new UpgradeVersions("2.0", "2.0"), null, policy);
+
+        SlotStatus unhealthy = Iterables.getOnlyElement(slots);
+        assertEquals(unhealthy.getState(), SlotLifecycleState.RUNNING);
+        assertEquals(unhealthy.getStatusMessage(), "Rolling upgrade halted; slot is not healthy");
+    }
+
     @Test
     public void testAgentProvision()
             throws Exception
@@ -410,4 +802,187 @@ public class TestCoordinator
         assertEquals(slot.getState(), STOPPED);
         assertEquals(slot.getResources(), ImmutableMap.of("cpu", 1, "memory", 512));
     }
+
+    /**
+     * Adds an agent with two running apple slots, and returns the remote agent the coordinator uses for it.
+     */
+    private MockRemoteAgent addRunningAppleAgent()
+    {
+        final Map<String, MockRemoteAgent> remoteAgents = new ConcurrentHashMap<String, MockRemoteAgent>();
+        final RemoteAgentFactory agentFactory = provisioner.getAgentFactory();
+        coordinator = createPollingCoordinator(new RemoteAgentFactory()
+        {
+            @Override
+            public RemoteAgent createRemoteAgent(Instance instance, AgentLifecycleState state)
+            {
+                MockRemoteAgent agent = (MockRemoteAgent) agentFactory.createRemoteAgent(instance, state);
+                remoteAgents.put(instance.getInstanceId(), agent);
+                return agent;
+            }
+        }, new Duration(1, TimeUnit.DAYS), 1);
+
+        URI agentUri = URI.create("fake://agent/internal");
+        ImmutableList.Builder<SlotStatus> slots = ImmutableList.builder();
+        for (int i = 0; i < 2; i++) {
+            UUID slotId = UUID.randomUUID();
+            URI slotUri = URI.create("fake://agent/v1/agent/slot/" + slotId);
+            slots.add(SlotStatus.createSlotStatus(slotId,
+                    slotUri,
+                    slotUri,
+                    "instance-id",
+                    "/location/" + i,
+                    SlotLifecycleState.RUNNING,
+                    APPLE_ASSIGNMENT,
+                    "/apple" + i,
+                    ImmutableMap.<String, Integer>of()));
+        }
+        provisioner.addAgents(new AgentStatus(UUID.randomUUID().toString(),
+                AgentLifecycleState.ONLINE,
+                "instance-id",
+                agentUri,
+                agentUri,
+                "/unknown/location",
+                "instance.type",
+                slots.build(),
+                ImmutableMap.<String, Integer>of()));
+        coordinator.updateAllAgents();
+        coordinator.resetExpectedState(Predicates.<SlotStatus>alwaysTrue(), null);
+        return remoteAgents.get("instance-id");
+    }
+
+    private static RollingUpgradePolicy createPolicy(Predicate<SlotStatus> healthCheck)
+    {
+        return new RollingUpgradePolicy(1, false, new Duration(1, TimeUnit.MINUTES), new Duration(10, TimeUnit.MILLISECONDS), healthCheck);
+    }
+
+    private String addAgent()
+    {
+        String instanceId = UUID.randomUUID().toString();
+        URI agentUri = URI.create("fake://agent/" + instanceId);
+        provisioner.addAgents(new AgentStatus(UUID.randomUUID().toString(),
+                AgentLifecycleState.ONLINE,
+                instanceId,
+                agentUri,
+                agentUri,
+                "/mock/" + instanceId + "/agent",
+                "unknown",
+                ImmutableList.<SlotStatus>of(),
+                ImmutableMap.<String, Integer>of()));
+        return instanceId;
+    }
+
+    private Coordinator createPollingCoordinator(RemoteAgentFactory agentFactory, Duration statusExpiration, int agentUpdateConcurrency)
+    {
+        return new Coordinator(coordinatorStatus,
+                agentFactory,
+                repository,
+                provisioner,
+                new InMemoryStateManager(),
+                new MockServiceInventory(),
+                statusExpiration,
+                false,
+                agentUpdateConcurrency,
+                null,
+                1,
+                1,
+                PlacementStrategy.SPREAD,
+                0,
+                0,
+                null,
+                null);
+    }
+
+    /**
+     * Creates mock agents that run a test supplied action whenever the coordinator polls them.
+     */
+    private static class PollingAgentFactory
+            implements RemoteAgentFactory
+    {
+        private final RemoteAgentFactory delegate;
+        private final Map<String, Runnable> pollers = new ConcurrentHashMap<String, Runnable>();
+        private final Map<String, MockRemoteAgent> agents = new ConcurrentHashMap<String, MockRemoteAgent>();
+
+        private PollingAgentFactory(RemoteAgentFactory delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        public void setPoller(String instanceId, Runnable poller)
+        {
+            pollers.put(instanceId, poller);
+        }
+
+        public void setOfflinePoller(final String instanceId, final AtomicBoolean reachable, final AgentStatus onlineStatus)
+        {
+            setPoller(instanceId, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    MockRemoteAgent agent = agents.get(instanceId);
+                    if (reachable.get()) {
+                        agent.setAgentStatus(onlineStatus);
+                    }
+                    else {
+                        agent.setAgentStatus(onlineStatus.changeState(AgentLifecycleState.OFFLINE).changeAllSlotsState(SlotLifecycleState.UNKNOWN));
+                    }
+                }
+            });
+        }
+
+        @Override
+        public RemoteAgent createRemoteAgent(final Instance instance, AgentLifecycleState state)
+        {
+            final MockRemoteAgent agent = (MockRemoteAgent) delegate.createRemoteAgent(instance, state);
+            agents.put(instance.getInstanceId(), agent);
+            return new RemoteAgent()
+            {
+                @Override
+                public AgentStatus status()
+                {
+                    return agent.status();
+                }
+
+                @Override
+                public void setInternalUri(URI uri)
+                {
+                    agent.setInternalUri(uri);
+                }
+
+                @Override
+                public SlotStatus install(Installation installation)
+                {
+                    return agent.install(installation);
+                }
+
+                @Override
+                public List<? extends RemoteSlot> getSlots()
+                {
+                    return agent.getSlots();
+                }
+
+                @Override
+                public void updateStatus()
+                {
+                    Runnable poller = pollers.get(instance.getInstanceId());
+                    if (poller != null) {
+                        poller.run();
+                    }
+                    agent.updateStatus();
+                }
+
+                @Override
+                public boolean watchStatus(Duration maxWait)
+                {
+                    return agent.watchStatus(maxWait);
+                }
+
+                @Override
+                public void setServiceInventory(List<ServiceDescriptor> serviceInventory, String serviceInventoryVersion)
+                {
+                    agent.setServiceInventory(serviceInventory, serviceInventoryVersion);
+                }
+            };
+        }
+    }
 }
@@ -74,8 +74,10 @@ public class TestCoordinatorAssignmentResource
                 MOCK_REPO,
                 provisioner,
                 new InMemoryStateManager(),
-                new MockServiceInventory());
-        resource = new CoordinatorAssignmentResource(coordinator, MOCK_REPO);
+                new MockServiceInventory(),
+                null,
+                null);
+        resource = new CoordinatorAssignmentResource(coordinator, MOCK_REPO, new JobManager(new CoordinatorConfig()));
 
         apple1SlotId = UUID.randomUUID();
         SlotStatus appleSlotStatus1 = createSlotStatus(apple1SlotId,
@@ -150,7 +152,7 @@ public class TestCoordinatorAssignmentResource
     private void testUpgrade(UpgradeVersions upgradeVersions)
     {
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment?host=apple*");
-        Response response = resource.upgrade(upgradeVersions, uriInfo, null);
+        Response response = resource.upgrade(upgradeVersions, uriInfo, null, null, null, null, false);
 
         AgentStatus agentStatus = coordinator.getAgentByAgentId(agentId);
         SlotStatus apple1Status = agentStatus.getSlotStatus(apple1SlotId);
@@ -169,13 +171,41 @@ public class TestCoordinatorAssignmentResource
         assertEquals(bananaStatus.getAssignment(), BANANA_ASSIGNMENT);
     }
 
+    @Test
+    public void testRollingUpgrade()
+    {
+        coordinator.setState(SlotLifecycleState.RUNNING, SlotFilterBuilder.build(MockUriInfo.from("http://localhost/v1/slot/lifecycle?host=apple*"), true, ImmutableList.<UUID>of()), null);
+
+        UpgradeVersions upgradeVersions = new UpgradeVersions("2.0", "2.0");
+        UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment?host=apple*");
+        Response response = resource.upgrade(upgradeVersions, uriInfo, null, "1", new Duration(1, TimeUnit.SECONDS), null, false);
+
+        AgentStatus agentStatus = coordinator.getAgentByAgentId(agentId);
+        SlotStatus apple1Status = agentStatus.getSlotStatus(apple1SlotId);
+        SlotStatus apple2Status = agentStatus.getSlotStatus(apple2SlotId);
+
+        // running slots are restarted after the upgrade
+        assertOkResponse(response, SlotLifecycleState.RUNNING, apple1Status, apple2Status);
+        assertEquals(apple1Status.getAssignment(), upgradeVersions.upgradeAssignment(MOCK_REPO, APPLE_ASSIGNMENT));
+        assertEquals(apple2Status.getAssignment(), upgradeVersions.upgradeAssignment(MOCK_REPO, APPLE_ASSIGNMENT));
+        assertEquals(agentStatus.getSlotStatus(bananaSlotId).getAssignment(), BANANA_ASSIGNMENT);
+    }
+
+    @Test
+    public void testRollingUpgradeInvalidBatch()
+    {
+        UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment?host=apple*");
+        Response response = resource.upgrade(new UpgradeVersions("2.0", "2.0"), uriInfo, null, "many", new Duration(1, TimeUnit.SECONDS), null, false);
+        assertEquals(response.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
     @Test
     public void testUpgradeAmbiguous()
     {
         UpgradeVersions upgradeVersions = new UpgradeVersions("2.0", "2,0");
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment?state=stopped");
         try {
-            resource.upgrade(upgradeVersions, uriInfo, null);
+            resource.upgrade(upgradeVersions, uriInfo, null, null, null, null, false);
             fail("Expected AmbiguousUpgradeException");
         }
         catch (AmbiguousUpgradeException expected) {
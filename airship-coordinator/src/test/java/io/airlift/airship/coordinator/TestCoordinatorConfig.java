@@ -19,6 +19,19 @@ public class TestCoordinatorConfig
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(CoordinatorConfig.class)
                 .setAirshipVersion(null)
                 .setStatusExpiration(new Duration(30, TimeUnit.SECONDS))
+                .setAgentUpdateConcurrency(32)
+                .setAgentUpdateTimeout(new Duration(10, TimeUnit.SECONDS))
+                .setAgentWatchEnabled(true)
+                .setAgentWatchMaxWait(new Duration(30, TimeUnit.SECONDS))
+                .setAgentWatchConcurrency(256)
+                .setSlotOperationConcurrency(32)
+                .setSlotOperationAgentConcurrency(1)
+                .setJobRetention(new Duration(1, TimeUnit.HOURS))
+                .setJobConcurrency(16)
+                .setJobMaxQueued(100)
+                .setJobMaxWait(new Duration(1, TimeUnit.MINUTES))
+                .setPlacementStrategy("spread")
+                .setPlacementAntiAffinityDepth(0)
                 .setServiceInventoryCacheDir("service-inventory-cache")
                 .setAgentDefaultConfig(null)
                 .setAllowDuplicateInstallationsOnAnAgent(false)
@@ -27,6 +40,16 @@ public class TestCoordinatorConfig
                 .setHttpShortNamePattern(DEFAULT_HTTP_SHORT_NAME_PATTERN)
                 .setHttpRepoBinaryVersionPattern(null)
                 .setHttpRepoConfigVersionPattern(null)
+                .setRepositoryCacheReleaseTtl(new Duration(1, TimeUnit.HOURS))
+                .setRepositoryCacheSnapshotTtl(new Duration(1, TimeUnit.MINUTES))
+                .setRepositoryCacheMissTtl(new Duration(10, TimeUnit.SECONDS))
+                .setRepositoryProbeConnectTimeout(new Duration(5, TimeUnit.SECONDS))
+                .setRepositoryProbeReadTimeout(new Duration(10, TimeUnit.SECONDS))
+                .setBinaryCacheDir("binary-cache")
+                .setBinaryCacheMaxSizeInMegabytes(10240)
+                .setConfigBundleCacheDir("config-bundle-cache")
+                .setConfigBundleCacheMaxBundles(100)
+                .setBinaryPeerSources(3)
         );
     }
 
@@ -36,6 +59,19 @@ public class TestCoordinatorConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("airship.version", "99.9")
                 .put("coordinator.status.expiration", "1m")
+                .put("coordinator.agent.update-concurrency", "5")
+                .put("coordinator.agent.update-timeout", "3s")
+                .put("coordinator.agent.watch-enabled", "false")
+                .put("coordinator.agent.watch-max-wait", "2m")
+                .put("coordinator.agent.watch-concurrency", "16")
+                .put("coordinator.slot-operation.concurrency", "7")
+                .put("coordinator.slot-operation.agent-concurrency", "2")
+                .put("coordinator.job.retention", "2h")
+                .put("coordinator.job.concurrency", "4")
+                .put("coordinator.job.max-queued", "10")
+                .put("coordinator.job.max-wait", "5m")
+                .put("coordinator.placement.strategy", "bin-pack")
+                .put("coordinator.placement.anti-affinity-depth", "3")
                 .put("coordinator.service-inventory.cache-dir", "si-cache")
                 .put("coordinator.agent.default-config", "agent:config:1")
                 .put("coordinator.allow-duplicate-installations-on-an-agent", "true")
@@ -44,11 +80,34 @@ public class TestCoordinatorConfig
                 .put("coordinator.http-repo.short-name-pattern", "shortNamePattern")
                 .put("coordinator.http-repo.binary-version-pattern", "binaryVersionPattern")
                 .put("coordinator.http-repo.config-version-pattern", "configVersionPattern")
+                .put("coordinator.repository.cache.release-ttl", "2h")
+                .put("coordinator.repository.cache.snapshot-ttl", "5s")
+                .put("coordinator.repository.cache.miss-ttl", "1s")
+                .put("coordinator.repository.probe.connect-timeout", "2s")
+                .put("coordinator.repository.probe.read-timeout", "3s")
+                .put("coordinator.binary-cache.dir", "binaries")
+                .put("coordinator.binary-cache.max-size-mb", "512")
+                .put("coordinator.config-bundle-cache.dir", "config-bundles")
+                .put("coordinator.config-bundle-cache.max-bundles", "10")
+                .put("coordinator.binary.peer-sources", "5")
                 .build();
 
         CoordinatorConfig expected = new CoordinatorConfig()
                 .setAirshipVersion("99.9")
                 .setStatusExpiration(new Duration(1, TimeUnit.MINUTES))
+                .setAgentUpdateConcurrency(5)
+                .setAgentUpdateTimeout(new Duration(3, TimeUnit.SECONDS))
+                .setAgentWatchEnabled(false)
+                .setAgentWatchMaxWait(new Duration(2, TimeUnit.MINUTES))
+                .setAgentWatchConcurrency(16)
+                .setSlotOperationConcurrency(7)
+                .setSlotOperationAgentConcurrency(2)
+                .setJobRetention(new Duration(2, TimeUnit.HOURS))
+                .setJobConcurrency(4)
+                .setJobMaxQueued(10)
+                .setJobMaxWait(new Duration(5, TimeUnit.MINUTES))
+                .setPlacementStrategy("bin-pack")
+                .setPlacementAntiAffinityDepth(3)
                 .setServiceInventoryCacheDir("si-cache")
                 .setAgentDefaultConfig("agent:config:1")
                 .setAllowDuplicateInstallationsOnAnAgent(true)
@@ -56,7 +115,17 @@ public class TestCoordinatorConfig
                 .setDefaultRepositoryGroupId(ImmutableList.of("group1", "group2", "group3"))
                 .setHttpShortNamePattern("shortNamePattern")
                 .setHttpRepoBinaryVersionPattern("binaryVersionPattern")
-                .setHttpRepoConfigVersionPattern("configVersionPattern");
+                .setHttpRepoConfigVersionPattern("configVersionPattern")
+                .setRepositoryCacheReleaseTtl(new Duration(2, TimeUnit.HOURS))
+                .setRepositoryCacheSnapshotTtl(new Duration(5, TimeUnit.SECONDS))
+                .setRepositoryCacheMissTtl(new Duration(1, TimeUnit.SECONDS))
+                .setRepositoryProbeConnectTimeout(new Duration(2, TimeUnit.SECONDS))
+                .setRepositoryProbeReadTimeout(new Duration(3, TimeUnit.SECONDS))
+                .setBinaryCacheDir("binaries")
+                .setBinaryCacheMaxSizeInMegabytes(512)
+                .setConfigBundleCacheDir("config-bundles")
+                .setConfigBundleCacheMaxBundles(10)
+                .setBinaryPeerSources(5);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
@@ -57,6 +57,7 @@ public class TestCoordinatorLifecycleResource
 {
     private final UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/lifecycle");
     private CoordinatorLifecycleResource resource;
+    private JobManager jobManager;
 
     private Coordinator coordinator;
     private String agentId;
@@ -79,8 +80,11 @@ public class TestCoordinatorLifecycleResource
                 MOCK_REPO,
                 provisioner,
                 new InMemoryStateManager(),
-                new MockServiceInventory());
-        resource = new CoordinatorLifecycleResource(coordinator, MOCK_REPO);
+                new MockServiceInventory(),
+                null,
+                null);
+        jobManager = new JobManager(new CoordinatorConfig());
+        resource = new CoordinatorLifecycleResource(coordinator, MOCK_REPO, jobManager);
 
         apple1SlotId = UUID.randomUUID();
         SlotStatus appleSlotStatus1 = createSlotStatus(apple1SlotId,
@@ -145,46 +149,81 @@ public class TestCoordinatorLifecycleResource
         assertSlotState(bananaSlotId, STOPPED);
 
         // stopped.start => running
-        assertOkResponse(resource.setState("running", uriInfo, null), RUNNING, apple1SlotId, apple2SlotId);
+        assertOkResponse(resource.setState("running", uriInfo, null, false), RUNNING, apple1SlotId, apple2SlotId);
         assertSlotState(apple1SlotId, RUNNING);
         assertSlotState(apple2SlotId, RUNNING);
         assertSlotState(bananaSlotId, STOPPED);
 
         // running.start => running
-        assertOkResponse(resource.setState("running", uriInfo, null), RUNNING, apple1SlotId, apple2SlotId);
+        assertOkResponse(resource.setState("running", uriInfo, null, false), RUNNING, apple1SlotId, apple2SlotId);
         assertSlotState(apple1SlotId, RUNNING);
         assertSlotState(apple2SlotId, RUNNING);
         assertSlotState(bananaSlotId, STOPPED);
 
         // running.stop => stopped
-        assertOkResponse(resource.setState("stopped", uriInfo, null), STOPPED, apple1SlotId, apple2SlotId);
+        assertOkResponse(resource.setState("stopped", uriInfo, null, false), STOPPED, apple1SlotId, apple2SlotId);
         assertSlotState(apple1SlotId, STOPPED);
         assertSlotState(apple2SlotId, STOPPED);
         assertSlotState(bananaSlotId, STOPPED);
 
         // stopped.stop => stopped
-        assertOkResponse(resource.setState("stopped", uriInfo, null), STOPPED, apple1SlotId, apple2SlotId);
+        assertOkResponse(resource.setState("stopped", uriInfo, null, false), STOPPED, apple1SlotId, apple2SlotId);
         assertSlotState(apple1SlotId, STOPPED);
         assertSlotState(apple2SlotId, STOPPED);
         assertSlotState(bananaSlotId, STOPPED);
 
         // stopped.restart => running
-        assertOkResponse(resource.setState("restarting", uriInfo, null), RUNNING, apple1SlotId, apple2SlotId);
+        assertOkResponse(resource.setState("restarting", uriInfo, null, false), RUNNING, apple1SlotId, apple2SlotId);
         assertSlotState(apple1SlotId, RUNNING);
         assertSlotState(apple2SlotId, RUNNING);
         assertSlotState(bananaSlotId, STOPPED);
 
         // running.restart => running
-        assertOkResponse(resource.setState("restarting", uriInfo, null), RUNNING, apple1SlotId, apple2SlotId);
+        assertOkResponse(resource.setState("restarting", uriInfo, null, false), RUNNING, apple1SlotId, apple2SlotId);
         assertSlotState(apple1SlotId, RUNNING);
         assertSlotState(apple2SlotId, RUNNING);
         assertSlotState(bananaSlotId, STOPPED);
     }
 
+    @Test
+    public void testAsyncSetState()
+            throws Exception
+    {
+        UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/lifecycle?binary=*:apple:*");
+
+        Response response = resource.setState("running", uriInfo, null, true);
+        assertEquals(response.getStatus(), Response.Status.ACCEPTED.getStatusCode());
+        JobRepresentation accepted = (JobRepresentation) response.getEntity();
+        assertEquals(response.getMetadata().getFirst("Location"), accepted.getSelf());
+        assertEquals(accepted.getOperation(), "lifecycle");
+
+        // long poll the job until it completes
+        JobResource jobResource = new JobResource(jobManager, coordinator, MOCK_REPO, new CoordinatorConfig());
+        response = jobResource.getJob(accepted.getId(), new Duration(10, TimeUnit.SECONDS), uriInfo);
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        JobRepresentation job = (JobRepresentation) response.getEntity();
+        assertEquals(job.getState(), JobState.SUCCEEDED);
+        assertNull(job.getErrorMessage());
+
+        Builder<UUID> ids = ImmutableList.builder();
+        for (SlotStatusRepresentation slotStatus : job.getSlots()) {
+            assertEquals(slotStatus.getStatus(), RUNNING.toString());
+            ids.add(slotStatus.getId());
+        }
+        assertEqualsNoOrder(ids.build(), ImmutableList.of(apple1SlotId, apple2SlotId));
+        assertSlotState(apple1SlotId, RUNNING);
+        assertSlotState(apple2SlotId, RUNNING);
+        assertSlotState(bananaSlotId, STOPPED);
+
+        // unknown jobs are not found
+        response = jobResource.getJob("unknown", null, uriInfo);
+        assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+    }
+
     @Test
     public void testSetStateUnknownState()
     {
-        Response response = resource.setState("unknown", uriInfo, null);
+        Response response = resource.setState("unknown", uriInfo, null, false);
         assertEquals(response.getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
         assertNull(response.getEntity());
     }
@@ -192,13 +231,13 @@ public class TestCoordinatorLifecycleResource
     @Test(expectedExceptions = NullPointerException.class)
     public void testSetStateNullState()
     {
-        resource.setState(null, uriInfo, null);
+        resource.setState(null, uriInfo, null, false);
     }
 
     @Test(expectedExceptions = InvalidSlotFilterException.class)
     public void testSetStateNoFilter()
     {
-        resource.setState("running", MockUriInfo.from("http://localhost/v1/slot/lifecycle"), null);
+        resource.setState("running", MockUriInfo.from("http://localhost/v1/slot/lifecycle"), null, false);
     }
 
     @Test
@@ -206,13 +245,29 @@ public class TestCoordinatorLifecycleResource
     {
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/lifecycle?binary=*:apple:*");
         try {
-            resource.setState("running", uriInfo, "invalid-version");
+            resource.setState("running", uriInfo, "invalid-version", false);
+            fail("Expected VersionConflictException");
+        }
+        catch (VersionConflictException e) {
+            assertEquals(e.getName(), AIRSHIP_SLOTS_VERSION_HEADER);
+            assertEquals(e.getVersion(), VersionsUtil.createSlotsVersion(coordinator.getAllSlotsStatus(SlotFilterBuilder.build(uriInfo, false, ImmutableList.<UUID>of()))));
+        }
+    }
+
+    @Test
+    public void testAsyncInvalidVersion()
+    {
+        // a stale version is rejected before the job is accepted
+        UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/lifecycle?binary=*:apple:*");
+        try {
+            resource.setState("running", uriInfo, "invalid-version", true);
             fail("Expected VersionConflictException");
         }
         catch (VersionConflictException e) {
             assertEquals(e.getName(), AIRSHIP_SLOTS_VERSION_HEADER);
             assertEquals(e.getVersion(), VersionsUtil.createSlotsVersion(coordinator.getAllSlotsStatus(SlotFilterBuilder.build(uriInfo, false, ImmutableList.<UUID>of()))));
         }
+        assertEquals(jobManager.getRunningJobs() + jobManager.getQueuedJobs(), 0);
     }
 
     @Test
@@ -220,7 +275,7 @@ public class TestCoordinatorLifecycleResource
     {
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/lifecycle?binary=*:apple:*");
         String slotsVersion = VersionsUtil.createSlotsVersion(coordinator.getAllSlotsStatus(SlotFilterBuilder.build(uriInfo, false, ImmutableList.<UUID>of())));
-        assertOkResponse(resource.setState("running", uriInfo, slotsVersion), RUNNING, apple1SlotId, apple2SlotId);
+        assertOkResponse(resource.setState("running", uriInfo, slotsVersion, false), RUNNING, apple1SlotId, apple2SlotId);
     }
 
     private void assertOkResponse(Response response, SlotLifecycleState state, UUID... slotIds)
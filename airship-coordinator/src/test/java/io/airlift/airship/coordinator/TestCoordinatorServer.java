@@ -180,11 +180,12 @@ public class TestCoordinatorServer
         coordinator.updateAllCoordinators();
         assertEquals(coordinator.getCoordinators().size(), 1);
 
+        // the coordinator reloads the expected states on the next update
+        stateManager.clearAll();
+
         provisioner.clearAgents();
         coordinator.updateAllAgents();
         assertTrue(coordinator.getAgents().isEmpty());
-
-        stateManager.clearAll();
         assertTrue(coordinator.getAllSlotStatus().isEmpty());
     }
 
@@ -232,11 +233,11 @@ public class TestCoordinatorServer
                 ImmutableList.of(appleSlotStatus1, appleSlotStatus2, bananaSlotStatus),
                 ImmutableMap.of("cpu", 8, "memory", 1024));
 
+        stateManager.clearAll();
+
         provisioner.addAgents(agentStatus);
         coordinator.updateAllAgents();
 
-        stateManager.clearAll();
-
         slotStatusRepresentationFactory = new SlotStatusRepresentationFactory(ImmutableList.of(appleSlotStatus1, appleSlotStatus2, bananaSlotStatus), repository);
     }
 
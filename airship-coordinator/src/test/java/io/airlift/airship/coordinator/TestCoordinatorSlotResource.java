@@ -60,8 +60,10 @@ public class TestCoordinatorSlotResource
                 repository,
                 provisioner,
                 new InMemoryStateManager(),
-                new MockServiceInventory());
-        resource = new CoordinatorSlotResource(coordinator, repository);
+                new MockServiceInventory(),
+                null,
+                null);
+        resource = new CoordinatorSlotResource(coordinator, repository, new JobManager(new CoordinatorConfig()));
     }
 
     @AfterMethod
@@ -192,7 +194,7 @@ public class TestCoordinatorSlotResource
         coordinator.updateAllAgents();
 
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment?host=apple*");
-        Response response = resource.install(AssignmentRepresentation.from(assignment), limit, uriInfo, null);
+        Response response = resource.install(AssignmentRepresentation.from(assignment), limit, uriInfo, null, false);
 
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
 
@@ -214,7 +216,7 @@ public class TestCoordinatorSlotResource
         coordinator.updateAllAgents();
 
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment");
-        Response response = resource.install(AssignmentRepresentation.from(APPLE_ASSIGNMENT), 1, uriInfo, null);
+        Response response = resource.install(AssignmentRepresentation.from(APPLE_ASSIGNMENT), 1, uriInfo, null, false);
 
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
 
@@ -233,7 +235,7 @@ public class TestCoordinatorSlotResource
         provisioner.addAgent(UUID.randomUUID().toString(), URI.create("fake://appleServer1/"));
 
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment");
-        Response response = resource.install(AssignmentRepresentation.from(APPLE_ASSIGNMENT), 1, uriInfo, null);
+        Response response = resource.install(AssignmentRepresentation.from(APPLE_ASSIGNMENT), 1, uriInfo, null, false);
 
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
 
@@ -250,14 +252,14 @@ public class TestCoordinatorSlotResource
         UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/slot/assignment");
 
         // install an apple server
-        Response response = resource.install(AssignmentRepresentation.from(APPLE_ASSIGNMENT), 1, uriInfo, null);
+        Response response = resource.install(AssignmentRepresentation.from(APPLE_ASSIGNMENT), 1, uriInfo, null, false);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         Collection<SlotStatusRepresentation> slots = (Collection<SlotStatusRepresentation>) response.getEntity();
         assertEquals(slots.size(), 1);
         assertAppleSlot(Iterables.get(slots, 0));
 
         // try to install a banana server which will fail
-        response = resource.install(AssignmentRepresentation.from(BANANA_ASSIGNMENT), 1, uriInfo, null);
+        response = resource.install(AssignmentRepresentation.from(BANANA_ASSIGNMENT), 1, uriInfo, null, false);
         assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
         slots = (Collection<SlotStatusRepresentation>) response.getEntity();
         assertEquals(slots.size(), 0);
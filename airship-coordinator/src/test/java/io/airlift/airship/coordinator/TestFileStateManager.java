@@ -0,0 +1,209 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+import com.proofpoint.json.JsonCodec;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestFileStateManager
+{
+    private final JsonCodec<ExpectedSlotStatus> codec = JsonCodec.jsonCodec(ExpectedSlotStatus.class);
+    private File dataDir;
+
+    @BeforeMethod
+    public void setup()
+    {
+        dataDir = createTempDir("expected-state");
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        deleteRecursively(dataDir);
+    }
+
+    @Test
+    public void testReopen()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        FileStateManager stateManager = new FileStateManager(dataDir, codec);
+        stateManager.setExpectedState(apple);
+        stateManager.setExpectedState(banana);
+        stateManager.setExpectedState(new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT));
+        stateManager.deleteExpectedState(banana.getId());
+        assertEquals(Iterables.getOnlyElement(stateManager.getAllExpectedStates()).getStatus(), RUNNING);
+        stateManager.close();
+
+        // the journal is replayed on startup
+        stateManager = new FileStateManager(dataDir, codec);
+        ExpectedSlotStatus expectedSlotStatus = Iterables.getOnlyElement(stateManager.getAllExpectedStates());
+        assertEquals(expectedSlotStatus.getId(), apple.getId());
+        assertEquals(expectedSlotStatus.getStatus(), RUNNING);
+        stateManager.close();
+    }
+
+    @Test
+    public void testBatch()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        FileStateManager stateManager = new FileStateManager(dataDir, codec);
+        stateManager.setExpectedStates(ImmutableList.of(apple, banana));
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+        stateManager.deleteExpectedStates(ImmutableList.of(apple.getId()));
+        stateManager.close();
+
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(banana));
+        stateManager.close();
+    }
+
+    @Test
+    public void testCompaction()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+
+        FileStateManager stateManager = new FileStateManager(dataDir, codec);
+        for (int i = 0; i < 2000; i++) {
+            stateManager.setExpectedState(new ExpectedSlotStatus(apple.getId(), i % 2 == 0 ? STOPPED : RUNNING, APPLE_ASSIGNMENT));
+        }
+        stateManager.close();
+
+        // the journal was compacted into the snapshot along the way
+        assertTrue(new File(dataDir, "expected-state.snapshot").exists());
+        assertTrue(new File(dataDir, "expected-state.journal").length() < new File(dataDir, "expected-state.snapshot").length() * 1024);
+
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEquals(Iterables.getOnlyElement(stateManager.getAllExpectedStates()).getStatus(), RUNNING);
+        stateManager.close();
+    }
+
+    @Test
+    public void testJournalOlderThanSnapshotIsSkipped()
+            throws Exception
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), RUNNING, BANANA_ASSIGNMENT);
+
+        FileStateManager stateManager = new FileStateManager(dataDir, codec);
+        stateManager.setExpectedState(apple);
+        stateManager.close();
+        File journal = new File(dataDir, "expected-state.journal");
+        byte[] oldJournal = Files.toByteArray(journal);
+
+        // delete apple and compact the deletion into the snapshot
+        stateManager = new FileStateManager(dataDir, codec);
+        stateManager.deleteExpectedState(apple.getId());
+        for (int i = 0; i < 2000; i++) {
+            stateManager.setExpectedState(new ExpectedSlotStatus(banana.getId(), i % 2 == 0 ? STOPPED : RUNNING, BANANA_ASSIGNMENT));
+        }
+        stateManager.close();
+        assertTrue(new File(dataDir, "expected-state.snapshot").exists());
+
+        // a crash after the snapshot was written, but before the journal was replaced, leaves the old journal behind
+        Files.write(oldJournal, journal);
+
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(banana));
+        assertEquals(Iterables.getOnlyElement(stateManager.getAllExpectedStates()).getStatus(), RUNNING);
+
+        // the old journal was replaced, so new records survive a restart
+        stateManager.setExpectedState(apple);
+        stateManager.close();
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+        stateManager.close();
+    }
+
+    @Test
+    public void testTornJournalRecord()
+            throws Exception
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        FileStateManager stateManager = new FileStateManager(dataDir, codec);
+        stateManager.setExpectedState(apple);
+        stateManager.setExpectedState(banana);
+        stateManager.close();
+
+        // cut the last record in half
+        File journal = new File(dataDir, "expected-state.journal");
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        file.setLength(file.length() - 10);
+        file.close();
+
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+
+        // new records are appended after the last complete record
+        stateManager.setExpectedState(banana);
+        stateManager.close();
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+        stateManager.close();
+    }
+
+    @Test
+    public void testDataDirLocked()
+    {
+        FileStateManager stateManager = new FileStateManager(dataDir, codec);
+        try {
+            new FileStateManager(dataDir, codec);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+
+        // the first state manager still holds the lock and can write
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        stateManager.setExpectedState(apple);
+        stateManager.close();
+
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+        stateManager.close();
+    }
+
+    @Test
+    public void testImportLegacyFiles()
+            throws Exception
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), RUNNING, APPLE_ASSIGNMENT);
+        File legacyFile = new File(dataDir, apple.getId() + ".json");
+        Files.write(codec.toJson(apple), legacyFile, Charsets.UTF_8);
+
+        FileStateManager stateManager = new FileStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+        assertFalse(legacyFile.exists());
+        stateManager.close();
+
+        stateManager = new FileStateManager(dataDir, codec);
+        assertEquals(Iterables.getOnlyElement(stateManager.getAllExpectedStates()).getStatus(), RUNNING);
+        stateManager.close();
+    }
+}
@@ -0,0 +1,150 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.proofpoint.configuration.ConfigurationFactory;
+import com.proofpoint.configuration.ConfigurationModule;
+import com.proofpoint.discovery.client.ServiceDescriptor;
+import com.proofpoint.discovery.client.ServiceState;
+import com.proofpoint.http.server.testing.TestingHttpServer;
+import com.proofpoint.http.server.testing.TestingHttpServerModule;
+import com.proofpoint.jaxrs.JaxrsModule;
+import com.proofpoint.json.JsonModule;
+import com.proofpoint.node.testing.TestingNodeModule;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestHttpHealthCheck
+{
+    private TestingHttpServer server;
+    private HealthResource healthResource;
+    private HttpHealthCheck healthCheck;
+
+    @BeforeClass
+    public void startServer()
+            throws Exception
+    {
+        Injector injector = Guice.createInjector(new TestingHttpServerModule(),
+                new TestingNodeModule(),
+                new JsonModule(),
+                new JaxrsModule(),
+                new ConfigurationModule(new ConfigurationFactory(ImmutableMap.<String, String>of())),
+                new Module()
+                {
+                    @Override
+                    public void configure(Binder binder)
+                    {
+                        binder.bind(HealthResource.class).in(Scopes.SINGLETON);
+                    }
+                });
+
+        server = injector.getInstance(TestingHttpServer.class);
+        healthResource = injector.getInstance(HealthResource.class);
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer()
+            throws Exception
+    {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @BeforeMethod
+    public void setup()
+    {
+        healthResource.setStatus(200);
+        healthCheck = new HttpHealthCheck("/v1/health", new Duration(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testHealthy()
+    {
+        UUID slotId = UUID.randomUUID();
+        assertTrue(healthCheck.isHealthy(slotId, ImmutableList.of(createService(slotId, server.getBaseUrl().toString()))));
+    }
+
+    @Test
+    public void testUnhealthy()
+    {
+        UUID slotId = UUID.randomUUID();
+        List<ServiceDescriptor> serviceInventory = ImmutableList.of(createService(slotId, server.getBaseUrl().toString()));
+
+        healthResource.setStatus(503);
+        assertFalse(healthCheck.isHealthy(slotId, serviceInventory));
+
+        // a path the service does not have
+        healthResource.setStatus(200);
+        assertFalse(new HttpHealthCheck("/v1/unknown", new Duration(1, TimeUnit.SECONDS)).isHealthy(slotId, serviceInventory));
+    }
+
+    @Test
+    public void testEveryServiceOfTheSlotIsChecked()
+    {
+        UUID slotId = UUID.randomUUID();
+        assertFalse(healthCheck.isHealthy(slotId, ImmutableList.of(
+                createService(slotId, server.getBaseUrl().toString()),
+                createService(slotId, "http://127.0.0.1:1"))));
+
+        // services of other slots are ignored
+        assertTrue(healthCheck.isHealthy(slotId, ImmutableList.of(
+                createService(slotId, server.getBaseUrl().toString()),
+                createService(UUID.randomUUID(), "http://127.0.0.1:1"))));
+    }
+
+    @Test
+    public void testSlotWithoutHttpServiceIsNotHealthy()
+    {
+        UUID slotId = UUID.randomUUID();
+        assertFalse(healthCheck.isHealthy(slotId, ImmutableList.<ServiceDescriptor>of()));
+        assertFalse(healthCheck.isHealthy(slotId, ImmutableList.of(new ServiceDescriptor(null,
+                slotId.toString(),
+                "apple",
+                "general",
+                "/apple",
+                ServiceState.RUNNING,
+                ImmutableMap.of("jdbc", "jdbc:apple://localhost")))));
+    }
+
+    private static ServiceDescriptor createService(UUID slotId, String http)
+    {
+        return new ServiceDescriptor(null, slotId.toString(), "apple", "general", "/apple", ServiceState.RUNNING, ImmutableMap.of("http", http));
+    }
+
+    @Path("/v1/health")
+    public static class HealthResource
+    {
+        private volatile int status;
+
+        public void setStatus(int status)
+        {
+            this.status = status;
+        }
+
+        @GET
+        public Response getHealth()
+        {
+            return Response.status(status).build();
+        }
+    }
+}
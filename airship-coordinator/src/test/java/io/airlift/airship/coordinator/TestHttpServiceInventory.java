@@ -0,0 +1,121 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.proofpoint.discovery.client.ServiceDescriptor;
+import com.proofpoint.discovery.client.ServiceState;
+import com.proofpoint.json.JsonCodec;
+import io.airlift.airship.shared.ConfigUtils;
+import io.airlift.airship.shared.SlotLifecycleState;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.FileUtils.newFile;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class TestHttpServiceInventory
+{
+    private static final UUID SLOT_ID = UUID.randomUUID();
+
+    private TestingMavenRepository repository;
+    private File cacheDir;
+    private HttpServiceInventory serviceInventory;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        repository = new TestingMavenRepository();
+        cacheDir = createTempDir("service-inventory-cache");
+
+        File configDir = createTempDir("config");
+        try {
+            Files.write("[{\"type\":\"apple\",\"pool\":\"general\",\"properties\":{\"http\":\"http://${airship.host}:8080\",\"weight\":\"1\"}}]",
+                    new File(configDir, "airship-service-inventory.json"),
+                    Charsets.UTF_8);
+            ConfigUtils.packConfig(newFile(repository.getTargetRepo(), "prod", "apple", "1.0", "apple-1.0.config"), "", configDir);
+        }
+        finally {
+            deleteRecursively(configDir);
+        }
+
+        serviceInventory = new HttpServiceInventory(repository, JsonCodec.listJsonCodec(ServiceDescriptor.class), cacheDir);
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        repository.destroy();
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void testServiceInventory()
+    {
+        List<ServiceDescriptor> descriptors = serviceInventory.getServiceInventory(ImmutableList.of(createSlot("apple-host", RUNNING)));
+        assertEquals(descriptors.size(), 1);
+
+        ServiceDescriptor descriptor = descriptors.get(0);
+        assertEquals(descriptor.getNodeId(), SLOT_ID.toString());
+        assertEquals(descriptor.getType(), "apple");
+        assertEquals(descriptor.getPool(), "general");
+        assertEquals(descriptor.getState(), ServiceState.RUNNING);
+        assertEquals(descriptor.getProperties(), ImmutableMap.of("http", "http://apple-host:8080", "weight", "1"));
+    }
+
+    @Test
+    public void testUnchangedSlotsReuseInventory()
+    {
+        List<ServiceDescriptor> descriptors = serviceInventory.getServiceInventory(ImmutableList.of(createSlot("apple-host", RUNNING)));
+        assertSame(serviceInventory.getServiceInventory(ImmutableList.of(createSlot("apple-host", RUNNING))), descriptors);
+
+        List<ServiceDescriptor> stopped = serviceInventory.getServiceInventory(ImmutableList.of(createSlot("apple-host", STOPPED)));
+        assertNotSame(stopped, descriptors);
+        assertEquals(stopped.get(0).getState(), ServiceState.STOPPED);
+    }
+
+    @Test
+    public void testDescriptorsAreKeptInMemory()
+    {
+        serviceInventory.getServiceInventory(ImmutableList.of(createSlot("apple-host", RUNNING)));
+
+        // neither the config bundle nor the disk cache is needed once the descriptors are parsed
+        repository.destroy();
+        deleteRecursively(cacheDir);
+
+        List<ServiceDescriptor> descriptors = serviceInventory.getServiceInventory(ImmutableList.of(createSlot("other-host", RUNNING)));
+        assertEquals(descriptors.size(), 1);
+        assertEquals(descriptors.get(0).getProperties().get("http"), "http://other-host:8080");
+    }
+
+    private static SlotStatus createSlot(String host, SlotLifecycleState state)
+    {
+        URI uri = URI.create("http://" + host + ":9999/v1/agent/slot/apple");
+        return createSlotStatus(SLOT_ID,
+                uri,
+                uri,
+                "instance",
+                "/location/apple",
+                state,
+                APPLE_ASSIGNMENT,
+                "/apple",
+                ImmutableMap.<String, Integer>of());
+    }
+}
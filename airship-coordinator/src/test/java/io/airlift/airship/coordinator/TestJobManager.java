@@ -0,0 +1,206 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestJobManager
+{
+    private final SlotStatus slot = createSlotStatus(UUID.randomUUID(),
+            URI.create("fake://foo/v1/agent/slot/apple"),
+            URI.create("fake://foo/v1/agent/slot/apple"),
+            "instance",
+            "/location",
+            RUNNING,
+            APPLE_ASSIGNMENT,
+            "/apple",
+            ImmutableMap.<String, Integer>of());
+
+    private JobManager jobManager;
+
+    @AfterMethod
+    public void tearDown()
+    {
+        if (jobManager != null) {
+            jobManager.stop();
+        }
+    }
+
+    @Test
+    public void testCompletion()
+            throws Exception
+    {
+        jobManager = new JobManager(new Duration(1, TimeUnit.HOURS), 1, 1);
+        Job job = jobManager.submit("install", new Function<SlotOperationListener, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(SlotOperationListener listener)
+            {
+                listener.slotCompleted(slot);
+                return ImmutableList.of(slot);
+            }
+        });
+        assertSame(jobManager.getJob(job.getId()), job);
+        assertEquals(job.getOperation(), "install");
+
+        assertTrue(job.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+        assertEquals(job.getState(), JobState.SUCCEEDED);
+        assertEquals(job.getSlots(), ImmutableList.of(slot));
+        assertNull(job.getErrorMessage());
+    }
+
+    @Test
+    public void testFailure()
+            throws Exception
+    {
+        jobManager = new JobManager(new Duration(1, TimeUnit.HOURS), 1, 1);
+        Job job = jobManager.submit("terminate", new Function<SlotOperationListener, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(SlotOperationListener listener)
+            {
+                listener.slotCompleted(slot);
+                throw new IllegalStateException("agent is offline");
+            }
+        });
+
+        assertTrue(job.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+        assertEquals(job.getState(), JobState.FAILED);
+        assertEquals(job.getErrorMessage(), "agent is offline");
+
+        // the slots completed before the failure are still reported
+        assertEquals(job.getSlots(), ImmutableList.of(slot));
+    }
+
+    @Test
+    public void testWaitForCompletionTimesOut()
+            throws Exception
+    {
+        jobManager = new JobManager(new Duration(1, TimeUnit.HOURS), 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Job job = jobManager.submit("upgrade", blockUntil(release));
+        try {
+            assertFalse(job.waitForCompletion(new Duration(10, TimeUnit.MILLISECONDS)));
+            assertEquals(job.getState(), JobState.RUNNING);
+        }
+        finally {
+            release.countDown();
+        }
+        assertTrue(job.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void testExpiredJobsArePurged()
+            throws Exception
+    {
+        jobManager = new JobManager(new Duration(10, TimeUnit.MILLISECONDS), 1, 1);
+        Job job = jobManager.submit("install", new Function<SlotOperationListener, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(SlotOperationListener listener)
+            {
+                return ImmutableList.of();
+            }
+        });
+        assertTrue(job.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+
+        // the purge runs on its own, without another job being submitted
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (jobManager.getJob(job.getId()) != null) {
+            if (System.nanoTime() > deadline) {
+                fail("Expired job was not purged");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testRunningJobsAreNotPurged()
+            throws Exception
+    {
+        jobManager = new JobManager(new Duration(10, TimeUnit.MILLISECONDS), 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Job job = jobManager.submit("upgrade", blockUntil(release));
+        try {
+            Thread.sleep(50);
+            jobManager.removeExpiredJobs();
+            assertSame(jobManager.getJob(job.getId()), job);
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull()
+            throws Exception
+    {
+        jobManager = new JobManager(new Duration(1, TimeUnit.HOURS), 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Job running = jobManager.submit("upgrade", blockUntil(release));
+            Job queued = jobManager.submit("upgrade", blockUntil(release));
+            try {
+                jobManager.submit("upgrade", blockUntil(release));
+                fail("Expected JobRejectedException");
+            }
+            catch (JobRejectedException expected) {
+            }
+            assertEquals(jobManager.getQueuedJobs(), 1);
+
+            // the accepted jobs still finish
+            release.countDown();
+            assertTrue(running.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+            assertTrue(queued.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+            assertNotNull(jobManager.getJob(running.getId()));
+            assertNotNull(jobManager.getJob(queued.getId()));
+        }
+        finally {
+            release.countDown();
+        }
+
+        // capacity is available again
+        Job job = jobManager.submit("upgrade", blockUntil(release));
+        assertTrue(job.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+    }
+
+    private static Function<SlotOperationListener, List<SlotStatus>> blockUntil(final CountDownLatch release)
+    {
+        return new Function<SlotOperationListener, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(SlotOperationListener listener)
+            {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                return ImmutableList.of();
+            }
+        };
+    }
+}
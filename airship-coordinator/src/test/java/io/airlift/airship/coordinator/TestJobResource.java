@@ -0,0 +1,201 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.proofpoint.http.server.HttpServerConfig;
+import com.proofpoint.http.server.HttpServerInfo;
+import com.proofpoint.node.NodeInfo;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.shared.MockUriInfo;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.airlift.airship.coordinator.TestingMavenRepository.MOCK_REPO;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestJobResource
+{
+    private final UriInfo uriInfo = MockUriInfo.from("http://localhost/v1/job/1234");
+    private Coordinator coordinator;
+    private JobManager jobManager;
+    private JobResource resource;
+    private CountDownLatch release;
+
+    @BeforeMethod
+    public void setup()
+    {
+        NodeInfo nodeInfo = new NodeInfo("testing");
+        MockProvisioner provisioner = new MockProvisioner();
+        coordinator = new Coordinator(nodeInfo,
+                new HttpServerInfo(new HttpServerConfig(), nodeInfo),
+                new CoordinatorConfig().setStatusExpiration(new Duration(1, TimeUnit.DAYS)),
+                provisioner.getAgentFactory(),
+                MOCK_REPO,
+                provisioner,
+                new InMemoryStateManager(),
+                new MockServiceInventory(),
+                null,
+                null);
+
+        jobManager = new JobManager(new Duration(1, TimeUnit.HOURS), 1, 1);
+        resource = new JobResource(jobManager, coordinator, MOCK_REPO, new CoordinatorConfig().setJobMaxWait(new Duration(100, TimeUnit.MILLISECONDS)));
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        release.countDown();
+        jobManager.stop();
+    }
+
+    @Test
+    public void testCompletedJob()
+            throws Exception
+    {
+        Job job = jobManager.submit("install", returning(ImmutableList.<SlotStatus>of()));
+        assertTrue(job.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+
+        Response response = resource.getJob(job.getId(), null, uriInfo);
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        JobRepresentation representation = (JobRepresentation) response.getEntity();
+        assertEquals(representation.getId(), job.getId());
+        assertEquals(representation.getSelf(), URI.create("http://localhost/v1/job/" + job.getId()));
+        assertEquals(representation.getOperation(), "install");
+        assertEquals(representation.getState(), JobState.SUCCEEDED);
+        assertNull(representation.getErrorMessage());
+        assertTrue(representation.getSlots().isEmpty());
+    }
+
+    @Test
+    public void testFailedJob()
+            throws Exception
+    {
+        Job job = jobManager.submit("upgrade", new Function<SlotOperationListener, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(SlotOperationListener listener)
+            {
+                throw new IllegalStateException("upgrade failed");
+            }
+        });
+
+        JobRepresentation representation = (JobRepresentation) resource.getJob(job.getId(), new Duration(10, TimeUnit.SECONDS), uriInfo).getEntity();
+        assertEquals(representation.getState(), JobState.FAILED);
+        assertEquals(representation.getErrorMessage(), "upgrade failed");
+    }
+
+    @Test
+    public void testLongPollReturnsWhenJobCompletes()
+            throws Exception
+    {
+        // a resource without the short test cap
+        JobResource resource = new JobResource(jobManager, coordinator, MOCK_REPO, new CoordinatorConfig());
+        Job job = jobManager.submit("install", blockUntil(release));
+
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }
+        }).start();
+
+        JobRepresentation representation = (JobRepresentation) resource.getJob(job.getId(), new Duration(10, TimeUnit.SECONDS), uriInfo).getEntity();
+        assertEquals(representation.getState(), JobState.SUCCEEDED);
+    }
+
+    @Test
+    public void testLongPollIsCapped()
+            throws Exception
+    {
+        Job job = jobManager.submit("install", blockUntil(release));
+
+        // the requested wait is capped by the configured maximum
+        long start = System.nanoTime();
+        Response response = resource.getJob(job.getId(), new Duration(1, TimeUnit.HOURS), uriInfo);
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitMillis < TimeUnit.SECONDS.toMillis(10), "waited " + waitMillis + "ms");
+
+        assertEquals(response.getStatus(), Response.Status.OK.getStatusCode());
+        assertEquals(((JobRepresentation) response.getEntity()).getState(), JobState.RUNNING);
+    }
+
+    @Test
+    public void testExpiredJobIsNotFound()
+            throws Exception
+    {
+        jobManager.stop();
+        jobManager = new JobManager(new Duration(10, TimeUnit.MILLISECONDS), 1, 1);
+        resource = new JobResource(jobManager, coordinator, MOCK_REPO, new CoordinatorConfig());
+
+        Job job = jobManager.submit("install", returning(ImmutableList.<SlotStatus>of()));
+        assertTrue(job.waitForCompletion(new Duration(10, TimeUnit.SECONDS)));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (resource.getJob(job.getId(), null, uriInfo).getStatus() != Response.Status.NOT_FOUND.getStatusCode()) {
+            if (System.nanoTime() > deadline) {
+                fail("Expired job was still found");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testUnknownJob()
+            throws Exception
+    {
+        Response response = resource.getJob("unknown", new Duration(10, TimeUnit.SECONDS), uriInfo);
+        assertEquals(response.getStatus(), Response.Status.NOT_FOUND.getStatusCode());
+    }
+
+    private static Function<SlotOperationListener, List<SlotStatus>> returning(final List<SlotStatus> slots)
+    {
+        return new Function<SlotOperationListener, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(SlotOperationListener listener)
+            {
+                return slots;
+            }
+        };
+    }
+
+    private static Function<SlotOperationListener, List<SlotStatus>> blockUntil(final CountDownLatch release)
+    {
+        return new Function<SlotOperationListener, List<SlotStatus>>()
+        {
+            @Override
+            public List<SlotStatus> apply(SlotOperationListener listener)
+            {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                return ImmutableList.of();
+            }
+        };
+    }
+}
@@ -15,6 +15,7 @@ public class TestLocalProvisionerConfig
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(LocalProvisionerConfig.class)
                 .setLocalAgentUris("")
                 .setExpectedStateDir("expected-state")
+                .setExpectedStateStore("file")
                 .setAuthorizedKeysDir("authorized-keys")
         );
     }
@@ -25,12 +26,14 @@ public class TestLocalProvisionerConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("coordinator.agent-uri", "agent1,agent2,agent3")
                 .put("coordinator.expected-state.dir", "state")
+                .put("coordinator.expected-state.store", "log")
                 .put("coordinator.auth.authorized-keys-dir", "keys")
                 .build();
 
         LocalProvisionerConfig expected = new LocalProvisionerConfig()
                 .setLocalAgentUris(ImmutableList.of("agent1", "agent2", "agent3"))
                 .setExpectedStateDir("state")
+                .setExpectedStateStore("log")
                 .setAuthorizedKeysDir("keys");
 
         ConfigAssertions.assertFullMapping(properties, expected);
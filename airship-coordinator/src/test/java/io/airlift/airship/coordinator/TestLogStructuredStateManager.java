@@ -0,0 +1,227 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+import com.proofpoint.json.JsonCodec;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestLogStructuredStateManager
+{
+    private final JsonCodec<ExpectedSlotStatus> codec = JsonCodec.jsonCodec(ExpectedSlotStatus.class);
+    private File dataDir;
+
+    @BeforeMethod
+    public void setup()
+    {
+        dataDir = createTempDir("expected-state");
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        deleteRecursively(dataDir);
+    }
+
+    @Test
+    public void testReopen()
+            throws Exception
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        LogStructuredStateManager stateManager = new LogStructuredStateManager(dataDir, codec);
+        stateManager.setExpectedStates(ImmutableList.of(apple, banana));
+        stateManager.setExpectedState(new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT));
+        stateManager.deleteExpectedState(banana.getId());
+        long version = stateManager.getVersion(apple.getId());
+        stateManager.close();
+
+        // the index written on close is used on startup
+        assertTrue(new File(dataDir, "expected-state.index").exists());
+        stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEquals(Iterables.getOnlyElement(stateManager.getAllExpectedStates()).getStatus(), RUNNING);
+        assertEquals(stateManager.getVersion(apple.getId()), version);
+        assertEquals(stateManager.getVersion(banana.getId()), 0);
+
+        // writes after the index are replayed from the data file
+        File indexFile = new File(dataDir, "expected-state.index");
+        byte[] index = Files.toByteArray(indexFile);
+        stateManager.setExpectedState(banana);
+        stateManager.close();
+        Files.write(index, indexFile);
+
+        stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT), banana));
+        stateManager.close();
+    }
+
+    @Test
+    public void testVersions()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+
+        LogStructuredStateManager stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEquals(stateManager.getVersion(apple.getId()), 0);
+        stateManager.setExpectedState(apple);
+        long version = stateManager.getVersion(apple.getId());
+        assertTrue(version > 0);
+
+        stateManager.setExpectedState(new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT));
+        assertTrue(stateManager.getVersion(apple.getId()) > version);
+        version = stateManager.getVersion(apple.getId());
+
+        // versions are not reused after a delete
+        stateManager.deleteExpectedState(apple.getId());
+        assertEquals(stateManager.getVersion(apple.getId()), 0);
+        stateManager.setExpectedState(apple);
+        assertTrue(stateManager.getVersion(apple.getId()) > version);
+        stateManager.close();
+    }
+
+    @Test
+    public void testCompareAndSet()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        LogStructuredStateManager stateManager = new LogStructuredStateManager(dataDir, codec);
+        stateManager.setExpectedState(apple);
+        Map<UUID, Long> versions = stateManager.getVersions(ImmutableList.of(apple.getId(), banana.getId()));
+        assertEquals(versions, ImmutableMap.of(apple.getId(), stateManager.getVersion(apple.getId()), banana.getId(), 0L));
+
+        // the first writer wins
+        ExpectedSlotStatus runningApple = new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT);
+        assertTrue(stateManager.compareAndSetExpectedStates(versions, ImmutableList.of(runningApple, banana), ImmutableList.<UUID>of()));
+
+        // the second writer read the same versions, so it loses and writes nothing
+        assertFalse(stateManager.compareAndSetExpectedStates(versions, ImmutableList.<ExpectedSlotStatus>of(), ImmutableList.of(apple.getId(), banana.getId())));
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(runningApple, banana));
+
+        // with the current versions the delete succeeds
+        versions = stateManager.getVersions(ImmutableList.of(apple.getId(), banana.getId()));
+        assertTrue(stateManager.compareAndSetExpectedStates(versions, ImmutableList.<ExpectedSlotStatus>of(), ImmutableList.of(apple.getId(), banana.getId())));
+        assertTrue(stateManager.getAllExpectedStates().isEmpty());
+        stateManager.close();
+    }
+
+    @Test
+    public void testDataDirLocked()
+    {
+        LogStructuredStateManager stateManager = new LogStructuredStateManager(dataDir, codec);
+        try {
+            new LogStructuredStateManager(dataDir, codec);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+
+        // the file state manager uses the same lock
+        try {
+            new FileStateManager(dataDir, codec);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException expected) {
+        }
+        stateManager.close();
+
+        stateManager = new LogStructuredStateManager(dataDir, codec);
+        stateManager.close();
+    }
+
+    @Test
+    public void testUncommittedBatch()
+            throws Exception
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+        ExpectedSlotStatus cherry = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        LogStructuredStateManager stateManager = new LogStructuredStateManager(dataDir, codec);
+        stateManager.setExpectedState(apple);
+        stateManager.setExpectedStates(ImmutableList.of(banana, cherry));
+        stateManager.close();
+
+        // lose the commit record of the last batch, as if the process crashed during the write
+        File data = new File(dataDir, "expected-state.db");
+        RandomAccessFile file = new RandomAccessFile(data, "rw");
+        file.setLength(file.length() - 10);
+        file.close();
+
+        // the whole batch is discarded, and new writes are appended after the last commit
+        stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+        stateManager.setExpectedState(banana);
+        stateManager.close();
+        stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+        stateManager.close();
+    }
+
+    @Test
+    public void testCompaction()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+
+        LogStructuredStateManager stateManager = new LogStructuredStateManager(dataDir, codec);
+        for (int i = 0; i < 20000; i++) {
+            stateManager.setExpectedState(new ExpectedSlotStatus(apple.getId(), i % 2 == 0 ? STOPPED : RUNNING, APPLE_ASSIGNMENT));
+        }
+        long version = stateManager.getVersion(apple.getId());
+        stateManager.close();
+
+        // the data file was compacted along the way, and versions survive compaction
+        assertTrue(new File(dataDir, "expected-state.db").length() < 1024 * 1024);
+        stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEquals(Iterables.getOnlyElement(stateManager.getAllExpectedStates()).getStatus(), RUNNING);
+        assertEquals(stateManager.getVersion(apple.getId()), version);
+        stateManager.close();
+    }
+
+    @Test
+    public void testImportFileStateManager()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), RUNNING, APPLE_ASSIGNMENT);
+
+        FileStateManager fileStateManager = new FileStateManager(dataDir, codec);
+        fileStateManager.setExpectedState(apple);
+        fileStateManager.close();
+
+        LogStructuredStateManager stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+        stateManager.close();
+
+        // the imported files are set aside, so switching back does not bring back the old state
+        assertFalse(new File(dataDir, "expected-state.journal").exists());
+        assertTrue(new File(dataDir, "expected-state.journal.imported").exists());
+        fileStateManager = new FileStateManager(dataDir, codec);
+        assertTrue(fileStateManager.getAllExpectedStates().isEmpty());
+        fileStateManager.close();
+
+        // the import only happens once
+        stateManager = new LogStructuredStateManager(dataDir, codec);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+        stateManager.close();
+    }
+}
@@ -0,0 +1,65 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.io.Files;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+import static com.google.common.io.Resources.getResource;
+import static com.google.common.io.Resources.newInputStreamSupplier;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public class TestMavenMetadataCache
+{
+    private File dir;
+
+    @BeforeMethod
+    public void setup()
+    {
+        dir = createTempDir("metadata");
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        deleteRecursively(dir);
+    }
+
+    @Test
+    public void testRevalidate()
+            throws Exception
+    {
+        File metadataFile = new File(dir, "maven-metadata.xml");
+        Files.copy(newInputStreamSupplier(getResource(TestMavenMetadataCache.class, "banana-maven-metadata.xml")), metadataFile);
+        metadataFile.setLastModified(1000000000000L);
+
+        MavenMetadataCache cache = new MavenMetadataCache();
+        MavenMetadata metadata = cache.getMetadata(metadataFile.toURI());
+        assertEquals(metadata.artifactId, "banana");
+
+        // unchanged files are not parsed again
+        assertSame(cache.getMetadata(metadataFile.toURI()), metadata);
+
+        // a new deploy is picked up
+        metadataFile.setLastModified(1100000000000L);
+        MavenMetadata updated = cache.getMetadata(metadataFile.toURI());
+        assertNotSame(updated, metadata);
+        assertSame(cache.getMetadata(metadataFile.toURI()), updated);
+
+        metadataFile.delete();
+        try {
+            cache.getMetadata(metadataFile.toURI());
+            fail("expected FileNotFoundException");
+        }
+        catch (FileNotFoundException expected) {
+        }
+    }
+}
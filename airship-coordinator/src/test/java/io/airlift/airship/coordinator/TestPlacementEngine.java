@@ -0,0 +1,139 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestPlacementEngine
+{
+    private static final Map<String, Integer> NO_RESOURCES = ImmutableMap.of();
+    private static final Map<String, Integer> AGENT_RESOURCES = ImmutableMap.of("cpu", 8);
+
+    @Test
+    public void testSpread()
+    {
+        PlacementEngine engine = new PlacementEngine(PlacementStrategy.SPREAD, 0);
+        engine.update(ImmutableMap.of(
+                "busy", createAgent("busy", "/zone-a/busy", createSlot(BANANA_ASSIGNMENT, 6)),
+                "idle", createAgent("idle", "/zone-a/idle")));
+
+        assertEquals(engine.place(ImmutableList.of("busy", "idle"), NO_RESOURCES, isInstanceOf(APPLE_ASSIGNMENT), 1), ImmutableList.of("idle"));
+    }
+
+    @Test
+    public void testBinPack()
+    {
+        PlacementEngine engine = new PlacementEngine(PlacementStrategy.BIN_PACK, 0);
+        engine.update(ImmutableMap.of(
+                "busy", createAgent("busy", "/zone-a/busy", createSlot(BANANA_ASSIGNMENT, 6)),
+                "idle", createAgent("idle", "/zone-a/idle")));
+
+        assertEquals(engine.place(ImmutableList.of("busy", "idle"), NO_RESOURCES, isInstanceOf(APPLE_ASSIGNMENT), 1), ImmutableList.of("busy"));
+    }
+
+    @Test
+    public void testResources()
+    {
+        PlacementEngine engine = new PlacementEngine(PlacementStrategy.BIN_PACK, 0);
+        engine.update(ImmutableMap.of(
+                "busy", createAgent("busy", "/zone-a/busy", createSlot(BANANA_ASSIGNMENT, 6)),
+                "idle", createAgent("idle", "/zone-a/idle")));
+
+        // the busy agent only has 2 cpus left
+        assertEquals(engine.place(ImmutableList.of("busy", "idle"), ImmutableMap.of("cpu", 4), isInstanceOf(APPLE_ASSIGNMENT), 2), ImmutableList.of("idle"));
+
+        // resources released by the busy agent are picked up on update
+        engine.update(ImmutableMap.of(
+                "busy", createAgent("busy", "/zone-a/busy"),
+                "idle", createAgent("idle", "/zone-a/idle")));
+        assertEqualsNoOrder(engine.place(ImmutableList.of("busy", "idle"), ImmutableMap.of("cpu", 4), isInstanceOf(APPLE_ASSIGNMENT), 2), ImmutableList.of("busy", "idle"));
+    }
+
+    @Test
+    public void testAntiAffinity()
+    {
+        // the agents in zone-a already run an apple
+        PlacementEngine engine = new PlacementEngine(PlacementStrategy.BIN_PACK, 1);
+        engine.update(ImmutableMap.of(
+                "a1", createAgent("a1", "/zone-a/a1", createSlot(APPLE_ASSIGNMENT, 1)),
+                "a2", createAgent("a2", "/zone-a/a2", createSlot(BANANA_ASSIGNMENT, 4)),
+                "b1", createAgent("b1", "/zone-b/b1"),
+                "b2", createAgent("b2", "/zone-b/b2")));
+
+        // the first apple goes to zone-b, after which both zones have one apple and bin-packing picks a2
+        List<String> placements = engine.place(ImmutableList.of("a2", "b1", "b2"), NO_RESOURCES, isInstanceOf(APPLE_ASSIGNMENT), 2);
+        assertEquals(placements.size(), 2);
+        assertTrue(placements.get(0).startsWith("b"));
+        assertEquals(placements.get(1), "a2");
+    }
+
+    @Test
+    public void testLimit()
+    {
+        PlacementEngine engine = new PlacementEngine(PlacementStrategy.SPREAD, 0);
+        engine.update(ImmutableMap.of(
+                "a", createAgent("a", "/zone-a/a"),
+                "b", createAgent("b", "/zone-a/b")));
+
+        assertEquals(engine.place(ImmutableList.of("a", "b"), NO_RESOURCES, isInstanceOf(APPLE_ASSIGNMENT), 5).size(), 2);
+        assertEquals(engine.place(ImmutableList.of("a", "b", "unknown"), NO_RESOURCES, isInstanceOf(APPLE_ASSIGNMENT), 1).size(), 1);
+        assertTrue(engine.place(ImmutableList.<String>of(), NO_RESOURCES, isInstanceOf(APPLE_ASSIGNMENT), 1).isEmpty());
+    }
+
+    private static Predicate<SlotStatus> isInstanceOf(final Assignment assignment)
+    {
+        return new Predicate<SlotStatus>()
+        {
+            @Override
+            public boolean apply(SlotStatus slotStatus)
+            {
+                return assignment.equals(slotStatus.getAssignment());
+            }
+        };
+    }
+
+    private static SlotStatus createSlot(Assignment assignment, int cpu)
+    {
+        URI self = URI.create("fake://agent/v1/agent/slot/slot");
+        return createSlotStatus(UUID.randomUUID(),
+                self,
+                self,
+                "instance",
+                "/location",
+                STOPPED,
+                assignment,
+                "/slot",
+                ImmutableMap.of("cpu", cpu));
+    }
+
+    private static AgentStatus createAgent(String instanceId, String location, SlotStatus... slots)
+    {
+        return new AgentStatus(UUID.randomUUID().toString(),
+                ONLINE,
+                instanceId,
+                URI.create("fake://agent/"),
+                URI.create("fake://agent/"),
+                location,
+                "instance.type",
+                ImmutableList.copyOf(slots),
+                AGENT_RESOURCES);
+    }
+}
@@ -0,0 +1,49 @@
+package io.airlift.airship.coordinator;
+
+import com.proofpoint.units.Duration;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestRollingUpgradePolicy
+{
+    private static final Duration HEALTH_TIMEOUT = new Duration(1, TimeUnit.MINUTES);
+
+    @Test
+    public void testBatchSize()
+    {
+        RollingUpgradePolicy policy = RollingUpgradePolicy.valueOf("3", HEALTH_TIMEOUT);
+        assertEquals(policy.getBatchSize(1), 3);
+        assertEquals(policy.getBatchSize(100), 3);
+        assertEquals(policy.getHealthTimeout(), HEALTH_TIMEOUT);
+    }
+
+    @Test
+    public void testBatchPercentage()
+    {
+        RollingUpgradePolicy policy = RollingUpgradePolicy.valueOf("25%", HEALTH_TIMEOUT);
+        assertEquals(policy.getBatchSize(100), 25);
+        assertEquals(policy.getBatchSize(10), 3);
+        assertEquals(policy.getBatchSize(1), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBatchSize()
+    {
+        RollingUpgradePolicy.valueOf("lots", HEALTH_TIMEOUT);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroBatchSize()
+    {
+        RollingUpgradePolicy.valueOf("0", HEALTH_TIMEOUT);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPercentageOverHundred()
+    {
+        RollingUpgradePolicy.valueOf("150%", HEALTH_TIMEOUT);
+    }
+}
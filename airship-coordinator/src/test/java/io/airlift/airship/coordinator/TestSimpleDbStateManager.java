@@ -0,0 +1,216 @@
+package io.airlift.airship.coordinator;
+
+import com.amazonaws.services.simpledb.AmazonSimpleDB;
+import com.amazonaws.services.simpledb.model.Attribute;
+import com.amazonaws.services.simpledb.model.BatchDeleteAttributesRequest;
+import com.amazonaws.services.simpledb.model.BatchPutAttributesRequest;
+import com.amazonaws.services.simpledb.model.DeletableItem;
+import com.amazonaws.services.simpledb.model.DeleteAttributesRequest;
+import com.amazonaws.services.simpledb.model.Item;
+import com.amazonaws.services.simpledb.model.PutAttributesRequest;
+import com.amazonaws.services.simpledb.model.ReplaceableAttribute;
+import com.amazonaws.services.simpledb.model.ReplaceableItem;
+import com.amazonaws.services.simpledb.model.SelectRequest;
+import com.amazonaws.services.simpledb.model.SelectResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.shared.ExpectedSlotStatus;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestSimpleDbStateManager
+{
+    private InMemorySimpleDb simpleDb;
+    private SimpleDbStateManager stateManager;
+
+    @BeforeMethod
+    public void setup()
+    {
+        simpleDb = new InMemorySimpleDb(2);
+        stateManager = new SimpleDbStateManager(simpleDb.createClient(), "airship-test", new Duration(1, TimeUnit.HOURS));
+    }
+
+    @Test
+    public void testPagination()
+    {
+        List<ExpectedSlotStatus> expectedStates = newArrayList();
+        for (int i = 0; i < 5; i++) {
+            expectedStates.add(new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT));
+        }
+        simpleDb.put(expectedStates);
+
+        // all three pages are loaded with a consistent read
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), expectedStates);
+        assertEquals(simpleDb.getSelects(), 3);
+        assertTrue(simpleDb.isLastSelectConsistent());
+
+        // reads are served from the local copy
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), expectedStates);
+        assertEquals(simpleDb.getSelects(), 3);
+    }
+
+    @Test
+    public void testLocalWrites()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        assertTrue(stateManager.getAllExpectedStates().isEmpty());
+        stateManager.setExpectedStates(ImmutableList.of(apple, banana));
+        stateManager.setExpectedState(new ExpectedSlotStatus(apple.getId(), RUNNING, APPLE_ASSIGNMENT));
+        stateManager.deleteExpectedState(banana.getId());
+
+        // local writes are visible without another select
+        int selects = simpleDb.getSelects();
+        assertEquals(Iterables.getOnlyElement(stateManager.getAllExpectedStates()).getStatus(), RUNNING);
+        assertEquals(simpleDb.getSelects(), selects);
+
+        // and were written through to SimpleDB
+        SimpleDbStateManager other = new SimpleDbStateManager(simpleDb.createClient(), "airship-test", new Duration(1, TimeUnit.HOURS));
+        assertEquals(Iterables.getOnlyElement(other.getAllExpectedStates()).getStatus(), RUNNING);
+    }
+
+    @Test
+    public void testRefresh()
+    {
+        ExpectedSlotStatus apple = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, APPLE_ASSIGNMENT);
+        ExpectedSlotStatus banana = new ExpectedSlotStatus(UUID.randomUUID(), STOPPED, BANANA_ASSIGNMENT);
+
+        stateManager.setExpectedState(apple);
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+
+        // changes made by another coordinator show up after a refresh
+        simpleDb.put(ImmutableList.of(banana));
+        assertEquals(ImmutableList.copyOf(stateManager.getAllExpectedStates()), ImmutableList.of(apple));
+        stateManager.refresh();
+        assertEqualsNoOrder(stateManager.getAllExpectedStates(), ImmutableList.of(apple, banana));
+
+        // only the first load needs a consistent read
+        assertFalse(simpleDb.isLastSelectConsistent());
+    }
+
+    /**
+     * Just enough of SimpleDB for the state manager, returning at most pageSize items per select.
+     */
+    private static class InMemorySimpleDb
+            implements InvocationHandler
+    {
+        private final int pageSize;
+        private final Map<String, Map<String, String>> items = new TreeMap<String, Map<String, String>>();
+        private int selects;
+        private boolean lastSelectConsistent;
+
+        private InMemorySimpleDb(int pageSize)
+        {
+            this.pageSize = pageSize;
+        }
+
+        public AmazonSimpleDB createClient()
+        {
+            return (AmazonSimpleDB) Proxy.newProxyInstance(AmazonSimpleDB.class.getClassLoader(), new Class<?>[] {AmazonSimpleDB.class}, this);
+        }
+
+        public synchronized int getSelects()
+        {
+            return selects;
+        }
+
+        public synchronized boolean isLastSelectConsistent()
+        {
+            return lastSelectConsistent;
+        }
+
+        public synchronized void put(List<ExpectedSlotStatus> expectedStates)
+        {
+            for (ExpectedSlotStatus expectedState : expectedStates) {
+                Map<String, String> attributes = new TreeMap<String, String>();
+                attributes.put("state", expectedState.getStatus().toString());
+                attributes.put("binary", expectedState.getAssignment().getBinary());
+                attributes.put("config", expectedState.getAssignment().getConfig());
+                items.put(expectedState.getId().toString(), attributes);
+            }
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args)
+        {
+            String name = method.getName();
+            if (name.equals("select")) {
+                return select((SelectRequest) args[0]);
+            }
+            else if (name.equals("putAttributes")) {
+                PutAttributesRequest request = (PutAttributesRequest) args[0];
+                putAttributes(request.getItemName(), request.getAttributes());
+            }
+            else if (name.equals("batchPutAttributes")) {
+                for (ReplaceableItem item : ((BatchPutAttributesRequest) args[0]).getItems()) {
+                    putAttributes(item.getName(), item.getAttributes());
+                }
+            }
+            else if (name.equals("deleteAttributes")) {
+                items.remove(((DeleteAttributesRequest) args[0]).getItemName());
+            }
+            else if (name.equals("batchDeleteAttributes")) {
+                for (DeletableItem item : ((BatchDeleteAttributesRequest) args[0]).getItems()) {
+                    items.remove(item.getName());
+                }
+            }
+            else if (!name.equals("createDomain")) {
+                throw new UnsupportedOperationException(name);
+            }
+            return null;
+        }
+
+        private void putAttributes(String itemName, List<ReplaceableAttribute> attributes)
+        {
+            Map<String, String> values = new TreeMap<String, String>();
+            for (ReplaceableAttribute attribute : attributes) {
+                values.put(attribute.getName(), attribute.getValue());
+            }
+            items.put(itemName, values);
+        }
+
+        private SelectResult select(SelectRequest request)
+        {
+            selects++;
+            lastSelectConsistent = Boolean.TRUE.equals(request.getConsistentRead());
+
+            // the next token is just the offset of the next page
+            int offset = request.getNextToken() == null ? 0 : Integer.parseInt(request.getNextToken());
+            List<Item> page = newArrayList();
+            for (Map.Entry<String, Map<String, String>> entry : Iterables.limit(Iterables.skip(items.entrySet(), offset), pageSize)) {
+                List<Attribute> attributes = newArrayList();
+                for (Map.Entry<String, String> attribute : entry.getValue().entrySet()) {
+                    attributes.add(new Attribute(attribute.getKey(), attribute.getValue()));
+                }
+                page.add(new Item(entry.getKey(), attributes));
+            }
+
+            SelectResult result = new SelectResult().withItems(page);
+            if (offset + pageSize < items.size()) {
+                result.setNextToken(String.valueOf(offset + pageSize));
+            }
+            return result;
+        }
+    }
+}
@@ -3,7 +3,9 @@ package io.airlift.airship.coordinator;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import io.airlift.airship.coordinator.SlotFilterBuilder.SlotUuidPredicate;
+import io.airlift.airship.shared.AgentStatus;
 import io.airlift.airship.shared.Assignment;
 import io.airlift.airship.shared.MockUriInfo;
 import io.airlift.airship.shared.SlotStatus;
@@ -19,10 +21,13 @@ import java.util.List;
 import java.util.UUID;
 
 import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
 import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
 import static io.airlift.airship.shared.SlotLifecycleState.UNKNOWN;
 import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
 import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
@@ -202,4 +207,64 @@ public class TestSlotFilterBuilder
         assertFalse(new ConfigSpecPredicate("@prod:apple:x:1.0").apply(status));
         assertFalse(buildFilter("config", "@prod:apple:x:1.0").apply(status));
     }
+
+    @Test
+    public void testFleetSnapshotIndexes()
+    {
+        SlotStatus apple = createSlotStatus(UUID.randomUUID(),
+                URI.create("fake://apple-host/v1/agent/slot/apple"),
+                URI.create("fake://apple-external/v1/agent/slot/apple"),
+                "apple-instance",
+                "/apple",
+                RUNNING,
+                APPLE_ASSIGNMENT,
+                "/apple",
+                ImmutableMap.<String, Integer>of());
+        SlotStatus banana = createSlotStatus(UUID.randomUUID(),
+                URI.create("fake://banana-host/v1/agent/slot/banana"),
+                URI.create("fake://banana-host/v1/agent/slot/banana"),
+                "banana-instance",
+                "/banana",
+                STOPPED,
+                BANANA_ASSIGNMENT,
+                "/banana",
+                ImmutableMap.<String, Integer>of());
+        // an expected slot that no agent reports has no URIs
+        SlotStatus missingApple = SlotStatus.createSlotStatusWithExpectedState(UUID.randomUUID(),
+                null,
+                null,
+                null,
+                "/unknown",
+                UNKNOWN,
+                APPLE_ASSIGNMENT,
+                null,
+                ImmutableMap.<String, Integer>of(),
+                RUNNING,
+                APPLE_ASSIGNMENT,
+                "Slot is missing");
+        FleetSnapshot fleet = new FleetSnapshot(1, ImmutableList.<AgentStatus>of(), ImmutableList.of(apple, banana, missingApple));
+
+        for (String query : ImmutableList.of(
+                "host=apple-host",
+                "host=apple-external",
+                "host=*-host",
+                "host=foo",
+                "binary=apple",
+                "binary=*",
+                "config=banana",
+                "binary=apple&state=unknown",
+                "binary=apple&host=apple*",
+                "binary=apple&config=banana",
+                "state=running",
+                "machine=banana*",
+                "uuid=" + banana.getId(),
+                "uuid=" + missingApple.getId() + "&uuid=" + apple.getId())) {
+            Predicate<SlotStatus> filter = SlotFilterBuilder.build(MockUriInfo.from("fake://localhost?" + query), true, fleet.getSlotUuids());
+            assertTrue(filter instanceof IndexedSlotFilter, query);
+            assertEquals(fleet.getSlots(filter), ImmutableList.copyOf(Iterables.filter(fleet.getSlots(), filter)), query);
+        }
+
+        // the selected slots keep the snapshot order
+        assertEquals(fleet.getSlots(buildFilter("binary", "*", fleet.getSlotUuids())), ImmutableList.of(apple, banana, missingApple));
+    }
 }
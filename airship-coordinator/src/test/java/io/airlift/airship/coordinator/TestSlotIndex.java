@@ -0,0 +1,98 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.Assignment;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.UUID;
+
+import static io.airlift.airship.shared.AgentLifecycleState.ONLINE;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.AssignmentHelper.BANANA_ASSIGNMENT;
+import static io.airlift.airship.shared.ExtraAssertions.assertEqualsNoOrder;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestSlotIndex
+{
+    @Test
+    public void testIndex()
+    {
+        SlotStatus apple = createSlot("foo", APPLE_ASSIGNMENT);
+        SlotStatus banana = createSlot("bar", BANANA_ASSIGNMENT);
+        AgentStatus fooAgent = createAgent("foo-instance", apple);
+        AgentStatus barAgent = createAgent("bar-instance", banana);
+
+        SlotIndex index = new SlotIndex();
+        assertTrue(index.update(ImmutableMap.of("foo-instance", fooAgent, "bar-instance", barAgent)));
+
+        assertEqualsNoOrder(index.getAllSlots(), ImmutableList.of(apple, banana));
+        assertEquals(index.getSlot(apple.getId()), apple);
+        assertEquals(index.getAgentInstanceId(banana.getId()), "bar-instance");
+        assertEquals(index.getAgentInstanceId(apple.getId()), "foo-instance");
+
+        // same status objects do not change the index
+        assertFalse(index.update(ImmutableMap.of("foo-instance", fooAgent, "bar-instance", barAgent)));
+    }
+
+    @Test
+    public void testUpdate()
+    {
+        SlotStatus apple = createSlot("foo", APPLE_ASSIGNMENT);
+        SlotStatus banana = createSlot("bar", BANANA_ASSIGNMENT);
+        AgentStatus fooAgent = createAgent("foo-instance", apple);
+        AgentStatus barAgent = createAgent("bar-instance", banana);
+
+        SlotIndex index = new SlotIndex();
+        index.update(ImmutableMap.of("foo-instance", fooAgent, "bar-instance", barAgent));
+
+        // change slot on foo
+        SlotStatus runningApple = apple.changeState(RUNNING);
+        assertTrue(index.update(ImmutableMap.of("foo-instance", fooAgent.changeSlotStatus(runningApple), "bar-instance", barAgent)));
+        assertEquals(index.getSlot(apple.getId()), runningApple);
+        assertEquals(index.getAgentInstanceId(apple.getId()), "foo-instance");
+
+        // remove bar
+        assertTrue(index.update(ImmutableMap.of("foo-instance", fooAgent.changeSlotStatus(runningApple))));
+        assertEquals(index.getAllSlots(), ImmutableList.of(runningApple));
+        assertNull(index.getSlot(banana.getId()));
+        assertNull(index.getAgentInstanceId(banana.getId()));
+        assertEquals(index.getAllAgents().size(), 1);
+    }
+
+    private static SlotStatus createSlot(String host, Assignment assignment)
+    {
+        URI self = URI.create("fake://" + host + "/v1/agent/slot/slot");
+        return createSlotStatus(UUID.randomUUID(),
+                self,
+                self,
+                host + "-instance",
+                "/location",
+                STOPPED,
+                assignment,
+                "/" + host,
+                ImmutableMap.<String, Integer>of());
+    }
+
+    private static AgentStatus createAgent(String instanceId, SlotStatus... slots)
+    {
+        return new AgentStatus(UUID.randomUUID().toString(),
+                ONLINE,
+                instanceId,
+                URI.create("fake://agent/"),
+                URI.create("fake://agent/"),
+                "/unknown/location",
+                "instance.type",
+                ImmutableList.copyOf(slots),
+                ImmutableMap.<String, Integer>of());
+    }
+}
@@ -0,0 +1,239 @@
+package io.airlift.airship.coordinator;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.SlotStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.SlotLifecycleState.RUNNING;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestSlotOperationExecutor
+{
+    private static final SlotOperationListener IGNORE_PROGRESS = new SlotOperationListener()
+    {
+        @Override
+        public void slotCompleted(SlotStatus slotStatus)
+        {
+        }
+    };
+
+    private SlotOperationExecutor executor;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = new SlotOperationExecutor(8, 2);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.stop();
+    }
+
+    @Test
+    public void testResultOrder()
+    {
+        List<TestingRemoteSlot> slots = newArrayList();
+        for (int i = 0; i < 20; i++) {
+            slots.add(new TestingRemoteSlot("agent-" + (i % 3)));
+        }
+
+        List<SlotStatus> results = executor.execute(slots, new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                return slot.start();
+            }
+        }, IGNORE_PROGRESS);
+
+        assertEquals(results.size(), slots.size());
+        for (int i = 0; i < slots.size(); i++) {
+            assertEquals(results.get(i).getId(), slots.get(i).getId());
+            assertEquals(results.get(i).getState(), RUNNING);
+        }
+    }
+
+    @Test
+    public void testListener()
+    {
+        List<TestingRemoteSlot> slots = newArrayList();
+        for (int i = 0; i < 5; i++) {
+            slots.add(new TestingRemoteSlot("agent-" + (i % 2)));
+        }
+
+        final Set<UUID> completed = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+        executor.execute(slots, new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                return slot.start();
+            }
+        }, new SlotOperationListener()
+        {
+            @Override
+            public void slotCompleted(SlotStatus slotStatus)
+            {
+                assertEquals(slotStatus.getState(), RUNNING);
+                completed.add(slotStatus.getId());
+            }
+        });
+
+        assertEquals(completed.size(), slots.size());
+    }
+
+    @Test
+    public void testAgentConcurrency()
+    {
+        final ConcurrentMap<String, AtomicInteger> running = new ConcurrentHashMap<String, AtomicInteger>();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        List<TestingRemoteSlot> slots = newArrayList();
+        for (int i = 0; i < 10; i++) {
+            slots.add(new TestingRemoteSlot("agent"));
+        }
+
+        executor.execute(slots, new Function<RemoteSlot, SlotStatus>()
+        {
+            @Override
+            public SlotStatus apply(RemoteSlot slot)
+            {
+                String instanceId = slot.status().getInstanceId();
+                running.putIfAbsent(instanceId, new AtomicInteger());
+                int count = running.get(instanceId).incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), count));
+                }
+                try {
+                    Thread.sleep(10);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.get(instanceId).decrementAndGet();
+                return slot.status();
+            }
+        }, IGNORE_PROGRESS);
+
+        assertTrue(maxRunning.get() <= 2, "more than two concurrent operations on one agent");
+    }
+
+    @Test
+    public void testFailure()
+    {
+        final AtomicInteger completed = new AtomicInteger();
+        List<TestingRemoteSlot> slots = ImmutableList.of(
+                new TestingRemoteSlot("agent-a"),
+                new TestingRemoteSlot("agent-b"),
+                new TestingRemoteSlot("agent-a"));
+        final UUID failedSlot = slots.get(1).getId();
+
+        try {
+            executor.execute(slots, new Function<RemoteSlot, SlotStatus>()
+            {
+                @Override
+                public SlotStatus apply(RemoteSlot slot)
+                {
+                    if (slot.getId().equals(failedSlot)) {
+                        throw new IllegalStateException("boom");
+                    }
+                    completed.incrementAndGet();
+                    return slot.status();
+                }
+            }, IGNORE_PROGRESS);
+            fail("expected IllegalStateException");
+        }
+        catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "boom");
+        }
+
+        // the other slots are still processed
+        assertEquals(completed.get(), 2);
+    }
+
+    private static class TestingRemoteSlot
+            implements RemoteSlot
+    {
+        private volatile SlotStatus slotStatus;
+
+        private TestingRemoteSlot(String instanceId)
+        {
+            UUID id = UUID.randomUUID();
+            slotStatus = createSlotStatus(id,
+                    URI.create("fake://" + instanceId + "/v1/agent/slot/" + id),
+                    URI.create("fake://" + instanceId + "/v1/agent/slot/" + id),
+                    instanceId,
+                    "/location",
+                    STOPPED,
+                    APPLE_ASSIGNMENT,
+                    "/" + id,
+                    ImmutableMap.<String, Integer>of());
+        }
+
+        @Override
+        public UUID getId()
+        {
+            return slotStatus.getId();
+        }
+
+        @Override
+        public SlotStatus status()
+        {
+            return slotStatus;
+        }
+
+        @Override
+        public SlotStatus start()
+        {
+            slotStatus = slotStatus.changeState(RUNNING);
+            return slotStatus;
+        }
+
+        @Override
+        public SlotStatus restart()
+        {
+            return start();
+        }
+
+        @Override
+        public SlotStatus stop()
+        {
+            slotStatus = slotStatus.changeState(STOPPED);
+            return slotStatus;
+        }
+
+        @Override
+        public SlotStatus terminate()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SlotStatus assign(Installation installation)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -224,6 +224,8 @@ public class MockLocalProvisioner implements Provisioner
                     .put("node.id", instance.getInstanceId())
                     .put("node.location", instance.getLocation())
                     .put("agent.slots-dir", new File(tempDir, "slots").getAbsolutePath())
+                    .put("agent.binary-cache-dir", new File(tempDir, "binary-cache").getAbsolutePath())
+                    .put("agent.config-bundle-cache-dir", new File(tempDir, "config-bundle-cache").getAbsolutePath())
                     .put("agent.resources-file", resourcesFile.getAbsolutePath())
                     .build();
 
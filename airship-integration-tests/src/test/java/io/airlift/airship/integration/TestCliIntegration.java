@@ -67,6 +67,8 @@ public class TestCliIntegration
     private File localBinaryRepoDir;
     private File expectedStateDir;
     private File serviceInventoryCacheDir;
+    private File binaryCacheDir;
+    private File configBundleCacheDir;
 
     private Config config;
     private MockInteractiveUser interactiveUser;
@@ -87,6 +89,8 @@ public class TestCliIntegration
         localBinaryRepoDir = createTempDir("localBinaryRepoDir");
         expectedStateDir = createTempDir("expected-state");
         serviceInventoryCacheDir = createTempDir("service-inventory-cache");
+        binaryCacheDir = createTempDir("binary-cache");
+        configBundleCacheDir = createTempDir("config-bundle-cache");
 
         Map<String, String> coordinatorProperties = ImmutableMap.<String, String>builder()
                 .put("node.environment", "prod")
@@ -104,6 +108,8 @@ public class TestCliIntegration
                 .put("coordinator.aws.agent.default-instance-type", "t1.micro")
                 .put("coordinator.expected-state.dir", expectedStateDir.getAbsolutePath())
                 .put("coordinator.service-inventory.cache-dir", serviceInventoryCacheDir.getAbsolutePath())
+                .put("coordinator.binary-cache.dir", binaryCacheDir.getAbsolutePath())
+                .put("coordinator.config-bundle-cache.dir", configBundleCacheDir.getAbsolutePath())
                 .build();
 
         Injector coordinatorInjector = Guice.createInjector(new TestingHttpServerModule(),
@@ -141,11 +147,12 @@ public class TestCliIntegration
         coordinator.updateAllCoordinators();
         assertEquals(coordinator.getCoordinators().size(), 1);
 
+        // the coordinator reloads the expected states on the next update
+        stateManager.clearAll();
+
         provisioner.clearAgents();
         coordinator.updateAllAgents();
         assertTrue(coordinator.getAgents().isEmpty());
-
-        stateManager.clearAll();
         assertTrue(coordinator.getAllSlotStatus().isEmpty());
 
         config = new Config();
@@ -173,6 +180,12 @@ public class TestCliIntegration
         if (serviceInventoryCacheDir != null) {
             deleteRecursively(serviceInventoryCacheDir);
         }
+        if (binaryCacheDir != null) {
+            deleteRecursively(binaryCacheDir);
+        }
+        if (configBundleCacheDir != null) {
+            deleteRecursively(configBundleCacheDir);
+        }
         if (localBinaryRepoDir != null) {
             deleteRecursively(localBinaryRepoDir);
         }
@@ -0,0 +1,493 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.airship.integration;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.util.Modules;
+import com.proofpoint.configuration.ConfigurationFactory;
+import com.proofpoint.configuration.ConfigurationModule;
+import com.proofpoint.discovery.client.ServiceDescriptor;
+import com.proofpoint.discovery.client.ServiceDescriptorsRepresentation;
+import com.proofpoint.discovery.client.ServiceState;
+import com.proofpoint.event.client.NullEventModule;
+import com.proofpoint.http.client.ApacheHttpClient;
+import com.proofpoint.http.client.HttpClient;
+import com.proofpoint.http.client.RequestBuilder;
+import com.proofpoint.http.client.StatusResponseHandler.StatusResponse;
+import com.proofpoint.http.server.testing.TestingHttpServer;
+import com.proofpoint.http.server.testing.TestingHttpServerModule;
+import com.proofpoint.jaxrs.JaxrsModule;
+import com.proofpoint.json.JsonCodec;
+import com.proofpoint.json.JsonModule;
+import com.proofpoint.node.NodeInfo;
+import com.proofpoint.node.testing.TestingNodeModule;
+import com.proofpoint.units.Duration;
+import io.airlift.airship.agent.Agent;
+import io.airlift.airship.agent.AgentMainModule;
+import io.airlift.airship.agent.DeploymentManagerFactory;
+import io.airlift.airship.agent.LifecycleManager;
+import io.airlift.airship.agent.MockDeploymentManagerFactory;
+import io.airlift.airship.agent.MockLifecycleManager;
+import io.airlift.airship.agent.ServiceInventoryResource;
+import io.airlift.airship.agent.Slot;
+import io.airlift.airship.coordinator.HttpRemoteAgent;
+import io.airlift.airship.shared.AgentLifecycleState;
+import io.airlift.airship.shared.AgentStatus;
+import io.airlift.airship.shared.AgentStatusRepresentation;
+import io.airlift.airship.shared.Installation;
+import io.airlift.airship.shared.InstallationRepresentation;
+import io.airlift.airship.shared.SlotStatus;
+import io.airlift.airship.shared.SlotStatusRepresentation;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
+import static com.proofpoint.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static io.airlift.airship.shared.AssignmentHelper.APPLE_ASSIGNMENT;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static io.airlift.airship.shared.HttpUriBuilder.uriBuilderFrom;
+import static io.airlift.airship.shared.SlotLifecycleState.STOPPED;
+import static io.airlift.airship.shared.SlotStatus.createSlotStatus;
+import static io.airlift.airship.shared.VersionsUtil.AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestRemoteAgent
+{
+    private static final Installation APPLE_INSTALLATION = new Installation("apple",
+            APPLE_ASSIGNMENT,
+            URI.create("fake://localhost/apple.tar.gz"),
+            URI.create("fake://localhost/apple.config"),
+            ImmutableMap.of("memory", 512));
+
+    private HttpClient client;
+    private TestingHttpServer server;
+    private TestingHttpServer legacyServer;
+
+    private Agent agent;
+    private ServiceInventoryResource serviceInventoryResource;
+    private String environment;
+    private LegacyAgentResource legacyAgentResource;
+    private ServiceInventoryResource legacyServiceInventoryResource;
+
+    private File tempDir;
+
+    @BeforeClass
+    public void startServer()
+            throws Exception
+    {
+        tempDir = createTempDir("agent");
+        Map<String, String> properties = ImmutableMap.<String, String>builder()
+                .put("agent.id", UUID.randomUUID().toString())
+                .put("agent.coordinator-uri", "http://localhost:9999/")
+                .put("agent.slots-dir", tempDir.getAbsolutePath())
+                .put("agent.binary-cache-dir", new File(tempDir, "binary-cache").getAbsolutePath())
+                .put("agent.config-bundle-cache-dir", new File(tempDir, "config-bundle-cache").getAbsolutePath())
+                .build();
+
+        Injector injector = Guice.createInjector(new TestingHttpServerModule(),
+                new TestingNodeModule(),
+                new JsonModule(),
+                new JaxrsModule(),
+                new NullEventModule(),
+                new ConfigurationModule(new ConfigurationFactory(properties)),
+                Modules.override(new AgentMainModule()).with(new Module()
+                {
+                    @Override
+                    public void configure(Binder binder)
+                    {
+                        binder.bind(DeploymentManagerFactory.class).to(MockDeploymentManagerFactory.class).in(Scopes.SINGLETON);
+                        binder.bind(LifecycleManager.class).to(MockLifecycleManager.class).in(Scopes.SINGLETON);
+                    }
+                }));
+
+        server = injector.getInstance(TestingHttpServer.class);
+        agent = injector.getInstance(Agent.class);
+        serviceInventoryResource = injector.getInstance(ServiceInventoryResource.class);
+        environment = injector.getInstance(NodeInfo.class).getEnvironment();
+        server.start();
+
+        // an agent from before conditional status requests, which always answers with the full status
+        Injector legacyInjector = Guice.createInjector(new TestingHttpServerModule(),
+                new TestingNodeModule(),
+                new JsonModule(),
+                new JaxrsModule(),
+                new ConfigurationModule(new ConfigurationFactory(ImmutableMap.<String, String>of())),
+                new Module()
+                {
+                    @Override
+                    public void configure(Binder binder)
+                    {
+                        binder.bind(LegacyAgentResource.class).in(Scopes.SINGLETON);
+                        binder.bind(ServiceInventoryResource.class).in(Scopes.SINGLETON);
+                    }
+                });
+
+        legacyServer = legacyInjector.getInstance(TestingHttpServer.class);
+        legacyAgentResource = legacyInjector.getInstance(LegacyAgentResource.class);
+        legacyServiceInventoryResource = legacyInjector.getInstance(ServiceInventoryResource.class);
+        legacyServer.start();
+
+        client = new ApacheHttpClient();
+    }
+
+    @BeforeMethod
+    public void resetState()
+    {
+        for (Slot slot : agent.getAllSlots()) {
+            if (slot.status().getAssignment() != null) {
+                slot.stop();
+            }
+            agent.terminateSlot(slot.getId());
+        }
+        assertTrue(agent.getAllSlots().isEmpty());
+
+        legacyAgentResource.setAgentStatus(new AgentStatus(UUID.randomUUID().toString(),
+                AgentLifecycleState.ONLINE,
+                "legacy-instance",
+                legacyServer.getBaseUrl(),
+                legacyServer.getBaseUrl(),
+                "/legacy/location",
+                "legacy-type",
+                ImmutableList.<SlotStatus>of(),
+                ImmutableMap.of("memory", 512)));
+        legacyServiceInventoryResource.setServiceInventory(null, new ServiceDescriptorsRepresentation(environment, ImmutableList.<ServiceDescriptor>of()));
+    }
+
+    @AfterClass
+    public void stopServer()
+            throws Exception
+    {
+        if (server != null) {
+            server.stop();
+        }
+
+        if (legacyServer != null) {
+            legacyServer.stop();
+        }
+
+        if (tempDir != null) {
+            deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testNotModified()
+            throws Exception
+    {
+        HttpRemoteAgent remoteAgent = createRemoteAgent(agent.getAgentStatus());
+        remoteAgent.updateStatus();
+        AgentStatus status = remoteAgent.status();
+        String version = agent.getAgentStatus().getVersion();
+        assertEquals(status.getVersion(), version);
+
+        // the agent answers a poll for the version the coordinator has with 304
+        StatusResponse response = client.execute(RequestBuilder.prepareGet()
+                .setUri(uriBuilderFrom(server.getBaseUrl()).replacePath("/v1/agent/").build())
+                .setHeader(IF_NONE_MATCH, new EntityTag(version).toString())
+                .build(), createStatusResponseHandler());
+        assertEquals(response.getStatusCode(), Response.Status.NOT_MODIFIED.getStatusCode());
+
+        // so the cached status is kept as is, without parsing a new one
+        remoteAgent.updateStatus();
+        assertSame(remoteAgent.status(), status);
+        assertEquals(remoteAgent.status().getVersion(), version);
+        assertEquals(remoteAgent.status().getState(), AgentLifecycleState.ONLINE);
+
+        // a change on the agent is still picked up by the next poll
+        SlotStatus slotStatus = agent.install(APPLE_INSTALLATION);
+        remoteAgent.updateStatus();
+        assertNotSame(remoteAgent.status(), status);
+        assertEquals(remoteAgent.status().getVersion(), agent.getAgentStatus().getVersion());
+        assertEquals(remoteAgent.status().getSlotStatus(slotStatus.getId()).getAssignment(), APPLE_ASSIGNMENT);
+    }
+
+    @Test
+    public void testAgentIgnoresIfNoneMatch()
+            throws Exception
+    {
+        AgentStatus legacyStatus = legacyAgentResource.getAgentStatus();
+        HttpRemoteAgent remoteAgent = createRemoteAgent(legacyStatus);
+        remoteAgent.updateStatus();
+        assertEquals(remoteAgent.status().getVersion(), legacyStatus.getVersion());
+
+        // the agent sends the full status although it has not changed, which is used as is
+        remoteAgent.updateStatus();
+        assertEquals(remoteAgent.status().getState(), AgentLifecycleState.ONLINE);
+        assertEquals(remoteAgent.status().getVersion(), legacyStatus.getVersion());
+        assertEquals(remoteAgent.status().getResources(), legacyStatus.getResources());
+
+        // the agent does not hold the request either, so it can not be watched
+        assertFalse(remoteAgent.watchStatus(new Duration(10, TimeUnit.SECONDS)));
+
+        // changes are still picked up
+        AgentStatus changedStatus = new AgentStatus(legacyStatus.getAgentId(),
+                AgentLifecycleState.ONLINE,
+                legacyStatus.getInstanceId(),
+                legacyStatus.getInternalUri(),
+                legacyStatus.getExternalUri(),
+                legacyStatus.getLocation(),
+                legacyStatus.getInstanceType(),
+                ImmutableList.<SlotStatus>of(),
+                ImmutableMap.of("memory", 1024));
+        legacyAgentResource.setAgentStatus(changedStatus);
+        remoteAgent.updateStatus();
+        assertEquals(remoteAgent.status().getVersion(), changedStatus.getVersion());
+        assertEquals(remoteAgent.status().getResources(), changedStatus.getResources());
+    }
+
+    @Test
+    public void testLocalChangeIsNotOverwrittenByEarlierStatus()
+            throws Exception
+    {
+        final HttpRemoteAgent remoteAgent = createRemoteAgent(legacyAgentResource.getAgentStatus());
+        CountDownLatch requested = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        legacyAgentResource.setGate(requested, release);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> update = executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    remoteAgent.updateStatus();
+                }
+            });
+            assertTrue(requested.await(10, TimeUnit.SECONDS));
+
+            // a slot operation finishes while the status request is in flight
+            UUID slotId = UUID.randomUUID();
+            URI slotUri = uriBuilderFrom(legacyServer.getBaseUrl()).appendPath("/v1/agent/slot/").appendPath(slotId.toString()).build();
+            SlotStatus slotStatus = createSlotStatus(slotId,
+                    slotUri,
+                    slotUri,
+                    "legacy-instance",
+                    "/legacy/location/apple",
+                    STOPPED,
+                    APPLE_ASSIGNMENT,
+                    "/apple",
+                    ImmutableMap.<String, Integer>of());
+            remoteAgent.setSlotStatus(slotStatus);
+
+            release.countDown();
+            update.get(10, TimeUnit.SECONDS);
+            assertEquals(remoteAgent.status().getSlotStatus(slotId), slotStatus);
+
+            // the next poll applies what the agent reports
+            legacyAgentResource.setGate(null, null);
+            remoteAgent.updateStatus();
+            assertNull(remoteAgent.status().getSlotStatus(slotId));
+        }
+        finally {
+            release.countDown();
+            legacyAgentResource.setGate(null, null);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testServiceInventoryOfRestartedAgent()
+            throws Exception
+    {
+        List<ServiceDescriptor> serviceInventory = ImmutableList.of(new ServiceDescriptor(null,
+                "apple-node",
+                "apple",
+                "general",
+                "/apple",
+                ServiceState.RUNNING,
+                ImmutableMap.of("http", "http://apple:8080")));
+
+        HttpRemoteAgent remoteAgent = createRemoteAgent(agent.getAgentStatus());
+        remoteAgent.updateStatus();
+        remoteAgent.setServiceInventory(serviceInventory, "inventory-version");
+        assertEquals(serviceInventoryResource.getVersion(), "inventory-version");
+        assertServiceInventory(getServiceInventory(), "apple-node");
+
+        // the agent reports the version it has, so the same version is not put again
+        serviceInventoryResource.setServiceInventory("inventory-version", new ServiceDescriptorsRepresentation(environment, ImmutableList.<ServiceDescriptor>of()));
+        remoteAgent.updateStatus();
+        remoteAgent.setServiceInventory(serviceInventory, "inventory-version");
+        assertTrue(getServiceInventory().getServiceDescriptors().isEmpty());
+
+        // the agent restarts: the status is unchanged, but the service inventory is gone
+        AgentStatus status = remoteAgent.status();
+        serviceInventoryResource.setServiceInventory(null, new ServiceDescriptorsRepresentation(environment, ImmutableList.<ServiceDescriptor>of()));
+        remoteAgent.updateStatus();
+        assertSame(remoteAgent.status(), status);
+
+        remoteAgent.setServiceInventory(serviceInventory, "inventory-version");
+        assertEquals(serviceInventoryResource.getVersion(), "inventory-version");
+        assertServiceInventory(getServiceInventory(), "apple-node");
+    }
+
+    @Test
+    public void testServiceInventoryPutIsNotOverwrittenByEarlierVersion()
+            throws Exception
+    {
+        List<ServiceDescriptor> serviceInventory = ImmutableList.of(new ServiceDescriptor(null,
+                "apple-node",
+                "apple",
+                "general",
+                "/apple",
+                ServiceState.RUNNING,
+                ImmutableMap.of("http", "http://apple:8080")));
+
+        final HttpRemoteAgent remoteAgent = createRemoteAgent(legacyAgentResource.getAgentStatus());
+        legacyServiceInventoryResource.setServiceInventory("old-version", new ServiceDescriptorsRepresentation(environment, ImmutableList.<ServiceDescriptor>of()));
+        CountDownLatch requested = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        legacyAgentResource.setGate(requested, release);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> update = executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    remoteAgent.updateStatus();
+                }
+            });
+            assertTrue(requested.await(10, TimeUnit.SECONDS));
+
+            // a service inventory put finishes while a status that reports the old version is in flight
+            remoteAgent.setServiceInventory(serviceInventory, "inventory-version");
+            assertEquals(legacyServiceInventoryResource.getVersion(), "inventory-version");
+
+            release.countDown();
+            update.get(10, TimeUnit.SECONDS);
+
+            // the old version is not recorded, so the same version is not put again
+            legacyServiceInventoryResource.setServiceInventory("inventory-version", new ServiceDescriptorsRepresentation(environment, ImmutableList.<ServiceDescriptor>of()));
+            remoteAgent.setServiceInventory(serviceInventory, "inventory-version");
+            assertTrue(((ServiceDescriptorsRepresentation) legacyServiceInventoryResource.getServiceInventory().getEntity()).getServiceDescriptors().isEmpty());
+        }
+        finally {
+            release.countDown();
+            legacyAgentResource.setGate(null, null);
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertServiceInventory(ServiceDescriptorsRepresentation serviceInventory, String nodeId)
+    {
+        assertEquals(serviceInventory.getServiceDescriptors().size(), 1);
+        assertEquals(serviceInventory.getServiceDescriptors().get(0).getNodeId(), nodeId);
+    }
+
+    private ServiceDescriptorsRepresentation getServiceInventory()
+    {
+        return (ServiceDescriptorsRepresentation) serviceInventoryResource.getServiceInventory().getEntity();
+    }
+
+    private HttpRemoteAgent createRemoteAgent(AgentStatus agentStatus)
+    {
+        return new HttpRemoteAgent(
+                agentStatus,
+                environment,
+                client,
+                client,
+                client,
+                JsonCodec.jsonCodec(InstallationRepresentation.class),
+                JsonCodec.jsonCodec(AgentStatusRepresentation.class),
+                JsonCodec.jsonCodec(SlotStatusRepresentation.class),
+                JsonCodec.jsonCodec(ServiceDescriptorsRepresentation.class));
+    }
+
+    @Path("/v1/agent/")
+    public static class LegacyAgentResource
+    {
+        private final ServiceInventoryResource serviceInventoryResource;
+        private volatile AgentStatus agentStatus;
+        private volatile CountDownLatch requested;
+        private volatile CountDownLatch release;
+
+        @Inject
+        public LegacyAgentResource(ServiceInventoryResource serviceInventoryResource)
+        {
+            this.serviceInventoryResource = serviceInventoryResource;
+        }
+
+        public AgentStatus getAgentStatus()
+        {
+            return agentStatus;
+        }
+
+        public void setAgentStatus(AgentStatus agentStatus)
+        {
+            this.agentStatus = agentStatus;
+        }
+
+        /**
+         * Holds status requests until release is counted down, after counting down requested.
+         */
+        public void setGate(CountDownLatch requested, CountDownLatch release)
+        {
+            this.requested = requested;
+            this.release = release;
+        }
+
+        @GET
+        @Produces(MediaType.APPLICATION_JSON)
+        public Response getAllSlotsStatus()
+                throws InterruptedException
+        {
+            // the service inventory version is read when the request arrives, so a held request reports an old version
+            AgentStatus agentStatus = this.agentStatus;
+            String serviceInventoryVersion = serviceInventoryResource.getVersion();
+            CountDownLatch requested = this.requested;
+            CountDownLatch release = this.release;
+            if (requested != null && release != null) {
+                requested.countDown();
+                release.await();
+            }
+            return Response.ok(AgentStatusRepresentation.from(agentStatus))
+                    .header(AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER, serviceInventoryVersion)
+                    .build();
+        }
+    }
+}
@@ -100,6 +100,8 @@ public class TestRemoteSlot
                 .put("agent.id", UUID.randomUUID().toString())
                 .put("agent.coordinator-uri", "http://localhost:9999/")
                 .put("agent.slots-dir", tempDir.getAbsolutePath())
+                .put("agent.binary-cache-dir", new File(tempDir, "binary-cache").getAbsolutePath())
+                .put("agent.config-bundle-cache-dir", new File(tempDir, "config-bundle-cache").getAbsolutePath())
                 .build();
 
         Injector injector = Guice.createInjector(new TestingHttpServerModule(),
@@ -127,6 +129,8 @@ public class TestRemoteSlot
                 agent.getAgentStatus(),
                 "test",
                 client,
+                client,
+                client,
                 JsonCodec.jsonCodec(InstallationRepresentation.class),
                 JsonCodec.jsonCodec(AgentStatusRepresentation.class),
                 JsonCodec.jsonCodec(SlotStatusRepresentation.class),
@@ -118,6 +118,8 @@ public class TestServerIntegration
     private File localBinaryRepoDir;
     private File expectedStateDir;
     private File serviceInventoryCacheDir;
+    private File binaryCacheDir;
+    private File configBundleCacheDir;
     private Repository repository;
 
     private String agentInstanceId;
@@ -138,6 +140,8 @@ public class TestServerIntegration
         localBinaryRepoDir = createTempDir("localBinaryRepoDir");
         expectedStateDir = createTempDir("expected-state");
         serviceInventoryCacheDir = createTempDir("service-inventory-cache");
+        binaryCacheDir = createTempDir("binary-cache");
+        configBundleCacheDir = createTempDir("config-bundle-cache");
 
         Map<String, String> coordinatorProperties = ImmutableMap.<String, String>builder()
                 .put("node.environment", "prod")
@@ -155,6 +159,8 @@ public class TestServerIntegration
                 .put("coordinator.aws.agent.default-instance-type", "t1.micro")
                 .put("coordinator.expected-state.dir", expectedStateDir.getAbsolutePath())
                 .put("coordinator.service-inventory.cache-dir", serviceInventoryCacheDir.getAbsolutePath())
+                .put("coordinator.binary-cache.dir", binaryCacheDir.getAbsolutePath())
+                .put("coordinator.config-bundle-cache.dir", configBundleCacheDir.getAbsolutePath())
                 .build();
 
         Injector coordinatorInjector = Guice.createInjector(new TestingHttpServerModule(),
@@ -193,11 +199,12 @@ public class TestServerIntegration
         coordinator.updateAllCoordinators();
         assertEquals(coordinator.getCoordinators().size(), 1);
 
+        // the coordinator reloads the expected states on the next update
+        stateManager.clearAll();
+
         provisioner.clearAgents();
         coordinator.updateAllAgents();
         assertTrue(coordinator.getAgents().isEmpty());
-
-        stateManager.clearAll();
         assertTrue(coordinator.getAllSlotStatus().isEmpty());
     }
 
@@ -221,6 +228,12 @@ public class TestServerIntegration
         if (serviceInventoryCacheDir != null) {
             deleteRecursively(serviceInventoryCacheDir);
         }
+        if (binaryCacheDir != null) {
+            deleteRecursively(binaryCacheDir);
+        }
+        if (configBundleCacheDir != null) {
+            deleteRecursively(configBundleCacheDir);
+        }
         if (localBinaryRepoDir != null) {
             deleteRecursively(localBinaryRepoDir);
         }
@@ -0,0 +1,540 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Keeps binaries on disk, so a binary is downloaded once no matter how many times it is
+ * served or installed.
+ * <p/>
+ * The binaries are stored by the SHA-256 of their content in the blobs directory, and the refs
+ * directory maps each location to a blob.  When the cache grows over the maximum size,
+ * the least recently used blobs are removed.  Concurrent misses for the same location share a
+ * single download.
+ * <p/>
+ * The binaries returned by the cache are pinned until they are closed, and a pinned blob is not
+ * removed, so a binary can be read while other binaries are added.
+ * <p/>
+ * Locations with SNAPSHOT in their path may be redeployed in place, so they are not cached.
+ */
+public class BinaryCache
+{
+    private static final int SOURCE_CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int SOURCE_READ_TIMEOUT_MILLIS = 30000;
+
+    private final File blobsDir;
+    private final File refsDir;
+    private final File tempDir;
+    private final long maxSize;
+
+    // location -> blob, and blob -> size in least recently used order
+    private final Map<String, String> refs = new LinkedHashMap<String, String>();
+    private final LinkedHashMap<String, Long> blobs = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size;
+
+    // blob -> number of open binaries
+    private final Map<String, Integer> pins = new HashMap<String, Integer>();
+
+    private final ConcurrentMap<String, FutureTask<String>> downloads = new ConcurrentHashMap<String, FutureTask<String>>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypasses = new AtomicLong();
+    private final AtomicLong sourceDownloads = new AtomicLong();
+    private final AtomicLong checksumMismatches = new AtomicLong();
+
+    public BinaryCache(File cacheDir, long maxSize)
+    {
+        Preconditions.checkNotNull(cacheDir, "cacheDir is null");
+        Preconditions.checkArgument(maxSize >= 0, "maxSize is negative");
+
+        this.blobsDir = new File(cacheDir, "blobs");
+        this.refsDir = new File(cacheDir, "refs");
+        this.tempDir = new File(cacheDir, "tmp");
+        this.maxSize = maxSize;
+
+        blobsDir.mkdirs();
+        refsDir.mkdirs();
+        FileUtils.deleteRecursively(tempDir);
+        tempDir.mkdirs();
+        Preconditions.checkArgument(blobsDir.isDirectory() && refsDir.isDirectory() && tempDir.isDirectory(), "cacheDir is not a directory");
+
+        load();
+    }
+
+    public static boolean isCacheable(URI uri)
+    {
+        String path = uri.getPath();
+        return path != null && !path.contains("SNAPSHOT");
+    }
+
+    /**
+     * Gets the cached binary for the location, downloading it if necessary.  The binary must be closed.
+     *
+     * @return the binary, or null if the location can not be cached
+     */
+    public CachedBinary getBinary(URI uri)
+            throws IOException
+    {
+        return getBinary(uri, ImmutableList.<URI>of());
+    }
+
+    /**
+     * Gets the cached binary for the location, downloading it if necessary.  The sources are tried in
+     * order before the location itself, and a source that fails is skipped.  The binary must be closed.
+     *
+     * @return the binary, or null if the location can not be cached
+     */
+    public CachedBinary getBinary(URI uri, List<URI> sources)
+            throws IOException
+    {
+        return getBinary(uri, sources, null);
+    }
+
+    /**
+     * Gets the cached binary for the location, downloading it if necessary.  The sources are tried in
+     * order before the location itself, and a source that fails or does not have the expected content
+     * is skipped.  The binary must be closed.
+     *
+     * @param sha256 SHA-256 of the binary, or null if it is not known
+     * @return the binary, or null if the location can not be cached
+     * @throws IOException if the location can not be downloaded, or its content does not match the SHA-256
+     */
+    public CachedBinary getBinary(final URI uri, final List<URI> sources, @Nullable final String sha256)
+            throws IOException
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+        Preconditions.checkNotNull(sources, "sources is null");
+
+        if (!isCacheable(uri)) {
+            bypasses.incrementAndGet();
+            return null;
+        }
+
+        final String location = uri.toString();
+        CachedBinary binary = lookup(location);
+        if (binary != null) {
+            if (sha256 == null || sha256.equalsIgnoreCase(binary.getSha256())) {
+                hits.incrementAndGet();
+                return binary;
+            }
+            // the location was redeployed since it was cached
+            binary.close();
+        }
+
+        while (true) {
+            // only one request downloads a location, the others wait for it
+            FutureTask<String> download = new FutureTask<String>(new Callable<String>()
+            {
+                @Override
+                public String call()
+                        throws IOException
+                {
+                    return download(location, uri, sources, sha256);
+                }
+            });
+            FutureTask<String> existingDownload = downloads.putIfAbsent(location, download);
+            if (existingDownload == null) {
+                misses.incrementAndGet();
+                try {
+                    download.run();
+                }
+                finally {
+                    downloads.remove(location);
+                }
+            }
+            else {
+                hits.incrementAndGet();
+                download = existingDownload;
+            }
+
+            String hash;
+            try {
+                hash = download.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            }
+            catch (ExecutionException e) {
+                Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+                throw Throwables.propagate(e.getCause());
+            }
+
+            // a concurrent download of the location may have expected other content
+            if (sha256 != null && !sha256.equalsIgnoreCase(hash)) {
+                throw new IOException(String.format("Binary %s has SHA-256 %s, but %s was expected", location, hash, sha256));
+            }
+
+            binary = pin(hash);
+            if (binary != null) {
+                return binary;
+            }
+            // another download evicted the blob before it was pinned
+        }
+    }
+
+    /**
+     * Gets the binary for the location only if it is already cached.  The binary must be closed.
+     */
+    public CachedBinary getCachedBinary(URI uri)
+    {
+        Preconditions.checkNotNull(uri, "uri is null");
+
+        if (!isCacheable(uri)) {
+            return null;
+        }
+        return lookup(uri.toString());
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getBypasses()
+    {
+        return bypasses.get();
+    }
+
+    /**
+     * Number of misses that were downloaded from one of the other sources rather than the location itself.
+     */
+    public long getSourceDownloads()
+    {
+        return sourceDownloads.get();
+    }
+
+    /**
+     * Number of downloads whose content did not match the expected SHA-256.
+     */
+    public long getChecksumMismatches()
+    {
+        return checksumMismatches.get();
+    }
+
+    public double getHitRatio()
+    {
+        long hits = this.hits.get();
+        long requests = hits + misses.get();
+        if (requests == 0) {
+            return 0;
+        }
+        return (double) hits / requests;
+    }
+
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    public synchronized int getBinaryCount()
+    {
+        return blobs.size();
+    }
+
+    private synchronized CachedBinary lookup(String location)
+    {
+        String hash = refs.get(location);
+        if (hash == null) {
+            return null;
+        }
+
+        File blob = new File(blobsDir, hash);
+        if (!blob.exists()) {
+            // removed behind our back
+            removeBlob(hash);
+            return null;
+        }
+
+        // remember the access for the next start
+        blob.setLastModified(System.currentTimeMillis());
+        return pin(hash);
+    }
+
+    private synchronized CachedBinary pin(String hash)
+    {
+        if (blobs.get(hash) == null) {
+            return null;
+        }
+        Integer count = pins.get(hash);
+        pins.put(hash, count == null ? 1 : count + 1);
+        return new CachedBinary(this, new File(blobsDir, hash), hash);
+    }
+
+    private synchronized void release(String hash)
+    {
+        Integer count = pins.get(hash);
+        Preconditions.checkState(count != null, "binary %s is not pinned", hash);
+        if (count > 1) {
+            pins.put(hash, count - 1);
+            return;
+        }
+        pins.remove(hash);
+
+        // the blob may have been kept over the maximum size while it was pinned
+        evict("");
+    }
+
+    private String download(String location, URI uri, List<URI> sources, @Nullable String sha256)
+            throws IOException
+    {
+        File tempFile = File.createTempFile("binary", ".tmp", tempDir);
+        try {
+            String hash = null;
+            for (URI source : sources) {
+                try {
+                    hash = copy(source, tempFile, true);
+                }
+                catch (IOException ignored) {
+                    // fall back to the next source, and finally the location itself
+                    continue;
+                }
+                if (sha256 == null || sha256.equalsIgnoreCase(hash)) {
+                    sourceDownloads.incrementAndGet();
+                    break;
+                }
+                // a corrupt or different copy is never trusted
+                checksumMismatches.incrementAndGet();
+                hash = null;
+            }
+            if (hash == null) {
+                hash = copy(uri, tempFile, false);
+                if (sha256 != null && !sha256.equalsIgnoreCase(hash)) {
+                    checksumMismatches.incrementAndGet();
+                    throw new IOException(String.format("Binary %s has SHA-256 %s, but %s was expected", location, hash, sha256));
+                }
+            }
+
+            synchronized (this) {
+                File blob = new File(blobsDir, hash);
+                if (!blobs.containsKey(hash)) {
+                    if (!tempFile.renameTo(blob)) {
+                        throw new IOException("Unable to move binary into " + blobsDir);
+                    }
+                    blobs.put(hash, blob.length());
+                    size += blob.length();
+                }
+                writeRef(location, hash);
+                evict(hash);
+            }
+            return hash;
+        }
+        finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Copies the uri to the file, and returns the hash of the content.  Sources other than the
+     * location itself are often peers that may be gone, so they get short timeouts.
+     */
+    private static String copy(URI uri, File file, boolean timeouts)
+            throws IOException
+    {
+        URLConnection connection = uri.toURL().openConnection();
+        if (timeouts) {
+            connection.setConnectTimeout(SOURCE_CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(SOURCE_READ_TIMEOUT_MILLIS);
+        }
+
+        MessageDigest digest = createDigest();
+        InputStream in = connection.getInputStream();
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            finally {
+                out.close();
+            }
+        }
+        finally {
+            in.close();
+        }
+        return DigestUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Removes the least recently used blobs until the cache fits, but never a pinned blob or the blob that was just added.
+     */
+    private void evict(String keep)
+    {
+        for (Iterator<String> iterator = blobs.keySet().iterator(); size > maxSize && iterator.hasNext(); ) {
+            String hash = iterator.next();
+            if (!hash.equals(keep) && !pins.containsKey(hash)) {
+                iterator.remove();
+                removeBlobFiles(hash);
+            }
+        }
+    }
+
+    private void removeBlob(String hash)
+    {
+        if (blobs.remove(hash) != null) {
+            removeBlobFiles(hash);
+        }
+    }
+
+    private void removeBlobFiles(String hash)
+    {
+        File blob = new File(blobsDir, hash);
+        size -= blob.length();
+        blob.delete();
+
+        for (Iterator<Entry<String, String>> iterator = refs.entrySet().iterator(); iterator.hasNext(); ) {
+            Entry<String, String> entry = iterator.next();
+            if (entry.getValue().equals(hash)) {
+                iterator.remove();
+                new File(refsDir, refName(entry.getKey())).delete();
+            }
+        }
+    }
+
+    private void writeRef(String location, String hash)
+            throws IOException
+    {
+        File tempFile = File.createTempFile("ref", ".tmp", tempDir);
+        Files.write(hash + "\n" + location, tempFile, Charsets.UTF_8);
+        if (!tempFile.renameTo(new File(refsDir, refName(location)))) {
+            tempFile.delete();
+            throw new IOException("Unable to write binary ref into " + refsDir);
+        }
+        refs.put(location, hash);
+    }
+
+    /**
+     * Loads the refs and blobs from disk, restoring the least recently used order from the blob modification times.
+     */
+    private synchronized void load()
+    {
+        List<File> blobFiles = newArrayList(FileUtils.listFiles(blobsDir));
+        Collections.sort(blobFiles, new Comparator<File>()
+        {
+            @Override
+            public int compare(File a, File b)
+            {
+                return Long.valueOf(a.lastModified()).compareTo(b.lastModified());
+            }
+        });
+        for (File blob : blobFiles) {
+            blobs.put(blob.getName(), blob.length());
+            size += blob.length();
+        }
+
+        for (File ref : FileUtils.listFiles(refsDir)) {
+            try {
+                List<String> lines = Files.readLines(ref, Charsets.UTF_8);
+                if (lines.size() == 2 && blobs.containsKey(lines.get(0))) {
+                    refs.put(lines.get(1), lines.get(0));
+                    continue;
+                }
+            }
+            catch (IOException ignored) {
+            }
+            ref.delete();
+        }
+
+        // blobs without refs can never be served
+        for (String hash : ImmutableList.copyOf(blobs.keySet())) {
+            if (!refs.containsValue(hash)) {
+                removeBlob(hash);
+            }
+        }
+        evict("");
+    }
+
+    private static String refName(String location)
+    {
+        MessageDigest digest = createDigest();
+        return DigestUtils.toHex(digest.digest(location.getBytes(Charsets.UTF_8)));
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * A cached binary, which is kept on disk until it is closed.
+     */
+    public static class CachedBinary
+            implements Closeable
+    {
+        private final BinaryCache cache;
+        private final File file;
+        private final String sha256;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private CachedBinary(BinaryCache cache, File file, String sha256)
+        {
+            this.cache = cache;
+            this.file = file;
+            this.sha256 = sha256;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public String getSha256()
+        {
+            return sha256;
+        }
+
+        @Override
+        public void close()
+        {
+            if (closed.compareAndSet(false, true)) {
+                cache.release(sha256);
+            }
+        }
+    }
+}
@@ -2,31 +2,22 @@ package io.airlift.airship.shared;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.io.CharStreams;
 import com.google.common.io.Closeables;
 import com.google.common.primitives.Ints;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableFutureTask;
 import com.proofpoint.units.Duration;
 
 import javax.annotation.concurrent.Immutable;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 @Immutable
 public class Command
@@ -34,6 +25,8 @@ public class Command
     private static final ImmutableSet<Integer> DEFAULT_SUCCESSFUL_EXIT_CODES = ImmutableSet.of(0);
     private static final File DEFAULT_DIRECTORY = new File(".").getAbsoluteFile();
     private static final Duration DEFAULT_TIME_LIMIT = new Duration(365, TimeUnit.DAYS);
+    private static final long MIN_POLL_MILLIS = 1;
+    private static final long MAX_POLL_MILLIS = 50;
 
     private final List<String> command;
     private final Set<Integer> successfulExitCodes;
@@ -153,34 +146,97 @@ public class Command
         return new Command(command, successfulExitCodes, directory, environment, timeLimit);
     }
 
-    public int execute(Executor executor)
+    public int execute(CommandExecutor executor)
             throws CommandFailedException
     {
         Preconditions.checkNotNull(executor, "executor is null");
-        Preconditions.checkNotNull(command, "command is null");
+        return executor.execute(this);
+    }
 
-        ProcessCallable processCallable = new ProcessCallable(this, executor);
-        Future<Integer> future = submit(executor, processCallable);
+    /**
+     * Runs the process on the calling thread.  The output is drained by polling, instead of by a
+     * blocking reader thread, and the process is killed at the deadline.
+     *
+     * @param deadline {@link System#nanoTime} at which the time limit of the command expires
+     */
+    int run(long deadline)
+            throws CommandFailedException
+    {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.directory(directory);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.environment().putAll(environment);
 
+        // start the process
+        Process process;
         try {
-            Integer result = future.get((long) timeLimit.toMillis(), TimeUnit.MILLISECONDS);
-            return result;
+            process = processBuilder.start();
+        }
+        catch (IOException e) {
+            throw new CommandFailedException(this, "failed to start", e);
         }
-        catch (ExecutionException e) {
-            Throwables.propagateIfPossible(e.getCause(), CommandFailedException.class);
-            Throwable cause = e.getCause();
-            if (cause == null) {
-                cause = e;
+
+        InputStream inputStream = process.getInputStream();
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            long pollMillis = MIN_POLL_MILLIS;
+            while (true) {
+                drainAvailable(inputStream, output, buffer);
+
+                Integer exitCode = exitValue(process);
+                if (exitCode != null) {
+                    drainAvailable(inputStream, output, buffer);
+
+                    // validate exit code
+                    if (!successfulExitCodes.contains(exitCode)) {
+                        throw new CommandFailedException(this, exitCode, new String(output.toByteArray(), Charsets.UTF_8));
+                    }
+                    return exitCode;
+                }
+
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new CommandTimeoutException(this);
+                }
+
+                // most commands finish quickly, so poll often at first
+                Thread.sleep(pollMillis);
+                pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
             }
-            throw new CommandFailedException(this, "unexpected exception", cause);
         }
         catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new CommandFailedException(this, "interrupted", e);
         }
-        catch (TimeoutException e) {
-            future.cancel(true);
-            throw new CommandTimeoutException(this);
+        catch (IOException e) {
+            throw new CommandFailedException(this, "unexpected exception", e);
+        }
+        finally {
+            process.destroy();
+            Closeables.closeQuietly(inputStream);
+        }
+    }
+
+    private static void drainAvailable(InputStream inputStream, ByteArrayOutputStream output, byte[] buffer)
+            throws IOException
+    {
+        for (int available = inputStream.available(); available > 0; available = inputStream.available()) {
+            int read = inputStream.read(buffer, 0, Math.min(available, buffer.length));
+            if (read < 0) {
+                return;
+            }
+            output.write(buffer, 0, read);
+        }
+    }
+
+    private static Integer exitValue(Process process)
+    {
+        try {
+            return process.exitValue();
+        }
+        catch (IllegalThreadStateException e) {
+            // still running
+            return null;
         }
     }
 
@@ -234,118 +290,4 @@ public class Command
         sb.append('}');
         return sb.toString();
     }
-
-    private static class ProcessCallable implements Callable<Integer>
-    {
-        private final Command command;
-        private final Executor executor;
-
-        public ProcessCallable(Command command, Executor executor)
-        {
-            this.command = command;
-            this.executor = executor;
-        }
-
-        @Override
-        public Integer call()
-                throws CommandFailedException, InterruptedException
-        {
-            ProcessBuilder processBuilder = new ProcessBuilder(command.getCommand());
-            processBuilder.directory(command.getDirectory());
-            processBuilder.redirectErrorStream(true);
-            processBuilder.environment().putAll(command.getEnvironment());
-
-            // start the process
-            final Process process;
-            try {
-                process = processBuilder.start();
-            }
-            catch (IOException e) {
-                throw new CommandFailedException(command, "failed to start", e);
-            }
-
-            OutputProcessor outputProcessor = null;
-            try {
-                // start the output processor
-                outputProcessor = new OutputProcessor(process, executor);
-                outputProcessor.start();
-
-                // wait for command to exit
-                int exitCode = process.waitFor();
-
-                // validate exit code
-                if (!command.getSuccessfulExitCodes().contains(exitCode)) {
-                    String out = outputProcessor.getOutput();
-                    throw new CommandFailedException(command, exitCode, out);
-                }
-                return exitCode;
-            }
-            finally {
-                try {
-                    process.destroy();
-                }
-                finally {
-                    if (outputProcessor != null) {
-                        outputProcessor.destroy();
-                    }
-                }
-            }
-        }
-    }
-
-    private static class OutputProcessor
-    {
-        private final InputStream inputStream;
-        private final Executor executor;
-        private Future<String> outputFuture;
-
-        private OutputProcessor(Process process, Executor executor)
-        {
-            this.inputStream = process.getInputStream();
-            this.executor = executor;
-        }
-
-        public void start()
-        {
-            outputFuture = submit(executor, new Callable<String>()
-            {
-                @Override
-                public String call()
-                        throws IOException
-                {
-                    String out = CharStreams.toString(new InputStreamReader(inputStream, Charsets.UTF_8));
-                    return out;
-                }
-            });
-        }
-
-        private String getOutput()
-        {
-            if (outputFuture != null && !outputFuture.isCancelled()) {
-                try {
-                    return outputFuture.get();
-                }
-                catch (Exception ignored) {
-                }
-            }
-            return null;
-        }
-
-        private void destroy()
-        {
-            // close input stream which will normally interrupt the reader
-            Closeables.closeQuietly(inputStream);
-
-            if (outputFuture != null) {
-                outputFuture.cancel(true);
-            }
-        }
-    }
-
-    private static <T> ListenableFuture<T> submit(Executor executor, Callable<T> task)
-    {
-        ListenableFutureTask<T> future = ListenableFutureTask.create(task);
-        executor.execute(future);
-        return future;
-    }
 }
@@ -0,0 +1,180 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs commands with a bounded number of processes at a time.  Commands over the limit wait in
+ * arrival order, and when too many are already waiting the command is rejected instead of queued,
+ * so a burst of operations can not fork an unbounded number of processes.  The time limit of a
+ * command starts when it is submitted, and covers both the wait for a process slot and the run.
+ * <p/>
+ * Commands run on the calling thread, which also drains the process output, so running a command
+ * never takes another thread.
+ */
+public class CommandExecutor
+{
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final Semaphore permits;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong queueTimedOut = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong totalExecutionNanos = new AtomicLong();
+    private final AtomicLong maxExecutionNanos = new AtomicLong();
+
+    public CommandExecutor(int maxConcurrency, int maxQueued)
+    {
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be at least 1");
+        Preconditions.checkArgument(maxQueued >= 0, "maxQueued is negative");
+
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    public int execute(Command command)
+            throws CommandFailedException
+    {
+        Preconditions.checkNotNull(command, "command is null");
+
+        long queueStart = System.nanoTime();
+        long deadline = queueStart + TimeUnit.MILLISECONDS.toNanos((long) command.getTimeLimit().toMillis());
+        try {
+            // unlike the untimed tryAcquire, a timed tryAcquire honors fairness and never barges ahead of waiting commands
+            if (!permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                if (queued.incrementAndGet() > maxQueued) {
+                    queued.decrementAndGet();
+                    rejected.incrementAndGet();
+                    throw new CommandRejectedException(command, maxConcurrency, maxQueued);
+                }
+                try {
+                    if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                        queueTimedOut.incrementAndGet();
+                        throw new CommandTimeoutException(command);
+                    }
+                }
+                finally {
+                    queued.decrementAndGet();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandFailedException(command, "interrupted", e);
+        }
+
+        long start = System.nanoTime();
+        totalQueueNanos.addAndGet(start - queueStart);
+        running.incrementAndGet();
+        try {
+            int exitCode = command.run(deadline);
+            succeeded.incrementAndGet();
+            return exitCode;
+        }
+        catch (CommandTimeoutException e) {
+            timedOut.incrementAndGet();
+            throw e;
+        }
+        catch (CommandFailedException e) {
+            failed.incrementAndGet();
+            throw e;
+        }
+        finally {
+            running.decrementAndGet();
+            permits.release();
+            recordExecutionTime(System.nanoTime() - start);
+        }
+    }
+
+    private void recordExecutionTime(long nanos)
+    {
+        totalExecutionNanos.addAndGet(nanos);
+        while (true) {
+            long max = maxExecutionNanos.get();
+            if (nanos <= max || maxExecutionNanos.compareAndSet(max, nanos)) {
+                return;
+            }
+        }
+    }
+
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    public int getMaxQueued()
+    {
+        return maxQueued;
+    }
+
+    public int getQueuedCommands()
+    {
+        return queued.get();
+    }
+
+    public int getRunningCommands()
+    {
+        return running.get();
+    }
+
+    public long getSucceededCommands()
+    {
+        return succeeded.get();
+    }
+
+    public long getFailedCommands()
+    {
+        return failed.get();
+    }
+
+    public long getTimedOutCommands()
+    {
+        return timedOut.get();
+    }
+
+    public long getRejectedCommands()
+    {
+        return rejected.get();
+    }
+
+    /**
+     * Number of commands that timed out waiting for a process slot, and were never started.
+     */
+    public long getQueueTimedOutCommands()
+    {
+        return queueTimedOut.get();
+    }
+
+    public double getAverageQueueMillis()
+    {
+        long executed = succeeded.get() + failed.get() + timedOut.get();
+        return executed == 0 ? 0 : toMillis(totalQueueNanos.get()) / executed;
+    }
+
+    public double getAverageExecutionMillis()
+    {
+        long executed = succeeded.get() + failed.get() + timedOut.get();
+        return executed == 0 ? 0 : toMillis(totalExecutionNanos.get()) / executed;
+    }
+
+    public double getMaxExecutionMillis()
+    {
+        return toMillis(maxExecutionNanos.get());
+    }
+
+    private static double toMillis(long nanos)
+    {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,9 @@
+package io.airlift.airship.shared;
+
+public class CommandRejectedException extends CommandFailedException
+{
+    public CommandRejectedException(Command command, int maxConcurrency, int maxQueued)
+    {
+        super(command, "rejected because " + maxConcurrency + " commands are running and " + maxQueued + " are queued", null);
+    }
+}
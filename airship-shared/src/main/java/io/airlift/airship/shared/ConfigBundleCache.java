@@ -0,0 +1,388 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.io.InputSupplier;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Keeps recently used config bundles on disk, so reading several entries of a bundle downloads it
+ * once.  Entries are read through the zip central directory instead of scanning the whole bundle.
+ * <p/>
+ * Bundle versions are immutable, except for locations with SNAPSHOT in their path, which are
+ * never cached.  Each download gets its own file, so a bundle that is downloaded again after it
+ * was evicted never shares a file with the evicted copy that is still being read.
+ */
+public class ConfigBundleCache
+{
+    private final File cacheDir;
+    private final int maxBundles;
+
+    // location -> bundle, in least recently used order
+    private final LinkedHashMap<URI, Bundle> bundles = new LinkedHashMap<URI, Bundle>(16, 0.75f, true);
+    private final ConcurrentMap<URI, FutureTask<Bundle>> downloads = new ConcurrentHashMap<URI, FutureTask<Bundle>>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ConfigBundleCache(File cacheDir, int maxBundles)
+    {
+        Preconditions.checkNotNull(cacheDir, "cacheDir is null");
+        Preconditions.checkArgument(maxBundles > 0, "maxBundles must be at least 1");
+
+        cacheDir.mkdirs();
+        Preconditions.checkArgument(cacheDir.isDirectory(), "cacheDir is not a directory: " + cacheDir.getAbsolutePath());
+        this.cacheDir = cacheDir;
+        this.maxBundles = maxBundles;
+
+        // bundles are only tracked in memory, so files left by a previous process are never used
+        for (File file : FileUtils.listFiles(cacheDir)) {
+            file.delete();
+        }
+    }
+
+    public static boolean isCacheable(URI configBundle)
+    {
+        String path = configBundle.getPath();
+        return path != null && !path.contains("SNAPSHOT");
+    }
+
+    /**
+     * Gets the whole config bundle, downloading it if necessary.  The file is kept until the stream
+     * is closed, even if the bundle is evicted.
+     */
+    public InputSupplier<InputStream> newConfigBundleSupplier(final URI configBundle)
+    {
+        Preconditions.checkNotNull(configBundle, "configBundle is null");
+
+        return new InputSupplier<InputStream>()
+        {
+            @Override
+            public InputStream getInput()
+                    throws IOException
+            {
+                for (int attempt = 0; ; attempt++) {
+                    Bundle bundle = getBundle(configBundle);
+                    synchronized (ConfigBundleCache.this) {
+                        if (bundles.get(configBundle) == bundle) {
+                            InputStream in = new FileInputStream(bundle.getFile());
+                            bundle.acquire();
+                            return new BundleInputStream(in, bundle);
+                        }
+                    }
+                    if (attempt >= 3) {
+                        throw new IOException("Config bundle " + configBundle + " was evicted while opening it");
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Gets a config bundle entry, downloading the bundle if necessary.  Entries are small, so each
+     * read is buffered in memory and not affected by the bundle being evicted.
+     */
+    public InputSupplier<InputStream> newConfigEntrySupplier(final URI configBundle, final String entryName)
+    {
+        Preconditions.checkNotNull(configBundle, "configBundle is null");
+        Preconditions.checkNotNull(entryName, "entryName is null");
+
+        return new InputSupplier<InputStream>()
+        {
+            @Override
+            public InputStream getInput()
+                    throws IOException
+            {
+                return new ByteArrayInputStream(readEntry(configBundle, entryName));
+            }
+        };
+    }
+
+    public synchronized int getSize()
+    {
+        return bundles.size();
+    }
+
+    public int getMaxSize()
+    {
+        return maxBundles;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public synchronized void invalidateAll()
+    {
+        for (Iterator<Bundle> iterator = bundles.values().iterator(); iterator.hasNext(); ) {
+            Bundle bundle = iterator.next();
+            iterator.remove();
+            release(bundle);
+        }
+    }
+
+    private byte[] readEntry(URI configBundle, String entryName)
+            throws IOException
+    {
+        for (int attempt = 0; ; attempt++) {
+            Bundle bundle = getBundle(configBundle);
+            ZipFile zipFile;
+            ZipEntry zipEntry;
+            synchronized (this) {
+                // the bundle may have been evicted and deleted in the meantime
+                if (bundles.get(configBundle) != bundle) {
+                    if (attempt < 3) {
+                        continue;
+                    }
+                    throw new IOException("Config bundle " + configBundle + " was evicted while reading " + entryName);
+                }
+
+                zipFile = bundle.getZipFile();
+                zipEntry = zipFile.getEntry(entryName);
+                if (zipEntry == null) {
+                    throw new FileNotFoundException(entryName);
+                }
+
+                // keep the zip file open until the entry is read, even if the bundle is evicted
+                bundle.acquire();
+            }
+
+            // decompress without holding the lock, so readers of other bundles are not blocked
+            try {
+                InputStream in = zipFile.getInputStream(zipEntry);
+                try {
+                    return ByteStreams.toByteArray(in);
+                }
+                finally {
+                    in.close();
+                }
+            }
+            finally {
+                synchronized (this) {
+                    release(bundle);
+                }
+            }
+        }
+    }
+
+    private Bundle getBundle(final URI configBundle)
+            throws IOException
+    {
+        synchronized (this) {
+            Bundle bundle = bundles.get(configBundle);
+            if (bundle != null) {
+                hits.incrementAndGet();
+                return bundle;
+            }
+        }
+        misses.incrementAndGet();
+
+        // only one caller downloads a bundle, the others wait for it
+        FutureTask<Bundle> download = new FutureTask<Bundle>(new Callable<Bundle>()
+        {
+            @Override
+            public Bundle call()
+                    throws IOException
+            {
+                return download(configBundle);
+            }
+        });
+        FutureTask<Bundle> existingDownload = downloads.putIfAbsent(configBundle, download);
+        if (existingDownload == null) {
+            try {
+                download.run();
+            }
+            finally {
+                downloads.remove(configBundle);
+            }
+        }
+        else {
+            download = existingDownload;
+        }
+
+        try {
+            return download.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+        catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private Bundle download(URI configBundle)
+            throws IOException
+    {
+        // a unique file, since an evicted copy of the same bundle may still be read
+        File file = File.createTempFile("bundle", ".zip", cacheDir);
+        boolean cached = false;
+        try {
+            URLConnection connection = configBundle.toURL().openConnection();
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                httpConnection.addRequestProperty("User-Agent", MavenCoordinates.MAVEN_USER_AGENT);
+            }
+            InputStream in = connection.getInputStream();
+            try {
+                ByteStreams.copy(in, Files.newOutputStreamSupplier(file));
+            }
+            finally {
+                in.close();
+            }
+
+            synchronized (this) {
+                Bundle bundle = new Bundle(file);
+                bundle.acquire();
+                bundles.put(configBundle, bundle);
+                cached = true;
+                evict();
+                return bundle;
+            }
+        }
+        finally {
+            if (!cached) {
+                file.delete();
+            }
+        }
+    }
+
+    private void evict()
+    {
+        for (Iterator<Bundle> iterator = bundles.values().iterator(); bundles.size() > maxBundles && iterator.hasNext(); ) {
+            Bundle bundle = iterator.next();
+            iterator.remove();
+            release(bundle);
+        }
+    }
+
+    /**
+     * Releases a reference to the bundle.  The cache holds one reference while the bundle is cached,
+     * and each entry read and open bundle stream holds another, so the file is deleted once it is
+     * evicted and no longer read.
+     */
+    private void release(Bundle bundle)
+    {
+        if (bundle.release()) {
+            bundle.delete();
+        }
+    }
+
+    /**
+     * A stream of the whole bundle, which holds a reference to the bundle until it is closed.
+     */
+    private class BundleInputStream extends FilterInputStream
+    {
+        private final Bundle bundle;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private BundleInputStream(InputStream in, Bundle bundle)
+        {
+            super(in);
+            this.bundle = bundle;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            try {
+                super.close();
+            }
+            finally {
+                if (closed.compareAndSet(false, true)) {
+                    synchronized (ConfigBundleCache.this) {
+                        release(bundle);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A downloaded bundle.  The zip central directory is only read when the first entry is read.
+     * Guarded by the cache.
+     */
+    private static class Bundle
+    {
+        private final File file;
+        private ZipFile zipFile;
+        private int references;
+
+        private Bundle(File file)
+        {
+            this.file = file;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public ZipFile getZipFile()
+                throws IOException
+        {
+            if (zipFile == null) {
+                zipFile = new ZipFile(file);
+            }
+            return zipFile;
+        }
+
+        public void acquire()
+        {
+            references++;
+        }
+
+        /**
+         * @return true if this was the last reference
+         */
+        public boolean release()
+        {
+            references--;
+            return references == 0;
+        }
+
+        public void delete()
+        {
+            if (zipFile != null) {
+                try {
+                    zipFile.close();
+                }
+                catch (IOException ignored) {
+                }
+            }
+            file.delete();
+        }
+    }
+}
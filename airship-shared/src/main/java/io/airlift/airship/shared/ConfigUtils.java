@@ -5,9 +5,9 @@ import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.google.common.io.InputSupplier;
-import com.google.common.io.Resources;
 import com.proofpoint.configuration.ConfigurationFactory;
 
+import javax.annotation.Nullable;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -16,7 +16,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
@@ -127,27 +126,51 @@ public class ConfigUtils
         }
     }
 
-    public static InputSupplier<InputStream> newConfigEntrySupplier(Repository repository, String config, final String entryName)
+    public static InputSupplier<InputStream> newConfigEntrySupplier(Repository repository, String config, String entryName)
+    {
+        return newConfigEntrySupplier(repository, config, entryName, null);
+    }
+
+    public static InputSupplier<InputStream> newConfigEntrySupplier(Repository repository, String config, String entryName, @Nullable ConfigBundleCache configBundleCache)
     {
         URI uri = repository.configToHttpUri(config);
         if (uri == null) {
             return null;
         }
 
-        URL configUrl;
-        try {
-            configUrl = uri.toURL();
-        }
-        catch (MalformedURLException e) {
-            throw new RuntimeException("Invalid config bundle location " + uri);
+        return newConfigEntrySupplier(uri, entryName, configBundleCache);
+    }
+
+    public static InputSupplier<InputStream> newConfigEntrySupplier(URI configBundle, String entryName)
+    {
+        return newConfigEntrySupplier(configBundle, entryName, null);
+    }
+
+    public static InputSupplier<InputStream> newConfigEntrySupplier(URI configBundle, String entryName, @Nullable ConfigBundleCache configBundleCache)
+    {
+        // released bundles are immutable, so read them from the local cache
+        if (configBundleCache != null && ConfigBundleCache.isCacheable(configBundle)) {
+            return configBundleCache.newConfigEntrySupplier(configBundle, entryName);
         }
+        return newConfigEntrySupplier(newConfigBundleDownloadSupplier(configBundle), entryName);
+    }
 
-        return ConfigUtils.newConfigEntrySupplier(Resources.newInputStreamSupplier(configUrl), entryName);
+    public static InputSupplier<InputStream> newConfigBundleSupplier(URI configBundle)
+    {
+        return newConfigBundleSupplier(configBundle, null);
     }
 
-    public static InputSupplier<InputStream> newConfigEntrySupplier(final URI configBundle, String entryName)
+    public static InputSupplier<InputStream> newConfigBundleSupplier(URI configBundle, @Nullable ConfigBundleCache configBundleCache)
     {
-        InputSupplier<InputStream> configBundleInput = new InputSupplier<InputStream>()
+        if (configBundleCache != null && ConfigBundleCache.isCacheable(configBundle)) {
+            return configBundleCache.newConfigBundleSupplier(configBundle);
+        }
+        return newConfigBundleDownloadSupplier(configBundle);
+    }
+
+    private static InputSupplier<InputStream> newConfigBundleDownloadSupplier(final URI configBundle)
+    {
+        return new InputSupplier<InputStream>()
         {
             @Override
             public InputStream getInput()
@@ -158,13 +181,12 @@ public class ConfigUtils
                 URLConnection connection = url.openConnection();
                 if (connection instanceof HttpURLConnection) {
                     HttpURLConnection httpConnection = (HttpURLConnection) connection;
-                    httpConnection.addRequestProperty("User-Agent", "User-Agent: Apache-Maven/3.0.3 (Java 1.6.0_29; Mac OS X 10.7.2)");
+                    httpConnection.addRequestProperty("User-Agent", MavenCoordinates.MAVEN_USER_AGENT);
                 }
                 InputStream in = connection.getInputStream();
                 return in;
             }
         };
-        return newConfigEntrySupplier(configBundleInput, entryName);
     }
 
     private static InputSupplier<InputStream> newConfigEntrySupplier(final InputSupplier<? extends InputStream> configBundle, final String entryName)
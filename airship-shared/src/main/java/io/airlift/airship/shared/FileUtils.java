@@ -3,22 +3,18 @@ package io.airlift.airship.shared;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.proofpoint.units.Duration;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class FileUtils
 {
     private static final int TEMP_DIR_ATTEMPTS = 10000;
-    private static final Executor executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("tar-command-%s").build());
 
-    public static void createTar(File sourceDirectory, File tarFile)
+    public static void createTar(File sourceDirectory, File tarFile, CommandExecutor executor)
             throws CommandFailedException
     {
         Preconditions.checkNotNull(sourceDirectory, "sourceDirectory is null");
@@ -32,7 +28,7 @@ public class FileUtils
                 .execute(executor);
     }
 
-    public static void extractTar(File tarFile, File targetDirectory, Duration timeLimit)
+    public static void extractTar(File tarFile, File targetDirectory, Duration timeLimit, CommandExecutor executor)
             throws CommandFailedException
     {
         Preconditions.checkNotNull(tarFile, "tarFile is null");
@@ -45,7 +41,7 @@ public class FileUtils
                 .execute(executor);
     }
 
-    public static void createSymbolicLink(File source, File target)
+    public static void createSymbolicLink(File source, File target, CommandExecutor executor)
             throws CommandFailedException
     {
         Preconditions.checkNotNull(source, "source is null");
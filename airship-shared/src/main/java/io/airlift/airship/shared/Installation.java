@@ -14,10 +14,13 @@
 package io.airlift.airship.shared;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 @Immutable
@@ -28,20 +31,34 @@ public class Installation
     private final URI binaryFile;
     private final URI configFile;
     private final Map<String, Integer> resources;
+    private final List<URI> binarySources;
+    private final String binarySha256;
 
     public Installation(String shortName, Assignment assignment, URI binaryFile, URI configFile, Map<String, Integer> resources)
+    {
+        this(shortName, assignment, binaryFile, configFile, resources, ImmutableList.<URI>of(), null);
+    }
+
+    /**
+     * @param binarySources other places, usually peer agents, that can serve the binary file; they are tried in order before the binary file itself
+     * @param binarySha256 SHA-256 of the binary file, which a copy from any source must match, or null if it is not known
+     */
+    public Installation(String shortName, Assignment assignment, URI binaryFile, URI configFile, Map<String, Integer> resources, List<URI> binarySources, @Nullable String binarySha256)
     {
         Preconditions.checkNotNull(shortName, "shortName is null");
         Preconditions.checkNotNull(assignment, "assignment is null");
         Preconditions.checkNotNull(binaryFile, "binaryFile is null");
         Preconditions.checkNotNull(configFile, "configFile is null");
         Preconditions.checkNotNull(resources, "resources is null");
+        Preconditions.checkNotNull(binarySources, "binarySources is null");
 
         this.shortName = shortName;
         this.assignment = assignment;
         this.binaryFile = binaryFile;
         this.configFile = configFile;
         this.resources = ImmutableMap.copyOf(resources);
+        this.binarySources = ImmutableList.copyOf(binarySources);
+        this.binarySha256 = binarySha256;
     }
 
     public String getShortName()
@@ -69,6 +86,27 @@ public class Installation
         return resources;
     }
 
+    public List<URI> getBinarySources()
+    {
+        return binarySources;
+    }
+
+    @Nullable
+    public String getBinarySha256()
+    {
+        return binarySha256;
+    }
+
+    public Installation withBinarySources(List<URI> binarySources)
+    {
+        return new Installation(shortName, assignment, binaryFile, configFile, resources, binarySources, binarySha256);
+    }
+
+    public Installation withBinarySha256(String binarySha256)
+    {
+        return new Installation(shortName, assignment, binaryFile, configFile, resources, binarySources, binarySha256);
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -104,6 +142,8 @@ public class Installation
         sb.append(", binaryFile=").append(binaryFile);
         sb.append(", configFile=").append(configFile);
         sb.append(", resources=").append(resources);
+        sb.append(", binarySources=").append(binarySources);
+        sb.append(", binarySha256=").append(binarySha256);
         sb.append('}');
         return sb.toString();
     }
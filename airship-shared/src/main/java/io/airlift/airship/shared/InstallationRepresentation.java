@@ -13,6 +13,10 @@
  */
 package io.airlift.airship.shared;
 
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.codehaus.jackson.annotate.JsonAutoDetect;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonMethod;
@@ -20,6 +24,7 @@ import org.codehaus.jackson.annotate.JsonProperty;
 
 import javax.validation.constraints.NotNull;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 @JsonAutoDetect(JsonMethod.NONE)
@@ -30,6 +35,8 @@ public class InstallationRepresentation
     private final String binaryFile;
     private final String configFile;
     private final Map<String, Integer> resources;
+    private final List<String> binarySources;
+    private final String binarySha256;
 
     public static InstallationRepresentation from(Installation installation)
     {
@@ -39,7 +46,14 @@ public class InstallationRepresentation
                 AssignmentRepresentation.from(assignment),
                 installation.getBinaryFile().toString(),
                 installation.getConfigFile().toString(),
-                installation.getResources());
+                installation.getResources(),
+                ImmutableList.copyOf(Lists.transform(installation.getBinarySources(), Functions.toStringFunction())),
+                installation.getBinarySha256());
+    }
+
+    public InstallationRepresentation(String shortName, AssignmentRepresentation assignmentRepresentation, String binaryFile, String configFile, Map<String, Integer> resources)
+    {
+        this(shortName, assignmentRepresentation, binaryFile, configFile, resources, null, null);
     }
 
     @JsonCreator
@@ -48,13 +62,17 @@ public class InstallationRepresentation
             @JsonProperty("assignment") AssignmentRepresentation assignmentRepresentation,
             @JsonProperty("binaryFile") String binaryFile,
             @JsonProperty("configFile") String configFile,
-            @JsonProperty("resources") Map<String, Integer> resources)
+            @JsonProperty("resources") Map<String, Integer> resources,
+            @JsonProperty("binarySources") List<String> binarySources,
+            @JsonProperty("binarySha256") String binarySha256)
     {
         this.shortName = shortName;
         this.assignment = assignmentRepresentation;
         this.binaryFile = binaryFile;
         this.configFile = configFile;
         this.resources = resources;
+        this.binarySources = binarySources;
+        this.binarySha256 = binarySha256;
     }
 
     @JsonProperty
@@ -91,9 +109,32 @@ public class InstallationRepresentation
         return resources;
     }
 
+    @JsonProperty
+    public List<String> getBinarySources()
+    {
+        return binarySources;
+    }
+
+    @JsonProperty
+    public String getBinarySha256()
+    {
+        return binarySha256;
+    }
+
     public Installation toInstallation()
     {
-        Installation installation = new Installation(shortName, assignment.toAssignment(), URI.create(binaryFile), URI.create(configFile), resources);
+        List<URI> binarySources = ImmutableList.of();
+        if (this.binarySources != null) {
+            binarySources = ImmutableList.copyOf(Lists.transform(this.binarySources, new Function<String, URI>()
+            {
+                @Override
+                public URI apply(String uri)
+                {
+                    return URI.create(uri);
+                }
+            }));
+        }
+        Installation installation = new Installation(shortName, assignment.toAssignment(), URI.create(binaryFile), URI.create(configFile), resources, binarySources, binarySha256);
         return installation;
     }
 
@@ -132,6 +173,8 @@ public class InstallationRepresentation
         sb.append(", binaryFile='").append(binaryFile).append('\'');
         sb.append(", configFile=").append(configFile);
         sb.append(", resources=").append(resources);
+        sb.append(", binarySources=").append(binarySources);
+        sb.append(", binarySha256=").append(binarySha256);
         sb.append('}');
         return sb.toString();
     }
@@ -5,6 +5,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.InputSupplier;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -18,12 +19,17 @@ import static io.airlift.airship.shared.ConfigUtils.newConfigEntrySupplier;
 public class InstallationUtils
 {
     public static Installation toInstallation(Repository repository, Assignment assignment)
+    {
+        return toInstallation(repository, assignment, null);
+    }
+
+    public static Installation toInstallation(Repository repository, Assignment assignment, @Nullable ConfigBundleCache configBundleCache)
     {
         assignment = resolveAssignment(repository, assignment);
 
 
         // load resources
-        Map<String, Integer> resources = readResources(repository, assignment);
+        Map<String, Integer> resources = readResources(repository, assignment, configBundleCache);
 
         // create installation
         URI binaryUri = repository.binaryToHttpUri(assignment.getBinary());
@@ -75,10 +81,15 @@ public class InstallationUtils
     }
 
     public static Map<String, Integer> readResources(Repository repository, Assignment assignment)
+    {
+        return readResources(repository, assignment, null);
+    }
+
+    public static Map<String, Integer> readResources(Repository repository, Assignment assignment, @Nullable ConfigBundleCache configBundleCache)
     {
         ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
 
-        InputSupplier<? extends InputStream> resourcesFile = newConfigEntrySupplier(repository, assignment.getConfig(), "airship-resources.properties");
+        InputSupplier<? extends InputStream> resourcesFile = newConfigEntrySupplier(repository, assignment.getConfig(), "airship-resources.properties", configBundleCache);
         if (resourcesFile != null) {
             try {
                 Properties resources = new Properties();
@@ -27,6 +27,11 @@ import java.util.regex.Pattern;
 @Immutable
 public class MavenCoordinates
 {
+    /**
+     * User agent sent to repositories, some of which only serve requests from Maven.
+     */
+    public static final String MAVEN_USER_AGENT = "User-Agent: Apache-Maven/3.0.3 (Java 1.6.0_29; Mac OS X 10.7.2)";
+
     private static final String MAVEN_COORDINATES_REGEX = "^([^:]+):([^:]+)(?::([^:]+))?(?::([^:]+))?(?::([^:]+))?$";
     private static final Pattern MAVEN_COORDINATES_PATTERN = Pattern.compile(MAVEN_COORDINATES_REGEX);
     public static final String DEFAULT_CONFIG_PACKAGING = "config";
@@ -1,6 +1,7 @@
 package io.airlift.airship.shared;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableSet;
 
 import javax.inject.Inject;
@@ -12,12 +13,20 @@ import static com.google.common.collect.Sets.newTreeSet;
 public class RepositorySet implements Repository
 {
     private final Set<Repository> repositories;
+    private final ResolutionCache resolutionCache;
 
-    @Inject
     public RepositorySet(Set<Repository> repositories)
+    {
+        this(repositories, ResolutionCache.disabled());
+    }
+
+    @Inject
+    public RepositorySet(Set<Repository> repositories, ResolutionCache resolutionCache)
     {
         Preconditions.checkNotNull(repositories, "repositories is null");
+        Preconditions.checkNotNull(resolutionCache, "resolutionCache is null");
         this.repositories = ImmutableSet.copyOf(repositories);
+        this.resolutionCache = resolutionCache;
     }
 
     @Override
@@ -56,7 +65,19 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public String configResolve(String config)
+    public String configResolve(final String config)
+    {
+        return resolutionCache.get("config-resolve:" + config, getConfigVersion(config), new Supplier<String>()
+        {
+            @Override
+            public String get()
+            {
+                return configResolveUncached(config);
+            }
+        });
+    }
+
+    private String configResolveUncached(String config)
     {
         Set<String> configs = newTreeSet();
         for (Repository repository : repositories) {
@@ -79,7 +100,19 @@ public class RepositorySet implements Repository
 
 
     @Override
-    public String configUpgrade(String config, String version)
+    public String configUpgrade(final String config, final String version)
+    {
+        return resolutionCache.get("config-upgrade:" + config + ":" + version, version, new Supplier<String>()
+        {
+            @Override
+            public String get()
+            {
+                return configUpgradeUncached(config, version);
+            }
+        });
+    }
+
+    private String configUpgradeUncached(String config, String version)
     {
         Set<String> configs = newTreeSet();
         for (Repository repository : repositories) {
@@ -112,7 +145,19 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public URI configToHttpUri(String config)
+    public URI configToHttpUri(final String config)
+    {
+        return resolutionCache.get("config-uri:" + config, getConfigVersion(config), new Supplier<URI>()
+        {
+            @Override
+            public URI get()
+            {
+                return configToHttpUriUncached(config);
+            }
+        });
+    }
+
+    private URI configToHttpUriUncached(String config)
     {
         Set<URI> httpUris = newTreeSet();
         for (Repository repository : repositories) {
@@ -152,7 +197,19 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public String binaryResolve(String binary)
+    public String binaryResolve(final String binary)
+    {
+        return resolutionCache.get("binary-resolve:" + binary, getBinaryVersion(binary), new Supplier<String>()
+        {
+            @Override
+            public String get()
+            {
+                return binaryResolveUncached(binary);
+            }
+        });
+    }
+
+    private String binaryResolveUncached(String binary)
     {
         Set<String> binaries = newTreeSet();
         for (Repository repository : repositories) {
@@ -174,7 +231,19 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public String binaryUpgrade(String binary, String version)
+    public String binaryUpgrade(final String binary, final String version)
+    {
+        return resolutionCache.get("binary-upgrade:" + binary + ":" + version, version, new Supplier<String>()
+        {
+            @Override
+            public String get()
+            {
+                return binaryUpgradeUncached(binary, version);
+            }
+        });
+    }
+
+    private String binaryUpgradeUncached(String binary, String version)
     {
         Set<String> binaries = newTreeSet();
         for (Repository repository : repositories) {
@@ -207,7 +276,19 @@ public class RepositorySet implements Repository
     }
 
     @Override
-    public URI binaryToHttpUri(String binary)
+    public URI binaryToHttpUri(final String binary)
+    {
+        return resolutionCache.get("binary-uri:" + binary, getBinaryVersion(binary), new Supplier<URI>()
+        {
+            @Override
+            public URI get()
+            {
+                return binaryToHttpUriUncached(binary);
+            }
+        });
+    }
+
+    private URI binaryToHttpUriUncached(String binary)
     {
         Set<URI> httpUris = newTreeSet();
         for (Repository repository : repositories) {
@@ -237,4 +318,16 @@ public class RepositorySet implements Repository
         sb.append('}');
         return sb.toString();
     }
+
+    private static String getConfigVersion(String config)
+    {
+        MavenCoordinates coordinates = MavenCoordinates.fromConfigGAV(config);
+        return coordinates == null ? null : coordinates.getVersion();
+    }
+
+    private static String getBinaryVersion(String binary)
+    {
+        MavenCoordinates coordinates = MavenCoordinates.fromBinaryGAV(binary);
+        return coordinates == null ? null : coordinates.getVersion();
+    }
 }
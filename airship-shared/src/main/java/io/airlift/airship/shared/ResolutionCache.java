@@ -0,0 +1,126 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.proofpoint.units.Duration;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of resolving binaries and configs against a repository, so repeated
+ * resolutions of the same spec do not probe the repository again.  Release specs are cached for
+ * a long time, SNAPSHOT specs for a short time since they change when a new snapshot is deployed,
+ * and specs that could not be resolved are remembered as missing for a short time.
+ * <p/>
+ * Failures, such as an ambiguous spec, are not cached.
+ */
+public class ResolutionCache
+{
+    private static final int MAX_ENTRIES = 10000;
+
+    private final Cache<String, Object> releases;
+    private final Cache<String, Object> snapshots;
+    private final Cache<String, Boolean> missing;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong missingHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache that does not cache anything.
+     */
+    public static ResolutionCache disabled()
+    {
+        Duration zero = new Duration(0, TimeUnit.MILLISECONDS);
+        return new ResolutionCache(zero, zero, zero);
+    }
+
+    public ResolutionCache(Duration releaseTtl, Duration snapshotTtl, Duration missTtl)
+    {
+        Preconditions.checkNotNull(releaseTtl, "releaseTtl is null");
+        Preconditions.checkNotNull(snapshotTtl, "snapshotTtl is null");
+        Preconditions.checkNotNull(missTtl, "missTtl is null");
+
+        this.releases = createCache(releaseTtl);
+        this.snapshots = createCache(snapshotTtl);
+        this.missing = createCache(missTtl);
+    }
+
+    private static <T> Cache<String, T> createCache(Duration ttl)
+    {
+        return CacheBuilder.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite((long) ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Gets the cached resolution for the key, or resolves it with the resolver.  A null resolution
+     * means the spec could not be resolved.
+     *
+     * @param version the version of the resolved spec, or null if the spec has no version
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, @Nullable String version, Supplier<T> resolver)
+    {
+        Preconditions.checkNotNull(key, "key is null");
+        Preconditions.checkNotNull(resolver, "resolver is null");
+
+        Cache<String, Object> cache = isSnapshot(version) ? snapshots : releases;
+        Object value = cache.getIfPresent(key);
+        if (value != null) {
+            hits.incrementAndGet();
+            return (T) value;
+        }
+        if (missing.getIfPresent(key) != null) {
+            missingHits.incrementAndGet();
+            return null;
+        }
+
+        misses.incrementAndGet();
+        T resolved = resolver.get();
+        if (resolved == null) {
+            missing.put(key, Boolean.TRUE);
+        }
+        else {
+            cache.put(key, resolved);
+        }
+        return resolved;
+    }
+
+    private static boolean isSnapshot(@Nullable String version)
+    {
+        return version != null && version.endsWith("-SNAPSHOT");
+    }
+
+    public void invalidateAll()
+    {
+        releases.invalidateAll();
+        snapshots.invalidateAll();
+        missing.invalidateAll();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMissingHits()
+    {
+        return missingHits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getSize()
+    {
+        return releases.size() + snapshots.size() + missing.size();
+    }
+}
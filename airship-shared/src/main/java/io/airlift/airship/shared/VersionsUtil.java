@@ -18,6 +18,11 @@ public class VersionsUtil
     public static final String AIRSHIP_AGENTS_VERSION_HEADER = "x-airship-agents-version";
     public static final String AIRSHIP_AGENT_VERSION_HEADER = "x-airship-agent-version";
 
+    // combined with If-None-Match, turns a status request into a long poll for the next change
+    public static final String AIRSHIP_MAX_WAIT_HEADER = "x-airship-max-wait";
+
+    public static final String AIRSHIP_SERVICE_INVENTORY_VERSION_HEADER = "x-airship-service-inventory-version";
+
     private VersionsUtil()
     {
     }
@@ -30,7 +30,7 @@ public class ArchiveHelper
             Files.write(ArchiveHelper.class.getName() + " test archive", new File(tempDir, "README.txt"), UTF_8);
 
             // tar up the archive
-            createTar(tempDir, archive);
+            createTar(tempDir, archive, new CommandExecutor(1, 0));
         } finally {
             FileUtils.deleteRecursively(tempDir);
         }
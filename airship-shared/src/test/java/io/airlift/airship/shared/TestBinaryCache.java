@@ -0,0 +1,216 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.airship.shared.BinaryCache.CachedBinary;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.security.MessageDigest;
+
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestBinaryCache
+{
+    private File repoDir;
+    private File cacheDir;
+
+    @BeforeMethod
+    public void setup()
+    {
+        repoDir = createTempDir("repo");
+        cacheDir = createTempDir("binary-cache");
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        deleteRecursively(repoDir);
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void testCache()
+            throws Exception
+    {
+        File apple = new File(repoDir, "apple-1.0.tar.gz");
+        Files.write("apple", apple, Charsets.UTF_8);
+
+        BinaryCache cache = new BinaryCache(cacheDir, 1024);
+        CachedBinary binary = cache.getBinary(apple.toURI());
+        assertEquals(Files.toString(binary.getFile(), Charsets.UTF_8), "apple");
+        assertEquals(binary.getSha256(), "3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b");
+        assertEquals(cache.getMisses(), 1);
+
+        // served from the cache even after the repository loses it
+        apple.delete();
+        assertEquals(cache.getBinary(apple.toURI()).getFile(), binary.getFile());
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getHitRatio(), 0.5);
+
+        // and after a restart
+        cache = new BinaryCache(cacheDir, 1024);
+        assertEquals(cache.getBinary(apple.toURI()).getFile(), binary.getFile());
+        assertEquals(cache.getSize(), 5);
+    }
+
+    @Test
+    public void testEviction()
+            throws Exception
+    {
+        File apple = new File(repoDir, "apple-1.0.tar.gz");
+        Files.write("apple", apple, Charsets.UTF_8);
+        File banana = new File(repoDir, "banana-1.0.tar.gz");
+        Files.write("banana", banana, Charsets.UTF_8);
+
+        BinaryCache cache = new BinaryCache(cacheDir, 8);
+        CachedBinary appleBinary = cache.getBinary(apple.toURI());
+        appleBinary.close();
+        CachedBinary bananaBinary = cache.getBinary(banana.toURI());
+        bananaBinary.close();
+
+        assertFalse(appleBinary.getFile().exists());
+        assertTrue(bananaBinary.getFile().exists());
+        assertEquals(cache.getBinaryCount(), 1);
+        assertEquals(cache.getSize(), 6);
+    }
+
+    @Test
+    public void testPinnedBinariesAreNotEvicted()
+            throws Exception
+    {
+        File apple = new File(repoDir, "apple-1.0.tar.gz");
+        Files.write("apple", apple, Charsets.UTF_8);
+        File banana = new File(repoDir, "banana-1.0.tar.gz");
+        Files.write("banana", banana, Charsets.UTF_8);
+
+        BinaryCache cache = new BinaryCache(cacheDir, 8);
+        CachedBinary appleBinary = cache.getBinary(apple.toURI());
+        CachedBinary otherAppleBinary = cache.getCachedBinary(apple.toURI());
+        CachedBinary bananaBinary = cache.getBinary(banana.toURI());
+
+        // apple is still open, so the cache stays over the maximum size
+        assertTrue(appleBinary.getFile().exists());
+        assertEquals(cache.getBinaryCount(), 2);
+        assertEquals(cache.getSize(), 11);
+
+        // closing twice does not release the other pin
+        appleBinary.close();
+        appleBinary.close();
+        assertTrue(appleBinary.getFile().exists());
+
+        // the blob is removed once the last reader closes it
+        otherAppleBinary.close();
+        assertFalse(appleBinary.getFile().exists());
+        assertTrue(bananaBinary.getFile().exists());
+        assertEquals(cache.getBinaryCount(), 1);
+        assertEquals(cache.getSize(), 6);
+
+        bananaBinary.close();
+        assertTrue(bananaBinary.getFile().exists());
+    }
+
+    @Test
+    public void testSources()
+            throws Exception
+    {
+        File apple = new File(repoDir, "apple-1.0.tar.gz");
+        Files.write("apple", apple, Charsets.UTF_8);
+        File peerApple = new File(repoDir, "peer-apple-1.0.tar.gz");
+        Files.write("apple", peerApple, Charsets.UTF_8);
+        File missing = new File(repoDir, "missing-apple-1.0.tar.gz");
+
+        // a source that is gone is skipped
+        BinaryCache cache = new BinaryCache(cacheDir, 1024);
+        CachedBinary binary = cache.getBinary(apple.toURI(), ImmutableList.of(missing.toURI(), peerApple.toURI()));
+        assertEquals(Files.toString(binary.getFile(), Charsets.UTF_8), "apple");
+        assertEquals(cache.getSourceDownloads(), 1);
+        assertEquals(cache.getCachedBinary(apple.toURI()).getFile(), binary.getFile());
+
+        // the location itself is used when no source works
+        File banana = new File(repoDir, "banana-1.0.tar.gz");
+        Files.write("banana", banana, Charsets.UTF_8);
+        assertNull(cache.getCachedBinary(banana.toURI()));
+        binary = cache.getBinary(banana.toURI(), ImmutableList.of(missing.toURI()));
+        assertEquals(Files.toString(binary.getFile(), Charsets.UTF_8), "banana");
+        assertEquals(cache.getSourceDownloads(), 1);
+    }
+
+    @Test
+    public void testChecksum()
+            throws Exception
+    {
+        String appleSha256 = "3a7bd3e2360a3d29eea436fcfb7e44c735d117c42d1c1835420b6b9942dd4f1b";
+        File apple = new File(repoDir, "apple-1.0.tar.gz");
+        Files.write("apple", apple, Charsets.UTF_8);
+        File corruptApple = new File(repoDir, "corrupt-apple-1.0.tar.gz");
+        Files.write("apples", corruptApple, Charsets.UTF_8);
+
+        // a source with other content is skipped
+        BinaryCache cache = new BinaryCache(cacheDir, 1024);
+        CachedBinary binary = cache.getBinary(apple.toURI(), ImmutableList.of(corruptApple.toURI()), appleSha256);
+        assertEquals(Files.toString(binary.getFile(), Charsets.UTF_8), "apple");
+        assertEquals(cache.getSourceDownloads(), 0);
+        assertEquals(cache.getChecksumMismatches(), 1);
+        binary.close();
+
+        // the location itself must match too
+        File banana = new File(repoDir, "banana-1.0.tar.gz");
+        Files.write("banana", banana, Charsets.UTF_8);
+        try {
+            cache.getBinary(banana.toURI(), ImmutableList.<URI>of(), appleSha256);
+            fail("expected IOException");
+        }
+        catch (IOException expected) {
+        }
+        assertEquals(cache.getChecksumMismatches(), 2);
+        assertNull(cache.getCachedBinary(banana.toURI()));
+
+        // a cached copy with other content is downloaded again
+        Files.write("apples", apple, Charsets.UTF_8);
+        String applesSha256 = DigestUtils.toHex(MessageDigest.getInstance("SHA-256").digest("apples".getBytes(Charsets.UTF_8)));
+        binary = cache.getBinary(apple.toURI(), ImmutableList.<URI>of(), applesSha256);
+        assertEquals(Files.toString(binary.getFile(), Charsets.UTF_8), "apples");
+        assertEquals(binary.getSha256(), applesSha256);
+        binary.close();
+    }
+
+    @Test
+    public void testSnapshotsAreNotCached()
+            throws Exception
+    {
+        File apple = new File(repoDir, "apple-1.0-SNAPSHOT.tar.gz");
+        Files.write("apple", apple, Charsets.UTF_8);
+
+        BinaryCache cache = new BinaryCache(cacheDir, 1024);
+        assertNull(cache.getBinary(apple.toURI()));
+        assertEquals(cache.getBypasses(), 1);
+        assertEquals(cache.getBinaryCount(), 0);
+    }
+
+    @Test
+    public void testMissing()
+            throws Exception
+    {
+        BinaryCache cache = new BinaryCache(cacheDir, 1024);
+        try {
+            cache.getBinary(new File(repoDir, "apple-1.0.tar.gz").toURI());
+            fail("expected FileNotFoundException");
+        }
+        catch (FileNotFoundException expected) {
+        }
+        assertEquals(cache.getBinaryCount(), 0);
+    }
+}
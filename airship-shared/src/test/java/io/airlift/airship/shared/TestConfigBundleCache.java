@@ -0,0 +1,169 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+import static com.google.common.io.CharStreams.newReaderSupplier;
+import static io.airlift.airship.shared.FileUtils.createTempDir;
+import static io.airlift.airship.shared.FileUtils.deleteRecursively;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestConfigBundleCache
+{
+    private File dir;
+    private File cacheDir;
+
+    @BeforeMethod
+    public void setup()
+    {
+        dir = createTempDir("config");
+        cacheDir = createTempDir("config-bundle-cache");
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        deleteRecursively(dir);
+        deleteRecursively(cacheDir);
+    }
+
+    @Test
+    public void testReadEntries()
+            throws Exception
+    {
+        File apple = createBundle("apple", "apple-1.0.config");
+
+        ConfigBundleCache cache = new ConfigBundleCache(cacheDir, 10);
+        assertEquals(readEntry(cache, apple, "etc/config.properties"), "name=apple");
+        assertEquals(readEntry(cache, apple, "airship-resources.properties"), "memory=apple");
+        assertEquals(cache.getSize(), 1);
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getHits(), 1);
+
+        // the bundle is only downloaded once
+        apple.delete();
+        assertEquals(readEntry(cache, apple, "etc/config.properties"), "name=apple");
+
+        try {
+            readEntry(cache, apple, "missing.properties");
+            fail("expected FileNotFoundException");
+        }
+        catch (FileNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void testEviction()
+            throws Exception
+    {
+        File apple = createBundle("apple", "apple-1.0.config");
+        File banana = createBundle("banana", "banana-1.0.config");
+
+        ConfigBundleCache cache = new ConfigBundleCache(cacheDir, 1);
+        assertEquals(readEntry(cache, apple, "etc/config.properties"), "name=apple");
+        assertEquals(readEntry(cache, banana, "etc/config.properties"), "name=banana");
+        assertEquals(cache.getSize(), 1);
+
+        // apple was evicted, so it is downloaded again
+        Files.write("name=new-apple", new File(dir, "apple/etc/config.properties"), Charsets.UTF_8);
+        ConfigUtils.packConfig(apple, "", new File(dir, "apple"));
+        assertEquals(readEntry(cache, apple, "etc/config.properties"), "name=new-apple");
+    }
+
+    @Test
+    public void testEvictWhileReading()
+            throws Exception
+    {
+        File apple = createBundle("apple", "apple-1.0.config");
+        File banana = createBundle("banana", "banana-1.0.config");
+
+        ConfigBundleCache cache = new ConfigBundleCache(cacheDir, 1);
+        InputStream appleStream = cache.newConfigBundleSupplier(apple.toURI()).getInput();
+
+        // apple is evicted while it is read, and then downloaded again
+        assertEquals(readEntry(cache, banana, "etc/config.properties"), "name=banana");
+        assertEquals(readEntry(cache, apple, "etc/config.properties"), "name=apple");
+        assertEquals(cacheDir.list().length, 2);
+
+        // releasing the evicted copy keeps the new download
+        appleStream.close();
+        assertEquals(cacheDir.list().length, 1);
+        apple.delete();
+        InputStream in = cache.newConfigBundleSupplier(apple.toURI()).getInput();
+        try {
+            assertTrue(in.read() >= 0);
+        }
+        finally {
+            in.close();
+        }
+        assertEquals(cache.getSize(), 1);
+        assertEquals(cacheDir.list().length, 1);
+    }
+
+    @Test
+    public void testInvalidateAll()
+            throws Exception
+    {
+        File apple = createBundle("apple", "apple-1.0.config");
+
+        ConfigBundleCache cache = new ConfigBundleCache(cacheDir, 10);
+        assertEquals(readEntry(cache, apple, "etc/config.properties"), "name=apple");
+        assertEquals(cacheDir.list().length, 1);
+
+        cache.invalidateAll();
+        assertEquals(cache.getSize(), 0);
+        assertEquals(cacheDir.list().length, 0);
+    }
+
+    @Test
+    public void testStaleBundlesAreRemoved()
+            throws Exception
+    {
+        File apple = createBundle("apple", "apple-1.0.config");
+
+        ConfigBundleCache cache = new ConfigBundleCache(cacheDir, 10);
+        assertEquals(readEntry(cache, apple, "etc/config.properties"), "name=apple");
+
+        // bundles left by a previous cache are not tracked, so they are removed
+        new ConfigBundleCache(cacheDir, 10);
+        assertEquals(cacheDir.list().length, 0);
+    }
+
+    @Test
+    public void testSnapshotsAreNotCached()
+    {
+        assertTrue(ConfigBundleCache.isCacheable(new File(dir, "apple-1.0.config").toURI()));
+        assertFalse(ConfigBundleCache.isCacheable(new File(dir, "apple-1.0-SNAPSHOT.config").toURI()));
+        assertFalse(ConfigBundleCache.isCacheable(new File(dir, "1.0-SNAPSHOT/apple-1.0.config").toURI()));
+    }
+
+    private File createBundle(String name, String fileName)
+            throws Exception
+    {
+        File bundleDir = new File(dir, name);
+        new File(bundleDir, "etc").mkdirs();
+        Files.write("name=" + name, new File(bundleDir, "etc/config.properties"), Charsets.UTF_8);
+        Files.write("memory=" + name, new File(bundleDir, "airship-resources.properties"), Charsets.UTF_8);
+
+        File bundle = new File(dir, fileName);
+        ConfigUtils.packConfig(bundle, "", bundleDir);
+        return bundle;
+    }
+
+    private static String readEntry(ConfigBundleCache cache, File bundle, String entryName)
+            throws Exception
+    {
+        return CharStreams.toString(newReaderSupplier(cache.newConfigEntrySupplier(bundle.toURI(), entryName), Charsets.UTF_8));
+    }
+}
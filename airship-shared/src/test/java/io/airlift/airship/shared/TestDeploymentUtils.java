@@ -23,6 +23,7 @@ public class TestDeploymentUtils
         File symDir = null;
         File nestDir = null;
         File nestedSymDir = null;
+        CommandExecutor executor = new CommandExecutor(1, 0);
         try {
             baseDir = createTempDir("link-test");
 
@@ -35,18 +36,18 @@ public class TestDeploymentUtils
             assertFalse(isSymbolicLink(realFile));
 
             symFile = new File(realDir, "symFile");
-            createSymbolicLink(realFile, symFile);
+            createSymbolicLink(realFile, symFile, executor);
             assertTrue(isSymbolicLink(symFile));
 
             symDir = new File(baseDir, "bar");
-            createSymbolicLink(realDir, symDir);
+            createSymbolicLink(realDir, symDir, executor);
             assertTrue(isSymbolicLink(symDir));
             assertTrue(isSymbolicLink(new File(symDir, "symFile")));
             assertFalse(isSymbolicLink(new File(symDir, "realFile")));
 
             nestDir = new File(realDir, "nestDir");
             nestedSymDir = new File(nestDir, realDir.getName());
-            createSymbolicLink(realDir, nestedSymDir);
+            createSymbolicLink(realDir, nestedSymDir, executor);
             assertTrue(isSymbolicLink(nestedSymDir));
             assertTrue(isSymbolicLink(new File(nestedSymDir, "symFile")));
             assertFalse(isSymbolicLink(new File(nestedSymDir, "realFile")));
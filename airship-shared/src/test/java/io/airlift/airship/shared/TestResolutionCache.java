@@ -0,0 +1,126 @@
+package io.airlift.airship.shared;
+
+import com.google.common.base.Supplier;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class TestResolutionCache
+{
+    private static final Duration HOUR = new Duration(1, TimeUnit.HOURS);
+    private static final Duration ZERO = new Duration(0, TimeUnit.MILLISECONDS);
+
+    @Test
+    public void testRelease()
+    {
+        ResolutionCache cache = new ResolutionCache(HOUR, ZERO, ZERO);
+        CountingResolver resolver = new CountingResolver("resolved");
+
+        assertEquals(cache.get("apple:1.0", "1.0", resolver), "resolved");
+        assertEquals(cache.get("apple:1.0", "1.0", resolver), "resolved");
+        assertEquals(resolver.getCount(), 1);
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getHits(), 1);
+
+        cache.invalidateAll();
+        assertEquals(cache.get("apple:1.0", "1.0", resolver), "resolved");
+        assertEquals(resolver.getCount(), 2);
+    }
+
+    @Test
+    public void testSnapshot()
+    {
+        ResolutionCache cache = new ResolutionCache(HOUR, ZERO, ZERO);
+        CountingResolver resolver = new CountingResolver("resolved");
+
+        // snapshots use their own ttl
+        cache.get("apple:1.0-SNAPSHOT", "1.0-SNAPSHOT", resolver);
+        cache.get("apple:1.0-SNAPSHOT", "1.0-SNAPSHOT", resolver);
+        assertEquals(resolver.getCount(), 2);
+        assertEquals(cache.getHits(), 0);
+
+        // only the version decides, not the rest of the spec
+        cache.get("apple-SNAPSHOT-tools:1.0", "1.0", resolver);
+        cache.get("apple-SNAPSHOT-tools:1.0", "1.0", resolver);
+        assertEquals(resolver.getCount(), 3);
+        assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void testMissing()
+    {
+        ResolutionCache cache = new ResolutionCache(ZERO, ZERO, HOUR);
+        CountingResolver resolver = new CountingResolver(null);
+
+        assertNull(cache.get("apple:9.9", "9.9", resolver));
+        assertNull(cache.get("apple:9.9", "9.9", resolver));
+        assertEquals(resolver.getCount(), 1);
+        assertEquals(cache.getMissingHits(), 1);
+    }
+
+    @Test
+    public void testFailuresNotCached()
+    {
+        ResolutionCache cache = new ResolutionCache(HOUR, HOUR, HOUR);
+        Supplier<String> ambiguous = new Supplier<String>()
+        {
+            @Override
+            public String get()
+            {
+                throw new RuntimeException("Ambiguous spec");
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("apple", null, ambiguous);
+                fail("expected RuntimeException");
+            }
+            catch (RuntimeException expected) {
+            }
+        }
+        assertEquals(cache.getMisses(), 2);
+        assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        ResolutionCache cache = ResolutionCache.disabled();
+        CountingResolver resolver = new CountingResolver("resolved");
+
+        cache.get("apple:1.0", "1.0", resolver);
+        cache.get("apple:1.0", "1.0", resolver);
+        assertEquals(resolver.getCount(), 2);
+    }
+
+    private static class CountingResolver
+            implements Supplier<String>
+    {
+        private final String value;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private CountingResolver(String value)
+        {
+            this.value = value;
+        }
+
+        public int getCount()
+        {
+            return count.get();
+        }
+
+        @Override
+        public String get()
+        {
+            count.incrementAndGet();
+            return value;
+        }
+    }
+}